@@ -63,7 +63,7 @@ public class ErlRuntime implements IErlRuntime, IRpcSite {
         CONNECTED, DISCONNECTED, DOWN
     }
 
-    private State state;
+    private volatile State state;
     private final RuntimeData data;
     private OtpNode localNode;
     private final Object localNodeLock = new Object();
@@ -263,6 +263,10 @@ public class ErlRuntime implements IErlRuntime, IRpcSite {
     }
 
     private void tryConnect() throws RpcException {
+        if (state == State.CONNECTED) {
+            // fast path, don't serialize concurrent calls on the lock
+            return;
+        }
         synchronized (connectLock) {
             switch (state) {
             case DISCONNECTED:
@@ -406,6 +410,7 @@ public class ErlRuntime implements IErlRuntime, IRpcSite {
     public void stop() {
         // close peer too?
         stopped = true;
+        rpcHelper.releaseNode(localNode);
         localNode.close();
     }
 
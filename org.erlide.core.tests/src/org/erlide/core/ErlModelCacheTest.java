@@ -6,6 +6,7 @@ import java.io.File;
 
 import org.eclipse.core.runtime.CoreException;
 import org.erlide.model.erlang.IErlModule;
+import org.erlide.model.internal.root.ErlModelCache;
 import org.erlide.model.root.ErlModelManager;
 import org.erlide.model.root.IErlElementLocator;
 import org.erlide.model.root.IErlProject;
@@ -16,6 +17,8 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.cache.CacheStats;
+
 public class ErlModelCacheTest {
 
     @BeforeClass
@@ -141,4 +144,39 @@ public class ErlModelCacheTest {
         }
     }
 
+    @Test
+    public void checkThatProjectModulesAreDroppedWhenModuleIsAdded()
+            throws Exception {
+        IErlProject project = null;
+        try {
+            // given
+            // a project whose modules are cached
+            final String projectName = "testprojectc";
+            project = ErlideTestUtils.createProject(
+                    ErlideTestUtils.getTmpPath(projectName), projectName);
+            ErlideTestUtils.createModule(project, "c1.erl", "-module(c1).\n");
+            final ErlModelCache cache = ErlModelCache.getDefault();
+            final int modules = project.getModules().size();
+            final CacheStats before = cache.getStatistics().get(
+                    "projectModules");
+            project.getModules();
+            final CacheStats after = cache.getStatistics().get(
+                    "projectModules");
+            // when
+            // adding a module
+            final IErlModule module = ErlideTestUtils.createModule(project,
+                    "c2.erl", "-module(c2).\n");
+            // then
+            // the cached list was used, and is replaced by one with the new
+            // module
+            assertEquals(1, after.minus(before).hitCount());
+            assertEquals(modules + 1, project.getModules().size());
+            assertTrue(project.getModules().contains(module));
+        } finally {
+            if (project != null && project.exists()) {
+                ErlideTestUtils.deleteProject(project);
+            }
+        }
+    }
+
 }
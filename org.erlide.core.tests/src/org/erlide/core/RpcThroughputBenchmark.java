@@ -0,0 +1,131 @@
+package org.erlide.core;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.erlide.backend.BackendCore;
+import org.erlide.runtime.IRpcSite;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+
+/**
+ * Measures how the number of RPCs per second to the ide backend scales with
+ * the number of calling threads. Only runs when the system property
+ * <code>erlide.benchmarks</code> is set; the number of calls per thread can be
+ * set with <code>erlide.benchmarks.calls</code> (default 5000). Run it with
+ * and without <code>-Derlide.rpc.pooled=true</code> to compare the reply
+ * mailbox modes.
+ */
+public class RpcThroughputBenchmark {
+
+    private static final int CALLS = Integer.getInteger(
+            "erlide.benchmarks.calls", 5000);
+
+    private static IRpcSite backend;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        backend = BackendCore.getBackendManager().getIdeBackend()
+                .getRpcSite();
+    }
+
+    @Test
+    public void callsPerSecond() throws Exception {
+        // warm up
+        run(4, CALLS / 10);
+        for (final int threads : new int[] { 1, 2, 4, 8, 16 }) {
+            final long start = System.nanoTime();
+            final int failed = run(threads, CALLS);
+            final long time = System.nanoTime() - start;
+            System.out.println(String.format(
+                    "%2d threads: %8.0f calls/s (%d calls, %d failed)",
+                    threads, threads * CALLS * 1e9 / time, threads * CALLS,
+                    failed));
+            assertThat(failed, is(0));
+        }
+    }
+
+    @Test
+    public void backToBackCalls() throws Exception {
+        final int calls = 100000;
+        // warm up
+        for (int i = 0; i < calls / 10; i++) {
+            backend.call("lists", "reverse", "s", "abc");
+        }
+        final long allocated = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            final OtpErlangObject result = backend.call("lists", "reverse",
+                    "s", "abc");
+            assertThat(result,
+                    is((OtpErlangObject) new OtpErlangString("cba")));
+        }
+        final long time = System.nanoTime() - start;
+        final long bytes = allocatedBytes() - allocated;
+        System.out.println(String.format(
+                "%d calls (pooled replies: %s): %.0f calls/s, "
+                        + "%.0f bytes allocated per call", calls,
+                Boolean.getBoolean("erlide.rpc.pooled"), calls * 1e9 / time,
+                allocated < 0 ? Double.NaN : (double) bytes / calls));
+    }
+
+    /**
+     * Bytes allocated by the current thread, or -1 if the VM can't tell.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            final Method method = bean.getClass().getMethod(
+                    "getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return (Long) method.invoke(bean, Thread.currentThread().getId());
+        } catch (final Exception e) {
+            return -1;
+        }
+    }
+
+    private static int run(final int threads, final int calls)
+            throws InterruptedException {
+        final AtomicInteger failed = new AtomicInteger();
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final Thread thread = new Thread("rpc benchmark " + t) {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                        for (int i = 0; i < calls; i++) {
+                            try {
+                                backend.call("lists", "reverse", "s",
+                                        "abc");
+                            } catch (final Exception e) {
+                                failed.incrementAndGet();
+                            }
+                        }
+                    } catch (final InterruptedException e) {
+                        // stop
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+        go.countDown();
+        done.await();
+        return failed.get();
+    }
+}
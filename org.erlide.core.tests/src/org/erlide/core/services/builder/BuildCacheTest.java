@@ -0,0 +1,125 @@
+package org.erlide.core.services.builder;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.erlide.core.builder.BuildCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class BuildCacheTest {
+
+    private static final String MODULE = "src/m.erl";
+    private static final OtpErlangList OPTIONS = new OtpErlangList(
+            new OtpErlangObject[] { new OtpErlangAtom("debug_info") });
+
+    private File dir;
+    private File source;
+    private File include;
+    private File beam;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDir();
+        source = new File(dir, "m.erl");
+        include = new File(dir, "m.hrl");
+        beam = new File(dir, "m.beam");
+        Files.write("-module(m).\n-include(\"m.hrl\").\n", source,
+                Charsets.UTF_8);
+        Files.write("-define(X, 1).\n", include, Charsets.UTF_8);
+        Files.write("beam v1", beam, Charsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private List<File> files() {
+        return Lists.newArrayList(source, include);
+    }
+
+    @Test
+    public void keyDoesNotDependOnTimestamps() throws IOException {
+        final String key = BuildCache.computeKey(MODULE, files(), OPTIONS);
+        source.setLastModified(source.lastModified() + 100000);
+        assertThat(BuildCache.computeKey(MODULE, files(), OPTIONS), is(key));
+    }
+
+    @Test
+    public void keyDependsOnIncludesAndOptions() throws IOException {
+        final String key = BuildCache.computeKey(MODULE, files(), OPTIONS);
+        assertThat(BuildCache.computeKey(MODULE, files(), new OtpErlangList()),
+                not(is(key)));
+        Files.write("-define(X, 2).\n", include, Charsets.UTF_8);
+        assertThat(BuildCache.computeKey(MODULE, files(), OPTIONS),
+                not(is(key)));
+    }
+
+    @Test
+    public void storedBeamCanBeRestored() throws IOException {
+        final BuildCache cache = new BuildCache(new File(dir, "cache"));
+        final String key1 = BuildCache.computeKey(MODULE, files(), OPTIONS);
+        cache.store(MODULE, key1, beam, new OtpErlangList());
+        assertThat(cache.isCurrent(MODULE, key1), is(true));
+
+        // "switch branch"
+        Files.write("-define(X, 2).\n", include, Charsets.UTF_8);
+        Files.write("beam v2", beam, Charsets.UTF_8);
+        final String key2 = BuildCache.computeKey(MODULE, files(), OPTIONS);
+        cache.store(MODULE, key2, beam, new OtpErlangList());
+        assertThat(cache.isCurrent(MODULE, key1), is(false));
+
+        // and back again
+        cache.save();
+        final BuildCache loaded = new BuildCache(new File(dir, "cache"));
+        loaded.load();
+        assertThat(loaded.restore(MODULE, key1, beam), is(true));
+        assertThat(Files.toString(beam, Charsets.UTF_8), is("beam v1"));
+        assertThat(loaded.isCurrent(MODULE, key1), is(true));
+        assertThat(loaded.getMessages(key1), is(new OtpErlangList()));
+    }
+
+    @Test
+    public void unknownKeyIsNotRestored() {
+        final BuildCache cache = new BuildCache(new File(dir, "cache"));
+        assertThat(cache.restore(MODULE, "nokey", beam), is(false));
+        assertThat(cache.getMessages("nokey"), nullValue());
+    }
+
+    @Test
+    public void removedModuleIsForgotten() throws IOException {
+        final BuildCache cache = new BuildCache(new File(dir, "cache"));
+        final String key = BuildCache.computeKey(MODULE, files(), OPTIONS);
+        cache.store(MODULE, key, beam, new OtpErlangList());
+        cache.remove(MODULE);
+        assertThat(cache.getModules().contains(MODULE), is(false));
+        assertThat(cache.getMessages(key), nullValue());
+        cache.save();
+        final BuildCache loaded = new BuildCache(new File(dir, "cache"));
+        loaded.load();
+        assertThat(loaded.restore(MODULE, key, beam), is(false));
+    }
+}
@@ -0,0 +1,72 @@
+package org.erlide.core.services.builder;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.*;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.erlide.core.builder.ErlideBuilder;
+import org.erlide.model.root.IErlProject;
+import org.erlide.test.support.ErlideTestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Measures the wall time of a full build of a synthetic project against the
+ * local build backend. Only runs when the system property
+ * <code>erlide.benchmarks</code> is set; the number of modules can be set with
+ * <code>erlide.benchmarks.modules</code> (default 2000).
+ */
+public class ErlangBuilderBenchmark {
+
+    private static final int MODULES = Integer.getInteger(
+            "erlide.benchmarks.modules", 2000);
+
+    private static IErlProject erlProject;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        ErlideTestUtils.initProjects();
+        erlProject = ErlideTestUtils.createTmpErlProject("testprojectbench");
+        final IFolder src = erlProject.getWorkspaceProject().getFolder("src");
+        for (int i = 0; i < MODULES; i++) {
+            final String name = "bench" + i;
+            ErlideTestUtils.createFile(name + ".erl", "-module(" + name
+                    + ").\n-export([f/1]).\n" + "f(X) ->\n"
+                    + "    lists:reverse([X, " + i + "]).\n", src);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        if (erlProject != null) {
+            ErlideTestUtils.deleteProjects();
+        }
+    }
+
+    @Test
+    public void fullBuildWallTime() throws Exception {
+        final IProject project = erlProject.getWorkspaceProject();
+        final ErlideBuilder builder = new ErlideBuilder(project);
+
+        final long start = System.currentTimeMillis();
+        builder.build(IncrementalProjectBuilder.FULL_BUILD, null,
+                new NullProgressMonitor(), null);
+        final long time = System.currentTimeMillis() - start;
+        System.out.println(String.format(
+                "full build of %d modules took %d ms (%.2f ms/module)",
+                MODULES, time, (double) time / MODULES));
+
+        project.refreshLocal(IResource.DEPTH_INFINITE, null);
+        assertThat(project.findMember("ebin/bench0.beam"), notNullValue());
+        assertThat(project.findMember("ebin/bench" + (MODULES - 1) + ".beam"),
+                notNullValue());
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.erlide.core.services.builder;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.erlide.core.builder.IncludeDependencyIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class IncludeDependencyIndexTest {
+
+    private static final int MODULES = 5000;
+    private static final int HEADERS = 50;
+
+    private File stateFile;
+    private IncludeDependencyIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        stateFile = File.createTempFile("incdeps", null);
+        stateFile.delete();
+        index = new IncludeDependencyIndex(stateFile);
+        for (int i = 0; i < MODULES; i++) {
+            index.put(modulePath(i), i, includesFor(i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        stateFile.delete();
+    }
+
+    private static String modulePath(final int i) {
+        return "src/m" + i + ".erl";
+    }
+
+    private static List<String> includesFor(final int i) {
+        final List<String> result = Lists.newArrayList("common.hrl");
+        result.add("h" + i % HEADERS + ".hrl");
+        if (i % 10 == 0) {
+            result.add("rare.hrl");
+        }
+        return result;
+    }
+
+    @Test
+    public void dependentsOfWidelyIncludedHeader() {
+        final Set<String> dependents = index.getDependents("common.hrl");
+        assertThat(dependents.size(), is(MODULES));
+    }
+
+    @Test
+    public void dependentsOfNarrowHeader() {
+        final Set<String> dependents = index.getDependents("h7.hrl");
+        assertThat(dependents.size(), is(MODULES / HEADERS));
+        assertThat(dependents, hasItem(modulePath(7)));
+        assertThat(index.getDependents("missing.hrl").isEmpty(), is(true));
+    }
+
+    @Test
+    public void updatingModuleMovesDependency() {
+        index.put(modulePath(0), 1000, Lists.newArrayList("other.hrl"));
+        assertThat(index.getDependents("rare.hrl"),
+                not(hasItem(modulePath(0))));
+        assertThat(index.getDependents("other.hrl"), hasItem(modulePath(0)));
+        assertThat(index.getStamp(modulePath(0)), is(1000L));
+
+        index.remove(modulePath(0));
+        assertThat(index.getDependents("other.hrl").isEmpty(), is(true));
+        assertThat(index.getStamp(modulePath(0)), is(-1L));
+    }
+
+    @Test
+    public void indexSurvivesSaveAndLoad() {
+        index.save();
+        final IncludeDependencyIndex loaded = new IncludeDependencyIndex(
+                stateFile);
+        loaded.load();
+        assertThat(loaded.getModules().size(), is(MODULES));
+        assertThat(loaded.getDependents("rare.hrl"),
+                is(index.getDependents("rare.hrl")));
+        assertThat(loaded.getStamp(modulePath(42)), is(42L));
+    }
+
+    @Test
+    public void staleModulesAreReportedOnce() {
+        index.markStale(modulePath(3));
+        assertThat(index.takeStale(), hasItem(modulePath(3)));
+        assertThat(index.takeStale().isEmpty(), is(true));
+    }
+
+    /**
+     * Times updating the includes of single modules and looking up the
+     * dependents of a header afterwards, as incremental builds do. Only runs
+     * when the system property <code>erlide.benchmarks</code> is set.
+     */
+    @Test
+    public void incrementalUpdateTiming() {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        final int updates = 1000;
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            index.put(modulePath(i), MODULES + i, includesFor(i + 1));
+        }
+        final long update = System.nanoTime() - start;
+        start = System.nanoTime();
+        final Set<String> dependents = index.getDependents("h7.hrl");
+        final long lookup = System.nanoTime() - start;
+        assertThat(dependents.size(), is(MODULES / HEADERS));
+        System.out.println(String.format(
+                "%d modules: update %.1f us per module, "
+                        + "dependents of h7.hrl %.3f ms", MODULES, update
+                        / 1e3 / updates, lookup / 1e6));
+    }
+}
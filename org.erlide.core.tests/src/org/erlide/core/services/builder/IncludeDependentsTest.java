@@ -0,0 +1,90 @@
+package org.erlide.core.services.builder;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.erlide.core.builder.BuildResource;
+import org.erlide.core.builder.BuilderHelper;
+import org.erlide.model.erlang.IErlModule;
+import org.erlide.model.root.ErlModelManager;
+import org.erlide.model.root.IErlProject;
+import org.erlide.test.support.ErlideTestUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Checks that the modules to build when a header changes follow the includes
+ * of the modules as they are edited.
+ */
+public class IncludeDependentsTest {
+
+    private static IErlProject project;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        ErlideTestUtils.initProjects();
+        final String name = "incdeps";
+        project = ErlideTestUtils.createProject(
+                ErlideTestUtils.getTmpPath(name), name);
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        ErlideTestUtils.deleteProjects();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        ErlideTestUtils.initModulesAndIncludes();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ErlideTestUtils.deleteModules();
+        BuilderHelper.disposeIncludeIndexes();
+    }
+
+    private static Set<String> dependentsOf(final IErlModule header)
+            throws Exception {
+        final Set<BuildResource> result = Sets.newHashSet();
+        new BuilderHelper().addDependents(header.getResource(),
+                project.getWorkspaceProject(), result);
+        final Set<String> names = Sets.newHashSet();
+        for (final BuildResource bres : result) {
+            names.add(bres.getResource().getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void dependentsFollowEditedIncludes() throws Exception {
+        final IErlModule a = ErlideTestUtils.createInclude(project, "a.hrl",
+                "-define(A, 1).\n");
+        final IErlModule b = ErlideTestUtils.createInclude(project, "b.hrl",
+                "-define(B, 1).\n");
+        final IErlModule m = ErlideTestUtils.createModule(project, "m.erl",
+                "-module(m).\n-include(\"a.hrl\").\n");
+        m.open(null);
+        assertThat(dependentsOf(a), hasItem("m.erl"));
+        assertThat(dependentsOf(b).isEmpty(), is(true));
+
+        final IFile file = (IFile) m.getResource();
+        file.setContents(new ByteArrayInputStream(
+                "-module(m).\n-include(\"b.hrl\").\n".getBytes()), true, false,
+                null);
+        m.close();
+        // as the model does when the module has been parsed again
+        ErlModelManager.getErlangModel().notifyChange(m);
+        assertThat(dependentsOf(a).isEmpty(), is(true));
+        assertThat(dependentsOf(b), hasItem("m.erl"));
+    }
+}
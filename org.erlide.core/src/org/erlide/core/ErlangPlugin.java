@@ -15,6 +15,7 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Plugin;
+import org.erlide.core.builder.BuilderHelper;
 import org.erlide.launch.debug.ErlangDebugOptionsManager;
 import org.osgi.framework.BundleContext;
 
@@ -48,6 +49,7 @@ public class ErlangPlugin extends Plugin {
         try {
             ResourcesPlugin.getWorkspace().removeSaveParticipant(
                     getBundle().getSymbolicName());
+            BuilderHelper.disposeIncludeIndexes();
             if (core != null) {
                 core.stop();
             }
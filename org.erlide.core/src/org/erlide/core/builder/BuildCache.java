@@ -0,0 +1,261 @@
+package org.erlide.core.builder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.erlide.utils.ErlLogger;
+
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * Remembers the result of compiling a module, keyed by a hash of everything
+ * that influences it: the module path, the source text, the text of the
+ * resolved includes and the compiler options. When the key of a module that
+ * needs to be built matches a previous compilation, the cached beam and
+ * compiler messages can be used instead of compiling again. A few versions are
+ * kept for each module, so that switching back and forth between branches
+ * doesn't need recompiling.
+ */
+public class BuildCache {
+
+    private static final String VERSION = "buildcache 1";
+    private static final String SEP = "\t";
+    private static final int VERSIONS_PER_MODULE = 3;
+
+    private final File dir;
+    // module -> keys, most recent first
+    private final Map<String, LinkedList<String>> keys = Maps.newHashMap();
+    private final Map<String, String> pending = Maps.newHashMap();
+    private boolean dirty = false;
+
+    public BuildCache(final File dir) {
+        this.dir = dir;
+    }
+
+    public static String computeKey(final String module,
+            final Collection<File> files, final OtpErlangList options)
+            throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+        digest.update(module.getBytes("UTF-8"));
+        for (final File file : files) {
+            digest.update(file.getName().getBytes("UTF-8"));
+            digest.update(Files.toByteArray(file));
+        }
+        digest.update(options.toString().getBytes("UTF-8"));
+        final StringBuilder result = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            result.append(Integer.toHexString(b >> 4 & 0xf)).append(
+                    Integer.toHexString(b & 0xf));
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return true if the last successful compilation of the module was done
+     *         with this key.
+     */
+    public synchronized boolean isCurrent(final String module,
+            final String key) {
+        final LinkedList<String> list = keys.get(module);
+        return list != null && !list.isEmpty() && list.getFirst().equals(key);
+    }
+
+    /**
+     * Copy the cached beam for the given key to the output location.
+     * 
+     * @return true if the beam was found and copied.
+     */
+    public synchronized boolean restore(final String module, final String key,
+            final File beam) {
+        final LinkedList<String> list = keys.get(module);
+        if (list == null || !list.contains(key)) {
+            return false;
+        }
+        final File cached = new File(dir, key + ".beam");
+        if (!cached.exists()) {
+            return false;
+        }
+        try {
+            Files.copy(cached, beam);
+        } catch (final IOException e) {
+            ErlLogger.warn(e);
+            return false;
+        }
+        list.remove(key);
+        list.addFirst(key);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * @return the compiler messages recorded for the key, or null.
+     */
+    public OtpErlangList getMessages(final String key) {
+        final File file = new File(dir, key + ".msgs");
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final OtpErlangObject msgs = new OtpInputStream(
+                    Files.toByteArray(file)).read_any();
+            if (msgs instanceof OtpErlangList) {
+                return (OtpErlangList) msgs;
+            }
+        } catch (final Exception e) {
+            ErlLogger.warn(e);
+        }
+        return null;
+    }
+
+    public synchronized void store(final String module, final String key,
+            final File beam, final OtpErlangList messages) {
+        try {
+            dir.mkdirs();
+            Files.write(new OtpOutputStream(messages).toByteArray(), new File(
+                    dir, key + ".msgs"));
+            Files.copy(beam, new File(dir, key + ".beam"));
+        } catch (final IOException e) {
+            ErlLogger.warn(e);
+            return;
+        }
+        LinkedList<String> list = keys.get(module);
+        if (list == null) {
+            list = Lists.newLinkedList();
+            keys.put(module, list);
+        }
+        list.remove(key);
+        list.addFirst(key);
+        while (list.size() > VERSIONS_PER_MODULE) {
+            final String old = list.removeLast();
+            new File(dir, old + ".beam").delete();
+            new File(dir, old + ".msgs").delete();
+        }
+        dirty = true;
+    }
+
+    /**
+     * @return the modules that have cached compilations.
+     */
+    public synchronized Set<String> getModules() {
+        return Sets.newHashSet(keys.keySet());
+    }
+
+    /**
+     * Forget the cached compilations of a module that doesn't exist anymore.
+     */
+    public synchronized void remove(final String module) {
+        pending.remove(module);
+        final LinkedList<String> list = keys.remove(module);
+        if (list == null) {
+            return;
+        }
+        for (final String key : list) {
+            new File(dir, key + ".beam").delete();
+            new File(dir, key + ".msgs").delete();
+        }
+        dirty = true;
+    }
+
+    /**
+     * Remember the key of a compilation that has been started, until its
+     * result is available.
+     */
+    public synchronized void setPending(final String module, final String key) {
+        if (key == null) {
+            pending.remove(module);
+        } else {
+            pending.put(module, key);
+        }
+    }
+
+    public synchronized String takePending(final String module) {
+        return pending.remove(module);
+    }
+
+    public synchronized void load() {
+        final File file = new File(dir, "index");
+        if (!file.exists()) {
+            return;
+        }
+        keys.clear();
+        try {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                if (!VERSION.equals(reader.readLine())) {
+                    return;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] parts = line.split(SEP);
+                    final LinkedList<String> list = Lists.newLinkedList();
+                    for (int i = 1; i < parts.length; i++) {
+                        list.add(parts[i]);
+                    }
+                    keys.put(parts[0], list);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final Exception e) {
+            ErlLogger.warn(e);
+            keys.clear();
+        }
+        dirty = false;
+    }
+
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            dir.mkdirs();
+            final BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(new File(dir,
+                            "index")), "UTF-8"));
+            try {
+                writer.write(VERSION);
+                writer.newLine();
+                for (final Entry<String, LinkedList<String>> entry : keys
+                        .entrySet()) {
+                    writer.write(entry.getKey());
+                    for (final String key : entry.getValue()) {
+                        writer.write(SEP);
+                        writer.write(key);
+                    }
+                    writer.newLine();
+                }
+            } finally {
+                writer.close();
+            }
+            dirty = false;
+        } catch (final IOException e) {
+            ErlLogger.warn(e);
+        }
+    }
+}
@@ -12,7 +12,9 @@ package org.erlide.core.builder;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,6 +42,8 @@ import org.erlide.model.ErlModelException;
 import org.erlide.model.erlang.IErlModule;
 import org.erlide.model.erlang.ModuleKind;
 import org.erlide.model.root.ErlModelManager;
+import org.erlide.model.root.IErlElement;
+import org.erlide.model.root.IErlModelChangeListener;
 import org.erlide.model.root.IErlProject;
 import org.erlide.model.util.ErlangIncludeFile;
 import org.erlide.model.util.PluginUtils;
@@ -47,6 +51,7 @@ import org.erlide.model.util.ResourceUtil;
 import org.erlide.runtime.IRpcSite;
 import org.erlide.runtime.rpc.IRpcFuture;
 import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.runtimeinfo.RuntimeInfo;
 import org.erlide.utils.ErlLogger;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
@@ -55,10 +60,47 @@ import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 public final class BuilderHelper {
 
+    private static final Map<IProject, IncludeDependencyIndex> includeIndexes = Maps
+            .newHashMap();
+
+    private static final IErlModelChangeListener includeIndexUpdater = new IErlModelChangeListener() {
+        @Override
+        public void elementChanged(final IErlElement element) {
+            if (!(element instanceof IErlModule)) {
+                return;
+            }
+            final IErlModule m = (IErlModule) element;
+            final IResource r = m.getResource();
+            if (m.getModuleKind() != ModuleKind.ERL || r == null) {
+                return;
+            }
+            final IncludeDependencyIndex index;
+            synchronized (includeIndexes) {
+                index = includeIndexes.get(r.getProject());
+            }
+            // the module is still being parsed, so we can't look at its
+            // includes yet
+            if (index != null) {
+                index.markStale(r.getProjectRelativePath()
+                        .toPortableString());
+            }
+        }
+    };
+
+    // guarded by includeIndexes
+    private static boolean includeIndexUpdaterAdded = false;
+
+    private static final Map<IProject, BuildCache> buildCaches = Maps
+            .newHashMap();
+
+    private static final boolean BUILD_CACHE_DISABLED = Boolean
+            .getBoolean("erlide.builder.nocache");
+
     public BuilderHelper() {
     }
 
@@ -133,27 +175,138 @@ public final class BuilderHelper {
     public void addDependents(final IResource resource,
             final IProject my_project, final Set<BuildResource> result)
             throws ErlModelException {
+        final IncludeDependencyIndex index = getIncludeIndex(my_project);
+        if (index == null) {
+            return;
+        }
+        refreshStaleIncludes(my_project, index);
+        for (final String path : index.getDependents(resource.getName())) {
+            final IResource m = my_project.findMember(path);
+            if (m != null) {
+                result.add(new BuildResource(m));
+            }
+        }
+    }
+
+    /**
+     * Returns the include dependency index of the project, loading it from
+     * the plugin state location and bringing it up to date with the model the
+     * first time it is requested.
+     */
+    public static IncludeDependencyIndex getIncludeIndex(final IProject project)
+            throws ErlModelException {
+        synchronized (includeIndexes) {
+            final IncludeDependencyIndex index = includeIndexes.get(project);
+            if (index != null) {
+                return index;
+            }
+            if (!includeIndexUpdaterAdded) {
+                ErlModelManager.getErlangModel().addModelChangeListener(
+                        includeIndexUpdater);
+                includeIndexUpdaterAdded = true;
+            }
+        }
         final IErlProject eprj = ErlModelManager.getErlangModel().findProject(
-                my_project);
-        if (eprj != null) {
-            final Collection<IErlModule> ms = eprj.getModules();
-            for (final IErlModule m : ms) {
-                final Collection<ErlangIncludeFile> incs = m.getIncludeFiles();
-                for (final ErlangIncludeFile ifile : incs) {
-                    if (ResourceUtil.samePath(ifile.getFilename(),
-                            resource.getName())) {
-                        if (m.getModuleKind() == ModuleKind.ERL) {
-                            final BuildResource bres = new BuildResource(
-                                    m.getResource());
-                            result.add(bres);
-                        }
-                        break;
-                    }
-                }
+                project);
+        if (eprj == null) {
+            return null;
+        }
+        // scan outside the lock, parsing a module notifies the model listener
+        final File stateFile = ErlangPlugin.getDefault().getStateLocation()
+                .append(project.getName() + ".incdeps").toFile();
+        final IncludeDependencyIndex index = new IncludeDependencyIndex(
+                stateFile);
+        index.load();
+        final Set<String> stale = index.getModules();
+        for (final IErlModule m : eprj.getModules()) {
+            final IResource r = m.getResource();
+            if (m.getModuleKind() != ModuleKind.ERL || r == null) {
+                continue;
+            }
+            final String path = r.getProjectRelativePath().toPortableString();
+            stale.remove(path);
+            if (index.getStamp(path) != r.getLocalTimeStamp()) {
+                updateIncludeIndex(index, m);
+            }
+        }
+        for (final String path : stale) {
+            index.remove(path);
+        }
+        index.save();
+        synchronized (includeIndexes) {
+            final IncludeDependencyIndex other = includeIndexes.get(project);
+            if (other != null) {
+                return other;
+            }
+            includeIndexes.put(project, index);
+            return index;
+        }
+    }
+
+    /**
+     * Stops keeping the include dependency indexes up to date with the model
+     * and forgets them, they are loaded again when needed.
+     */
+    public static void disposeIncludeIndexes() {
+        synchronized (includeIndexes) {
+            if (includeIndexUpdaterAdded) {
+                ErlModelManager.getErlangModel().removeModelChangeListener(
+                        includeIndexUpdater);
+                includeIndexUpdaterAdded = false;
             }
+            includeIndexes.clear();
         }
     }
 
+    public static void saveIncludeIndex(final IProject project) {
+        final IncludeDependencyIndex index;
+        synchronized (includeIndexes) {
+            index = includeIndexes.get(project);
+        }
+        if (index != null) {
+            index.save();
+        }
+    }
+
+    static void clearResolvedIncludes(final IProject project) {
+        final IncludeDependencyIndex index;
+        synchronized (includeIndexes) {
+            index = includeIndexes.get(project);
+        }
+        if (index != null) {
+            index.clearResolvedIncludes();
+        }
+    }
+
+    private static void refreshStaleIncludes(final IProject project,
+            final IncludeDependencyIndex index) throws ErlModelException {
+        final IErlProject eprj = ErlModelManager.getErlangModel().findProject(
+                project);
+        for (final String path : index.takeStale()) {
+            final IResource r = project.findMember(path);
+            final IErlModule m = r == null || eprj == null ? null : eprj
+                    .getModule(r.getName());
+            if (m == null) {
+                index.remove(path);
+            } else {
+                updateIncludeIndex(index, m);
+            }
+        }
+    }
+
+    private static Set<String> updateIncludeIndex(
+            final IncludeDependencyIndex index, final IErlModule m)
+            throws ErlModelException {
+        final IResource r = m.getResource();
+        final Set<String> includes = Sets.newHashSet();
+        for (final ErlangIncludeFile ifile : m.getIncludeFiles()) {
+            includes.add(ifile.getFilename());
+        }
+        index.put(r.getProjectRelativePath().toPortableString(),
+                r.getLocalTimeStamp(), includes);
+        return includes;
+    }
+
     public Set<BuildResource> getAffectedResources(
             @SuppressWarnings("rawtypes") final Map args,
             final IProject project, final IProgressMonitor monitor)
@@ -267,21 +420,256 @@ public final class BuilderHelper {
             final IResource source, final IResource beam,
             boolean shouldCompile, final IErlProject eprj)
             throws ErlModelException {
+        final IncludeDependencyIndex index = getIncludeIndex(project);
+        for (final String ifile : getIncludes(project, index, source, eprj)) {
+            final IResource rifile = findInclude(project, index, ifile);
+            if (rifile != null
+                    && rifile.getLocalTimeStamp() > beam.getLocalTimeStamp()) {
+                shouldCompile = true;
+                break;
+            }
+        }
+        return shouldCompile;
+    }
+
+    private Collection<String> getIncludes(final IProject project,
+            final IncludeDependencyIndex index, final IResource source,
+            final IErlProject eprj) throws ErlModelException {
+        refreshStaleIncludes(project, index);
+        final String path = source.getProjectRelativePath().toPortableString();
+        final Collection<String> incs = index.getStamp(path) == source
+                .getLocalTimeStamp() ? index.getIncludes(path) : null;
+        if (incs != null) {
+            return incs;
+        }
         final IErlModule m = eprj.getModule(source.getName());
-        if (m != null) {
-            final Collection<ErlangIncludeFile> incs = m.getIncludeFiles();
-            for (final ErlangIncludeFile ifile : incs) {
-                final IResource rifile = ResourceUtil.findResourceByName(
-                        project, ifile.getFilename());
-                if (rifile != null
-                        && rifile.getLocalTimeStamp() > beam
-                                .getLocalTimeStamp()) {
-                    shouldCompile = true;
-                    break;
+        if (m == null) {
+            return Collections.emptySet();
+        }
+        return updateIncludeIndex(index, m);
+    }
+
+    private IResource findInclude(final IProject project,
+            final IncludeDependencyIndex index, final String include) {
+        final String cached = index.getResolvedInclude(include);
+        if (cached != null) {
+            if (cached.length() == 0) {
+                return null;
+            }
+            final IResource r = project.findMember(cached);
+            if (r != null) {
+                return r;
+            }
+        }
+        final IResource r = ResourceUtil.findResourceByName(project, include);
+        index.putResolvedInclude(include, r == null ? "" : r
+                .getProjectRelativePath().toPortableString());
+        return r;
+    }
+
+    public static BuildCache getBuildCache(final IProject project) {
+        if (BUILD_CACHE_DISABLED) {
+            return null;
+        }
+        synchronized (buildCaches) {
+            BuildCache cache = buildCaches.get(project);
+            if (cache == null) {
+                final File dir = ErlangPlugin.getDefault().getStateLocation()
+                        .append("buildcache").append(project.getName())
+                        .toFile();
+                cache = new BuildCache(dir);
+                cache.load();
+                // modules deleted while the cache wasn't loaded
+                for (final String module : cache.getModules()) {
+                    if (project.findMember(module) == null) {
+                        cache.remove(module);
+                    }
                 }
+                buildCaches.put(project, cache);
+            }
+            return cache;
+        }
+    }
+
+    public static void saveBuildCache(final IProject project) {
+        final BuildCache cache;
+        synchronized (buildCaches) {
+            cache = buildCaches.get(project);
+        }
+        if (cache != null) {
+            cache.save();
+        }
+    }
+
+    /**
+     * @return the key of the compilation, or null if it can't be computed,
+     *         e.g. because an include file can't be found: the result of the
+     *         compilation then depends on files we can't check, so it must not
+     *         be reused
+     */
+    private String computeBuildKey(final IProject project,
+            final IResource source, final OtpErlangList compilerOptions) {
+        try {
+            final IErlProject eprj = ErlModelManager.getErlangModel()
+                    .findProject(project);
+            final IncludeDependencyIndex index = getIncludeIndex(project);
+            if (eprj == null || index == null) {
+                return null;
+            }
+            final List<File> files = Lists.newArrayList(source.getLocation()
+                    .toFile());
+            final List<String> incs = Lists.newArrayList(getIncludes(project,
+                    index, source, eprj));
+            Collections.sort(incs);
+            final Collection<IPath> includeDirs = getAllIncludeDirs(project);
+            for (final String inc : incs) {
+                final File file = findIncludeFile(project, index, source,
+                        includeDirs, eprj, inc);
+                if (file == null) {
+                    if (isDebugging()) {
+                        ErlLogger.debug("can't reuse %s, %s not found",
+                                source.getName(), inc);
+                    }
+                    return null;
+                }
+                files.add(file);
+            }
+            return BuildCache.computeKey(source.getProjectRelativePath()
+                    .toPortableString(), files, compilerOptions);
+        } catch (final Exception e) {
+            ErlLogger.warn(e);
+            return null;
+        }
+    }
+
+    /**
+     * Looks for an include file like the compiler does: in the project, next
+     * to the source, in the include directories and, for include_lib, in the
+     * applications of the runtime.
+     * 
+     * @return the include file, or null if it wasn't found
+     */
+    private File findIncludeFile(final IProject project,
+            final IncludeDependencyIndex index, final IResource source,
+            final Collection<IPath> includeDirs, final IErlProject eprj,
+            final String include) {
+        final IResource r = findInclude(project, index, include);
+        if (r != null && r.getLocation() != null) {
+            return r.getLocation().toFile();
+        }
+        final List<File> dirs = Lists.newArrayList();
+        if (source.getParent().getLocation() != null) {
+            dirs.add(source.getParent().getLocation().toFile());
+        }
+        for (final IPath dir : includeDirs) {
+            dirs.add(dir.toFile());
+        }
+        for (final File dir : dirs) {
+            final File file = new File(dir, include);
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        final RuntimeInfo info = eprj.getRuntimeInfo();
+        final int i = include.indexOf('/');
+        if (info == null || info.getOtpHome() == null || i <= 0) {
+            return null;
+        }
+        // include_lib("app/include/file.hrl"), the latest version of app wins
+        final String app = include.substring(0, i);
+        final File[] libs = new File(info.getOtpHome(), "lib").listFiles();
+        if (libs == null) {
+            return null;
+        }
+        Arrays.sort(libs);
+        for (int j = libs.length - 1; j >= 0; j--) {
+            final String name = libs[j].getName();
+            if (name.equals(app) || name.startsWith(app + "-")) {
+                final File file = new File(libs[j], include.substring(i + 1));
+                if (file.isFile()) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * If the module was compiled before with the same key, reuse the result:
+     * keep the existing beam if it's the right one, or else copy it from the
+     * cache.
+     * 
+     * @return true if the module doesn't need to be compiled
+     */
+    private boolean reuseCompiled(final IProject project,
+            final IResource source, final IResource beam,
+            final String outputDir, final String key) {
+        final BuildCache cache = getBuildCache(project);
+        final String path = source.getProjectRelativePath().toPortableString();
+        final OtpErlangList messages = cache.getMessages(key);
+        if (messages == null) {
+            return false;
+        }
+        final String module = source.getFullPath().removeFileExtension()
+                .lastSegment();
+        final File beamFile = new File(outputDir, module + ".beam");
+        if (beam == null || !beam.exists() || !cache.isCurrent(path, key)) {
+            if (!cache.restore(path, key, beamFile)) {
+                return false;
+            }
+            loadModule(project, module);
+        }
+        // a beam older than the source would be looked at again by every
+        // build
+        beamFile.setLastModified(System.currentTimeMillis());
+        refreshBeam(project, source, beam);
+        if (isDebugging()) {
+            ErlLogger.debug("reusing compiled %s", source.getName());
+        }
+        MarkerUtils.addErrorMarkers(source, messages);
+        createTaskMarkers(project, source);
+        return true;
+    }
+
+    private void refreshBeam(final IProject project, final IResource source,
+            final IResource beam) {
+        try {
+            if (beam != null) {
+                beam.refreshLocal(IResource.DEPTH_ZERO, null);
+            } else {
+                final IPath beamPath = getBeamForErl(source);
+                final IResource dir = beamPath == null ? null : project
+                        .findMember(beamPath.removeLastSegments(1));
+                if (dir != null) {
+                    dir.refreshLocal(IResource.DEPTH_ONE, null);
+                }
+            }
+        } catch (final CoreException e) {
+            ErlLogger.warn(e);
+        }
+    }
+
+    private void storeCompiled(final IProject project, final IResource source,
+            final OtpErlangTuple result) {
+        final BuildCache cache = getBuildCache(project);
+        if (cache == null) {
+            return;
+        }
+        final String key = cache.takePending(source.getProjectRelativePath()
+                .toPortableString());
+        if (key == null || !(result.elementAt(1) instanceof OtpErlangList)
+                || !(result.elementAt(2) instanceof OtpErlangList)) {
+            return;
+        }
+        for (final OtpErlangObject ebeam : (OtpErlangList) result.elementAt(2)) {
+            final String beam = ((OtpErlangString) ebeam).stringValue();
+            if (beam.endsWith(".beam")) {
+                cache.store(source.getProjectRelativePath().toPortableString(),
+                        key, new File(beam),
+                        (OtpErlangList) result.elementAt(1));
+                return;
             }
         }
-        return shouldCompile;
     }
 
     public void refreshOutputDir(final IProject project) throws CoreException {
@@ -310,6 +698,7 @@ public final class BuilderHelper {
                     .lastSegment();
             BuilderHelper.loadModule(project, beamf);
             refreshDirs(project, t.elementAt(2));
+            storeCompiled(project, source, t);
         } else {
             // ErlLogger.debug(">>>> compile error... %s\n   %s",
             // resource.getName(), t);
@@ -401,6 +790,19 @@ public final class BuilderHelper {
                     || shouldCompile(project, res, beam);
 
             if (shouldCompile) {
+                final BuildCache cache = getBuildCache(project);
+                if (cache != null) {
+                    final String key = computeBuildKey(project, res,
+                            compilerOptions);
+                    if (key != null
+                            && !force
+                            && reuseCompiled(project, res, beam, outputDir,
+                                    key)) {
+                        return null;
+                    }
+                    cache.setPending(res.getProjectRelativePath()
+                            .toPortableString(), key);
+                }
                 if (beam != null) {
                     try {
                         beam.delete(true, null);
@@ -779,6 +1181,8 @@ public final class BuilderHelper {
             switch (kind) {
             case IResourceDelta.ADDED:
             case IResourceDelta.REMOVED:
+                clearResolvedIncludes(resource.getProject());
+                // fall through
             case IResourceDelta.CHANGED:
                 final int n = result.size();
                 if (!fullBuild) {
@@ -800,6 +1204,11 @@ public final class BuilderHelper {
                 break;
             case IResourceDelta.REMOVED:
                 MarkerUtils.deleteMarkers(resource);
+                final BuildCache cache = getBuildCache(resource.getProject());
+                if (cache != null) {
+                    cache.remove(resource.getProjectRelativePath()
+                            .toPortableString());
+                }
                 IPath beam = erlProject.getOutputLocation();
                 final IPath module = beam.append(resource.getName())
                         .removeFileExtension();
@@ -0,0 +1,301 @@
+package org.erlide.core.builder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.erlide.model.ErlModelException;
+import org.erlide.model.root.IErlProject;
+import org.erlide.runtime.IRpcSite;
+import org.erlide.runtime.rpc.IRpcFuture;
+import org.erlide.runtime.rpc.IRpcFutureListener;
+import org.erlide.utils.ErlLogger;
+
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Feeds compile requests to the build backend, keeping at most a fixed number
+ * of them in flight so that the backend's rpc server and the connection are
+ * not flooded. Results are handled as soon as they arrive.
+ * 
+ * The window size is taken from the <code>erlide.builder.window</code>
+ * system property; if it is not set, the number of schedulers on the backend
+ * is used.
+ */
+public class CompileScheduler {
+
+    private static final int DEFAULT_WINDOW = 4;
+    private static final int SLOWEST_REPORTED = 10;
+
+    private final BuilderHelper helper;
+    private final BuildNotifier notifier;
+    private final IProject project;
+    private final IErlProject erlProject;
+    private final IRpcSite backend;
+    private final OtpErlangList compilerOptions;
+    private final boolean force;
+
+    private final Map<IRpcFuture, Pending> inFlight = Maps.newHashMap();
+    private final BlockingQueue<IRpcFuture> completed = new LinkedBlockingQueue<IRpcFuture>();
+    private final IRpcFutureListener listener = new IRpcFutureListener() {
+        @Override
+        public void done(final IRpcFuture future) {
+            completed.add(future);
+        }
+    };
+    private final List<Pending> finished = Lists.newArrayList();
+    // yrl files that are queued or compiling, without extension
+    private final Set<IPath> pendingYrls = Sets.newHashSet();
+
+    public CompileScheduler(final BuilderHelper helper,
+            final BuildNotifier notifier, final IProject project,
+            final IErlProject erlProject, final IRpcSite backend,
+            final OtpErlangList compilerOptions, final boolean force) {
+        this.helper = helper;
+        this.notifier = notifier;
+        this.project = project;
+        this.erlProject = erlProject;
+        this.backend = backend;
+        this.compilerOptions = compilerOptions;
+        this.force = force;
+    }
+
+    public void compile(final Collection<BuildResource> resources)
+            throws InterruptedException {
+        final LinkedList<BuildResource> queue = Lists.newLinkedList(order(
+                resources));
+        for (final BuildResource bres : queue) {
+            if (isYrl(bres.getResource())) {
+                pendingYrls.add(withoutExtension(bres.getResource()));
+            }
+        }
+        final int window = getWindow();
+        ErlLogger.debug("Compiling %d resource(s), %d at a time",
+                queue.size(), window);
+
+        while (!queue.isEmpty() || !inFlight.isEmpty()) {
+            while (inFlight.size() < window) {
+                final BuildResource next = takeStartable(queue);
+                if (next == null) {
+                    break;
+                }
+                notifier.checkCancel();
+                start(next);
+            }
+            if (inFlight.isEmpty()) {
+                continue;
+            }
+            notifier.checkCancel();
+            final IRpcFuture f = completed.poll(100, TimeUnit.MILLISECONDS);
+            if (f != null) {
+                complete(f);
+            }
+        }
+        reportLatencies();
+    }
+
+    /**
+     * Removes and returns the first resource in the queue that can be
+     * compiled now. An erl file generated from a yrl file waits until that
+     * one is compiled.
+     */
+    private BuildResource takeStartable(final List<BuildResource> queue) {
+        final Iterator<BuildResource> it = queue.iterator();
+        while (it.hasNext()) {
+            final BuildResource bres = it.next();
+            final IResource resource = bres.getResource();
+            if (isYrl(resource)
+                    || !pendingYrls.contains(withoutExtension(resource))) {
+                it.remove();
+                return bres;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isYrl(final IResource resource) {
+        return "yrl".equals(resource.getFileExtension());
+    }
+
+    private static IPath withoutExtension(final IResource resource) {
+        return resource.getProjectRelativePath().removeFileExtension();
+    }
+
+    private void start(final BuildResource bres) {
+        final IResource resource = bres.getResource();
+        MarkerUtils.deleteMarkers(resource);
+        IRpcFuture f = null;
+        if ("erl".equals(resource.getFileExtension())) {
+            final String outputDir = erlProject.getOutputLocation().toString();
+            f = helper.startCompileErl(project, bres, outputDir, backend,
+                    compilerOptions, force);
+        } else if ("yrl".equals(resource.getFileExtension())) {
+            f = helper.startCompileYrl(project, resource, backend,
+                    compilerOptions);
+        } else {
+            ErlLogger.warn("Don't know how to compile: %s", resource.getName());
+        }
+        if (f != null) {
+            inFlight.put(f, new Pending(resource));
+            f.addListener(listener);
+        } else {
+            compiled(resource);
+        }
+    }
+
+    private void compiled(final IResource resource) {
+        if (isYrl(resource)) {
+            pendingYrls.remove(withoutExtension(resource));
+        }
+        notifier.compiled(resource);
+    }
+
+    private void complete(final IRpcFuture f) {
+        final Pending pending = inFlight.remove(f);
+        if (pending == null) {
+            return;
+        }
+        pending.time = System.currentTimeMillis() - pending.time;
+        OtpErlangObject r;
+        try {
+            r = f.get(0);
+        } catch (final Exception e) {
+            r = null;
+        }
+        if (BuilderHelper.isDebugging()) {
+            ErlLogger.debug("compiled %s in %d ms",
+                    pending.resource.getName(), pending.time);
+        }
+        finished.add(pending);
+        helper.completeCompile(project, pending.resource, r, backend,
+                compilerOptions);
+        compiled(pending.resource);
+    }
+
+    private void reportLatencies() {
+        if (finished.isEmpty()) {
+            return;
+        }
+        Collections.sort(finished, new Comparator<Pending>() {
+            @Override
+            public int compare(final Pending o1, final Pending o2) {
+                return Long.valueOf(o2.time).compareTo(o1.time);
+            }
+        });
+        long total = 0;
+        for (final Pending p : finished) {
+            total += p.time;
+        }
+        final StringBuilder slowest = new StringBuilder();
+        for (final Pending p : finished.subList(0,
+                Math.min(SLOWEST_REPORTED, finished.size()))) {
+            slowest.append(' ').append(p.resource.getName()).append('=')
+                    .append(p.time);
+        }
+        ErlLogger.debug("Compile latency: %d module(s), average %d ms, "
+                + "slowest (ms):%s", finished.size(), total / finished.size(),
+                slowest);
+    }
+
+    /**
+     * yrl files go first, since they generate erl files; then generated erl
+     * files, then the modules with most includes and the largest ones, which
+     * take longest to compile. The includes are taken from the include
+     * dependency index, which is loaded if needed; only the modules changed
+     * since it was saved are parsed.
+     */
+    private List<BuildResource> order(final Collection<BuildResource> resources) {
+        IncludeDependencyIndex index;
+        try {
+            index = BuilderHelper.getIncludeIndex(project);
+        } catch (final ErlModelException e) {
+            ErlLogger.debug(e);
+            index = null;
+        }
+        final Map<BuildResource, long[]> weights = Maps.newHashMap();
+        for (final BuildResource bres : resources) {
+            weights.put(bres, weight(bres.getResource(), index));
+        }
+        final List<BuildResource> result = Lists.newArrayList(resources);
+        Collections.sort(result, new Comparator<BuildResource>() {
+            @Override
+            public int compare(final BuildResource o1, final BuildResource o2) {
+                final long[] w1 = weights.get(o1);
+                final long[] w2 = weights.get(o2);
+                int res = Long.valueOf(w2[0]).compareTo(w1[0]);
+                if (res == 0) {
+                    res = Long.valueOf(w2[1]).compareTo(w1[1]);
+                }
+                return res;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the number of includes and the size of the file
+     */
+    private static long[] weight(final IResource resource,
+            final IncludeDependencyIndex index) {
+        if (isYrl(resource)) {
+            return new long[] { Long.MAX_VALUE, 0 };
+        }
+        if (resource.isDerived()) {
+            return new long[] { Long.MAX_VALUE - 1, 0 };
+        }
+        long includes = 0;
+        if (index != null) {
+            final Set<String> incs = index.getIncludes(resource
+                    .getProjectRelativePath().toPortableString());
+            if (incs != null) {
+                includes = incs.size();
+            }
+        }
+        final IPath location = resource.getLocation();
+        final long size = location == null ? 0 : location.toFile().length();
+        return new long[] { includes, size };
+    }
+
+    private int getWindow() {
+        final Integer window = Integer.getInteger("erlide.builder.window");
+        if (window != null && window > 0) {
+            return window;
+        }
+        try {
+            final OtpErlangObject res = backend.call("erlang", "system_info",
+                    "a", "schedulers");
+            if (res instanceof OtpErlangLong) {
+                return Math.max(1, ((OtpErlangLong) res).intValue());
+            }
+        } catch (final Exception e) {
+            ErlLogger.debug(e);
+        }
+        return DEFAULT_WINDOW;
+    }
+
+    private static class Pending {
+        final IResource resource;
+        long time;
+
+        Pending(final IResource resource) {
+            this.resource = resource;
+            time = System.currentTimeMillis();
+        }
+    }
+}
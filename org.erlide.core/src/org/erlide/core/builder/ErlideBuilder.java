@@ -11,10 +11,7 @@
 package org.erlide.core.builder;
 
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.eclipse.core.resources.IFolder;
@@ -38,12 +35,9 @@ import org.erlide.model.root.ErlModelManager;
 import org.erlide.model.root.IErlModel;
 import org.erlide.model.root.IErlProject;
 import org.erlide.model.root.OldErlangProjectProperties;
-import org.erlide.runtime.rpc.IRpcFuture;
 import org.erlide.utils.ErlLogger;
 
 import com.ericsson.otp.erlang.OtpErlangList;
-import com.ericsson.otp.erlang.OtpErlangObject;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 public class ErlideBuilder {
@@ -166,64 +160,13 @@ public class ErlideBuilder {
                 backend.addProjectPath(model.findProject(project));
 
                 notifier.setProgressPerCompilationUnit(1.0f / n);
-                final Map<IRpcFuture, IResource> results = new HashMap<IRpcFuture, IResource>();
-                for (final BuildResource bres : resourcesToBuild) {
-                    notifier.checkCancel();
-                    final IResource resource = bres.getResource();
-                    MarkerUtils.deleteMarkers(resource);
-                    // notifier.aboutToCompile(resource);
-                    if ("erl".equals(resource.getFileExtension())) {
-                        final String outputDir = erlProject.getOutputLocation()
-                                .toString();
-                        final IRpcFuture f = helper.startCompileErl(project,
-                                bres, outputDir, backend.getRpcSite(),
-                                compilerOptions,
-                                kind == IncrementalProjectBuilder.FULL_BUILD);
-                        if (f != null) {
-                            results.put(f, resource);
-                        }
-                    } else if ("yrl".equals(resource.getFileExtension())) {
-                        final IRpcFuture f = helper
-                                .startCompileYrl(project, resource,
-                                        backend.getRpcSite(), compilerOptions);
-                        if (f != null) {
-                            results.put(f, resource);
-                        }
-                    } else {
-                        ErlLogger.warn("Don't know how to compile: %s",
-                                resource.getName());
-                    }
-                }
-
-                final List<Entry<IRpcFuture, IResource>> done = Lists
-                        .newArrayList();
-                final List<Entry<IRpcFuture, IResource>> waiting = Lists
-                        .newArrayList(results.entrySet());
-
-                // TODO should use some kind of notification!
-                while (waiting.size() > 0) {
-                    for (final Entry<IRpcFuture, IResource> result : waiting) {
-                        notifier.checkCancel();
-                        OtpErlangObject r;
-                        try {
-                            r = result.getKey().get(100);
-                        } catch (final Exception e) {
-                            r = null;
-                        }
-                        if (r != null) {
-                            final IResource resource = result.getValue();
-
-                            helper.completeCompile(project, resource, r,
-                                    backend.getRpcSite(), compilerOptions);
-                            notifier.compiled(resource);
-
-                            done.add(result);
-                        }
-                    }
-                    waiting.removeAll(done);
-                    done.clear();
-                }
+                new CompileScheduler(helper, notifier, project, erlProject,
+                        backend.getRpcSite(), compilerOptions,
+                        kind == IncrementalProjectBuilder.FULL_BUILD)
+                        .compile(resourcesToBuild);
                 helper.refreshOutputDir(project);
+                BuilderHelper.saveIncludeIndex(project);
+                BuilderHelper.saveBuildCache(project);
 
                 try {
                     helper.checkForClashes(backend.getRpcSite(), project);
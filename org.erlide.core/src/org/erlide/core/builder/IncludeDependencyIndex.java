@@ -0,0 +1,267 @@
+package org.erlide.core.builder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.erlide.utils.ErlLogger;
+import org.erlide.utils.SystemConfiguration;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Reverse include dependencies for the modules of one project: for every
+ * include file name, the set of modules that include it. Each module entry
+ * also records the time stamp of the source it was computed from, so that
+ * stale entries can be detected after a restart.
+ * 
+ * Modules are identified by their project relative path, includes by the
+ * file name as written in the source.
+ * 
+ * The index can be saved to and loaded from a file, so that it survives
+ * restarts.
+ */
+public class IncludeDependencyIndex {
+
+    private static final String VERSION = "incdeps 1";
+    private static final String SEP = "\t";
+
+    private final File stateFile;
+    private final Map<String, ModuleEntry> modules = Maps.newHashMap();
+    private final Map<String, Set<String>> dependents = Maps.newHashMap();
+    private final Map<String, String> resolvedIncludes = Maps.newHashMap();
+    private final Set<String> stale = Sets.newHashSet();
+    private boolean dirty = false;
+
+    public IncludeDependencyIndex(final File stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Record the includes of a module, replacing any previous information.
+     */
+    public synchronized void put(final String module, final long stamp,
+            final Collection<String> includes) {
+        final ModuleEntry old = modules.get(module);
+        if (old != null && old.stamp == stamp
+                && old.includes.equals(normalize(includes))) {
+            return;
+        }
+        remove(module);
+        final ModuleEntry entry = new ModuleEntry(stamp, normalize(includes));
+        modules.put(module, entry);
+        for (final String include : entry.includes) {
+            Set<String> set = dependents.get(include);
+            if (set == null) {
+                set = Sets.newHashSet();
+                dependents.put(include, set);
+            }
+            set.add(module);
+        }
+        dirty = true;
+    }
+
+    public synchronized void remove(final String module) {
+        final ModuleEntry entry = modules.remove(module);
+        if (entry == null) {
+            return;
+        }
+        for (final String include : entry.includes) {
+            final Set<String> set = dependents.get(include);
+            if (set != null) {
+                set.remove(module);
+                if (set.isEmpty()) {
+                    dependents.remove(include);
+                }
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * @return the modules that include the given file, or an empty set.
+     */
+    public synchronized Set<String> getDependents(final String include) {
+        final Set<String> set = dependents.get(normalize(include));
+        if (set == null) {
+            return Collections.emptySet();
+        }
+        return Sets.newHashSet(set);
+    }
+
+    /**
+     * @return the includes recorded for the module, or null if the module is
+     *         not indexed.
+     */
+    public synchronized Set<String> getIncludes(final String module) {
+        final ModuleEntry entry = modules.get(module);
+        if (entry == null) {
+            return null;
+        }
+        return Collections.unmodifiableSet(entry.includes);
+    }
+
+    /**
+     * @return the source time stamp recorded for the module, or -1 if the
+     *         module is not indexed.
+     */
+    public synchronized long getStamp(final String module) {
+        final ModuleEntry entry = modules.get(module);
+        return entry == null ? -1 : entry.stamp;
+    }
+
+    /**
+     * Remember that the includes of the module may have changed, the owner of
+     * the index is expected to update them before using the index.
+     */
+    public synchronized void markStale(final String module) {
+        stale.add(module);
+    }
+
+    /**
+     * @return the modules marked as stale since the last call, and forget
+     *         them.
+     */
+    public synchronized Set<String> takeStale() {
+        final Set<String> result = Sets.newHashSet(stale);
+        stale.clear();
+        return result;
+    }
+
+    /**
+     * @return the project relative path the include was last resolved to, ""
+     *         if it couldn't be resolved, or null if it wasn't looked up yet.
+     *         This information is not persisted.
+     */
+    public synchronized String getResolvedInclude(final String include) {
+        return resolvedIncludes.get(normalize(include));
+    }
+
+    public synchronized void putResolvedInclude(final String include,
+            final String path) {
+        resolvedIncludes.put(normalize(include), path);
+    }
+
+    public synchronized void clearResolvedIncludes() {
+        resolvedIncludes.clear();
+    }
+
+    public synchronized Set<String> getModules() {
+        return Sets.newHashSet(modules.keySet());
+    }
+
+    public synchronized boolean isEmpty() {
+        return modules.isEmpty();
+    }
+
+    public synchronized void clear() {
+        modules.clear();
+        dependents.clear();
+        resolvedIncludes.clear();
+        dirty = true;
+    }
+
+    public synchronized void load() {
+        if (stateFile == null || !stateFile.exists()) {
+            return;
+        }
+        modules.clear();
+        dependents.clear();
+        try {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(stateFile),
+                            "UTF-8"));
+            try {
+                if (!VERSION.equals(reader.readLine())) {
+                    return;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] parts = line.split(SEP);
+                    if (parts.length < 2) {
+                        continue;
+                    }
+                    final Set<String> includes = Sets.newHashSet();
+                    for (int i = 2; i < parts.length; i++) {
+                        includes.add(parts[i]);
+                    }
+                    put(parts[0], Long.parseLong(parts[1]), includes);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final Exception e) {
+            ErlLogger.warn(e);
+            modules.clear();
+            dependents.clear();
+        }
+        dirty = false;
+    }
+
+    public synchronized void save() {
+        if (stateFile == null || !dirty) {
+            return;
+        }
+        try {
+            final BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(stateFile),
+                            "UTF-8"));
+            try {
+                writer.write(VERSION);
+                writer.newLine();
+                for (final Entry<String, ModuleEntry> entry : modules
+                        .entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write(SEP);
+                    writer.write(Long.toString(entry.getValue().stamp));
+                    for (final String include : entry.getValue().includes) {
+                        writer.write(SEP);
+                        writer.write(include);
+                    }
+                    writer.newLine();
+                }
+            } finally {
+                writer.close();
+            }
+            dirty = false;
+        } catch (final IOException e) {
+            ErlLogger.warn(e);
+        }
+    }
+
+    private static Set<String> normalize(final Collection<String> includes) {
+        final Set<String> result = Sets.newHashSet();
+        for (final String include : includes) {
+            result.add(normalize(include));
+        }
+        return result;
+    }
+
+    private static String normalize(final String include) {
+        if (SystemConfiguration.getInstance().isOnWindows()) {
+            return include.toLowerCase();
+        }
+        return include;
+    }
+
+    private static class ModuleEntry {
+        final long stamp;
+        final Set<String> includes;
+
+        ModuleEntry(final long stamp, final Set<String> includes) {
+            this.stamp = stamp;
+            this.includes = includes;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.erlide.cover.views.model;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatsTreeFileTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("coverage", ".ecov");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static StatsTreeModel makeModel() {
+        final StatsTreeModel model = new StatsTreeModel(new StatsTreeObject(
+                "total", 0, 0, ObjectType.PROJECT), "20121017120000");
+        for (int m = 0; m < 3; m++) {
+            final ModuleStats module = new ModuleStats();
+            module.setLabel("m" + m);
+            module.setLiniesCount(10);
+            module.setCoverCount(m + 1);
+            module.setMd5("md5_" + m);
+            module.setLineResults(new int[] { 3, 4, 8 }, new int[] { m, 0, 7 },
+                    3);
+            final FunctionTable functions = new FunctionTable(2);
+            functions.set(0, "f", 1, 6, m);
+            functions.set(1, "g", 0, 4, 1);
+            module.setFunctions(functions);
+            model.addModule(new String[] { "src" }, module);
+        }
+        return model;
+    }
+
+    private static void assertSameResults(final StatsTreeModel expected,
+            final StatsTreeModel actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getRoot().getLinesCount(), actual.getRoot()
+                .getLinesCount());
+        assertEquals(expected.getRoot().getCoverCount(), actual.getRoot()
+                .getCoverCount());
+        for (int m = 0; m < 3; m++) {
+            final ModuleStats e = (ModuleStats) expected.getRoot()
+                    .findChild("src").findChild("m" + m);
+            final ModuleStats a = (ModuleStats) actual.getRoot()
+                    .findChild("src").findChild("m" + m);
+            assertEquals(e.getCoverCount(), a.getCoverCount());
+            assertEquals(e.getMd5(), a.getMd5());
+            for (int line = 0; line < 10; line++) {
+                assertEquals(e.getLineCalls(line), a.getLineCalls(line));
+            }
+            final FunctionTable ef = e.getFunctions();
+            final FunctionTable af = a.getFunctions();
+            assertEquals(ef.size(), af.size());
+            for (int i = 0; i < ef.size(); i++) {
+                assertEquals(ef.getName(i), af.getName(i));
+                assertEquals(ef.getArity(i), af.getArity(i));
+                assertEquals(ef.getLinesCount(i), af.getLinesCount(i));
+                assertEquals(ef.getCoverCount(i), af.getCoverCount(i));
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        final StatsTreeModel model = makeModel();
+        StatsTreeFile.write(model, file);
+        assertSameResults(model, StatsTreeFile.read(file));
+    }
+
+    @Test
+    public void saveOverRestoredFile() throws IOException {
+        final StatsTreeModel model = makeModel();
+        StatsTreeFile.write(model, file);
+        // the modules of the restored model are not decoded yet, so saving
+        // copies their results from what was read
+        final StatsTreeModel restored = StatsTreeFile.read(file);
+        StatsTreeFile.write(restored, file);
+        assertSameResults(model, StatsTreeFile.read(file));
+        assertSameResults(model, restored);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        final File other = File.createTempFile("coverage", ".txt");
+        try {
+            StatsTreeFile.read(other);
+        } finally {
+            other.delete();
+        }
+    }
+}
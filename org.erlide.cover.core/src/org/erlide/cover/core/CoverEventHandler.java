@@ -1,26 +1,25 @@
 package org.erlide.cover.core;
 
 import java.io.File;
-import java.util.Iterator;
+import java.util.Arrays;
 
 import org.erlide.backend.IBackend;
 import org.erlide.backend.events.ErlangEventHandler;
 import org.erlide.cover.api.IConfiguration;
-import org.erlide.cover.views.model.FunctionStats;
-import org.erlide.cover.views.model.ICoverageObject;
-import org.erlide.cover.views.model.LineResult;
-import org.erlide.cover.views.model.ModuleSet;
+import org.erlide.cover.views.model.FunctionTable;
 import org.erlide.cover.views.model.ModuleStats;
-import org.erlide.cover.views.model.ObjectType;
 import org.erlide.cover.views.model.StatsTreeModel;
-import org.erlide.cover.views.model.StatsTreeObject;
 import org.erlide.model.root.ErlModelManager;
 import org.erlide.model.util.ModelUtils;
+import org.erlide.utils.Util;
 import org.osgi.service.event.Event;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangDouble;
 import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
 import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangRangeException;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 
 /**
@@ -86,26 +85,35 @@ public class CoverEventHandler extends ErlangEventHandler {
                     && ((OtpErlangAtom) resTuple.elementAt(0)).atomValue()
                             .equals(COVER_RES)) {
 
-                final String moduleName = resTuple.elementAt(1).toString();
-
-                String htmlPath = resTuple.elementAt(2).toString();
-                htmlPath = htmlPath.substring(1, htmlPath.length() - 1);
-                final int allLines = Integer.parseInt(resTuple.elementAt(3)
-                        .toString());
-                final int coveredLines = Integer.parseInt(resTuple.elementAt(4)
-                        .toString());
-                final double percent = Double.parseDouble(resTuple.elementAt(5)
-                        .toString());
-
-                log.info(String.format("Module %s %s %d %d %f", moduleName,
-                        htmlPath, allLines, coveredLines, percent));
-
+                final String moduleName = ((OtpErlangAtom) resTuple
+                        .elementAt(1)).atomValue();
+                final String htmlPath = Util.stringValue(resTuple.elementAt(2));
                 final ModuleStats moduleStats = new ModuleStats();
-
-                moduleStats.setLabel(moduleName);
-                moduleStats.setHtmlPath(htmlPath);
-                moduleStats.setLiniesCount(allLines);
-                moduleStats.setCoverCount(coveredLines);
+                try {
+                    final int allLines = intValue(resTuple.elementAt(3));
+                    final int coveredLines = intValue(resTuple.elementAt(4));
+                    final double percent = ((OtpErlangDouble) resTuple
+                            .elementAt(5)).doubleValue();
+
+                    log.info(String.format("Module %s %s %d %d %f",
+                            moduleName, htmlPath, allLines, coveredLines,
+                            percent));
+
+                    moduleStats.setLabel(moduleName);
+                    moduleStats.setHtmlPath(htmlPath);
+                    moduleStats.setLiniesCount(allLines);
+                    moduleStats.setCoverCount(coveredLines);
+
+                    prepLineResults((OtpErlangList) resTuple.elementAt(6),
+                            moduleStats);
+
+                    prepFuncResults((OtpErlangList) resTuple.elementAt(7),
+                            moduleStats);
+                } catch (final OtpErlangRangeException e) {
+                    log.error(String.format("Bad results of module %s: %s",
+                            moduleName, e.getMessage()));
+                    return false;
+                }
 
                 // calculate md5
 
@@ -119,16 +127,8 @@ public class CoverEventHandler extends ErlangEventHandler {
 
                 //
 
-                prepLineResults((OtpErlangList) resTuple.elementAt(6),
-                        moduleStats);
-
-                prepFuncResults((OtpErlangList) resTuple.elementAt(7),
-                        moduleStats);
-
                 addModuleToTree(moduleStats);
 
-                ModuleSet.add(moduleStats);
-
                 return true;
             }
             return false;
@@ -136,11 +136,9 @@ public class CoverEventHandler extends ErlangEventHandler {
         return false;
     }
 
-    // adds module to the statistics tree
+    // adds module to the statistics tree, replacing its earlier results
     private void addModuleToTree(final ModuleStats moduleStats) {
 
-        ICoverageObject root = StatsTreeModel.getInstance().getRoot();
-
         final IConfiguration config = CoveragePerformer.getPerformer()
                 .getConfig();
 
@@ -153,68 +151,48 @@ public class CoverEventHandler extends ErlangEventHandler {
 
         final String[] parts = mpath.split("/"); // TODO ! platform independent?
 
-        root.setLiniesCount(root.getLinesCount() + moduleStats.getLinesCount());
-        root.setCoverCount(root.getCoverCount() + moduleStats.getCoverCount());
-
-        for (int i = 1; i < parts.length - 1; i++) {
-
-            ICoverageObject tmp = root.findChild(parts[i]);
-            if (tmp == null) {
-                tmp = new StatsTreeObject(ObjectType.FOLDER);
-                tmp.setLabel(parts[i]);
-            }
-            tmp.setLiniesCount(tmp.getLinesCount()
-                    + moduleStats.getLinesCount());
-            tmp.setCoverCount(tmp.getCoverCount() + moduleStats.getCoverCount());
-            root.addChild(parts[i], tmp);
-            root = tmp;
-        }
-
-        root.addChild(moduleStats.getLabel(), moduleStats);
-
+        StatsTreeModel.getInstance().addModule(
+                Arrays.copyOfRange(parts, 1, parts.length - 1), moduleStats);
     }
 
     private void prepFuncResults(final OtpErlangList funcList,
-            final ModuleStats stats) {
-
-        final Iterator<OtpErlangObject> it = funcList.iterator();
+            final ModuleStats stats) throws OtpErlangRangeException {
 
-        while (it.hasNext()) {
-            final OtpErlangTuple res = (OtpErlangTuple) it.next();
+        final FunctionTable functions = new FunctionTable(funcList.arity());
 
-            final FunctionStats func = new FunctionStats();
+        for (int i = 0; i < funcList.arity(); i++) {
+            final OtpErlangTuple res = (OtpErlangTuple) funcList.elementAt(i);
 
-            final String name = res.elementAt(1).toString();
-            final int arity = Integer.parseInt(res.elementAt(2).toString());
-            final int allLines = Integer.parseInt(res.elementAt(3).toString());
-            final int coveredLines = Integer.parseInt(res.elementAt(4)
-                    .toString());
+            final String name = ((OtpErlangAtom) res.elementAt(1)).atomValue();
+            final int arity = intValue(res.elementAt(2));
+            final int allLines = intValue(res.elementAt(3));
+            final int coveredLines = intValue(res.elementAt(4));
 
-            func.setLabel(name);
-            func.setLiniesCount(allLines);
-            func.setCoverCount(coveredLines);
-            func.setArity(arity);
-
-            stats.addChild(func.getLabel(), func);
+            functions.set(i, name, arity, allLines, coveredLines);
         }
 
+        stats.setFunctions(functions);
     }
 
     private void prepLineResults(final OtpErlangList lineList,
-            final ModuleStats stats) {
-
-        final Iterator<OtpErlangObject> it = lineList.iterator();
-
-        while (it.hasNext()) {
-            final OtpErlangTuple res = (OtpErlangTuple) it.next();
-            final int num = Integer.parseInt(res.elementAt(1).toString());
-            final int calls = Integer.parseInt(res.elementAt(2).toString());
-            final LineResult lineRes = new LineResult(num, calls);
+            final ModuleStats stats) throws OtpErlangRangeException {
 
-            stats.addLine(lineRes);
+        final int count = lineList.arity();
+        final int[] lines = new int[count];
+        final int[] calls = new int[count];
 
+        for (int i = 0; i < count; i++) {
+            final OtpErlangTuple res = (OtpErlangTuple) lineList.elementAt(i);
+            lines[i] = intValue(res.elementAt(1));
+            calls[i] = intValue(res.elementAt(2));
         }
 
+        stats.setLineResults(lines, calls, count);
+    }
+
+    private static int intValue(final OtpErlangObject number)
+            throws OtpErlangRangeException {
+        return ((OtpErlangLong) number).intValue();
     }
 
     private OtpErlangTuple getErrorReason(final OtpErlangObject message) {
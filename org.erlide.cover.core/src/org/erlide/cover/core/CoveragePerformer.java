@@ -1,5 +1,6 @@
 package org.erlide.cover.core;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -11,12 +12,17 @@ import org.erlide.cover.api.IConfiguration;
 import org.erlide.cover.api.ICoveragePerformer;
 import org.erlide.cover.constants.CoverConstants;
 import org.erlide.cover.views.model.StatsTreeModel;
+import org.erlide.model.ErlModelException;
 import org.erlide.model.erlang.IErlModule;
+import org.erlide.model.util.ErlangIncludeFile;
+import org.erlide.runtime.rpc.IRpcHelper;
 import org.erlide.runtime.rpc.RpcException;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
 
 /**
  * Implementation of coverage analysis operations
@@ -26,10 +32,8 @@ import com.ericsson.otp.erlang.OtpErlangObject;
  */
 public class CoveragePerformer implements ICoveragePerformer {
 
-    private static CoveragePerformer performer;
-
     private Collection<String> coverNodes;
-    private IConfiguration config;
+    private volatile IConfiguration config;
 
     private final Logger log; // logger
 
@@ -38,22 +42,23 @@ public class CoveragePerformer implements ICoveragePerformer {
         coverNodes = new LinkedList<String>();
     }
 
-    public static synchronized CoveragePerformer getPerformer() {
-        if (performer == null) {
-            performer = new CoveragePerformer();
-        }
-        return performer;
+    private static class Holder {
+        static final CoveragePerformer INSTANCE = new CoveragePerformer();
+    }
+
+    public static CoveragePerformer getPerformer() {
+        return Holder.INSTANCE;
     }
 
     /**
-     * Start cover
+     * Start cover. Synchronized, since it can be called through
+     * {@link org.erlide.cover.api.CoverageAnalysis} as well as by the
+     * launcher.
      */
     @Override
     public synchronized void startCover(final Collection<String> nodes)
             throws CoverException {
 
-        final StatsTreeModel model = StatsTreeModel.getInstance();
-        model.clear();
         if (CoverBackend.getInstance().getAnnotationMaker() != null) {
             CoverBackend.getInstance().getAnnotationMaker()
                     .clearAllAnnotations();
@@ -108,15 +113,27 @@ public class CoveragePerformer implements ICoveragePerformer {
     }
 
     /**
-     * Set coverage configuration
+     * Set coverage configuration. Synchronized like
+     * {@link #startCover(Collection)}. The results of another project are
+     * cleared, so it must not be called while an analysis is running; as
+     * {@link org.erlide.cover.api.CoverageAnalysis} requires, its callers
+     * don't overlap a prepare/perform pair with another one.
      */
     @Override
     public synchronized void setCoverageConfiguration(final IConfiguration conf)
             throws CoverException {
         config = conf;
 
-        StatsTreeModel.getInstance()
-                .setRootLabel(config.getProject().getName());
+        // results of the same project are merged, analysed modules replace
+        // their earlier results
+        final StatsTreeModel model = StatsTreeModel.getInstance();
+        final String projectName = config.getProject().getName();
+        if (projectName.equals(model.getRoot().getLabel())) {
+            model.updateTimestamp();
+        } else {
+            model.clear();
+            model.setRootLabel(projectName);
+        }
 
         final IPath ppath = config.getProject().getWorkspaceProject()
                 .getLocation();
@@ -124,9 +141,11 @@ public class CoveragePerformer implements ICoveragePerformer {
         // set include files
         final List<OtpErlangObject> includes = new ArrayList<OtpErlangObject>(
                 config.getModules().size());
+        final List<File> includeDirs = new ArrayList<File>();
         for (final IPath include : config.getIncludeDirs()) {
             log.info(ppath.append(include));
             includes.add(new OtpErlangList(ppath.append(include).toString()));
+            includeDirs.add(ppath.append(include).toFile());
         }
 
         try {
@@ -141,11 +160,12 @@ public class CoveragePerformer implements ICoveragePerformer {
             throw new CoverException(e1);
         }
 
-        recompileModules();
+        recompileModules(includeDirs);
     }
 
     // cover compilation of chosen modules
-    private void recompileModules() throws CoverException {
+    private void recompileModules(final List<File> includeDirs)
+            throws CoverException {
         final List<OtpErlangObject> paths = new ArrayList<OtpErlangObject>(
                 config.getModules().size());
         for (final IErlModule module : config.getModules()) {
@@ -155,16 +175,37 @@ public class CoveragePerformer implements ICoveragePerformer {
                 throw new CoverException(msg);
             }
             log.info(module.getFilePath());
-            paths.add(new OtpErlangList(module.getFilePath()));
+            // modules whose source and includes didn't change since they were
+            // cover compiled are only reset by the cover node
+            final OtpErlangList path = new OtpErlangList(module.getFilePath());
+            try {
+                final List<File> files = getSourceFiles(module, includeDirs);
+                if (files == null) {
+                    paths.add(path);
+                } else {
+                    final String md5 = MD5Checksum.getMD5(files);
+                    paths.add(new OtpErlangTuple(new OtpErlangObject[] { path,
+                            new OtpErlangString(md5) }));
+                }
+            } catch (final Exception e) {
+                log.error(e);
+                paths.add(path);
+            }
         }
 
         try {
-            CoverBackend
+            final OtpErlangObject res = CoverBackend
                     .getInstance()
                     .getBackend()
                     .getRpcSite()
                     .call(CoverConstants.COVER_ERL_BACKEND,
                             CoverConstants.FUN_PREP, "x", paths);
+            if (res instanceof OtpErlangTuple) {
+                final OtpErlangTuple counts = (OtpErlangTuple) res;
+                log.info(String.format(
+                        "%s modules cover compiled, %s reused",
+                        counts.elementAt(0), counts.elementAt(1)));
+            }
 
         } catch (final RpcException e) {
             e.printStackTrace();
@@ -173,14 +214,51 @@ public class CoveragePerformer implements ICoveragePerformer {
     }
 
     /**
-     * Perform coverage analysis
+     * @return the source of the module and its include files, or null if an
+     *         include file can't be found, so that the module is always
+     *         compiled
+     */
+    private List<File> getSourceFiles(final IErlModule module,
+            final List<File> includeDirs) throws ErlModelException {
+        final File source = new File(module.getFilePath());
+        final List<File> files = new ArrayList<File>();
+        files.add(source);
+        final List<File> dirs = new ArrayList<File>();
+        dirs.add(source.getParentFile());
+        dirs.addAll(includeDirs);
+        for (final ErlangIncludeFile include : module.getIncludeFiles()) {
+            File found = null;
+            for (final File dir : dirs) {
+                final File file = new File(dir, include.getFilename());
+                if (file.isFile()) {
+                    found = file;
+                    break;
+                }
+            }
+            if (found == null) {
+                log.info(String.format("%s not found, %s is compiled again",
+                        include.getFilename(), module.getModuleName()));
+                return null;
+            }
+            files.add(found);
+        }
+        return files;
+    }
+
+    /**
+     * Perform coverage analysis. Modules are analysed in parallel batches on
+     * the cover node and their results arrive as events while this call
+     * waits, so it is not bounded by the default timeout. It is not
+     * synchronized, so that it doesn't block the other calls while the
+     * results arrive.
      */
     @Override
-    public synchronized void analyse() throws CoverException {
+    public void analyse() throws CoverException {
 
+        final IConfiguration conf = config;
         final List<OtpErlangObject> modules = new ArrayList<OtpErlangObject>(
-                config.getModules().size());
-        for (final IErlModule module : config.getModules()) {
+                conf.getModules().size());
+        for (final IErlModule module : conf.getModules()) {
             log.info(module.getModuleName());
             modules.add(new OtpErlangList(module.getModuleName()));
         }
@@ -190,7 +268,8 @@ public class CoveragePerformer implements ICoveragePerformer {
                     .getInstance()
                     .getBackend()
                     .getRpcSite()
-                    .call(CoverConstants.COVER_ERL_BACKEND,
+                    .call(IRpcHelper.INFINITY,
+                            CoverConstants.COVER_ERL_BACKEND,
                             CoverConstants.FUN_ANALYSE, "x", modules);
 
         } catch (final RpcException e) {
@@ -3,28 +3,109 @@ package org.erlide.cover.core;
 import java.io.File;
 import java.io.FileInputStream;
 import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Provides a way to calculate md5 checksum to a file
+ * <p>
+ * Checksums are remembered with the modification time and size of the file,
+ * and only calculated again when one of them changes. Only the most recently
+ * used ones are remembered.
  * 
  * @author Aleksandra Lipiec <aleksandra.lipiec@erlang.solutions.com>
  * 
  */
 public class MD5Checksum {
 
+    private static final int CACHE_SIZE = 1000;
+
+    // least recently used entries are dropped
+    private static final Map<String, Checksum> cache = new LinkedHashMap<String, Checksum>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<String, Checksum> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static final class Checksum {
+        final long lastModified;
+        final long length;
+        final String md5;
+
+        Checksum(final long lastModified, final long length, final String md5) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.md5 = md5;
+        }
+    }
+
+    /**
+     * Hex md5 checksum of the file
+     * 
+     * @param file
+     * @return
+     * @throws Exception
+     */
     public static String getMD5(final File file) throws Exception {
+        final String path = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        synchronized (cache) {
+            final Checksum entry = cache.get(path);
+            if (entry != null && entry.lastModified == lastModified
+                    && entry.length == length) {
+                return entry.md5;
+            }
+        }
+        final String md5 = calculate(file);
+        synchronized (cache) {
+            cache.put(path, new Checksum(lastModified, length, md5));
+        }
+        return md5;
+    }
+
+    /**
+     * Hex md5 checksum of the checksums of the files, that changes when any of
+     * them does
+     */
+    public static String getMD5(final List<File> files) throws Exception {
+        final MessageDigest digest = MessageDigest.getInstance("MD5");
+        for (final File file : files) {
+            digest.update(getMD5(file).getBytes("US-ASCII"));
+        }
+        return toHex(digest);
+    }
+
+    private static String calculate(final File file) throws Exception {
 
         final FileInputStream f = new FileInputStream(file);
 
-        final byte[] buffer = new byte[1024];
+        final byte[] buffer = new byte[64 * 1024];
         final MessageDigest digest = MessageDigest.getInstance("MD5");
 
-        int numRead;
-        while ((numRead = f.read(buffer)) != -1) {
-            digest.update(buffer, 0, numRead);
+        try {
+            int numRead;
+            while ((numRead = f.read(buffer)) != -1) {
+                digest.update(buffer, 0, numRead);
+            }
+        } finally {
+            f.close();
+        }
+        return toHex(digest);
+    }
+
+    private static String toHex(final MessageDigest digest) {
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            sb.append(String.format("%02x", b & 0xff));
         }
-        f.close();
-        return new String(digest.digest());
+        return sb.toString();
     }
 
 }
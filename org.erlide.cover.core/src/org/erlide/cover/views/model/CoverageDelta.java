@@ -0,0 +1,184 @@
+package org.erlide.cover.views.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Coverage of each function compared with the coverage of a baseline, e.g.
+ * results saved before a change.
+ */
+public class CoverageDelta {
+
+    /**
+     * Coverage of a function now and in the baseline
+     */
+    public static class FunctionDelta {
+
+        private final String module;
+        private final String function;
+        private final int arity;
+        private final int linesCount;
+        private final int coverCount;
+        private final int baseLinesCount;
+        private final int baseCoverCount;
+
+        FunctionDelta(final String module, final String function,
+                final int arity, final int linesCount, final int coverCount,
+                final int baseLinesCount, final int baseCoverCount) {
+            this.module = module;
+            this.function = function;
+            this.arity = arity;
+            this.linesCount = linesCount;
+            this.coverCount = coverCount;
+            this.baseLinesCount = baseLinesCount;
+            this.baseCoverCount = baseCoverCount;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        /**
+         * @return lines of the function, 0 if it was removed
+         */
+        public int getLinesCount() {
+            return linesCount;
+        }
+
+        public int getCoverCount() {
+            return coverCount;
+        }
+
+        /**
+         * @return lines of the function in the baseline, 0 if it is new
+         */
+        public int getBaseLinesCount() {
+            return baseLinesCount;
+        }
+
+        public int getBaseCoverCount() {
+            return baseCoverCount;
+        }
+
+        /**
+         * Change of the coverage percentage
+         * 
+         * @return
+         */
+        public double getPercentageDelta() {
+            return percentage(coverCount, linesCount)
+                    - percentage(baseCoverCount, baseLinesCount);
+        }
+
+        private static double percentage(final int covered, final int all) {
+            return all > 0 ? covered / (double) all * 100 : 0;
+        }
+
+    }
+
+    private static final FunctionTable NO_FUNCTIONS = new FunctionTable(0);
+
+    private final List<FunctionDelta> deltas;
+
+    /**
+     * Compares the functions of all modules of the results with the baseline.
+     * Modules that are only in the baseline are left out, functions that are
+     * only in one of them are compared with empty coverage.
+     * 
+     * @param current
+     * @param baseline
+     */
+    public CoverageDelta(final StatsTreeModel current,
+            final StatsTreeModel baseline) {
+        final Map<String, ModuleStats> baseModules = new HashMap<String, ModuleStats>();
+        for (final ICoverageObject module : baseline.getRoot().getModules()) {
+            baseModules.put(module.getLabel(), (ModuleStats) module);
+        }
+        deltas = new ArrayList<FunctionDelta>();
+        for (final ICoverageObject module : current.getRoot().getModules()) {
+            final String name = module.getLabel();
+            final FunctionTable functions = ((ModuleStats) module)
+                    .getFunctions();
+            final ModuleStats baseModule = baseModules.get(name);
+            final FunctionTable baseFunctions = baseModule == null ? NO_FUNCTIONS
+                    : baseModule.getFunctions();
+            final Map<String, Integer> baseIndex = new HashMap<String, Integer>();
+            for (int i = 0; i < baseFunctions.size(); i++) {
+                baseIndex.put(key(baseFunctions, i), i);
+            }
+            for (int i = 0; i < functions.size(); i++) {
+                final Integer base = baseIndex.remove(key(functions, i));
+                int baseLines = 0;
+                int baseCovered = 0;
+                if (base != null) {
+                    baseLines = baseFunctions.getLinesCount(base);
+                    baseCovered = baseFunctions.getCoverCount(base);
+                }
+                deltas.add(new FunctionDelta(name, functions.getName(i),
+                        functions.getArity(i), functions.getLinesCount(i),
+                        functions.getCoverCount(i), baseLines, baseCovered));
+            }
+            // removed functions
+            for (final int i : baseIndex.values()) {
+                deltas.add(new FunctionDelta(name, baseFunctions.getName(i),
+                        baseFunctions.getArity(i), 0, 0,
+                        baseFunctions.getLinesCount(i),
+                        baseFunctions.getCoverCount(i)));
+            }
+        }
+        Collections.sort(deltas, new Comparator<FunctionDelta>() {
+            @Override
+            public int compare(final FunctionDelta d1, final FunctionDelta d2) {
+                int res = d1.module.compareTo(d2.module);
+                if (res == 0) {
+                    res = d1.function.compareTo(d2.function);
+                }
+                return res != 0 ? res : d1.arity - d2.arity;
+            }
+        });
+    }
+
+    private static String key(final FunctionTable functions, final int index) {
+        return functions.getName(index) + "/" + functions.getArity(index);
+    }
+
+    /**
+     * @return the functions, sorted by module, name and arity
+     */
+    public List<FunctionDelta> getFunctions() {
+        return deltas;
+    }
+
+    /**
+     * Writes the delta as comma separated values, one function per line
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void write(final Writer out) throws IOException {
+        out.write("module,function,arity,lines,covered,"
+                + "baseline lines,baseline covered,coverage delta %\n");
+        for (final FunctionDelta d : deltas) {
+            out.write(String.format(Locale.ENGLISH,
+                    "%s,%s,%d,%d,%d,%d,%d,%.2f\n", d.module, d.function,
+                    d.arity, d.linesCount, d.coverCount, d.baseLinesCount,
+                    d.baseCoverCount, d.getPercentageDelta()));
+        }
+    }
+
+}
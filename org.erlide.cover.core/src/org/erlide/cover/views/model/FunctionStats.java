@@ -1,17 +1,9 @@
 package org.erlide.cover.views.model;
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-
-import org.erlide.model.ErlModelException;
-import org.erlide.model.erlang.IErlFunction;
-import org.erlide.model.erlang.IErlModule;
-import org.erlide.model.root.ErlModelManager;
-import org.erlide.model.util.ErlangFunction;
-
 /**
- * Coverage statistics per function.
+ * Coverage statistics per function. A view on a row of the
+ * {@link FunctionTable} of its module, created when the module's children are
+ * asked for.
  * 
  * @author Aleksandra Lipiec <aleksandra.lipiec@erlang.solutions.com>
  * 
@@ -20,20 +12,18 @@ public class FunctionStats extends StatsTreeObject {
 
     private static final long serialVersionUID = 1L;
 
-    private int arity; // function arity
-    private int lineStart; // first line of the function
-    private int lineEnd; // last line of the function
+    private final FunctionTable table;
+    private final int index;
 
-    public FunctionStats() {
-        super(ObjectType.FUNCTION);
+    public FunctionStats(final FunctionTable table, final int index) {
+        super(table.getName(index), table.getLinesCount(index), table
+                .getCoverCount(index), ObjectType.FUNCTION);
+        this.table = table;
+        this.index = index;
     }
 
     public int getArity() {
-        return arity;
-    }
-
-    public void setArity(final int arity) {
-        this.arity = arity;
+        return table.getArity(index);
     }
 
     /**
@@ -42,25 +32,7 @@ public class FunctionStats extends StatsTreeObject {
      * @return
      */
     public int getLineStart() {
-
-        if (lineStart != 0) {
-            return lineStart;
-        }
-
-        final String mName = ((StatsTreeObject) getParent()).getLabel();
-        IErlModule m;
-        try {
-            m = ErlModelManager.getErlangModel().findModule(mName);
-            final IErlFunction f = m.findFunction(new ErlangFunction(
-                    getLabel(), getArity()));
-
-            lineStart = f.getLineStart();
-        } catch (final ErlModelException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-
-        return lineStart;
+        return table.getLineStart(getModuleName(), index);
     }
 
     /**
@@ -69,26 +41,11 @@ public class FunctionStats extends StatsTreeObject {
      * @return
      */
     public int getLineEnd() {
+        return table.getLineEnd(getModuleName(), index);
+    }
 
-        if (lineEnd != 0) {
-            return lineEnd;
-        }
-
-        final List<Integer> numList = new LinkedList<Integer>();
-        for (final ICoverageObject obj : getParent().getChildren()) {
-            final FunctionStats fs = (FunctionStats) obj;
-            numList.add(fs.getLineStart());
-        }
-
-        Collections.sort(numList);
-        int idx;
-        if ((idx = numList.indexOf(getLineStart())) < numList.size() - 1) {
-            lineEnd = numList.get(idx + 1);
-        } else {
-            lineEnd = -1;
-        }
-
-        return lineEnd;
+    private String getModuleName() {
+        return ((StatsTreeObject) getParent()).getLabel();
     }
 
 }
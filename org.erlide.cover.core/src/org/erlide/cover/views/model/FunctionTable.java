@@ -0,0 +1,124 @@
+package org.erlide.cover.views.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.erlide.model.ErlModelException;
+import org.erlide.model.erlang.IErlFunction;
+import org.erlide.model.erlang.IErlModule;
+import org.erlide.model.root.ErlModelManager;
+import org.erlide.model.util.ErlangFunction;
+
+/**
+ * Coverage of the functions of a module, kept in primitive columns instead of
+ * one object per function.
+ * <p>
+ * The lines of the functions aren't sent by cover; they are looked up in the
+ * erlang model the first time one of them is asked for.
+ */
+public class FunctionTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] names;
+    private final int[] arities;
+    private final int[] linesCounts;
+    private final int[] coverCounts;
+
+    private transient int[] lineStarts;
+    private transient int[] lineEnds;
+
+    public FunctionTable(final int size) {
+        names = new String[size];
+        arities = new int[size];
+        linesCounts = new int[size];
+        coverCounts = new int[size];
+    }
+
+    public void set(final int index, final String name, final int arity,
+            final int linesCount, final int coverCount) {
+        names[index] = name;
+        arities[index] = arity;
+        linesCounts[index] = linesCount;
+        coverCounts[index] = coverCount;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(final int index) {
+        return names[index];
+    }
+
+    public int getArity(final int index) {
+        return arities[index];
+    }
+
+    public int getLinesCount(final int index) {
+        return linesCounts[index];
+    }
+
+    public int getCoverCount(final int index) {
+        return coverCounts[index];
+    }
+
+    /**
+     * First line of the function, or 0 if it can't be found
+     * 
+     * @param moduleName
+     * @param index
+     * @return
+     */
+    public synchronized int getLineStart(final String moduleName,
+            final int index) {
+        resolveLines(moduleName);
+        return lineStarts[index];
+    }
+
+    /**
+     * First line of the next function, or -1 for the last one
+     * 
+     * @param moduleName
+     * @param index
+     * @return
+     */
+    public synchronized int getLineEnd(final String moduleName,
+            final int index) {
+        resolveLines(moduleName);
+        return lineEnds[index];
+    }
+
+    private void resolveLines(final String moduleName) {
+        if (lineStarts != null) {
+            return;
+        }
+        final int size = size();
+        lineStarts = new int[size];
+        lineEnds = new int[size];
+        try {
+            final IErlModule module = ErlModelManager.getErlangModel()
+                    .findModule(moduleName);
+            if (module != null) {
+                for (int i = 0; i < size; i++) {
+                    final IErlFunction f = module
+                            .findFunction(new ErlangFunction(names[i],
+                                    arities[i]));
+                    if (f != null) {
+                        lineStarts[i] = f.getLineStart();
+                    }
+                }
+            }
+        } catch (final ErlModelException e) {
+            e.printStackTrace();
+        }
+        final int[] sorted = lineStarts.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < size; i++) {
+            final int next = Arrays.binarySearch(sorted, lineStarts[i] + 1);
+            final int idx = next >= 0 ? next : -next - 1;
+            lineEnds[i] = idx < size ? sorted[idx] : -1;
+        }
+    }
+
+}
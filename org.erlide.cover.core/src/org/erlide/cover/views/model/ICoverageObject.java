@@ -85,6 +85,24 @@ public interface ICoverageObject extends Serializable {
      */
     public void addChild(String name, ICoverageObject child);
 
+    /**
+     * add a child unless there already is one with the name
+     * 
+     * @param name
+     * @param child
+     * @return the child with the name
+     */
+    public ICoverageObject addChildIfAbsent(String name, ICoverageObject child);
+
+    /**
+     * add a child, replacing the one with the same name
+     * 
+     * @param name
+     * @param child
+     * @return the replaced child or null
+     */
+    public ICoverageObject putChild(String name, ICoverageObject child);
+
     /**
      * removes a child by name
      * 
@@ -160,6 +178,14 @@ public interface ICoverageObject extends Serializable {
      */
     public void setCoverCount(int count);
 
+    /**
+     * atomically add to the numbers of lines and covered lines
+     * 
+     * @param lines
+     * @param covered
+     */
+    public void addCounts(int lines, int covered);
+
     /**
      * get coverage ratio
      * 
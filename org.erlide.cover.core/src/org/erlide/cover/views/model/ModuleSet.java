@@ -1,9 +1,9 @@
 package org.erlide.cover.views.model;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Stores information of covered modules
@@ -13,11 +13,7 @@ import java.util.Set;
  */
 public class ModuleSet {
 
-    private static Map<String, ModuleStats> map;
-
-    static {
-        map = new HashMap<String, ModuleStats>();
-    }
+    private static final Map<String, ModuleStats> map = new ConcurrentHashMap<String, ModuleStats>();
 
     public static void add(final ModuleStats module) {
         map.put(module.getLabel(), module);
@@ -1,6 +1,8 @@
 package org.erlide.cover.views.model;
 
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -13,11 +15,20 @@ public class ModuleStats extends StatsTreeObject {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Calls of a line cover has no result for
+     */
+    public static final int NO_CALLS = -1;
+
+    private static final int[] NO_LINES = new int[0];
+
     private String md5; // file hash (in order to check if
                         // marking annotations in editor makes sense)
-    private final List<LineResult> lineResults = new LinkedList<LineResult>(); // results
-                                                                               // per
-                                                                               // line
+    private int[] lineCalls = NO_LINES; // calls per line number
+    private FunctionTable functions = new FunctionTable(0);
+    private boolean functionsAdded;
+    // encoded results of a restored module, read when first needed
+    private transient ByteBuffer data;
     public boolean couldBeMarked = true; // if annotation could be marked for
                                          // that file (if it has not changed)
 
@@ -31,17 +42,119 @@ public class ModuleStats extends StatsTreeObject {
      * @return
      */
     public List<LineResult> getLineResults() {
-        return lineResults;
+        return getLineResults(0, -1);
     }
 
-    public void addLine(final LineResult lr) {
-        lineResults.add(lr);
+    /**
+     * Coverage of the lines between start and end (inclusive, -1 for the end
+     * of the module)
+     * 
+     * @param start
+     * @param end
+     * @return
+     */
+    public List<LineResult> getLineResults(final int start, final int end) {
+        final int[] calls = getLineCalls();
+        final int last = end == -1 ? calls.length - 1 : Math.min(end,
+                calls.length - 1);
+        final List<LineResult> results = new ArrayList<LineResult>();
+        for (int line = Math.max(start, 0); line <= last; line++) {
+            if (calls[line] != NO_CALLS) {
+                results.add(new LineResult(line, calls[line]));
+            }
+        }
+        return results;
     }
 
-    @Override
-    public void addChild(final String name, final ICoverageObject child) {
+    /**
+     * How many times a line was called
+     * 
+     * @param line
+     * @return the calls, or {@link #NO_CALLS} if the line has no result
+     */
+    public int getLineCalls(final int line) {
+        final int[] calls = getLineCalls();
+        return line >= 0 && line < calls.length ? calls[line] : NO_CALLS;
+    }
+
+    /**
+     * Sets the coverage per line from parallel arrays of line numbers and
+     * calls.
+     * 
+     * @param lines
+     * @param calls
+     * @param count
+     *            number of results in the arrays
+     */
+    public synchronized void setLineResults(final int[] lines,
+            final int[] calls, final int count) {
+        int last = -1;
+        for (int i = 0; i < count; i++) {
+            last = Math.max(last, lines[i]);
+        }
+        final int[] result = new int[last + 1];
+        Arrays.fill(result, NO_CALLS);
+        for (int i = 0; i < count; i++) {
+            final int line = lines[i];
+            result[line] = result[line] == NO_CALLS ? calls[i] : result[line]
+                    + calls[i];
+        }
+        lineCalls = result;
+    }
 
-        super.addChild(name, child);
+    /**
+     * Calls per line number, {@link #NO_CALLS} for lines without result
+     * 
+     * @return
+     */
+    synchronized int[] getLineCalls() {
+        readData();
+        return lineCalls;
+    }
+
+    public synchronized FunctionTable getFunctions() {
+        readData();
+        return functions;
+    }
+
+    public synchronized void setFunctions(final FunctionTable functions) {
+        this.functions = functions;
+        functionsAdded = false;
+    }
+
+    /**
+     * Sets the encoded results of the module, decoded when first needed.
+     */
+    synchronized void setData(final ByteBuffer data) {
+        this.data = data;
+    }
+
+    /**
+     * @return the encoded results if they weren't decoded yet, or null
+     */
+    synchronized ByteBuffer getData() {
+        return data == null ? null : data.duplicate();
+    }
+
+    private void readData() {
+        if (data != null) {
+            final ByteBuffer buffer = data;
+            data = null;
+            StatsTreeFile.readModuleData(buffer, this);
+        }
+    }
+
+    @Override
+    protected synchronized void loadChildren() {
+        if (functionsAdded) {
+            return;
+        }
+        final FunctionTable table = getFunctions();
+        functionsAdded = true;
+        for (int i = 0; i < table.size(); i++) {
+            addChild(table.getName(i) + "/" + table.getArity(i),
+                    new FunctionStats(table, i));
+        }
     }
 
     public void setMd5(final String md5) {
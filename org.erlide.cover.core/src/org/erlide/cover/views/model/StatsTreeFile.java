@@ -0,0 +1,259 @@
+package org.erlide.cover.views.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Saves coverage results in a compact binary file and restores them.
+ * <p>
+ * The file holds the results of each module (calls per line and the function
+ * table) followed by the statistics tree, whose modules point to their
+ * results. A restored file is read at once, but the results of a module are
+ * only decoded when they are first needed. Files are written to a temporary
+ * file first, so saving over a restored file is safe.
+ * 
+ * <pre>
+ * file:   MAGIC VERSION module* tree treeOffset
+ * module: count (line calls)* count (name arity lines covered)*
+ * tree:   timestamp node
+ * node:   type label lines covered htmlPath relativePath
+ *         (md5 moduleOffset moduleLength | count node*)
+ * </pre>
+ * 
+ * Numbers are big-endian ints, strings their UTF-8 length (-1 for null)
+ * followed by the bytes.
+ */
+public final class StatsTreeFile {
+
+    private static final int MAGIC = 0x45434F56; // "ECOV"
+    private static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private StatsTreeFile() {
+    }
+
+    /**
+     * Saves the model
+     * 
+     * @param model
+     * @param file
+     * @throws IOException
+     */
+    public static void write(final StatsTreeModel model, final File file)
+            throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            final ICoverageObject root = model.getRoot();
+            // offset and length of the results of each module
+            final Map<ICoverageObject, int[]> positions = new IdentityHashMap<ICoverageObject, int[]>();
+            writeModuleData(out, root, positions);
+            final int treeOffset = out.size();
+            writeString(out, model.getTimestamp());
+            writeNode(out, root, positions);
+            out.writeInt(treeOffset);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Can't write " + file);
+            }
+        }
+    }
+
+    /**
+     * Restores a model saved with {@link #write(StatsTreeModel, File)}
+     * 
+     * @param file
+     * @return
+     * @throws IOException
+     *             if the file can't be read or isn't a coverage results file
+     */
+    public static StatsTreeModel read(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final byte[] bytes;
+        try {
+            // on the heap, the file may be overwritten while modules still
+            // point to their results
+            bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+        } finally {
+            raf.close();
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a coverage results file: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported coverage results version "
+                    + buffer.getInt(4) + ": " + file);
+        }
+        buffer.position(buffer.getInt(buffer.limit() - 4));
+        final String timestamp = readString(buffer);
+        final ICoverageObject root = readNode(buffer);
+        return new StatsTreeModel(root, timestamp);
+    }
+
+    private static void writeModuleData(final DataOutputStream out,
+            final ICoverageObject node,
+            final Map<ICoverageObject, int[]> positions) throws IOException {
+        if (node.getType() != ObjectType.MODULE) {
+            for (final ICoverageObject child : node.getChildren()) {
+                writeModuleData(out, child, positions);
+            }
+            return;
+        }
+        final ModuleStats module = (ModuleStats) node;
+        final int offset = out.size();
+        final ByteBuffer data = module.getData();
+        if (data != null) {
+            // not decoded since it was restored, copy it as it is
+            final byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            out.write(bytes);
+        } else {
+            final int[] calls = module.getLineCalls();
+            int count = 0;
+            for (final int c : calls) {
+                if (c != ModuleStats.NO_CALLS) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (int line = 0; line < calls.length; line++) {
+                if (calls[line] != ModuleStats.NO_CALLS) {
+                    out.writeInt(line);
+                    out.writeInt(calls[line]);
+                }
+            }
+            final FunctionTable functions = module.getFunctions();
+            out.writeInt(functions.size());
+            for (int i = 0; i < functions.size(); i++) {
+                writeString(out, functions.getName(i));
+                out.writeInt(functions.getArity(i));
+                out.writeInt(functions.getLinesCount(i));
+                out.writeInt(functions.getCoverCount(i));
+            }
+        }
+        positions.put(module, new int[] { offset, out.size() - offset });
+    }
+
+    /**
+     * Decodes the results of a module written by
+     * {@link #writeModuleData(DataOutputStream, ICoverageObject, Map)}
+     */
+    static void readModuleData(final ByteBuffer data,
+            final ModuleStats module) {
+        final int count = data.getInt();
+        final int[] lines = new int[count];
+        final int[] calls = new int[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = data.getInt();
+            calls[i] = data.getInt();
+        }
+        module.setLineResults(lines, calls, count);
+        final FunctionTable functions = new FunctionTable(data.getInt());
+        for (int i = 0; i < functions.size(); i++) {
+            final String name = readString(data);
+            final int arity = data.getInt();
+            final int linesCount = data.getInt();
+            final int coverCount = data.getInt();
+            functions.set(i, name, arity, linesCount, coverCount);
+        }
+        module.setFunctions(functions);
+    }
+
+    private static void writeNode(final DataOutputStream out,
+            final ICoverageObject node,
+            final Map<ICoverageObject, int[]> positions) throws IOException {
+        out.writeByte(node.getType().ordinal());
+        writeString(out, node.getLabel());
+        out.writeInt(node.getLinesCount());
+        out.writeInt(node.getCoverCount());
+        writeString(out, node.getHtmlPath());
+        writeString(out, node.getRelativePath());
+        if (node.getType() == ObjectType.MODULE) {
+            writeString(out, ((ModuleStats) node).getMd5());
+            final int[] position = positions.get(node);
+            out.writeInt(position[0]);
+            out.writeInt(position[1]);
+        } else {
+            final ICoverageObject[] children = node.getChildren();
+            out.writeInt(children.length);
+            for (final ICoverageObject child : children) {
+                writeNode(out, child, positions);
+            }
+        }
+    }
+
+    private static ICoverageObject readNode(final ByteBuffer buffer) {
+        final ObjectType type = ObjectType.values()[buffer.get()];
+        final String label = readString(buffer);
+        final int linesCount = buffer.getInt();
+        final int coverCount = buffer.getInt();
+        final StatsTreeObject node;
+        if (type == ObjectType.MODULE) {
+            node = new ModuleStats();
+            node.setLabel(label);
+            node.setLiniesCount(linesCount);
+            node.setCoverCount(coverCount);
+        } else {
+            node = new StatsTreeObject(label, linesCount, coverCount, type);
+        }
+        node.setHtmlPath(readString(buffer));
+        node.setRelativePath(readString(buffer));
+        if (type == ObjectType.MODULE) {
+            final ModuleStats module = (ModuleStats) node;
+            module.setMd5(readString(buffer));
+            final int offset = buffer.getInt();
+            final int length = buffer.getInt();
+            final ByteBuffer data = buffer.duplicate();
+            data.position(offset);
+            data.limit(offset + length);
+            module.setData(data.slice());
+        } else {
+            final int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                final ICoverageObject child = readNode(buffer);
+                node.addChild(child.getLabel(), child);
+            }
+        }
+        return node;
+    }
+
+    private static void writeString(final DataOutputStream out,
+            final String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = s.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+}
@@ -14,7 +14,7 @@ public class StatsTreeModel implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private static StatsTreeModel model;
+    private static volatile StatsTreeModel model = new StatsTreeModel();
 
     private ICoverageObject root;
     private String timestamp;
@@ -26,10 +26,19 @@ public class StatsTreeModel implements Serializable {
         setChanged(false);
     }
 
-    public static synchronized StatsTreeModel getInstance() {
-        if (model == null) {
-            model = new StatsTreeModel();
-        }
+    /**
+     * Model of restored results
+     * 
+     * @param root
+     * @param timestamp
+     */
+    StatsTreeModel(final ICoverageObject root, final String timestamp) {
+        this.root = root;
+        this.timestamp = timestamp;
+        setChanged(false);
+    }
+
+    public static StatsTreeModel getInstance() {
         return model;
     }
 
@@ -54,6 +63,17 @@ public class StatsTreeModel implements Serializable {
         root.setLiniesCount(0);
         root.setCoverCount(0);
 
+        updateTimestamp();
+
+        ModuleSet.clear();
+        root.setHtmlPath(null);
+        setChanged(false);
+    }
+
+    /**
+     * Set the time of the results to now
+     */
+    public void updateTimestamp() {
         final StringBuilder timeTmp = new StringBuilder();
         timeTmp.append(Calendar.getInstance().get(Calendar.YEAR))
                 .append(String.format("%02d",
@@ -68,10 +88,41 @@ public class StatsTreeModel implements Serializable {
                         Calendar.getInstance().get(Calendar.SECOND)));
 
         timestamp = timeTmp.toString();
+    }
 
-        ModuleSet.clear();
-        root.setHtmlPath(null);
-        setChanged(false);
+    /**
+     * Adds the results of a module, replacing its earlier results if there
+     * are any. The line counts of the folders above it are updated by the
+     * difference. Results of different modules can be added concurrently.
+     * 
+     * @param folders
+     *            path of folders from the root to the module
+     * @param module
+     */
+    public void addModule(final String[] folders, final ModuleStats module) {
+        final ICoverageObject[] path = new ICoverageObject[folders.length + 1];
+        path[0] = root;
+        for (int i = 0; i < folders.length; i++) {
+            ICoverageObject folder = path[i].findChild(folders[i]);
+            if (folder == null) {
+                folder = new StatsTreeObject(ObjectType.FOLDER);
+                folder.setLabel(folders[i]);
+                folder = path[i].addChildIfAbsent(folders[i], folder);
+            }
+            path[i + 1] = folder;
+        }
+        final ICoverageObject old = path[folders.length].putChild(
+                module.getLabel(), module);
+        int lines = module.getLinesCount();
+        int covered = module.getCoverCount();
+        if (old != null) {
+            lines -= old.getLinesCount();
+            covered -= old.getCoverCount();
+        }
+        for (final ICoverageObject node : path) {
+            node.addCounts(lines, covered);
+        }
+        ModuleSet.add(module);
     }
 
     /**
@@ -81,10 +132,7 @@ public class StatsTreeModel implements Serializable {
      * @param coveredLines
      */
     public void addTotal(final int allLines, final int coveredLines) {
-        final int all = root.getLinesCount() + allLines;
-        final int cov = root.getCoverCount() + coveredLines;
-        root.setLiniesCount(all);
-        root.setCoverCount(cov);
+        root.addCounts(allLines, coveredLines);
     }
 
     public void setIndex(final String path) {
@@ -1,12 +1,12 @@
 package org.erlide.cover.views.model;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The content provider class is responsible for providing objects to the view.
@@ -23,17 +23,18 @@ public class StatsTreeObject implements ICoverageObject {
     private final ObjectType type;
 
     private String label; // name
-    private int all; // total line number
-    private int covered; // covered line number
+    private volatile int all; // total line number
+    private volatile int covered; // covered line number
     private String htmlPath; // name of html file
     private String relativePath; // relative HTML path
 
     private ICoverageObject parent;
-    private final Map<String, ICoverageObject> children;
+    // results of modules are added concurrently
+    private final ConcurrentMap<String, ICoverageObject> children;
 
     public StatsTreeObject(final ObjectType type) {
         this.type = type;
-        children = new HashMap<String, ICoverageObject>();
+        children = new ConcurrentHashMap<String, ICoverageObject>();
     }
 
     public StatsTreeObject(final ICoverageObject parent, final ObjectType type) {
@@ -49,6 +50,18 @@ public class StatsTreeObject implements ICoverageObject {
         this.covered = covered;
     }
 
+    /**
+     * Creates children that are kept in another form until needed. Called
+     * before the children are accessed.
+     */
+    protected void loadChildren() {
+    }
+
+    private ConcurrentMap<String, ICoverageObject> childMap() {
+        loadChildren();
+        return children;
+    }
+
     @Override
     public ObjectType getType() {
         return type;
@@ -66,7 +79,7 @@ public class StatsTreeObject implements ICoverageObject {
         bf.append(label).append(" ").append(all).append(" ").append(covered)
                 .append(" ").append(getPercentage()).append('\n');
 
-        for (final ICoverageObject child : children.values()) {
+        for (final ICoverageObject child : childMap().values()) {
             bf.append('\t').append(child.toString()).append('\n');
         }
 
@@ -89,23 +102,38 @@ public class StatsTreeObject implements ICoverageObject {
 
     @Override
     public void addChild(final String name, final ICoverageObject child) {
-        children.put(name, child);
+        childMap().put(name, child);
         child.setParent(this);
     }
 
+    @Override
+    public ICoverageObject addChildIfAbsent(final String name,
+            final ICoverageObject child) {
+        child.setParent(this);
+        final ICoverageObject old = childMap().putIfAbsent(name, child);
+        return old != null ? old : child;
+    }
+
+    @Override
+    public ICoverageObject putChild(final String name,
+            final ICoverageObject child) {
+        child.setParent(this);
+        return childMap().put(name, child);
+    }
+
     @Override
     public void removeChild(final String name) {
-        children.remove(name);
+        childMap().remove(name);
     }
 
     @Override
     public ICoverageObject[] getChildren() {
-        return children.values().toArray(new ICoverageObject[0]);
+        return childMap().values().toArray(new ICoverageObject[0]);
     }
 
     @Override
     public boolean hasChildren() {
-        return !children.isEmpty();
+        return !childMap().isEmpty();
     }
 
     @Override
@@ -133,6 +161,12 @@ public class StatsTreeObject implements ICoverageObject {
         covered = count;
     }
 
+    @Override
+    public synchronized void addCounts(final int lines, final int covered) {
+        all += lines;
+        this.covered += covered;
+    }
+
     @Override
     public double getPercentage() {
         if (all > 0) {
@@ -143,7 +177,7 @@ public class StatsTreeObject implements ICoverageObject {
 
     @Override
     public void removeAllChildren() {
-        children.clear();
+        childMap().clear();
     }
 
     @Override
@@ -165,7 +199,7 @@ public class StatsTreeObject implements ICoverageObject {
 
     @Override
     public ICoverageObject findChild(final String name) {
-        return children.get(name);
+        return childMap().get(name);
     }
 
     /**
@@ -173,11 +207,11 @@ public class StatsTreeObject implements ICoverageObject {
      */
     @Override
     public ICoverageObject getPrevSiblingTo(final String name) {
-        final List<String> l = new LinkedList<String>(children.keySet());
+        final List<String> l = new LinkedList<String>(childMap().keySet());
         final ListIterator<String> it = l.listIterator(l.indexOf(name));
 
         if (it.hasPrevious()) {
-            return children.get(it.previous());
+            return childMap().get(it.previous());
         } else {
             return null;
         }
@@ -185,12 +219,12 @@ public class StatsTreeObject implements ICoverageObject {
 
     @Override
     public ICoverageObject getNextSiblingTo(final String name) {
-        final List<String> l = new LinkedList<String>(children.keySet());
+        final List<String> l = new LinkedList<String>(childMap().keySet());
         final ListIterator<String> it = l.listIterator(l.indexOf(name));
 
         it.next();
         if (it.hasNext()) {
-            return children.get(it.next());
+            return childMap().get(it.next());
         } else {
             return null;
         }
@@ -202,7 +236,7 @@ public class StatsTreeObject implements ICoverageObject {
             return this;
         }
         ICoverageObject res = null;
-        for (final ICoverageObject child : children.values()) {
+        for (final ICoverageObject child : childMap().values()) {
             res = child.treeSearch(name);
             if (res != null) {
                 break;
@@ -217,7 +251,7 @@ public class StatsTreeObject implements ICoverageObject {
         if (type.equals(ObjectType.MODULE)) {
             col.add(this);
         } else if (hasChildren()) {
-            for (final ICoverageObject child : children.values()) {
+            for (final ICoverageObject child : childMap().values()) {
                 col.addAll(child.getModules());
             }
         }
@@ -17,6 +17,7 @@
 		 compile_dir/1,
 		 prepare/2,
 		 create_report/2,
+		 create_report/3,
 		 create_index/2]).
 
 %%----------------------------------------------
@@ -56,9 +57,44 @@ prepare(eunit, Arg) ->
 				erlide_jrpc:event(?EVENT, {Arg, test_failed})
 	end.
 
-%creates html report
+%creates html reports, in parallel batches on all schedulers
 create_report(Modules, ReportDir) when is_list(Modules) ->
+	create_report(Modules, ReportDir, erlang:system_info(schedulers_online));
+
+create_report(Module, ReportDir) ->
+    io:format("~p~n", [Module]), 
+    ModRes = cover:analyse(Module,module), 
+    FunRes = cover:analyse(Module,function), 
+    LineRes = cover:analyse(Module,calls,line),  %%calls! 
+    case {ModRes,FunRes,LineRes} of
+      {{ok,_},{ok,_},{ok,_}} ->
+	  		Res = prepare_result(ModRes,FunRes,LineRes,Module, ReportDir), 
+	  		{ok,Res};
+      Error ->
+		  	io:format("~p~n", [Error]),
+			{error,analyse}
+    end.
+
+%creates html reports of the modules in Workers batches processed in
+%parallel; the result of each module is sent as an event when it is ready
+create_report(Modules, ReportDir, Workers) ->
 	io:format("~p~n", [Modules]),
+	Monitors = [spawn_monitor(fun() ->
+									  exit({report, report_batch(Batch, ReportDir)})
+							  end)
+				|| Batch <- batches(Modules, Workers)],
+	lists:append([receive
+					  {'DOWN', Ref, process, Pid, {report, Results}} ->
+						  Results;
+					  {'DOWN', Ref, process, Pid, Reason} ->
+						  erlide_jrpc:event(?EVENT,
+											#cover_error{place = report,
+														 type = 'creating report',
+														 info = Reason}),
+						  []
+				  end || {Pid, Ref} <- Monitors]).
+
+report_batch(Modules, ReportDir) ->
 	lists:foldl(fun (Module,Acc) ->
 			io:format("~p~n", [Module]),
 			Mod = if
@@ -80,21 +116,13 @@ create_report(Modules, ReportDir) when is_list(Modules) ->
 				  io:format("error: ~p~n", [Reason]),
 			      Acc
 			end
-		end,[],Modules);
+		end,[],Modules).
 
-create_report(Module, ReportDir) ->
-    io:format("~p~n", [Module]), 
-    ModRes = cover:analyse(Module,module), 
-    FunRes = cover:analyse(Module,function), 
-    LineRes = cover:analyse(Module,calls,line),  %%calls! 
-    case {ModRes,FunRes,LineRes} of
-      {{ok,_},{ok,_},{ok,_}} ->
-	  		Res = prepare_result(ModRes,FunRes,LineRes,Module, ReportDir), 
-	  		{ok,Res};
-      Error ->
-		  	io:format("~p~n", [Error]),
-			{error,analyse}
-    end.
+%splits the modules round robin in at most Workers batches
+batches(Modules, Workers) ->
+	N = lists:max([1, lists:min([Workers, length(Modules)])]),
+	Indexed = lists:zip(lists:seq(0, length(Modules) - 1), Modules),
+	[[Module || {I, Module} <- Indexed, I rem N =:= K] || K <- lists:seq(0, N - 1)].
 
 % create index.html file
 create_index(Results, ReportDir) ->
@@ -0,0 +1,97 @@
+%% Description: measures the time of creating coverage reports of
+%% synthetic modules with different numbers of workers
+%% Run it in a plain node with this application's ebin in the path:
+%%   erl -pa ebin -noshell -s coverage_bench run -s init stop
+%%----------------------------------------------
+-module(coverage_bench).
+
+%%----------------------------------------------
+%% Exported Functions
+%%----------------------------------------------
+-export([run/0,
+		 run/3]).
+
+%%----------------------------------------------
+%% API Functions
+%%----------------------------------------------
+
+run() ->
+	run(100, 20, [1, 2, 4, 8]).
+
+%creates ModuleCount cover compiled modules of FunctionCount functions,
+%half of them called, and reports their coverage with each number of workers
+run(ModuleCount, FunctionCount, WorkerCounts) ->
+	stub_events(),
+	Dir = filename:join(tmp_dir(), "coverage_bench"),
+	ok = filelib:ensure_dir(filename:join(Dir, "x")),
+	case cover:start() of
+		{ok, _} -> ok;
+		{error, {already_started, _}} -> ok
+	end,
+	Modules = [make_module(Dir, I, FunctionCount)
+			   || I <- lists:seq(1, ModuleCount)],
+	Names = [atom_to_list(M) || M <- Modules],
+	Times = [begin
+				 ReportDir = filename:join(Dir, "report_" ++ integer_to_list(W)),
+				 ok = filelib:ensure_dir(filename:join(ReportDir, "x")),
+				 {Time, _} = timer:tc(coverage, create_report,
+									  [Names, ReportDir, W]),
+				 {W, Time div 1000}
+			 end || W <- WorkerCounts],
+	io:format("~p modules of ~p functions, ~p schedulers~n",
+			  [ModuleCount, FunctionCount,
+			   erlang:system_info(schedulers_online)]),
+	lists:foreach(fun({W, Ms}) ->
+						  io:format("~3w workers: ~6w ms~n", [W, Ms])
+				  end, Times),
+	cover:stop(),
+	Times.
+
+%%----------------------------------------------
+%% Local Functions
+%%----------------------------------------------
+
+make_module(Dir, I, FunctionCount) ->
+	Name = "cover_bench_" ++ integer_to_list(I),
+	Funs = ["f" ++ integer_to_list(F) || F <- lists:seq(1, FunctionCount)],
+	Src = ["-module(", Name, ").\n",
+		   "-export([", string:join([F ++ "/1" || F <- Funs], ", "), "]).\n",
+		   [[F, "(X) when X > 0 ->\n",
+			 "    Y = X * 2,\n",
+			 "    Y + 1;\n",
+			 F, "(_) ->\n",
+			 "    0.\n"] || F <- Funs]],
+	Path = filename:join(Dir, Name ++ ".erl"),
+	ok = file:write_file(Path, Src),
+	{ok, Module} = cover:compile(Path),
+	lists:foreach(fun({N, F}) when N rem 2 =:= 0 ->
+						  Module:(list_to_atom(F))(N);
+					 (_) ->
+						  ok
+				  end, lists:zip(lists:seq(1, FunctionCount), Funs)),
+	Module.
+
+%coverage sends its results as erlide events; outside of erlide they are
+%dropped
+stub_events() ->
+	case code:is_loaded(erlide_jrpc) =:= false
+		andalso code:which(erlide_jrpc) =:= non_existing of
+		true ->
+			Forms = [{attribute, 1, module, erlide_jrpc},
+					 {attribute, 2, export, [{event, 2}]},
+					 {function, 3, event, 2,
+					  [{clause, 3, [{var, 3, '_'}, {var, 3, '_'}], [],
+						[{atom, 3, ok}]}]}],
+			{ok, erlide_jrpc, Bin} = compile:forms(Forms),
+			{module, erlide_jrpc} = code:load_binary(erlide_jrpc,
+													 "erlide_jrpc.erl", Bin),
+			ok;
+		false ->
+			ok
+	end.
+
+tmp_dir() ->
+	case os:getenv("TMPDIR") of
+		false -> "/tmp";
+		Dir -> Dir
+	end.
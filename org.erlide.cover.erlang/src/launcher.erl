@@ -89,15 +89,26 @@ perform(Type,NameOrPathSrc,PathTst) ->
 	end.
 
 %prepares modules - cover compiles them
+%Paths -> source paths, or {Path, Hash} with the hash of the source and its
+%includes; modules already cover compiled with that hash are only reset
+%returns {Compiled, Reused}
 prepare(Paths) ->
-	lists:foreach(fun(Path) ->
-						  Mod = list_to_atom(filename:basename(Path, ".erl")),
-						  gen_server:call(?MODULE, {compile, Mod, Path})
-						  end, Paths).
+	lists:foldl(fun(Entry, {Compiled, Reused}) ->
+						{Path, Hash} = case Entry of
+										   {_, _} -> Entry;
+										   _ -> {Entry, none}
+									   end,
+						Mod = list_to_atom(filename:basename(Path, ".erl")),
+						case gen_server:call(?MODULE, {compile, Mod, Path, Hash}) of
+							ok -> {Compiled + 1, Reused};
+							reused -> {Compiled, Reused + 1};
+							_ -> {Compiled, Reused}
+						end
+				end, {0, 0}, Paths).
 
 % performes cover analysis and prepares reports
 analyse(Modules) ->
-	gen_server:call(?MODULE, {analyse, Modules}).
+	gen_server:call(?MODULE, {analyse, Modules}, infinity).
 
 % set include directories
 set_includes(Includes) ->
@@ -136,15 +147,29 @@ handle_cast(stop, State) ->
 	{stop, normal, State}.
 
 % call 
+handle_call({includes, Includes}, _From, #state{includes = Includes} = State) ->
+	{reply, ok, State};
 handle_call({includes, Includes}, _From, State) ->
-	{reply, ok, State#state{includes = Includes}};
+	%modules have to be compiled again with the new includes
+	{reply, ok, State#state{includes = Includes, compiled = dict:new()}};
 
 handle_call({report_dir, Path}, _From, State) ->
 	{reply, ok, State#state{report_dir = Path}};
 
-handle_call({compile, Module, Path}, _From, #state{includes = Includes} = State) ->
-	Res = coverage:compile(Module, Path, Includes),
-	{reply, Res, State};
+handle_call({compile, Module, Path}, _From, State) ->
+	compile(Module, Path, none, State);
+
+handle_call({compile, Module, Path, Hash}, _From, #state{compiled = Compiled} = State) ->
+	Reuse = Hash =/= none
+		andalso dict:find(Module, Compiled) =:= {ok, Hash}
+		andalso cover:is_compiled(Module) =/= false,
+	case Reuse of
+		true ->
+			cover:reset(Module),
+			{reply, reused, State};
+		false ->
+			compile(Module, Path, Hash, State)
+	end;
 
 handle_call({analyse, Modules}, _From, State) ->
 	io:format("~p~n", [Modules]),
@@ -183,4 +208,12 @@ code_change(_OldVsn, State, _Extra) ->
 %% Helpers
 %%----------------------------------------------
 
+compile(Module, Path, Hash, #state{includes = Includes, compiled = Compiled} = State) ->
+	case coverage:compile(Module, Path, Includes) of
+		ok when Hash =/= none ->
+			{reply, ok, State#state{compiled = dict:store(Module, Hash, Compiled)}};
+		Res ->
+			{reply, Res, State#state{compiled = dict:erase(Module, Compiled)}}
+	end.
+
 
@@ -0,0 +1,81 @@
+package org.erlide.cover.ui.actions;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.dialogs.ElementListSelectionDialog;
+import org.erlide.cover.core.Logger;
+import org.erlide.cover.ui.Activator;
+import org.erlide.cover.ui.CoverageHelper;
+import org.erlide.cover.views.model.CoverageDelta;
+import org.erlide.cover.views.model.StatsTreeFile;
+import org.erlide.cover.views.model.StatsTreeModel;
+
+/**
+ * Compares current results with results saved before and exports the
+ * difference per function
+ */
+public class CompareAction extends Action {
+
+    private final Shell shell;
+
+    private final Logger log = Activator.getDefault();
+
+    public CompareAction(final Shell shell) {
+        this.shell = shell;
+    }
+
+    @Override
+    public void run() {
+
+        final File dir = Activator.getDefault().getStateLocation()
+                .append(SaveAction.DIR_NAME).toFile();
+
+        final ElementListSelectionDialog resDialog = new ElementListSelectionDialog(
+                shell, new LabelProvider() {
+                    @Override
+                    public String getText(final Object element) {
+                        return ((File) element).getName();
+                    }
+                });
+        resDialog.setElements(dir.exists() ? dir.listFiles() : new File[0]);
+        resDialog.setTitle("Comparing results");
+        resDialog.setMessage("Select results to compare with");
+
+        if (resDialog.open() != Window.OK) {
+            return;
+        }
+        final File baseline = (File) resDialog.getFirstResult();
+
+        final FileDialog fd = new FileDialog(shell, SWT.SAVE);
+        fd.setText("Select file to export the coverage difference to");
+        fd.setFilterExtensions(new String[] { "*.csv", "*.*" });
+        final String path = fd.open();
+        if (path == null) {
+            return;
+        }
+
+        try {
+            final CoverageDelta delta = new CoverageDelta(
+                    StatsTreeModel.getInstance(), StatsTreeFile.read(baseline));
+            final FileWriter writer = new FileWriter(path);
+            try {
+                delta.write(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException e) {
+            log.error("Error while comparing results");
+            e.printStackTrace();
+            CoverageHelper.reportError("Could not compare results");
+        }
+    }
+
+}
@@ -1,9 +1,7 @@
 package org.erlide.cover.ui.actions;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.ObjectInputStream;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
@@ -27,6 +25,7 @@ import org.erlide.cover.views.model.ICoverageObject;
 import org.erlide.cover.views.model.ModuleSet;
 import org.erlide.cover.views.model.ModuleStats;
 import org.erlide.cover.views.model.ObjectType;
+import org.erlide.cover.views.model.StatsTreeFile;
 import org.erlide.cover.views.model.StatsTreeModel;
 import org.erlide.model.root.ErlModelManager;
 
@@ -78,17 +77,7 @@ public class RestoreAction extends Action {
         final File f = (File) resDialog.getFirstResult();
 
         try {
-            final ObjectInputStream objStream = new ObjectInputStream(
-                    new FileInputStream(f));
-
-            final Object obj;
-            try {
-                obj = objStream.readObject();
-            } finally {
-                objStream.close();
-            }
-
-            StatsTreeModel.changeInstance((StatsTreeModel) obj);
+            StatsTreeModel.changeInstance(StatsTreeFile.read(f));
             StatsTreeModel.getInstance().setChanged(true);
 
             viewer.setInput(StatsTreeModel.getInstance());
@@ -182,7 +182,7 @@ public class EditorTracker implements ICoverAnnotationMarker {
                 return;
             }
 
-            final List<LineResult> list = module.getLineResults();
+            final List<LineResult> list = module.getLineResults(start, end);
 
             final ITextEditor editor = (ITextEditor) currentEditor;
 
@@ -190,11 +190,6 @@ public class EditorTracker implements ICoverAnnotationMarker {
 
             for (final LineResult lr : list) {
 
-                if (lr.getLineNum() < start || end != -1
-                        && lr.getLineNum() > end) {
-                    continue;
-                }
-
                 if (!coverage.containsAnnotation(fileName, lr)) {
                     coverage.addAnnotation(fileName, lr, null);
                 }
@@ -1,5 +1,7 @@
 package org.erlide.cover.ui.views;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jface.action.Action;
@@ -35,6 +37,7 @@ import org.erlide.cover.core.ICoverObserver;
 import org.erlide.cover.core.Logger;
 import org.erlide.cover.ui.Activator;
 import org.erlide.cover.ui.actions.ClearCoverageAction;
+import org.erlide.cover.ui.actions.CompareAction;
 import org.erlide.cover.ui.actions.EksportReports;
 import org.erlide.cover.ui.actions.HideCoverageAction;
 import org.erlide.cover.ui.actions.HtmlReportAction;
@@ -71,6 +74,7 @@ public class CoverStatsView extends ViewPart implements ICoverObserver {
     private Action clear;
     private Action eksportHTML;
     private Action restore;
+    private Action compare;
     private Action doubleClickAction;
     private Action showCoverage;
     private Action hideCoverage;
@@ -83,6 +87,9 @@ public class CoverStatsView extends ViewPart implements ICoverObserver {
 
     private final Logger log; // logger
 
+    // results of modules arrive one by one, refreshes are coalesced
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
     private final ISelectionChangedListener viewerSelectionChanged = new ISelectionChangedListener() {
 
         @Override
@@ -242,6 +249,7 @@ public class CoverStatsView extends ViewPart implements ICoverObserver {
         manager.add(new Separator());
         manager.add(restore);
         manager.add(save);
+        manager.add(compare);
 
     }
 
@@ -272,6 +280,7 @@ public class CoverStatsView extends ViewPart implements ICoverObserver {
         makeOpenItemAction();
         makeRestoreAction();
         makeSaveAction();
+        makeCompareAction();
         makeShowHtmlAction();
         makeRefreshAction();
         makeShowCoverageAction();
@@ -334,6 +343,12 @@ public class CoverStatsView extends ViewPart implements ICoverObserver {
         save.setToolTipText("Save coverage results");
     }
 
+    private void makeCompareAction() {
+        compare = new CompareAction(viewer.getControl().getShell());
+        compare.setText("Compare with saved results");
+        compare.setToolTipText("Export coverage difference per function");
+    }
+
     private void makeRefreshAction() {
         eksportHTML = new EksportReports(viewer.getControl().getShell());
         // TODO change image
@@ -371,9 +386,13 @@ public class CoverStatsView extends ViewPart implements ICoverObserver {
         switch (e.getType()) {
         case UPDATE:
 
+            if (!refreshPending.compareAndSet(false, true)) {
+                break;
+            }
             DisplayUtils.asyncExec(new Runnable() {
                 @Override
                 public void run() {
+                    refreshPending.set(false);
                     viewer.refresh();
                 }
             });
@@ -24,6 +24,7 @@
          stop/0,
          find_refs/4,
          start_find_refs/5,
+         set_scope/2,
          cancel_find_refs/1]).
 
 %% called from Erlang
@@ -47,13 +48,15 @@
 
 -define(SERVER, erlide_search_server).
 -define(N_MODULES_KEPT, 5).
+-define(N_SCOPES_KEPT, 16).
 
 -record(module, {scanner_name :: atom(),
 		 sequence_number :: integer(),
                  module_name :: string(),
                  refs :: list()}).
 -record(state, {modules=[] :: list(#module{}),
-                sequence_number :: integer()}).
+                sequence_number :: integer(),
+                scopes=[] :: list({integer(), list()})}).
 
 %%
 %% API Functions
@@ -71,25 +74,31 @@ state() ->
 modules() ->
     server_cmd(modules).
 
-%% modules is {ScannerName, ModulePath}
+%% modules is {ScannerName, ModulePath}, or {scope, ScopeId} for a list
+%% stored with set_scope/2; an unknown scope gives {error, unknown_scope}
 find_refs(Pattern, Modules, StateDir, UpdateSearchServer) 
-  when is_tuple(Pattern), is_list(Modules), is_list(StateDir) ->
+  when is_tuple(Pattern), is_list(StateDir) ->
     find_refs([Pattern], Modules, StateDir, UpdateSearchServer);
 find_refs(Pattern, Modules, StateDir, UpdateSearchServer) 
-  when is_list(Pattern), is_list(Modules), is_list(StateDir) ->
+  when is_list(Pattern), is_list(StateDir) ->
     R = server_cmd(find_refs, {Pattern, Modules, StateDir, UpdateSearchServer}),
     R.
 
-%% 
+%% an unknown scope gives {stop, {error, unknown_scope}}
 start_find_refs(JPid, Pattern, Modules, StateDir, UpdateSearchServer)
-  when is_tuple(Pattern), is_list(Modules), is_list(StateDir) ->
+  when is_tuple(Pattern), is_list(StateDir) ->
     start_find_refs(JPid, [Pattern], Modules, StateDir, UpdateSearchServer); 
 start_find_refs(JPid, Pattern, Modules, StateDir, UpdateSearchServer)
-  when is_list(Pattern), is_list(Modules), is_list(StateDir) ->
+  when is_list(Pattern), is_list(StateDir) ->
     ?D({JPid, Pattern}),
     R = server_cmd(start_find_refs, {Pattern, Modules, JPid, StateDir, UpdateSearchServer}),
     R.
 
+%% store a module list, so that searches can refer to it by id; only the
+%% last ?N_SCOPES_KEPT scopes are kept
+set_scope(ScopeId, Modules) when is_integer(ScopeId), is_list(Modules) ->
+    server_cmd(set_scope, {ScopeId, Modules}).
+
 remove_module(ScannerName) ->
     server_cmd(remove_module, ScannerName).
 
@@ -175,13 +184,27 @@ reply(Cmd, From, R) ->
 
 do_cmd(add_module_refs, {ScannerName, Refs}, State) ->
     do_add_module_refs(ScannerName, Refs, State);
-do_cmd(find_refs, {Ref, Modules, StateDir, UpdateSearchServer}, State) ->
-    R = do_find_refs(Modules, Ref, StateDir, State, UpdateSearchServer, []),
-    R;
-do_cmd(start_find_refs, {Pattern, Modules, JPid, StateDir, UpdateSearchServer}, State) ->
+do_cmd(find_refs, {Ref, Scope, StateDir, UpdateSearchServer}, State) ->
+    case get_scope_modules(Scope, State) of
+        {ok, Modules} ->
+            do_find_refs(Modules, Ref, StateDir, State, UpdateSearchServer, []);
+        error ->
+            {{error, unknown_scope}, State}
+    end;
+do_cmd(start_find_refs, {Pattern, Scope, JPid, StateDir, UpdateSearchServer}, State) ->
     ?D(start_find_refs),
-    R = do_start_find_refs(Pattern, Modules, JPid, StateDir, UpdateSearchServer, State),
-    R;
+    case get_scope_modules(Scope, State) of
+        {ok, Modules} ->
+            do_start_find_refs(Pattern, Modules, JPid, StateDir,
+                               UpdateSearchServer, State);
+        error ->
+            JPid ! {stop, {error, unknown_scope}},
+            {{error, unknown_scope}, State}
+    end;
+do_cmd(set_scope, {ScopeId, Modules}, #state{scopes=Scopes0} = State) ->
+    Scopes1 = lists:sublist(lists:keydelete(ScopeId, 1, Scopes0),
+                            ?N_SCOPES_KEPT - 1),
+    State#state{scopes=[{ScopeId, Modules} | Scopes1]};
 do_cmd(cancel_find_refs, Pid, State) ->
     Pid ! cancel,
     {stopped, State};
@@ -223,6 +246,16 @@ do_background_find_refs([Chunk | Rest], Pattern, JPid, StateDir,
 				    UpdateSearchServer, State)
     end.
 
+get_scope_modules({scope, ScopeId}, #state{scopes=Scopes}) ->
+    case lists:keyfind(ScopeId, 1, Scopes) of
+        {ScopeId, Modules} ->
+            {ok, Modules};
+        false ->
+            error
+    end;
+get_scope_modules(Modules, _State) when is_list(Modules) ->
+    {ok, Modules}.
+
 chunkify(List, N) ->
     chunkify(List, N, []).
 
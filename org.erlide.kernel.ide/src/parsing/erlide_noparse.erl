@@ -9,7 +9,7 @@
 %%
 
 %% called from Java
--export([initial_parse/5, reparse/2, remove_cache_files/2]).
+-export([initial_parse/5, reparse/2, reparse/3, remove_cache_files/2]).
 
 %% called from Erlang
 -export([get_module_refs/4]).
@@ -64,8 +64,25 @@ initial_parse(ScannerName, ModuleFileName, StateDir, UseCache,
 reparse(ScannerName, UpdateSearchServer) ->
     try
         Tokens = erlide_scanner:get_tokens(ScannerName),
-        {Model, _Refs} = do_parse(ScannerName, "", Tokens, "", UpdateSearchServer),
-        {ok, Model}
+        {Model, Refs} = do_parse(ScannerName, "", Tokens, "", UpdateSearchServer),
+        {ok, Model, dont_use_cache, Refs}
+    catch
+        error:Reason ->
+            {error, Reason, erlang:get_stacktrace()}
+    end.
+
+%% like reparse/2, but the forms are diffed against the hashes of the forms
+%% that the caller already has, see erlide_np_util:diff_forms/2
+-spec reparse(atom(), boolean(), [integer()]) ->
+          {ok, #model{}, dont_use_cache, [#ref{}]}
+              | {error, term(), term()}.
+reparse(ScannerName, UpdateSearchServer, KnownHashes) ->
+    try
+        Tokens = erlide_scanner:get_tokens(ScannerName),
+        {#model{forms=Forms} = Model, Refs} =
+            do_parse(ScannerName, "", Tokens, "", UpdateSearchServer),
+        Diff = erlide_np_util:diff_forms(Forms, KnownHashes),
+        {ok, Model#model{forms=Diff}, dont_use_cache, Refs}
     catch
         error:Reason ->
             {error, Reason, erlang:get_stacktrace()}
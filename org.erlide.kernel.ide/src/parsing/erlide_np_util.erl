@@ -17,7 +17,8 @@
 %% Exported Functions
 %%
 -export([extract_comments/1, split_after_dots/1, skip_to/2,
-         get_between_outer_pars/3, compact_model/1, get_top_level_comments/2]).
+         get_between_outer_pars/3, compact_model/1, get_top_level_comments/2,
+         diff_forms/2]).
 
 %%
 %% API Functions
@@ -63,6 +64,17 @@ compact_model(#model{forms=Forms, comments=Comments}) ->
 get_top_level_comments(Forms, Comments) ->
     get_top_level_comments(Forms, Comments, []).
 
+%% replace forms that the caller already has by {Hash, Line, Offset, Length},
+%% others become {Hash, Line, Offset, Length, Form}; the hash doesn't depend on
+%% where the form starts, so forms that only moved aren't sent again. The hash
+%% is short, so the caller checks the length to catch forms that only happen
+%% to have the same hash
+-spec diff_forms([tuple()], [integer()]) -> [tuple()].
+diff_forms(Forms, KnownHashes) ->
+    Known = lists:foldl(fun(Hash, D) -> dict:update_counter(Hash, 1, D) end,
+                        dict:new(), KnownHashes),
+    diff_forms(Forms, Known, []).
+
 %%
 %% Local Functions
 %%
@@ -161,6 +173,62 @@ get_top_level_comments([Form | FormRest] = Forms,
             get_top_level_comments(FormRest, CommentRest, Acc)
     end.
 
+diff_forms([], _Known, Acc) ->
+    lists:reverse(Acc);
+diff_forms([Form | Rest], Known, Acc) ->
+    {Line, Offset, Length} = get_form_start(Form),
+    Hash = erlang:phash2(rebase_form(Form, Line, Offset)),
+    case dict:find(Hash, Known) of
+        {ok, N} when N > 0 ->
+            diff_forms(Rest, dict:store(Hash, N-1, Known),
+                       [{Hash, Line, Offset, Length} | Acc]);
+        _ ->
+            diff_forms(Rest, Known, [{Hash, Line, Offset, Length, Form} | Acc])
+    end.
+
+get_form_start(Form) when is_tuple(Form), tuple_size(Form) > 1 ->
+    case element(2, Form) of
+        {{Line, _LastLine, Offset}, Length} ->
+            {Line, Offset, Length};
+        _ ->
+            {0, 0, 0}
+    end;
+get_form_start(_) ->
+    {0, 0, 0}.
+
+%% make positions relative to the start of the form
+rebase_form(#function{pos=Pos, name_pos=NamePos, clauses=Clauses} = Function,
+            Line, Offset) ->
+    Function#function{pos=rebase_pos(Pos, Line, Offset),
+                      name_pos=rebase_pos(NamePos, Line, Offset),
+                      clauses=[rebase_form(C, Line, Offset) || C <- Clauses]};
+rebase_form(#clause{pos=Pos, name_pos=NamePos} = Clause, Line, Offset) ->
+    Clause#clause{pos=rebase_pos(Pos, Line, Offset),
+                  name_pos=rebase_pos(NamePos, Line, Offset)};
+rebase_form(#attribute{pos=Pos, name=record, args={Name, Fields}} = Attribute,
+            Line, Offset) when is_list(Fields) ->
+    Attribute#attribute{pos=rebase_pos(Pos, Line, Offset),
+                        args={Name, [rebase_field(F, Line, Offset)
+                                     || F <- Fields]}};
+rebase_form(#attribute{pos=Pos} = Attribute, Line, Offset) ->
+    Attribute#attribute{pos=rebase_pos(Pos, Line, Offset)};
+rebase_form(#other{pos=Pos} = Other, Line, Offset) ->
+    Other#other{pos=rebase_pos(Pos, Line, Offset)};
+rebase_form(Form, _Line, _Offset) ->
+    Form.
+
+rebase_field({Name, Pos, Extra}, Line, Offset) ->
+    {Name, rebase_pos(Pos, Line, Offset), Extra};
+rebase_field(Field, _Line, _Offset) ->
+    Field.
+
+rebase_pos({{L, LastL, O}, Length}, Line, Offset) ->
+    {{L-Line, LastL-Line, O-Offset}, Length};
+rebase_pos({{L, O}, Length}, Line, Offset) ->
+    {{L-Line, O-Offset}, Length};
+rebase_pos(Pos, _Line, _Offset) ->
+    Pos.
+
 get_form_pos(#function{pos=Pos}) -> Pos;
 get_form_pos(#attribute{pos=Pos}) -> Pos;
 get_form_pos(#clause{pos=Pos}) -> Pos;
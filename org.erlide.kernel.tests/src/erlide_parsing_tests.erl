@@ -100,6 +100,20 @@ function_comments_only_toplevel_test_() ->
                     []},
                    test_parse(S))].
 
+diff_forms_only_sends_changed_forms_test_() ->
+    {Old, _} = test_parse("f1() ->\n    ok.\nf2() ->\n    ok.\n"),
+    {New, _} = test_parse("%% moved\nf1() ->\n    ok.\nf2() ->\n    nok.\n"),
+    {Twice, _} = test_parse("%% moved\nf1() ->\n    ok.\n\nf1() ->\n    ok.\n"),
+    [{H1, 0, 0, L1, _}, {H2, 2, 16, _, _}] = erlide_np_util:diff_forms(Old, []),
+    [{H1, 1, 9, L1}, {H3, 3, 25, L3, F2}] =
+        erlide_np_util:diff_forms(New, [H1, H2]),
+    [?_assert(H3 =/= H2),
+     ?_assertMatch(#function{name=f2, pos={_, L3}}, F2),
+     ?_assertMatch([{H1, 1, 9, L1}, {H1, 4, 26, L1}],
+                   erlide_np_util:diff_forms(Twice, [H1, H1])),
+     ?_assertMatch([{H1, 1, 9, L1}, {H1, 4, 26, L1, _}],
+                   erlide_np_util:diff_forms(Twice, [H1]))].
+
 %%
 %% Local Functions
 %%
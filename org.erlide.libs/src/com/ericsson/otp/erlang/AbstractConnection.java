@@ -19,10 +19,19 @@
 
 package com.ericsson.otp.erlang;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Maintains a connection between a Java process and a remote Erlang, Java or C
@@ -106,6 +115,22 @@ public abstract class AbstractConnection extends Thread {
 
     private int flags = 0;
 
+    // queue outgoing messages and write them from a separate thread? Sent
+    // buffers must then not be modified after sending.
+    protected static boolean asyncWrites = false;
+    // senders block when this many messages are waiting to be written
+    protected static int sendQueueSize = 1024;
+
+    private static final long SEND_POLL_MS = 100;
+
+    // buffers the writes of one or more messages, flushed after each batch
+    private OutputStream out;
+    private BlockingQueue<OtpOutputStream[]> sendQueue;
+    private Thread writer;
+
+    // packets up to this size are read into a reused buffer
+    private static final int reusedBufSize = 65536;
+
     static {
         // trace this connection?
         final String trace = System.getProperties().getProperty(
@@ -118,6 +143,9 @@ public abstract class AbstractConnection extends Thread {
             defaultLevel = 0;
         }
         random = new Random();
+        asyncWrites = Boolean.getBoolean("OtpConnection.asyncWrites");
+        sendQueueSize = Math.max(1,
+                Integer.getInteger("OtpConnection.sendQueueSize", 1024));
     }
 
     // private AbstractConnection() {
@@ -496,12 +524,27 @@ public abstract class AbstractConnection extends Thread {
         }
 
         final byte[] lbuf = new byte[4];
+        // small packets are read here, their header is decoded in place and
+        // only the payload is copied out
+        final byte[] rbuf = new byte[reusedBufSize];
+        final OtpInputStream hbuf = new OtpInputStream(rbuf, flags);
         OtpInputStream ibuf;
         OtpErlangObject traceobj;
         int len;
         final byte[] tock = { 0, 0, 0, 0 };
+        final OtpOutputStream tockbuf = new OtpOutputStream(tock.length);
+        tockbuf.write(tock, 0, tock.length);
 
         try {
+            final InputStream is;
+            synchronized (this) {
+                if (socket == null) {
+                    throw new IOException("Not connected");
+                }
+                is = new BufferedInputStream(socket.getInputStream(),
+                        reusedBufSize);
+            }
+
             receive_loop:
             while (!done) {
                 // don't return until we get a real message
@@ -511,24 +554,36 @@ public abstract class AbstractConnection extends Thread {
                 do {
                     // read 4 bytes - get length of incoming packet
                     // socket.getInputStream().read(lbuf);
-                    readSock(socket, lbuf);
-                    ibuf = new OtpInputStream(lbuf, flags);
-                    len = ibuf.read4BE();
+                    readSock(is, lbuf, 4);
+                    len = (lbuf[0] & 0xff) << 24 | (lbuf[1] & 0xff) << 16
+                            | (lbuf[2] & 0xff) << 8 | lbuf[3] & 0xff;
 
                     // received tick? send tock!
                     if (len == 0) {
-                        synchronized (this) {
-                            socket.getOutputStream().write(tock);
+                        if (asyncWrites) {
+                            // no need to wait if there are messages queued,
+                            // they will do as well
+                            getSendQueue().offer(
+                                    new OtpOutputStream[] { tockbuf, null });
+                        } else {
+                            synchronized (this) {
+                                socket.getOutputStream().write(tock);
+                            }
                         }
                     }
 
                 } while (len == 0); // tick_loop
 
                 // got a real message (maybe) - read len bytes
-                final byte[] tmpbuf = new byte[len];
-                // i = socket.getInputStream().read(tmpbuf);
-                readSock(socket, tmpbuf);
-                ibuf = new OtpInputStream(tmpbuf, flags);
+                if (len <= rbuf.length) {
+                    readSock(is, rbuf, len);
+                    hbuf.setBuf(rbuf, 0, len);
+                    ibuf = hbuf;
+                } else {
+                    final byte[] tmpbuf = new byte[len];
+                    readSock(is, tmpbuf, len);
+                    ibuf = new OtpInputStream(tmpbuf, flags);
+                }
 
                 if (ibuf.read1() != passThrough) {
                     break receive_loop;
@@ -580,6 +635,11 @@ public abstract class AbstractConnection extends Thread {
                         cookieOk = true;
                     }
 
+                    if (ibuf == hbuf) {
+                        // the payload is decoded later by the receiver
+                        ibuf = hbuf.copyRemaining();
+                    }
+
                     if (traceLevel >= sendThreshold) {
                         System.out.println("<- " + headerType(head) + " "
                                 + head);
@@ -623,6 +683,11 @@ public abstract class AbstractConnection extends Thread {
                         cookieOk = true;
                     }
 
+                    if (ibuf == hbuf) {
+                        // the payload is decoded later by the receiver
+                        ibuf = hbuf.copyRemaining();
+                    }
+
                     if (traceLevel >= sendThreshold) {
                         System.out.println("<- " + headerType(head) + " "
                                 + head);
@@ -777,7 +842,21 @@ public abstract class AbstractConnection extends Thread {
     public void close() {
         done = true;
         connected = false;
+        final Thread w = writer;
+        if (w != null && w != Thread.currentThread()) {
+            w.interrupt();
+        }
         synchronized (this) {
+            out = null;
+            if (sendQueue != null) {
+                // the writer is stopped, waiting senders fail
+                final int dropped = sendQueue.size();
+                sendQueue.clear();
+                if (dropped > 0 && traceLevel >= ctrlThreshold) {
+                    System.out.println("-> DROPPED " + dropped
+                            + " queued message(s)");
+                }
+            }
             try {
                 if (socket != null) {
                     if (traceLevel >= ctrlThreshold) {
@@ -809,53 +888,139 @@ public abstract class AbstractConnection extends Thread {
     }
 
     // used by send and send_reg (message types with payload)
-    protected synchronized void do_send(final OtpOutputStream header,
+    protected void do_send(final OtpOutputStream header,
             final OtpOutputStream payload) throws IOException {
-        try {
-            if (traceLevel >= sendThreshold) {
-                // Need to decode header and output buffer to show trace
-                // message!
-                // First make OtpInputStream, then decode.
+        if (traceLevel >= sendThreshold) {
+            // Need to decode header and output buffer to show trace
+            // message!
+            // First make OtpInputStream, then decode.
+            try {
+                final OtpErlangObject h = header.getOtpInputStream(5)
+                        .read_any();
+                System.out.println("-> " + headerType(h) + " " + h);
+
+                OtpErlangObject o = payload.getOtpInputStream(0).read_any();
+                System.out.println("   " + o);
+                o = null;
+            } catch (final OtpErlangDecodeException e) {
+                System.out.println("   " + "can't decode output buffer:" + e);
+            }
+        }
+        write(header, payload);
+    }
+
+    // used by the other message types
+    protected void do_send(final OtpOutputStream header) throws IOException {
+        if (traceLevel >= ctrlThreshold) {
+            try {
+                final OtpErlangObject h = header.getOtpInputStream(5)
+                        .read_any();
+                System.out.println("-> " + headerType(h) + " " + h);
+            } catch (final OtpErlangDecodeException e) {
+                System.out.println("   " + "can't decode output buffer: " + e);
+            }
+        }
+        write(header, null);
+    }
+
+    /*
+     * Write a message, or queue it for the writer thread when asyncWrites is
+     * set. In that case write errors close the connection and are noticed by
+     * the next send.
+     */
+    private void write(final OtpOutputStream header,
+            final OtpOutputStream payload) throws IOException {
+        if (!asyncWrites) {
+            synchronized (this) {
                 try {
-                    final OtpErlangObject h = header.getOtpInputStream(5)
-                            .read_any();
-                    System.out.println("-> " + headerType(h) + " " + h);
-
-                    OtpErlangObject o = payload.getOtpInputStream(0).read_any();
-                    System.out.println("   " + o);
-                    o = null;
-                } catch (final OtpErlangDecodeException e) {
-                    System.out.println("   " + "can't decode output buffer:"
-                            + e);
+                    final OutputStream os = getOutputStream();
+                    header.writeTo(os);
+                    if (payload != null) {
+                        payload.writeTo(os);
+                    }
+                    os.flush();
+                } catch (final IOException e) {
+                    close();
+                    throw e;
                 }
             }
+            return;
+        }
+        if (done) {
+            throw new IOException("Not connected");
+        }
+        final BlockingQueue<OtpOutputStream[]> queue = getSendQueue();
+        final OtpOutputStream[] msg = new OtpOutputStream[] { header, payload };
+        try {
+            // blocks when the writer falls behind, until it is stopped
+            while (!queue.offer(msg, SEND_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (done) {
+                    throw new IOException("Not connected");
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sending");
+        }
+        // closed meanwhile, the queue will not be drained again
+        if (done && queue.remove(msg)) {
+            throw new IOException("Not connected");
+        }
+    }
 
-            header.writeTo(socket.getOutputStream());
-            payload.writeTo(socket.getOutputStream());
-        } catch (final IOException e) {
-            close();
-            throw e;
+    // must be called with the lock held
+    private OutputStream getOutputStream() throws IOException {
+        if (socket == null) {
+            throw new IOException("Not connected");
+        }
+        if (out == null) {
+            out = new BufferedOutputStream(socket.getOutputStream(), 65536);
         }
+        return out;
     }
 
-    // used by the other message types
-    protected synchronized void do_send(final OtpOutputStream header)
-            throws IOException {
+    private synchronized BlockingQueue<OtpOutputStream[]> getSendQueue() {
+        if (sendQueue == null) {
+            sendQueue = new ArrayBlockingQueue<OtpOutputStream[]>(
+                    sendQueueSize);
+            writer = new Thread("writer " + name) {
+                @Override
+                public void run() {
+                    writeLoop(sendQueue);
+                }
+            };
+            writer.setDaemon(true);
+            writer.start();
+        }
+        return sendQueue;
+    }
+
+    /*
+     * Run by the writer thread: take all messages that are waiting and write
+     * them with as few socket writes as possible.
+     */
+    private void writeLoop(final BlockingQueue<OtpOutputStream[]> queue) {
+        final List<OtpOutputStream[]> batch = new ArrayList<OtpOutputStream[]>();
         try {
-            if (traceLevel >= ctrlThreshold) {
-                try {
-                    final OtpErlangObject h = header.getOtpInputStream(5)
-                            .read_any();
-                    System.out.println("-> " + headerType(h) + " " + h);
-                } catch (final OtpErlangDecodeException e) {
-                    System.out.println("   " + "can't decode output buffer: "
-                            + e);
+            while (!done) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                synchronized (this) {
+                    final OutputStream os = getOutputStream();
+                    for (final OtpOutputStream[] msg : batch) {
+                        msg[0].writeTo(os);
+                        if (msg[1] != null) {
+                            msg[1].writeTo(os);
+                        }
+                    }
+                    os.flush();
                 }
+                batch.clear();
             }
-            header.writeTo(socket.getOutputStream());
+        } catch (final InterruptedException e) {
+            // closed
         } catch (final IOException e) {
             close();
-            throw e;
         }
     }
 
@@ -905,6 +1070,22 @@ public abstract class AbstractConnection extends Thread {
         return "(unknown type)";
     }
 
+    /* read exactly len bytes into b */
+    private void readSock(final InputStream is, final byte[] b, final int len)
+            throws IOException {
+        int got = 0;
+        while (got < len) {
+            final int i = is.read(b, got, len - got);
+            if (i < 0) {
+                throw new IOException("expected " + len
+                        + " bytes, got EOF after " + got + " bytes");
+            } else if (i == 0) {
+                throw new IOException("Remote connection closed");
+            }
+            got += i;
+        }
+    }
+
     /* this method now throws exception if we don't get full read */
     protected int readSock(final Socket s, final byte[] b) throws IOException {
         int got = 0;
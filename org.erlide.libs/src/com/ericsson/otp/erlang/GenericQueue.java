@@ -39,12 +39,24 @@ public class GenericQueue {
         count = 0;
     }
 
+    private static final boolean lockFree = Boolean
+            .getBoolean("GenericQueue.lockFree");
+
     /** Create an empty queue */
     public GenericQueue() {
         init();
         status = open;
     }
 
+    /**
+     * Create an empty queue of the configured kind: a {@link LockFreeQueue}
+     * if the system property <code>GenericQueue.lockFree</code> is true, a
+     * plain GenericQueue otherwise.
+     */
+    public static GenericQueue newQueue() {
+        return lockFree ? new LockFreeQueue() : new GenericQueue();
+    }
+
     /** Clear a queue */
     public void flush() {
         init();
@@ -136,8 +148,9 @@ public class GenericQueue {
         }
     }
 
-    // attempt to retrieve message from queue head
-    public Object tryGet() {
+    // attempt to retrieve message from queue head; synchronized, since it is
+    // also called directly to poll (e.g. OtpMbox.pollMsg)
+    public synchronized Object tryGet() {
         Object o = null;
 
         if (head != null) {
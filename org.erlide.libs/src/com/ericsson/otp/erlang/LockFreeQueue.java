@@ -0,0 +1,148 @@
+/*
+ * %CopyrightBegin%
+ * 
+ * Copyright Ericsson AB 2000-2009. All Rights Reserved.
+ * 
+ * The contents of this file are subject to the Erlang Public License,
+ * Version 1.1, (the "License"); you may not use this file except in
+ * compliance with the License. You should have received a copy of the
+ * Erlang Public License along with this software. If not, it can be
+ * retrieved online at http://www.erlang.org/.
+ * 
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ * 
+ * %CopyrightEnd%
+ */
+package com.ericsson.otp.erlang;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link GenericQueue} where producers never block: {@link #put(Object)
+ * put()} links the new item with a single atomic swap and wakes up a waiting
+ * consumer, if any. Consumers are serialized among themselves, which matches
+ * the usual case of one thread receiving from a mailbox, and park while the
+ * queue is empty.
+ * 
+ * Use {@link GenericQueue#newQueue()} to get an instance, it is selected when
+ * the system property <code>GenericQueue.lockFree</code> is true.
+ */
+public class LockFreeQueue extends GenericQueue {
+
+    private static final class Node {
+        Object contents;
+        volatile Node next;
+
+        Node(final Object contents) {
+            this.contents = contents;
+        }
+    }
+
+    // producers append at tail, the consumer removes after head
+    private final AtomicReference<Node> tail;
+    private Node head;
+    private final AtomicInteger count = new AtomicInteger();
+    private final Object consumerLock = new Object();
+    private volatile Thread waiter;
+
+    public LockFreeQueue() {
+        head = new Node(null);
+        tail = new AtomicReference<Node>(head);
+    }
+
+    @Override
+    public void flush() {
+        synchronized (consumerLock) {
+            while (poll() != null) {
+                // discard
+            }
+        }
+    }
+
+    @Override
+    public void put(final Object o) {
+        final Node n = new Node(o);
+        final Node prev = tail.getAndSet(n);
+        prev.next = n;
+        count.incrementAndGet();
+
+        final Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    @Override
+    public Object get() {
+        synchronized (consumerLock) {
+            Object o;
+            while ((o = poll()) == null) {
+                waiter = Thread.currentThread();
+                if ((o = poll()) != null) {
+                    waiter = null;
+                    return o;
+                }
+                LockSupport.park(this);
+                waiter = null;
+                // interrupts are ignored, like in GenericQueue
+                Thread.interrupted();
+            }
+            return o;
+        }
+    }
+
+    @Override
+    public Object get(final long timeout) throws InterruptedException {
+        synchronized (consumerLock) {
+            final long stopTime = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(timeout);
+            Object o;
+            while ((o = poll()) == null) {
+                final long remaining = stopTime - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new InterruptedException("Get operation timed out");
+                }
+                waiter = Thread.currentThread();
+                if ((o = poll()) != null) {
+                    waiter = null;
+                    return o;
+                }
+                LockSupport.parkNanos(this, remaining);
+                waiter = null;
+                Thread.interrupted();
+            }
+            return o;
+        }
+    }
+
+    @Override
+    public Object tryGet() {
+        synchronized (consumerLock) {
+            return poll();
+        }
+    }
+
+    // must be called with consumerLock held
+    private Object poll() {
+        final Node next = head.next;
+        if (next == null) {
+            return null;
+        }
+        final Object o = next.contents;
+        next.contents = null;
+        head = next;
+        count.decrementAndGet();
+        return o;
+    }
+
+    @Override
+    public int getCount() {
+        return count.get();
+    }
+}
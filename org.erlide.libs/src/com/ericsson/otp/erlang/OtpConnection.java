@@ -67,7 +67,7 @@ public class OtpConnection extends AbstractConnection {
             OtpAuthException {
         super(self, s);
         this.self = self;
-        queue = new GenericQueue();
+        queue = GenericQueue.newQueue();
         start();
     }
 
@@ -85,7 +85,7 @@ public class OtpConnection extends AbstractConnection {
             OtpAuthException {
         super(self, other);
         this.self = self;
-        queue = new GenericQueue();
+        queue = GenericQueue.newQueue();
         start();
     }
 
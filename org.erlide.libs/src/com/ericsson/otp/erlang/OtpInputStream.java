@@ -64,6 +64,25 @@ public class OtpInputStream extends ByteArrayInputStream {
         this.flags = flags;
     }
 
+    /*
+     * Point the stream at new contents, so that it can be reused.
+     */
+    void setBuf(final byte[] buf, final int offset, final int length) {
+        this.buf = buf;
+        pos = offset;
+        mark = offset;
+        count = Math.min(offset + length, buf.length);
+    }
+
+    /*
+     * Get a new stream over a copy of the bytes that have not been read yet.
+     */
+    OtpInputStream copyRemaining() {
+        final byte[] rest = new byte[count - pos];
+        System.arraycopy(buf, pos, rest, 0, rest.length);
+        return new OtpInputStream(rest, flags);
+    }
+
     /**
      * Get the current position in the stream.
      * 
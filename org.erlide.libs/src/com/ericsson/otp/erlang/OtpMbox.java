@@ -82,6 +82,7 @@ public class OtpMbox {
     GenericQueue queue;
     String name;
     Links links;
+    private volatile OtpMboxListener listener;
 
     // package constructor: called by OtpNode:createMbox(name)
     // to create a named mbox
@@ -89,7 +90,7 @@ public class OtpMbox {
         this.self = self;
         this.home = home;
         this.name = name;
-        queue = new GenericQueue();
+        queue = GenericQueue.newQueue();
         links = new Links(10);
     }
 
@@ -317,6 +318,39 @@ public class OtpMbox {
         }
     }
 
+    /**
+     * Get the next message waiting in this mailbox, without blocking.
+     * 
+     * @return an {@link OtpMsg OtpMsg} containing the header information as
+     *         well as the body of the next message waiting in this mailbox, or
+     *         null if the mailbox is empty.
+     * 
+     * @exception OtpErlangExit
+     *                if a linked {@link OtpErlangPid pid} has exited or has
+     *                sent an exit signal to this mailbox.
+     */
+    public OtpMsg pollMsg() throws OtpErlangExit {
+        final OtpMsg m = (OtpMsg) queue.tryGet();
+
+        if (m == null) {
+            return null;
+        }
+
+        switch (m.type()) {
+        case OtpMsg.exitTag:
+        case OtpMsg.exit2Tag:
+            try {
+                final OtpErlangObject o = m.getMsg();
+                throw new OtpErlangExit(o, m.getSenderPid());
+            } catch (final OtpErlangDecodeException e) {
+                throw new OtpErlangExit("unknown", m.getSenderPid());
+            }
+
+        default:
+            return m;
+        }
+    }
+
     /**
      * Send a message to a remote {@link OtpErlangPid pid}, representing either
      * another {@link OtpMbox mailbox} or an Erlang process.
@@ -661,6 +695,30 @@ public class OtpMbox {
         queue.flush();
     }
 
+    /**
+     * <p>
+     * Register a listener to be notified whenever a message is delivered to
+     * this mailbox. Only one listener can be registered; pass null to remove
+     * it.
+     * </p>
+     * 
+     * <p>
+     * If messages are already waiting in the mailbox when the listener is
+     * registered, it is notified immediately, so no delivery can be missed.
+     * The listener may occasionally be notified more than once for the same
+     * message.
+     * </p>
+     * 
+     * @param listener
+     *            the listener to notify, or null.
+     */
+    public void setListener(final OtpMboxListener listener) {
+        this.listener = listener;
+        if (listener != null && queue.getCount() > 0) {
+            listener.messageDelivered(this);
+        }
+    }
+
     /**
      * Determine if two mailboxes are equal.
      * 
@@ -709,6 +767,12 @@ public class OtpMbox {
             queue.put(m);
             break;
         }
+
+        final OtpMboxListener l = listener;
+        if (l != null && m.type() != OtpMsg.linkTag
+                && m.type() != OtpMsg.unlinkTag) {
+            l.messageDelivered(this);
+        }
     }
 
     // used to break all known links to this mbox
@@ -0,0 +1,45 @@
+/*
+ * %CopyrightBegin%
+ * 
+ * Copyright Ericsson AB 2000-2009. All Rights Reserved.
+ * 
+ * The contents of this file are subject to the Erlang Public License,
+ * Version 1.1, (the "License"); you may not use this file except in
+ * compliance with the License. You should have received a copy of the
+ * Erlang Public License along with this software. If not, it can be
+ * retrieved online at http://www.erlang.org/.
+ * 
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ * 
+ * %CopyrightEnd%
+ */
+package com.ericsson.otp.erlang;
+
+/**
+ * <p>
+ * Provides a callback mechanism for being notified when a message has been
+ * queued in a {@link OtpMbox mailbox}. Register an instance with
+ * {@link OtpMbox#setListener(OtpMboxListener) setListener()} when you want to
+ * react to incoming messages without dedicating a thread to a blocking
+ * {@link OtpMbox#receive() receive()}.
+ * </p>
+ * 
+ * <p>
+ * The callback is invoked from the thread that delivers the message (usually
+ * a connection reader thread), so implementations must return quickly and must
+ * not block.
+ * </p>
+ */
+public interface OtpMboxListener {
+
+    /**
+     * Notify that at least one message is available in the mailbox.
+     * 
+     * @param mbox
+     *            the mailbox that received the message.
+     */
+    void messageDelivered(OtpMbox mbox);
+}
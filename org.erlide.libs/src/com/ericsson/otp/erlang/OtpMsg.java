@@ -146,7 +146,7 @@ public class OtpMsg {
      * @return the serialized Erlang term contained in this message.
      * 
      */
-    OtpInputStream getMsgBuf() {
+    public OtpInputStream getMsgBuf() {
         return paybuf;
     }
 
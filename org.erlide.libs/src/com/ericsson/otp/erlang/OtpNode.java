@@ -19,13 +19,17 @@
 package com.ericsson.otp.erlang;
 
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -65,7 +69,7 @@ public class OtpNode extends OtpLocalNode {
     private Acceptor acceptor = null;
 
     // keep track of all connections
-    Hashtable<String, OtpCookedConnection> connections = null;
+    ConcurrentHashMap<String, OtpCookedConnection> connections = null;
 
     // keep track of all mailboxes
     Mailboxes mboxes = null;
@@ -145,8 +149,7 @@ public class OtpNode extends OtpLocalNode {
 
     private synchronized void init(final int port) throws IOException {
         if (!initDone) {
-            connections = new Hashtable<String, OtpCookedConnection>(17,
-                    (float) 0.95);
+            connections = new ConcurrentHashMap<String, OtpCookedConnection>();
             mboxes = new Mailboxes();
             acceptor = new Acceptor(port);
             initDone = true;
@@ -481,8 +484,12 @@ public class OtpNode extends OtpLocalNode {
      */
     OtpCookedConnection getConnection(final String node) {
         OtpPeer peer = null;
-        OtpCookedConnection conn = null;
+        OtpCookedConnection conn = connections.get(node);
 
+        if (conn != null) {
+            return conn;
+        }
+        // creating a connection is serialized, looking it up isn't
         synchronized (connections) {
             // first just try looking up the name as-is
             conn = connections.get(node);
@@ -555,41 +562,40 @@ public class OtpNode extends OtpLocalNode {
     }
 
     /*
-     * this class used to wrap the mailbox hashtables so we can use weak
-     * references
+     * this class used to wrap the mailbox maps so we can use weak references.
+     * Lookups don't lock; references to collected mailboxes are removed from
+     * the maps when they are enqueued, not when they are looked up.
      */
     public class Mailboxes {
         // mbox pids here
-        private Hashtable<OtpErlangPid, WeakReference<OtpMbox>> byPid = null;
+        private final ConcurrentHashMap<OtpErlangPid, MboxRef> byPid;
         // mbox names here
-        private Hashtable<String, WeakReference<OtpMbox>> byName = null;
+        private final ConcurrentHashMap<String, MboxRef> byName;
+        // references to collected mailboxes
+        private final ReferenceQueue<OtpMbox> collected;
 
         public Mailboxes() {
-            byPid = new Hashtable<OtpErlangPid, WeakReference<OtpMbox>>(17,
-                    (float) 0.95);
-            byName = new Hashtable<String, WeakReference<OtpMbox>>(17,
-                    (float) 0.95);
+            byPid = new ConcurrentHashMap<OtpErlangPid, MboxRef>();
+            byName = new ConcurrentHashMap<String, MboxRef>();
+            collected = new ReferenceQueue<OtpMbox>();
         }
 
         public OtpMbox create(final String name) {
-            OtpMbox m = null;
-
-            synchronized (byName) {
-                if (get(name) != null) {
-                    return null;
-                }
-                final OtpErlangPid pid = createPid();
-                m = new OtpMbox(OtpNode.this, pid, name);
-                byPid.put(pid, new WeakReference<OtpMbox>(m));
-                byName.put(name, new WeakReference<OtpMbox>(m));
+            expungeStale();
+            final OtpErlangPid pid = createPid();
+            final OtpMbox m = new OtpMbox(OtpNode.this, pid, name);
+            if (!putName(name, m)) {
+                return null;
             }
+            byPid.put(pid, new MboxRef(pid, m, collected));
             return m;
         }
 
         public OtpMbox create() {
+            expungeStale();
             final OtpErlangPid pid = createPid();
             final OtpMbox m = new OtpMbox(OtpNode.this, pid);
-            byPid.put(pid, new WeakReference<OtpMbox>(m));
+            byPid.put(pid, new MboxRef(pid, m, collected));
             return m;
         }
 
@@ -599,19 +605,13 @@ public class OtpNode extends OtpLocalNode {
         }
 
         public String[] names() {
-            String allnames[] = null;
-
-            synchronized (byName) {
-                final int n = byName.size();
-                final Enumeration<String> keys = byName.keys();
-                allnames = new String[n];
-
-                int i = 0;
-                while (keys.hasMoreElements()) {
-                    allnames[i++] = keys.nextElement();
+            final List<String> allnames = new ArrayList<String>();
+            for (final Map.Entry<String, MboxRef> entry : byName.entrySet()) {
+                if (entry.getValue().get() != null) {
+                    allnames.add(entry.getKey());
                 }
             }
-            return allnames;
+            return allnames.toArray(new String[allnames.size()]);
         }
 
         public boolean register(final String name, final OtpMbox mbox) {
@@ -621,53 +621,47 @@ public class OtpNode extends OtpLocalNode {
                     mbox.name = null;
                 }
             } else {
-                synchronized (byName) {
-                    if (get(name) != null) {
-                        return false;
-                    }
-                    byName.put(name, new WeakReference<OtpMbox>(mbox));
-                    mbox.name = name;
+                if (!putName(name, mbox)) {
+                    return false;
                 }
+                mbox.name = name;
             }
             return true;
         }
 
         /*
-         * look up a mailbox based on its name. If the mailbox has gone out of
-         * scope we also remove the reference from the hashtable so we don't
-         * find it again.
+         * map the name to the mailbox, unless it is used by a live mailbox
          */
-        public OtpMbox get(final String name) {
-            final WeakReference<OtpMbox> wr = byName.get(name);
-
-            if (wr != null) {
-                final OtpMbox m = wr.get();
-
-                if (m != null) {
-                    return m;
+        private boolean putName(final String name, final OtpMbox mbox) {
+            final MboxRef ref = new MboxRef(name, mbox, collected);
+            while (true) {
+                final MboxRef old = byName.putIfAbsent(name, ref);
+                if (old == null) {
+                    return true;
+                }
+                if (old.get() != null) {
+                    return false;
+                }
+                if (byName.replace(name, old, ref)) {
+                    return true;
                 }
-                byName.remove(name);
             }
-            return null;
         }
 
         /*
-         * look up a mailbox based on its pid. If the mailbox has gone out of
-         * scope we also remove the reference from the hashtable so we don't
-         * find it again.
+         * look up a mailbox based on its name.
          */
-        public OtpMbox get(final OtpErlangPid pid) {
-            final WeakReference<OtpMbox> wr = byPid.get(pid);
-
-            if (wr != null) {
-                final OtpMbox m = wr.get();
+        public OtpMbox get(final String name) {
+            final MboxRef wr = byName.get(name);
+            return wr == null ? null : wr.get();
+        }
 
-                if (m != null) {
-                    return m;
-                }
-                byPid.remove(pid);
-            }
-            return null;
+        /*
+         * look up a mailbox based on its pid.
+         */
+        public OtpMbox get(final OtpErlangPid pid) {
+            final MboxRef wr = byPid.get(pid);
+            return wr == null ? null : wr.get();
         }
 
         public void remove(final OtpMbox mbox) {
@@ -675,6 +669,34 @@ public class OtpNode extends OtpLocalNode {
             if (mbox.name != null) {
                 byName.remove(mbox.name);
             }
+            expungeStale();
+        }
+
+        /*
+         * drop the entries of mailboxes that have gone out of scope. Only
+         * the entry holding the collected reference is removed, the key may
+         * have been reused meanwhile.
+         */
+        private void expungeStale() {
+            Reference<? extends OtpMbox> r;
+            while ((r = collected.poll()) != null) {
+                final MboxRef ref = (MboxRef) r;
+                if (ref.key instanceof String) {
+                    byName.remove(ref.key, ref);
+                } else {
+                    byPid.remove(ref.key, ref);
+                }
+            }
+        }
+    }
+
+    private static final class MboxRef extends WeakReference<OtpMbox> {
+        final Object key;
+
+        MboxRef(final Object key, final OtpMbox mbox,
+                final ReferenceQueue<OtpMbox> queue) {
+            super(mbox, queue);
+            this.key = key;
         }
     }
 
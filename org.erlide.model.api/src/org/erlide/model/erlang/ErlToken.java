@@ -53,6 +53,14 @@ public final class ErlToken {
         length = int24(bytes, index + 7);
     }
 
+    public ErlToken(final int kind, final int line, final int offset,
+            final int length) {
+        this.kind = kind;
+        this.line = line;
+        this.offset = offset;
+        this.length = length;
+    }
+
     private int int24(final byte[] bytes, final int index) {
         return (0xff & bytes[index]) << 16 | (0xff & bytes[index + 1]) << 8
                 | 0xff & bytes[index + 2];
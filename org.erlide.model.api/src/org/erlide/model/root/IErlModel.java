@@ -153,6 +153,15 @@ public interface IErlModel extends IErlElement, IOpenable, IParent,
 
     void registerModelDelta(IErlElementDelta delta);
 
+    /**
+     * Notifies element changed listeners of a delta computed by the model
+     * itself, like the fine-grained delta of reconciling a module.
+     * 
+     * @param delta
+     *            the delta
+     */
+    void fireElementChanged(IErlElementDelta delta);
+
     IErlModule getModuleFromFile(IParent parent, String name,
             String initialText, String path, String key);
 
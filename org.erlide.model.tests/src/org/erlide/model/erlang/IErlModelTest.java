@@ -171,6 +171,24 @@ public class IErlModelTest extends ErlModelTestBase {
         assertEquals(module, findModule2);
     }
 
+    @Test
+    public void findModule_afterAddAndDelete() throws Exception {
+        // given
+        // a lookup that has indexed the modules of the projects
+        assertNull(model.findModule("ww"));
+        // when
+        // adding and then deleting a module
+        final IErlModule module2 = ErlideTestUtils.createModule(projects[1],
+                "ww.erl", "-module(ww).\n");
+        final IErlModule findModule = model.findModule("ww");
+        ErlideTestUtils.deleteModule(module2);
+        final IErlModule findModule2 = model.findModule("ww");
+        // then
+        // the lookups should see the changes
+        assertEquals(module2, findModule);
+        assertNull(findModule2);
+    }
+
     // IErlModule findModule(String moduleName, String modulePath)
     // throws ErlModelException;
     @Test
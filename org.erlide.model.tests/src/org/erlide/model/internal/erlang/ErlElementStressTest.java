@@ -0,0 +1,120 @@
+package org.erlide.model.internal.erlang;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.erlide.model.root.IErlElement;
+import org.erlide.model.root.IErlElement.Kind;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Reads and replaces the children of many modules from several threads at
+ * once, as the reconciler, outline, builder and search do, checking that
+ * readers always see a complete set of children. When the system property
+ * <code>erlide.benchmarks</code> is set, it runs longer and prints the
+ * throughput.
+ */
+public class ErlElementStressTest {
+
+    private static final int MODULES = 2000;
+    private static final int CHILDREN = 50;
+    private static final int READERS = 6;
+    private static final int WRITERS = 2;
+    private static final boolean BENCHMARK = Boolean
+            .getBoolean("erlide.benchmarks");
+    private static final long DURATION = BENCHMARK ? 1000 : 100;
+
+    private List<ErlModule> modules;
+
+    @Before
+    public void setUp() {
+        modules = Lists.newArrayList();
+        for (int i = 0; i < MODULES; i++) {
+            final ErlModule module = new ErlModule(null, "m" + i + ".erl",
+                    "", null, null);
+            module.setChildren(makeChildren(module, 0));
+            modules.add(module);
+        }
+    }
+
+    private static List<IErlElement> makeChildren(final ErlModule module,
+            final int version) {
+        final List<IErlElement> result = Lists.newArrayList();
+        for (int i = 0; i < CHILDREN; i++) {
+            result.add(new ErlAttribute(module, "a" + i, null, "v" + version));
+        }
+        return result;
+    }
+
+    @Test
+    public void concurrentReadersAndWriters() throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicLong reads = new AtomicLong();
+        final AtomicLong writes = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(READERS + WRITERS);
+        final long end = System.currentTimeMillis() + DURATION;
+        for (int t = 0; t < READERS + WRITERS; t++) {
+            final boolean writer = t < WRITERS;
+            final Random random = new Random(t);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long n = 0;
+                        while (System.currentTimeMillis() < end) {
+                            final ErlModule module = modules.get(random
+                                    .nextInt(MODULES));
+                            if (writer) {
+                                module.setChildren(makeChildren(module,
+                                        (int) n));
+                            } else {
+                                read(module, random);
+                            }
+                            n++;
+                        }
+                        (writer ? writes : reads).addAndGet(n);
+                    } catch (final Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        done.await();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        if (BENCHMARK) {
+            System.out.println(String.format(
+                    "%d modules, %d readers, %d writers: %.0f reads/s, %.0f writes/s",
+                    MODULES, READERS, WRITERS, reads.get() * 1000.0 / DURATION,
+                    writes.get() * 1000.0 / DURATION));
+        }
+        assertTrue(reads.get() > 0);
+        assertTrue(writes.get() > 0);
+    }
+
+    private static void read(final ErlModule module, final Random random)
+            throws Exception {
+        final String name = "a" + random.nextInt(CHILDREN);
+        assertEquals(name, module.getChildNamed(name).getName());
+        assertEquals(CHILDREN, module.getChildren().size());
+        assertEquals(CHILDREN, module.getChildrenOfKind(Kind.ATTRIBUTE).size());
+        int count = 0;
+        for (final IErlElement child : module.getChildren()) {
+            if (child.getKind() == Kind.ATTRIBUTE) {
+                count++;
+            }
+        }
+        assertEquals(CHILDREN, count);
+    }
+}
@@ -0,0 +1,68 @@
+package org.erlide.model.internal.erlang;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Measures the time to tokenize after a keystroke in a 20000 line module,
+ * both for the edited line only and for the whole module (as when the
+ * partitioning changes). Only runs when the system property
+ * <code>erlide.benchmarks</code> is set.
+ */
+public class ErlLexerBenchmark {
+
+    private static final int LINES = 20000;
+    private static final int KEYSTROKES = 200;
+
+    private String text;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        final StringBuilder b = new StringBuilder(
+                "-module(big).\n-export([f/2]).\n");
+        for (int i = 0; i < LINES / 3; i++) {
+            b.append("%% clause ").append(i).append('\n');
+            b.append("f(").append(i).append(", X) when X > ?LIMIT ->\n");
+            b.append("    {ok, lists:reverse([X, ").append(i)
+                    .append(", 1.5, $a, 'q', \"str\"])};\n");
+        }
+        b.append("f(_, _) -> error.\n");
+        text = b.toString();
+    }
+
+    @Test
+    public void keystrokeLatency() {
+        final ErlLexer lexer = new ErlLexer();
+        long start = System.nanoTime();
+        final int tokens = lexer.scan(text, 0).size();
+        final long cold = System.nanoTime() - start;
+        assertTrue(tokens > LINES);
+
+        final int middle = text.indexOf('\n', text.length() / 2) + 1;
+        final int lineEnd = text.indexOf('\n', middle) + 1;
+        long lineTime = 0;
+        long documentTime = 0;
+        String edited = text;
+        for (int k = 0; k < KEYSTROKES; k++) {
+            // type one character at the start of the line
+            edited = edited.substring(0, middle) + (char) ('a' + k % 26)
+                    + edited.substring(middle);
+            final String line = edited.substring(middle, lineEnd + k + 1);
+            start = System.nanoTime();
+            lexer.scan(line, middle);
+            lineTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            lexer.scan(edited, 0);
+            documentTime += System.nanoTime() - start;
+        }
+        System.out.println(String.format(
+                "%d lines, %d tokens: cold scan %.1f ms, per keystroke: "
+                        + "line %.3f ms, whole module %.1f ms", LINES,
+                tokens, cold / 1e6, lineTime / 1e6 / KEYSTROKES,
+                documentTime / 1e6 / KEYSTROKES));
+    }
+}
@@ -0,0 +1,106 @@
+package org.erlide.model.internal.erlang;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.erlide.model.erlang.ErlToken;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ErlLexerTest {
+
+    private ErlLexer lexer;
+
+    @Before
+    public void setUp() {
+        lexer = new ErlLexer();
+    }
+
+    private void check(final String text, final int... expected) {
+        final List<ErlToken> tokens = lexer.scan(text, 0);
+        final StringBuilder actual = new StringBuilder();
+        for (final ErlToken token : tokens) {
+            actual.append(token.getKind()).append('/')
+                    .append(token.getOffset()).append('+')
+                    .append(token.getLength()).append(' ');
+        }
+        final StringBuilder wanted = new StringBuilder();
+        for (int i = 0; i < expected.length; i += 3) {
+            wanted.append(expected[i]).append('/').append(expected[i + 1])
+                    .append('+').append(expected[i + 2]).append(' ');
+        }
+        assertEquals(wanted.toString(), actual.toString());
+    }
+
+    @Test
+    public void simpleFunction() {
+        // same as erlide_scanner_tests:scanner_light_scan_string_test_/0
+        check("a() -> b.", ErlToken.KIND_ATOM, 0, 1, '(', 1, 1, ')', 2, 1,
+                ErlToken.KIND_WHITESPACE, 3, 1, ErlToken.KIND_ARROW, 4, 2,
+                ErlToken.KIND_WHITESPACE, 6, 1, ErlToken.KIND_ATOM, 7, 1,
+                ErlToken.KIND_OTHER, 8, 1);
+    }
+
+    @Test
+    public void keywordsAndVariables() {
+        check("case X of _ -> end", ErlToken.KIND_KEYWORD, 0, 4,
+                ErlToken.KIND_WHITESPACE, 4, 1, ErlToken.KIND_VAR, 5, 1,
+                ErlToken.KIND_WHITESPACE, 6, 1, ErlToken.KIND_KEYWORD, 7, 2,
+                ErlToken.KIND_WHITESPACE, 9, 1, ErlToken.KIND_VAR, 10, 1,
+                ErlToken.KIND_WHITESPACE, 11, 1, ErlToken.KIND_ARROW, 12, 2,
+                ErlToken.KIND_WHITESPACE, 14, 1, ErlToken.KIND_KEYWORD, 15, 3);
+    }
+
+    @Test
+    public void numbersAndChars() {
+        check("1.5e-3 16#ff $a $\\n 7", ErlToken.KIND_FLOAT, 0, 6,
+                ErlToken.KIND_WHITESPACE, 6, 1, ErlToken.KIND_INTEGER, 7, 5,
+                ErlToken.KIND_WHITESPACE, 12, 1, ErlToken.KIND_CHAR, 13, 2,
+                ErlToken.KIND_WHITESPACE, 15, 1, ErlToken.KIND_CHAR, 16, 3,
+                ErlToken.KIND_WHITESPACE, 19, 1, ErlToken.KIND_INTEGER, 20, 1);
+    }
+
+    @Test
+    public void macros() {
+        check("?MOD ?'m' ??X ?case", ErlToken.KIND_MACRO, 0, 4,
+                ErlToken.KIND_WHITESPACE, 4, 1, ErlToken.KIND_MACRO, 5, 4,
+                ErlToken.KIND_WHITESPACE, 9, 1, '?', 10, 1, '?', 11, 1,
+                ErlToken.KIND_VAR, 12, 1, ErlToken.KIND_WHITESPACE, 13, 1,
+                '?', 14, 1, ErlToken.KIND_KEYWORD, 15, 4);
+    }
+
+    @Test
+    public void commentsAndNewlines() {
+        check("x. % hi\ny", ErlToken.KIND_ATOM, 0, 1, ErlToken.KIND_OTHER, 1,
+                1, ErlToken.KIND_WHITESPACE, 2, 1, ErlToken.KIND_COMMENT, 3, 4,
+                ErlToken.KIND_WHITESPACE, 7, 1, ErlToken.KIND_ATOM, 8, 1);
+    }
+
+    @Test
+    public void operators() {
+        check("A=:=B", ErlToken.KIND_VAR, 0, 1, ErlToken.KIND_OTHER, 1, 3,
+                ErlToken.KIND_VAR, 4, 1);
+    }
+
+    @Test
+    public void stringSpanningLines() {
+        check("f(\"a\\\"\nb\") ", ErlToken.KIND_ATOM, 0, 1, '(', 1, 1,
+                ErlToken.KIND_STRING, 2, 5, ErlToken.KIND_STRING, 7, 2, ')',
+                9, 1, ErlToken.KIND_WHITESPACE, 10, 1);
+    }
+
+    @Test
+    public void rescanAfterEdit() {
+        final String text = "f() ->\n    \"x\n    y\".\n";
+        final List<ErlToken> before = lexer.scan(text, 0);
+        final String edited = "g() ->\n    \"x\n    y\".\n";
+        final List<ErlToken> after = lexer.scan(edited, 100);
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i).getKind(), after.get(i).getKind());
+            assertEquals(before.get(i).getOffset() + 100, after.get(i)
+                    .getOffset());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.erlide.model.internal.erlang;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.erlide.model.root.IErlElement;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+/**
+ * Checks how {@link ErlParser#patchStructure} reuses the members of the forms
+ * that the backend reports as known.
+ */
+public class ErlParserPatchTest {
+
+    private static final OtpErlangList NO_COMMENTS = new OtpErlangList();
+
+    private ErlParser parser;
+    private ErlModule module;
+
+    @Before
+    public void setUp() {
+        parser = new ErlParser(null);
+        module = new ErlModule(null, "m.erl", "", null, null);
+    }
+
+    private static OtpErlangLong l(final int i) {
+        return new OtpErlangLong(i);
+    }
+
+    /**
+     * <code>{Hash, Line, Offset, Length, Form}</code>, the form being a
+     * one-line attribute
+     */
+    private static OtpErlangTuple newForm(final int hash, final String name,
+            final int line, final int offset, final int length) {
+        final OtpErlangTuple pos = new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangTuple(new OtpErlangObject[] { l(line), l(line),
+                        l(offset) }), l(length) });
+        final OtpErlangTuple attribute = new OtpErlangTuple(
+                new OtpErlangObject[] { new OtpErlangAtom("attribute"), pos,
+                        new OtpErlangAtom(name), new OtpErlangAtom("u"),
+                        new OtpErlangString(name) });
+        return new OtpErlangTuple(new OtpErlangObject[] { l(hash), l(line),
+                l(offset), l(length), attribute });
+    }
+
+    /**
+     * <code>{Hash, Line, Offset, Length}</code>
+     */
+    private static OtpErlangTuple knownForm(final int hash, final int line,
+            final int offset, final int length) {
+        return new OtpErlangTuple(new OtpErlangObject[] { l(hash), l(line),
+                l(offset), l(length) });
+    }
+
+    private static OtpErlangList forms(final OtpErlangTuple... forms) {
+        return new OtpErlangList(forms);
+    }
+
+    private List<IErlElement> parseAB() throws Exception {
+        assertNotNull(parser.patchStructure(module, null,
+                forms(newForm(1, "a", 0, 0, 10), newForm(2, "b", 1, 11, 10)),
+                NO_COMMENTS));
+        final List<IErlElement> children = module.getChildren();
+        assertEquals(2, children.size());
+        return children;
+    }
+
+    private static int offsetOf(final IErlElement element) {
+        return ((SourceRefElement) element).getSourceRange().getOffset();
+    }
+
+    @Test
+    public void knownFormsAreKeptAndShifted() throws Exception {
+        final List<IErlElement> ab = parseAB();
+        assertNotNull(parser.patchStructure(module, module.getParsedForms(),
+                forms(newForm(3, "c", 0, 0, 5), knownForm(1, 1, 6, 10),
+                        knownForm(2, 2, 17, 10)), NO_COMMENTS));
+        final List<IErlElement> children = module.getChildren();
+        assertEquals(3, children.size());
+        assertSame(ab.get(0), children.get(1));
+        assertSame(ab.get(1), children.get(2));
+        assertEquals(6, offsetOf(children.get(1)));
+        assertEquals(1, ((SourceRefElement) children.get(1)).getLineStart());
+        assertEquals(17, offsetOf(children.get(2)));
+    }
+
+    @Test
+    public void unknownHashIsRejected() throws Exception {
+        final List<IErlElement> ab = parseAB();
+        assertNull(parser.patchStructure(module, module.getParsedForms(),
+                forms(knownForm(1, 0, 0, 10), knownForm(7, 1, 11, 10)),
+                NO_COMMENTS));
+        assertEquals(ab, module.getChildren());
+    }
+
+    @Test
+    public void sameHashWithOtherLengthIsRejected() throws Exception {
+        final List<IErlElement> ab = parseAB();
+        // b moved, but a only has the same hash as a form of another length
+        assertNull(parser.patchStructure(module, module.getParsedForms(),
+                forms(knownForm(2, 5, 50, 10), knownForm(1, 6, 61, 12)),
+                NO_COMMENTS));
+        assertEquals(ab, module.getChildren());
+        // nothing was shifted before the mismatch was found
+        assertEquals(11, offsetOf(ab.get(1)));
+        assertEquals(0, offsetOf(ab.get(0)));
+    }
+
+    @Test
+    public void knownFormsNeedPreviousForms() throws Exception {
+        parseAB();
+        assertNull(parser.patchStructure(module, null,
+                forms(knownForm(1, 0, 0, 10)), NO_COMMENTS));
+    }
+}
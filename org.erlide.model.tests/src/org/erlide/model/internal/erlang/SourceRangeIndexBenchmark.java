@@ -0,0 +1,80 @@
+package org.erlide.model.internal.erlang;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.util.Random;
+
+import org.erlide.model.erlang.ISourceReference;
+import org.erlide.model.root.IErlElement;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares looking up the element at random offsets and lines of a module
+ * with 5000 functions (about 10000 clauses) through {@link SourceRangeIndex}
+ * and by walking the tree, as caret moves do. Only runs when the system
+ * property <code>erlide.benchmarks</code> is set.
+ */
+public class SourceRangeIndexBenchmark {
+
+    private static final int FUNCTIONS = 5000;
+    private static final int LOOKUPS = 20000;
+
+    private ErlModule module;
+    private int endOffset;
+    private int endLine;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        module = new ErlModule(null, "big.erl", "", null, null);
+        SourceRangeIndexTest.addFunctions(module, FUNCTIONS, 3,
+                new Random(42));
+        final ISourceReference last = (ISourceReference) module.getChildren()
+                .get(FUNCTIONS - 1);
+        endOffset = last.getSourceRange().getOffset() + 200;
+        endLine = last.getLineEnd() + 10;
+    }
+
+    @Test
+    public void lookups() throws Exception {
+        long start = System.nanoTime();
+        final SourceRangeIndex index = new SourceRangeIndex(module);
+        final long build = System.nanoTime() - start;
+
+        final Random random = new Random(1);
+        final int[] offsets = new int[LOOKUPS];
+        final int[] lines = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            offsets[i] = random.nextInt(endOffset);
+            lines[i] = random.nextInt(endLine);
+        }
+
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            final IErlElement e = SourceRangeIndexTest.walkToOffset(module,
+                    offsets[i]);
+            final IErlElement l = SourceRangeIndexTest.walkToLine(module,
+                    lines[i]);
+            found += (e == null ? 0 : 1) + (l == null ? 0 : 1);
+        }
+        final long walk = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int indexed = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            final IErlElement e = index.getElementAt(offsets[i]);
+            final IErlElement l = index.getElementAtLine(lines[i]);
+            indexed += (e == null ? 0 : 1) + (l == null ? 0 : 1);
+        }
+        final long lookup = System.nanoTime() - start;
+        assertEquals(found, indexed);
+
+        System.out.println(String.format(
+                "%d elements: build index %.1f ms, per offset+line lookup: "
+                        + "tree walk %.1f us, index %.2f us", index.size(),
+                build / 1e6, walk / 1e3 / LOOKUPS, lookup / 1e3 / LOOKUPS));
+    }
+}
@@ -0,0 +1,184 @@
+package org.erlide.model.internal.erlang;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+
+import org.erlide.model.ErlModelException;
+import org.erlide.model.IParent;
+import org.erlide.model.erlang.ISourceReference;
+import org.erlide.model.root.IErlElement;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.google.common.collect.Lists;
+
+/**
+ * Checks that {@link SourceRangeIndex} finds the same elements as walking the
+ * module tree.
+ */
+public class SourceRangeIndexTest {
+
+    private ErlModule module;
+
+    @Before
+    public void setUp() {
+        module = new ErlModule(null, "m.erl", "", null, null);
+    }
+
+    /**
+     * Builds a module whose functions have one to three clauses, each clause
+     * <code>clauseLines</code> lines long. As from the parser, the range of a
+     * function is the range of its first clause.
+     */
+    static void addFunctions(final ErlModule module, final int functions,
+            final int clauseLines, final Random random) {
+        final List<IErlElement> children = Lists.newArrayList();
+        int offset = 0;
+        int line = 0;
+        for (int i = 0; i < functions; i++) {
+            final ErlFunction f = new ErlFunction(module, "f" + i, 1, "",
+                    false, new OtpErlangList());
+            final int clauses = 1 + random.nextInt(3);
+            final List<ErlFunctionClause> cls = Lists.newArrayList();
+            for (int c = 0; c < clauses; c++) {
+                final ErlFunctionClause cl = new ErlFunctionClause(f, "#" + c,
+                        "", new OtpErlangList());
+                final int length = 20 + random.nextInt(60);
+                setPos(cl, line, line + clauseLines - 1, offset, length);
+                if (c == 0) {
+                    setPos(f, line, line + clauseLines - 1, offset, length);
+                }
+                offset += length + 1;
+                line += clauseLines;
+                cls.add(cl);
+            }
+            f.setChildren(cls);
+            children.add(f);
+            // blank line between functions
+            offset += 1;
+            line += 1;
+        }
+        module.setChildren(children);
+    }
+
+    private static void setPos(final SourceRefElement e, final int line,
+            final int lastLine, final int offset, final int length) {
+        e.setSourceRangeOffset(offset);
+        e.setSourceRangeLength(length);
+        e.setLineStart(line);
+        e.setLineEnd(lastLine);
+    }
+
+    /**
+     * The first element in post-order whose range holds the offset, like
+     * <code>ErlModel.innermostThat</code>.
+     */
+    static IErlElement walkToOffset(final IErlElement element,
+            final int offset) throws ErlModelException {
+        if (element instanceof IParent) {
+            for (final IErlElement child : ((IParent) element).getChildren()) {
+                final IErlElement e = walkToOffset(child, offset);
+                if (e != null) {
+                    return e;
+                }
+            }
+        }
+        if (element instanceof ISourceReference
+                && ((ISourceReference) element).getSourceRange().hasPosition(
+                        offset)) {
+            return element;
+        }
+        return null;
+    }
+
+    static IErlElement walkToLine(final IErlElement element, final int line)
+            throws ErlModelException {
+        if (element instanceof IParent) {
+            for (final IErlElement child : ((IParent) element).getChildren()) {
+                final IErlElement e = walkToLine(child, line);
+                if (e != null) {
+                    return e;
+                }
+            }
+        }
+        if (element instanceof ISourceReference) {
+            final ISourceReference ref = (ISourceReference) element;
+            if (ref.getLineStart() <= line && ref.getLineEnd() >= line) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void emptyModule() throws Exception {
+        final SourceRangeIndex index = new SourceRangeIndex(module);
+        assertEquals(0, index.size());
+        assertNull(index.getElementAt(0));
+        assertNull(index.getElementAtLine(0));
+    }
+
+    @Test
+    public void findsClausesOfFunctions() throws Exception {
+        final ErlFunction f = new ErlFunction(module, "f", 1, "", false,
+                new OtpErlangList());
+        final ErlFunctionClause c0 = new ErlFunctionClause(f, "#0", "",
+                new OtpErlangList());
+        final ErlFunctionClause c1 = new ErlFunctionClause(f, "#1", "",
+                new OtpErlangList());
+        setPos(f, 0, 1, 0, 10);
+        setPos(c0, 0, 1, 0, 10);
+        setPos(c1, 2, 3, 11, 10);
+        f.setChildren(Lists.newArrayList(c0, c1));
+        final ErlAttribute a = new ErlAttribute(module, "a", null, "");
+        setPos(a, 4, 4, 21, 5);
+        module.setChildren(Lists.<IErlElement> newArrayList(f, a));
+
+        final SourceRangeIndex index = new SourceRangeIndex(module);
+        assertEquals(4, index.size());
+        assertSame(c0, index.getElementAt(5));
+        assertSame(c1, index.getElementAt(15));
+        // ranges include their end, so the first one wins on the border
+        assertSame(c0, index.getElementAt(10));
+        assertSame(c1, index.getElementAt(21));
+        assertSame(a, index.getElementAt(22));
+        assertNull(index.getElementAt(27));
+        assertSame(c0, index.getElementAtLine(1));
+        assertSame(c1, index.getElementAtLine(3));
+        assertSame(a, index.getElementAtLine(4));
+        assertNull(index.getElementAtLine(5));
+    }
+
+    @Test
+    public void sameAsWalkingTheTree() throws Exception {
+        final Random random = new Random(17);
+        addFunctions(module, 500, 2, random);
+        final SourceRangeIndex index = new SourceRangeIndex(module);
+        final ISourceReference last = (ISourceReference) module.getChildren()
+                .get(499);
+        final int end = last.getSourceRange().getOffset() + 1000;
+        for (int offset = -1; offset < end; offset++) {
+            assertSame(walkToOffset(module, offset),
+                    index.getElementAt(offset));
+        }
+        for (int line = -1; line < last.getLineEnd() + 10; line++) {
+            assertSame(walkToLine(module, line), index.getElementAtLine(line));
+        }
+    }
+
+    @Test
+    public void moduleFollowsReplacedChildren() throws Exception {
+        addFunctions(module, 10, 2, new Random(17));
+        final IErlElement before = module.getElementAt(5);
+        assertSame(walkToOffset(module, 5), before);
+        // no clearCaches here: the index must not outlive its children
+        addFunctions(module, 10, 2, new Random(17));
+        final IErlElement after = module.getElementAt(5);
+        assertNotNull(after);
+        assertNotSame(before, after);
+        assertSame(walkToOffset(module, 5), after);
+    }
+}
@@ -0,0 +1,113 @@
+package org.erlide.model.internal.root;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.erlide.model.services.search.ErlideOpen.ExternalTreeEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+public class ModelIndexFileTest {
+
+    private File dir;
+    private File indexFile;
+    private File module;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("modelindex", "");
+        dir.delete();
+        dir.mkdirs();
+        indexFile = new File(dir, "p.index");
+        final File src = new File(dir, "src");
+        src.mkdirs();
+        module = new File(src, "m.erl");
+        FileUtils.writeStringToFile(module, "-module(m).\n");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static OtpErlangList forms() {
+        return new OtpErlangList(new OtpErlangAtom("form"));
+    }
+
+    @Test
+    public void entriesSurviveWriteAndLoad() throws IOException {
+        final ModelIndexFile index = ModelIndexFile.load(indexFile);
+        assertTrue(index.isEmpty());
+        final String src = module.getParent();
+        index.putModule(module.getPath(), forms(), new OtpErlangList());
+        index.putIncludesInDir(src, Arrays.asList("a.hrl", "b.hrl"));
+        index.putExternalTree(src, Arrays.asList(new ExternalTreeEntry(
+                "root", src, false), new ExternalTreeEntry(src, module
+                .getPath(), true)));
+        assertTrue(index.isDirty());
+        index.write(indexFile);
+        assertFalse(index.isDirty());
+
+        final ModelIndexFile loaded = ModelIndexFile.load(indexFile);
+        final OtpErlangTuple entry = loaded.getModule(module.getPath());
+        assertEquals(forms(), entry.elementAt(0));
+        assertEquals(new OtpErlangList(), entry.elementAt(1));
+        assertEquals(Arrays.asList("a.hrl", "b.hrl"),
+                loaded.getIncludesInDir(src));
+        final List<ExternalTreeEntry> tree = loaded.getExternalTree(src);
+        assertEquals(2, tree.size());
+        assertFalse(tree.get(0).isModule());
+        assertEquals(module.getPath(), tree.get(1).getPath());
+        assertTrue(tree.get(1).isModule());
+    }
+
+    @Test
+    public void changedFilesInvalidateEntries() throws IOException {
+        final ModelIndexFile index = ModelIndexFile.load(indexFile);
+        final String src = module.getParent();
+        index.putModule(module.getPath(), forms(), new OtpErlangList());
+        index.putIncludesInDir(src, Arrays.asList("a.hrl"));
+        assertNotNull(index.getModule(module.getPath()));
+        module.setLastModified(module.lastModified() - 10000);
+        assertNull(index.getModule(module.getPath()));
+        assertNotNull(index.getIncludesInDir(src));
+        new File(src).setLastModified(new File(src).lastModified() - 10000);
+        assertNull(index.getIncludesInDir(src));
+    }
+
+    @Test
+    public void removedModulesAreDroppedOnWrite() throws IOException {
+        final ModelIndexFile index = ModelIndexFile.load(indexFile);
+        index.putModule(module.getPath(), forms(), new OtpErlangList());
+        module.delete();
+        index.write(indexFile);
+        assertTrue(ModelIndexFile.load(indexFile).isEmpty());
+    }
+
+    @Test
+    public void otherVersionsAreIgnored() throws IOException {
+        final ModelIndexFile index = ModelIndexFile.load(indexFile);
+        index.putModule(module.getPath(), forms(), new OtpErlangList());
+        index.write(indexFile);
+        final byte[] data = FileUtils.readFileToByteArray(indexFile);
+        data[7] = (byte) (ModelIndexFile.VERSION + 1);
+        final FileOutputStream out = new FileOutputStream(indexFile);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        assertTrue(ModelIndexFile.load(indexFile).isEmpty());
+    }
+}
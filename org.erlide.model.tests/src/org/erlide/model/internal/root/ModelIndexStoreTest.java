@@ -0,0 +1,70 @@
+package org.erlide.model.internal.root;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+
+public class ModelIndexStoreTest {
+
+    private File dir;
+    private String module;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("modelindex", "");
+        dir.delete();
+        dir.mkdirs();
+        final File src = new File(dir, "src");
+        src.mkdirs();
+        final File file = new File(src, "m.erl");
+        FileUtils.writeStringToFile(file, "-module(m).\n");
+        module = file.getPath();
+    }
+
+    private static OtpErlangList forms() {
+        return new OtpErlangList(new OtpErlangAtom("form"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private void writeIndex(final String projectName) throws IOException {
+        final ModelIndexFile index = ModelIndexFile.load(new File(dir,
+                projectName + ".index"));
+        index.putModule(module, forms(), new OtpErlangList());
+        index.write(new File(dir, projectName + ".index"));
+    }
+
+    @Test
+    public void indexesOfRemovedProjectsAreDeleted() throws IOException {
+        writeIndex("kept");
+        writeIndex("removed");
+        final ModelIndexStore store = new ModelIndexStore(dir, false);
+        store.loadAll(Arrays.asList("kept"));
+        assertTrue(new File(dir, "kept.index").isFile());
+        assertFalse(new File(dir, "removed.index").exists());
+    }
+
+    @Test
+    public void stopWritesChangedIndexes() throws IOException {
+        final ModelIndexStore store = new ModelIndexStore(dir, false);
+        final ModelIndexFile index = store.getIndex("p");
+        index.putModule(module, forms(), new OtpErlangList());
+        store.changed();
+        store.stop();
+        assertFalse(index.isDirty());
+        assertFalse(ModelIndexFile.load(new File(dir, "p.index")).isEmpty());
+    }
+}
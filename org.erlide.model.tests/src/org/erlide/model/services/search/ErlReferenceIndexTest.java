@@ -0,0 +1,112 @@
+package org.erlide.model.services.search;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlang;
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+public class ErlReferenceIndexTest {
+
+    private static final String PATH = "/ws/p/src/m.erl";
+
+    private static OtpErlangAtom atom(final String name) {
+        return new OtpErlangAtom(name);
+    }
+
+    private static OtpErlangTuple ref(final OtpErlangObject data,
+            final int offset, final String function, final int arity,
+            final String clause) {
+        // #ref{data, offset, length, function, arity, clause, sub_clause}
+        return OtpErlang.mkTuple(atom("ref"), data, new OtpErlangLong(offset),
+                new OtpErlangLong(3), atom(function), new OtpErlangLong(arity),
+                new OtpErlangString(clause), atom("false"));
+    }
+
+    private static OtpErlangList refs() {
+        return new OtpErlangList(new OtpErlangObject[] {
+                ref(OtpErlang.mkTuple(atom("function_def"), atom("f"),
+                        new OtpErlangLong(1)), 10, "f", 1, "f(X)"),
+                ref(OtpErlang.mkTuple(atom("var_def"), atom("X")), 12, "f",
+                        1, "f(X)"),
+                ref(OtpErlang.mkTuple(atom("local_call"), atom("f"),
+                        new OtpErlangLong(1)), 20, "g", 0, "g()"),
+                ref(OtpErlang.mkTuple(atom("var_ref"), atom("X")), 30, "f",
+                        1, "f(X)"),
+                ref(OtpErlang.mkTuple(atom("var_ref"), atom("X")), 40, "g",
+                        0, "g()"),
+                ref(OtpErlang.mkTuple(atom("record_ref"), atom("r")), 50,
+                        "g", 0, "g()") });
+    }
+
+    private static int[] offsets(final OtpErlangList result) {
+        final int[] offsets = new int[result.arity()];
+        for (int i = 0; i < offsets.length; i++) {
+            final OtpErlangTuple t = (OtpErlangTuple) result.elementAt(i);
+            assertEquals(new OtpErlangString(PATH), t.elementAt(0));
+            offsets[i] = (int) ((OtpErlangLong) t.elementAt(5)).longValue();
+        }
+        return offsets;
+    }
+
+    private static void check(final ErlangSearchPattern pattern,
+            final int... expected) {
+        final OtpErlangList result = ErlReferenceIndex.findData(refs(),
+                pattern.getSearchObject(), PATH);
+        assertArrayEquals(expected, offsets(result));
+    }
+
+    @Test
+    public void localFunctionOccurrences() {
+        check(new FunctionPattern("m", "f", 1, LimitTo.ALL_OCCURRENCES, true),
+                10, 20);
+        check(new FunctionPattern("m", "f", 1, LimitTo.REFERENCES, true), 20);
+        check(new FunctionPattern("m", "f", 1, LimitTo.DEFINITIONS, true), 10);
+        check(new FunctionPattern("m", "f", -1, LimitTo.ALL_OCCURRENCES,
+                false), 10, 20);
+        check(new FunctionPattern("m", "f", 2, LimitTo.ALL_OCCURRENCES, true));
+        check(new FunctionPattern("other", "f", 1, LimitTo.REFERENCES, true));
+    }
+
+    @Test
+    public void variablesAreLocalToTheirClause() {
+        check(new VariablePattern("f", 1, "f(X)", "X", LimitTo.ALL_OCCURRENCES),
+                12, 30);
+        check(new VariablePattern("g", 0, "g()", "X", LimitTo.ALL_OCCURRENCES),
+                40);
+    }
+
+    @Test
+    public void otherReferencesMatchExactly() {
+        check(new RecordPattern("r", LimitTo.ALL_OCCURRENCES), 50);
+        check(new RecordPattern("s", LimitTo.ALL_OCCURRENCES));
+    }
+
+    @Test
+    public void definitionsAreFlagged() {
+        final OtpErlangList result = ErlReferenceIndex.findData(refs(),
+                new FunctionPattern("m", "f", 1, LimitTo.ALL_OCCURRENCES, true)
+                        .getSearchObject(), PATH);
+        assertEquals(atom("true"),
+                ((OtpErlangTuple) result.elementAt(0)).elementAt(7));
+        assertEquals(atom("false"),
+                ((OtpErlangTuple) result.elementAt(1)).elementAt(7));
+    }
+
+    @Test
+    public void stringsMatchCharacterLists() {
+        final OtpErlangList chars = new OtpErlangList(new OtpErlangObject[] {
+                new OtpErlangLong('f'), new OtpErlangLong('('),
+                new OtpErlangLong(')') });
+        assertTrue(ErlReferenceIndex.same(new OtpErlangString("f()"), chars));
+        assertFalse(ErlReferenceIndex.same(new OtpErlangString("f(X)"), chars));
+        assertTrue(ErlReferenceIndex.same(new OtpErlangString(""),
+                new OtpErlangList()));
+    }
+}
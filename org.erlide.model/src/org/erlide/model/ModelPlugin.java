@@ -1,6 +1,7 @@
 package org.erlide.model;
 
 import org.eclipse.core.runtime.Plugin;
+import org.erlide.model.internal.root.ModelIndexStore;
 import org.erlide.runtime.IRpcSite;
 import org.erlide.runtime.IRuntimeProvider;
 import org.erlide.runtime.RuntimeVersion;
@@ -42,6 +43,11 @@ public class ModelPlugin extends Plugin {
 
     @Override
     public void stop(final BundleContext bundleContext) throws Exception {
+        final ModelIndexStore indexStore = ModelIndexStore
+                .getDefaultIfCreated();
+        if (indexStore != null) {
+            indexStore.stop();
+        }
         ModelPlugin.context = null;
         super.stop(bundleContext);
     }
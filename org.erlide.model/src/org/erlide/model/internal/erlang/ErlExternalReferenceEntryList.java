@@ -13,6 +13,8 @@ import org.erlide.model.ModelPlugin;
 import org.erlide.model.erlang.IErlModule;
 import org.erlide.model.internal.root.ErlModel;
 import org.erlide.model.internal.root.ErlModelCache;
+import org.erlide.model.internal.root.ModelIndexFile;
+import org.erlide.model.internal.root.ModelIndexStore;
 import org.erlide.model.internal.root.Openable;
 import org.erlide.model.root.ErlModelManager;
 import org.erlide.model.root.IErlExternal;
@@ -61,6 +63,16 @@ public class ErlExternalReferenceEntryList extends Openable implements
                 .getExternalTree(externalModules);
         List<ExternalTreeEntry> externalIncludeTree = cache
                 .getExternalTree(externalIncludes);
+        final ModelIndexStore store = ModelIndexStore.getDefault();
+        final ModelIndexFile index = store.getIndex(project);
+        if (index != null) {
+            if (externalModuleTree == null && externalModules.length() > 0) {
+                externalModuleTree = index.getExternalTree(externalModules);
+            }
+            if (externalIncludeTree == null && externalIncludes.length() > 0) {
+                externalIncludeTree = index.getExternalTree(externalIncludes);
+            }
+        }
         if (externalModuleTree == null || externalIncludeTree == null) {
             final IRpcSite backend = ModelPlugin.getDefault().getBackend(
                     project.getName());
@@ -72,6 +84,8 @@ public class ErlExternalReferenceEntryList extends Openable implements
                 }
                 externalModuleTree = ErlideOpen.getExternalModuleTree(backend,
                         externalModules, pathVars);
+                putExternalTree(store, index, externalModules,
+                        externalModuleTree);
             }
             if (externalIncludeTree == null && externalIncludes.length() > 0) {
                 if (pm != null) {
@@ -79,6 +93,8 @@ public class ErlExternalReferenceEntryList extends Openable implements
                 }
                 externalIncludeTree = ErlideOpen.getExternalModuleTree(backend,
                         externalIncludes, pathVars);
+                putExternalTree(store, index, externalIncludes,
+                        externalIncludeTree);
             }
         }
         setChildren(null);
@@ -100,6 +116,15 @@ public class ErlExternalReferenceEntryList extends Openable implements
         return true;
     }
 
+    private static void putExternalTree(final ModelIndexStore store,
+            final ModelIndexFile index, final String externals,
+            final List<ExternalTreeEntry> tree) {
+        if (index != null && !tree.isEmpty()) {
+            index.putExternalTree(externals, tree);
+            store.changed();
+        }
+    }
+
     private void addExternalEntries(final IProgressMonitor pm,
             final List<ExternalTreeEntry> externalTree, final IErlModel model,
             final String rootName, final List<String> otherItems,
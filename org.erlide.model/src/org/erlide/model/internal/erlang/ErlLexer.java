@@ -0,0 +1,358 @@
+package org.erlide.model.internal.erlang;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.erlide.model.erlang.ErlToken;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Splits Erlang source into the same tokens as
+ * <code>erlide_scanner:light_scan_string/2</code>, but in the IDE's VM, so
+ * that highlighting doesn't need to call the backend.
+ * <p>
+ * The text is scanned line by line. The only state carried from a line to the
+ * next is whether we are inside a string, so the tokens of a line depend only
+ * on its text and on that state. They are cached on this key, and when a
+ * document is rescanned after an edit only the changed lines are scanned
+ * again. One difference from the Erlang scanner is that a string spanning
+ * several lines gives one token per line. Another is that errors such as
+ * unterminated strings give tokens instead of no result at all.
+ */
+public class ErlLexer {
+
+    private static final int CODE = 0;
+    private static final int STRING = 1;
+
+    private static final int CACHE_SIZE = 32768;
+
+    private static final String[] RESERVED = { "after", "and", "andalso",
+            "band", "begin", "bnot", "bor", "bsl", "bsr", "bxor", "case",
+            "catch", "cond", "div", "end", "fun", "if", "let", "not", "of",
+            "or", "orelse", "query", "receive", "rem", "spec", "try", "when",
+            "xor" };
+
+    private static final String[] OPERATORS = { "=:=", "=/=", "<<", "<-",
+            "<=", ">>", ">=", "->", "--", "++", "=<", "==", "/=", "||", ":-",
+            "::" };
+
+    @SuppressWarnings("serial")
+    private final Map<String, int[]> lines = new LinkedHashMap<String, int[]>(
+            256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<String, int[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * @param text
+     *            the text to scan.
+     * @param offset
+     *            added to the offsets of the tokens.
+     */
+    public synchronized List<ErlToken> scan(final String text, final int offset) {
+        final List<ErlToken> result = Lists.newArrayListWithCapacity(text
+                .length() / 4 + 1);
+        int state = CODE;
+        int line = 0;
+        int start = 0;
+        while (start < text.length()) {
+            final int nl = text.indexOf('\n', start);
+            final int end = nl < 0 ? text.length() : nl + 1;
+            final String key = (char) ('0' + state)
+                    + text.substring(start, end);
+            int[] tokens = lines.get(key);
+            if (tokens == null) {
+                tokens = scanLine(text, start, end, state);
+                lines.put(key, tokens);
+            }
+            final int n = tokens.length - 1;
+            for (int i = 0; i < n; i += 3) {
+                result.add(new ErlToken(tokens[i], line, offset + start
+                        + tokens[i + 1], tokens[i + 2]));
+            }
+            state = tokens[n];
+            line++;
+            start = end;
+        }
+        return result;
+    }
+
+    /**
+     * @return the tokens as (kind, offset from start, length) triples,
+     *         followed by the state at the end of the line.
+     */
+    static int[] scanLine(final String s, final int start, final int end,
+            final int state) {
+        final TokenBuffer out = new TokenBuffer();
+        int i = start;
+        if (state == STRING) {
+            i = scanQuoted(s, start, end, '"');
+            if (i < 0) {
+                out.add(ErlToken.KIND_STRING, 0, end - start);
+                return out.toArray(STRING);
+            }
+            out.add(ErlToken.KIND_STRING, 0, i - start);
+        }
+        while (i < end) {
+            final char c = s.charAt(i);
+            int j = i + 1;
+            int kind;
+            if (c == '\n') {
+                kind = ErlToken.KIND_WHITESPACE;
+            } else if (isWhitespace(c)) {
+                while (j < end && s.charAt(j) != '\n'
+                        && isWhitespace(s.charAt(j))) {
+                    j++;
+                }
+                kind = ErlToken.KIND_WHITESPACE;
+            } else if (c >= 'a' && c <= 'z' || isLatin1Lower(c)) {
+                j = scanName(s, j, end);
+                kind = isReserved(s.substring(i, j)) ? ErlToken.KIND_KEYWORD
+                        : ErlToken.KIND_ATOM;
+            } else if (c >= 'A' && c <= 'Z' || c == '_') {
+                j = scanName(s, j, end);
+                kind = ErlToken.KIND_VAR;
+            } else if (c >= '0' && c <= '9') {
+                j = scanNumber(s, i, end);
+                kind = s.substring(i, j).indexOf('.') >= 0 ? ErlToken.KIND_FLOAT
+                        : ErlToken.KIND_INTEGER;
+            } else if (c == '$') {
+                if (j < end && s.charAt(j) == '\\') {
+                    j = scanEscape(s, j + 1, end);
+                } else if (j < end) {
+                    j++;
+                }
+                kind = ErlToken.KIND_CHAR;
+            } else if (c == '\'') {
+                j = scanQuoted(s, j, end, '\'');
+                if (j < 0) {
+                    j = end;
+                }
+                kind = ErlToken.KIND_ATOM;
+            } else if (c == '"') {
+                j = scanQuoted(s, j, end, '"');
+                if (j < 0) {
+                    out.add(ErlToken.KIND_STRING, i - start, end - i);
+                    return out.toArray(STRING);
+                }
+                kind = ErlToken.KIND_STRING;
+            } else if (c == '%') {
+                while (j < end && s.charAt(j) != '\n' && s.charAt(j) != '\r') {
+                    j++;
+                }
+                kind = ErlToken.KIND_COMMENT;
+            } else if (c == '?' && j < end && s.charAt(j) == '?') {
+                // ??X is not a macro
+                out.add('?', i - start, 1);
+                j++;
+                kind = '?';
+                i++;
+            } else if (c == '?') {
+                j = scanMacro(s, j, end);
+                kind = j > i + 1 ? ErlToken.KIND_MACRO : '?';
+            } else if (c == '.') {
+                kind = j >= end || s.charAt(j) == '%'
+                        || isWhitespace(s.charAt(j)) ? ErlToken.KIND_OTHER
+                        : '.';
+            } else {
+                final String op = operatorAt(s, i, end);
+                if (op != null) {
+                    j = i + op.length();
+                    kind = op.equals("->") ? ErlToken.KIND_ARROW
+                            : ErlToken.KIND_OTHER;
+                } else {
+                    kind = c < 128 ? c : ErlToken.KIND_OTHER;
+                }
+            }
+            out.add(kind, i - start, j - i);
+            i = j;
+        }
+        return out.toArray(CODE);
+    }
+
+    /**
+     * A macro is a question mark directly followed by a variable or a
+     * (quoted) atom that isn't a keyword.
+     * 
+     * @return the end of the macro name, or <code>from</code> if there is no
+     *         macro.
+     */
+    private static int scanMacro(final String s, final int from, final int end) {
+        if (from >= end) {
+            return from;
+        }
+        final char c = s.charAt(from);
+        if (c >= 'A' && c <= 'Z' || c == '_') {
+            return scanName(s, from + 1, end);
+        }
+        if (c >= 'a' && c <= 'z' || isLatin1Lower(c)) {
+            final int j = scanName(s, from + 1, end);
+            return isReserved(s.substring(from, j)) ? from : j;
+        }
+        if (c == '\'') {
+            final int j = scanQuoted(s, from + 1, end, '\'');
+            return j < 0 ? end : j;
+        }
+        return from;
+    }
+
+    private static int scanName(final String s, final int from, final int end) {
+        int i = from;
+        while (i < end && isNameChar(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int scanNumber(final String s, final int from, final int end) {
+        int i = scanDigits(s, from, end, 10);
+        if (i < end && s.charAt(i) == '#') {
+            final int base = parseBase(s, from, i);
+            if (base >= 2 && base <= 36) {
+                return scanDigits(s, i + 1, end, base);
+            }
+            return i + 1;
+        }
+        if (i + 1 < end && s.charAt(i) == '.' && isDigit(s.charAt(i + 1), 10)) {
+            i = scanDigits(s, i + 1, end, 10);
+            if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+                i++;
+                if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                    i++;
+                }
+                i = scanDigits(s, i, end, 10);
+            }
+        }
+        return i;
+    }
+
+    private static int parseBase(final String s, final int from, final int to) {
+        if (to - from > 2) {
+            return 0;
+        }
+        return Integer.parseInt(s.substring(from, to));
+    }
+
+    private static int scanDigits(final String s, final int from,
+            final int end, final int base) {
+        int i = from;
+        while (i < end && isDigit(s.charAt(i), base)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(final char c, final int base) {
+        return Character.digit(c, base) >= 0 && c < 128;
+    }
+
+    /**
+     * Scans the rest of a string or quoted atom. Like in the Erlang scanner,
+     * a quoted atom ends at the end of the line.
+     * 
+     * @return the position after the closing quote, or -1 if the line ends
+     *         first.
+     */
+    private static int scanQuoted(final String s, final int from,
+            final int end, final char quote) {
+        int i = from;
+        while (i < end) {
+            final char c = s.charAt(i);
+            if (c == quote) {
+                return i + 1;
+            }
+            if (c == '\n' && quote == '\'') {
+                return i;
+            }
+            if (c == '\\') {
+                i = scanEscape(s, i + 1, end);
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position after the escape sequence that starts after a
+     *         backslash.
+     */
+    private static int scanEscape(final String s, final int from, final int end) {
+        if (from >= end) {
+            return end;
+        }
+        final char c = s.charAt(from);
+        if (c >= '0' && c <= '7') {
+            int i = from + 1;
+            while (i < end && i < from + 3 && s.charAt(i) >= '0'
+                    && s.charAt(i) <= '7') {
+                i++;
+            }
+            return i;
+        }
+        if (c == '^' && from + 1 < end) {
+            return from + 2;
+        }
+        return from + 1;
+    }
+
+    private static String operatorAt(final String s, final int i, final int end) {
+        for (final String op : OPERATORS) {
+            if (i + op.length() <= end && s.startsWith(op, i)) {
+                return op;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isReserved(final String name) {
+        for (final String word : RESERVED) {
+            if (word.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c <= ' ' || c >= '\u0080' && c <= '\u00a0';
+    }
+
+    private static boolean isLatin1Lower(final char c) {
+        return c >= '\u00df' && c <= '\u00ff' && c != '\u00f7';
+    }
+
+    private static boolean isNameChar(final char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0'
+                && c <= '9' || c == '_' || c == '@' || isLatin1Lower(c)
+                || c >= '\u00c0' && c <= '\u00de' && c != '\u00d7';
+    }
+
+    private static final class TokenBuffer {
+        private int[] data = new int[48];
+        private int size;
+
+        void add(final int kind, final int offset, final int length) {
+            if (size + 3 > data.length) {
+                final int[] bigger = new int[data.length * 2];
+                System.arraycopy(data, 0, bigger, 0, size);
+                data = bigger;
+            }
+            data[size++] = kind;
+            data[size++] = offset;
+            data[size++] = length;
+        }
+
+        int[] toArray(final int state) {
+            final int[] result = new int[size + 1];
+            System.arraycopy(data, 0, result, 0, size);
+            result[size] = state;
+            return result;
+        }
+    }
+}
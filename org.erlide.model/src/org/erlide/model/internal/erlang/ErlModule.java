@@ -37,13 +37,13 @@ import org.erlide.model.erlang.IErlPreprocessorDef;
 import org.erlide.model.erlang.IErlScanner;
 import org.erlide.model.erlang.IErlTypespec;
 import org.erlide.model.erlang.ISourceRange;
-import org.erlide.model.erlang.ISourceReference;
 import org.erlide.model.erlang.ModuleKind;
 import org.erlide.model.internal.root.ErlModel;
 import org.erlide.model.internal.root.ModelConfig;
 import org.erlide.model.internal.root.Openable;
 import org.erlide.model.root.ErlModelManager;
 import org.erlide.model.root.IErlElement;
+import org.erlide.model.root.IErlElementDelta;
 import org.erlide.model.root.IErlExternal;
 import org.erlide.model.root.IErlFolder;
 import org.erlide.model.root.IErlModel;
@@ -55,9 +55,9 @@ import org.erlide.utils.ErlLogger;
 import org.erlide.utils.SystemConfiguration;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangString;
-import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -72,9 +72,14 @@ public class ErlModule extends Openable implements IErlModule {
     protected String path;
     private String initialText;
     private boolean parsed;
+    private boolean indexConsulted;
     private final String scannerName;
-    private final Collection<IErlComment> comments;
+    private volatile Collection<IErlComment> comments;
     private IErlScanner scanner;
+    private List<ParsedForm> parsedForms;
+    private OtpErlangList parsedComments;
+    private IErlElementDelta reconcileDelta;
+    private volatile SourceIndexEntry sourceIndex;
 
     public ErlModule(final IParent parent, final String name,
             final String initialText, final IFile file, final String path) {
@@ -85,7 +90,7 @@ public class ErlModule extends Openable implements IErlModule {
         this.initialText = initialText;
         parsed = false;
         scannerName = createScannerName();
-        comments = Lists.newArrayList();
+        comments = Collections.emptyList();
         if (ModelConfig.verbose) {
             final IErlElement element = (IErlElement) parent;
             final String parentName = element.getName();
@@ -96,6 +101,22 @@ public class ErlModule extends Openable implements IErlModule {
 
     public boolean internalBuildStructure(final IProgressMonitor pm) {
         final IErlParser parser = ErlModelManager.getErlangModel().getParser();
+        reconcileDelta = null;
+        if (!parsed && !indexConsulted && isParsedFromFile()
+                && parser instanceof ErlParser) {
+            // only once: the backend hasn't seen the module yet, so later
+            // builds do the initial parse and then reparse
+            indexConsulted = true;
+            if (((ErlParser) parser).parseFromIndex(this, getFilePath())) {
+                return true;
+            }
+        }
+        if (parsed && parser instanceof ErlParser) {
+            reconcileDelta = ((ErlParser) parser).reparse(this, scannerName,
+                    getFilePath(), true);
+            parsed = reconcileDelta != null;
+            return parsed;
+        }
         parsed = parser.parse(this, scannerName, !parsed, getFilePath(), true);
         return parsed;
     }
@@ -104,9 +125,19 @@ public class ErlModule extends Openable implements IErlModule {
     protected synchronized boolean buildStructure(final IProgressMonitor pm)
             throws ErlModelException {
         if (internalBuildStructure(pm)) {
+            // a reparse may also have moved members in place
+            final List<IErlElement> children = internalGetChildren();
+            sourceIndex = new SourceIndexEntry(children, new SourceRangeIndex(
+                    children));
             final IErlModel model = ErlModelManager.getErlangModel();
             if (model != null) {
-                model.notifyChange(this);
+                if (changesContent(reconcileDelta)) {
+                    model.notifyChange(this);
+                }
+                if (reconcileDelta != null && reconcileDelta.getKind() != 0) {
+                    model.fireElementChanged(reconcileDelta);
+                }
+                reconcileDelta = null;
             }
             final IResource r = getResource();
             if (r instanceof IFile) {
@@ -119,6 +150,15 @@ public class ErlModule extends Openable implements IErlModule {
         return false;
     }
 
+    /**
+     * A reparse that only moved members doesn't need listeners to refresh
+     * anything.
+     */
+    private static boolean changesContent(final IErlElementDelta delta) {
+        return delta == null
+                || (delta.getFlags() & IErlElementDelta.F_CONTENT) != 0;
+    }
+
     @Override
     public String getFilePath() {
         if (fFile != null) {
@@ -133,39 +173,45 @@ public class ErlModule extends Openable implements IErlModule {
     @Override
     public IErlElement getElementAt(final int position)
             throws ErlModelException {
-        return ErlModelManager.getErlangModel().innermostThat(this,
-                new Predicate<IErlElement>() {
-                    @Override
-                    public boolean apply(final IErlElement e) {
-                        if (e instanceof ISourceReference) {
-                            final ISourceReference ch = (ISourceReference) e;
-                            ISourceRange r;
-                            r = ch.getSourceRange();
-                            if (r != null && r.hasPosition(position)) {
-                                return true;
-                            }
-                        }
-                        return false;
-                    }
-                });
+        return getSourceIndex().getElementAt(position);
     }
 
     @Override
     public IErlMember getElementAtLine(final int lineNumber) {
-        return (IErlMember) ErlModelManager.getErlangModel().innermostThat(
-                this, new Predicate<IErlElement>() {
-                    @Override
-                    public boolean apply(final IErlElement e) {
-                        if (e instanceof ISourceReference) {
-                            final ISourceReference sr = (ISourceReference) e;
-                            if (sr.getLineStart() <= lineNumber
-                                    && sr.getLineEnd() >= lineNumber) {
-                                return true;
-                            }
-                        }
-                        return false;
-                    }
-                });
+        return (IErlMember) getSourceIndex().getElementAtLine(lineNumber);
+    }
+
+    /**
+     * The index is kept with the snapshot of the children it was built from,
+     * so that an index built from children that have been replaced meanwhile
+     * is never used.
+     */
+    private SourceRangeIndex getSourceIndex() {
+        final List<IErlElement> children = internalGetChildren();
+        SourceIndexEntry entry = sourceIndex;
+        if (entry == null || entry.children != children) {
+            entry = new SourceIndexEntry(children, new SourceRangeIndex(
+                    children));
+            sourceIndex = entry;
+        }
+        return entry.index;
+    }
+
+    private static final class SourceIndexEntry {
+        final List<IErlElement> children;
+        final SourceRangeIndex index;
+
+        SourceIndexEntry(final List<IErlElement> children,
+                final SourceRangeIndex index) {
+            this.children = children;
+            this.index = index;
+        }
+    }
+
+    @Override
+    public void clearCaches() {
+        sourceIndex = null;
+        super.clearCaches();
     }
 
     @Override
@@ -198,19 +244,17 @@ public class ErlModule extends Openable implements IErlModule {
 
     @Override
     public void setComments(final Collection<? extends IErlComment> comments) {
-        synchronized (getModelLock()) {
-            this.comments.clear();
-            if (comments != null) {
-                this.comments.addAll(comments);
-            }
+        if (comments == null) {
+            this.comments = Collections.emptyList();
+        } else {
+            this.comments = Collections.unmodifiableList(Lists
+                    .<IErlComment> newArrayList(comments));
         }
     }
 
     @Override
     public Collection<IErlComment> getComments() {
-        synchronized (getModelLock()) {
-            return Collections.unmodifiableCollection(comments);
-        }
+        return comments;
     }
 
     @Override
@@ -285,14 +329,12 @@ public class ErlModule extends Openable implements IErlModule {
     @Override
     public IErlPreprocessorDef findPreprocessorDef(final String definedName,
             final Kind kind) {
-        synchronized (getModelLock()) {
-            for (final IErlElement m : internalGetChildren()) {
-                if (m instanceof IErlPreprocessorDef) {
-                    final IErlPreprocessorDef pd = (IErlPreprocessorDef) m;
-                    if (pd.getKind() == kind
-                            && pd.getDefinedName().equals(definedName)) {
-                        return pd;
-                    }
+        for (final IErlElement m : internalGetChildren()) {
+            if (m instanceof IErlPreprocessorDef) {
+                final IErlPreprocessorDef pd = (IErlPreprocessorDef) m;
+                if (pd.getKind() == kind
+                        && pd.getDefinedName().equals(definedName)) {
+                    return pd;
                 }
             }
         }
@@ -306,18 +348,16 @@ public class ErlModule extends Openable implements IErlModule {
             open(null);
         }
         final List<ErlangIncludeFile> r = Lists.newArrayList();
-        synchronized (getModelLock()) {
-            for (final IErlElement m : internalGetChildren()) {
-                if (m instanceof IErlAttribute) {
-                    final IErlAttribute a = (IErlAttribute) m;
-                    final OtpErlangObject v = a.getValue();
-                    if (v instanceof OtpErlangString) {
-                        final String s = ((OtpErlangString) v).stringValue();
-                        if ("include".equals(a.getName())) {
-                            r.add(new ErlangIncludeFile(false, s));
-                        } else if ("include_lib".equals(a.getName())) {
-                            r.add(new ErlangIncludeFile(true, s));
-                        }
+        for (final IErlElement m : internalGetChildren()) {
+            if (m instanceof IErlAttribute) {
+                final IErlAttribute a = (IErlAttribute) m;
+                final OtpErlangObject v = a.getValue();
+                if (v instanceof OtpErlangString) {
+                    final String s = ((OtpErlangString) v).stringValue();
+                    if ("include".equals(a.getName())) {
+                        r.add(new ErlangIncludeFile(false, s));
+                    } else if ("include_lib".equals(a.getName())) {
+                        r.add(new ErlangIncludeFile(true, s));
                     }
                 }
             }
@@ -328,12 +368,10 @@ public class ErlModule extends Openable implements IErlModule {
     @Override
     public Collection<IErlImport> getImports() {
         final List<IErlImport> result = new ArrayList<IErlImport>();
-        synchronized (getModelLock()) {
-            for (final IErlElement e : internalGetChildren()) {
-                if (e instanceof IErlImport) {
-                    final IErlImport ei = (IErlImport) e;
-                    result.add(ei);
-                }
+        for (final IErlElement e : internalGetChildren()) {
+            if (e instanceof IErlImport) {
+                final IErlImport ei = (IErlImport) e;
+                result.add(ei);
             }
         }
         return result;
@@ -463,6 +501,32 @@ public class ErlModule extends Openable implements IErlModule {
         return scanner;
     }
 
+    /**
+     * @return the forms from the last parse, or null if they can't be used to
+     *         reparse incrementally
+     */
+    List<ParsedForm> getParsedForms() {
+        return parsedForms;
+    }
+
+    OtpErlangList getParsedComments() {
+        return parsedComments;
+    }
+
+    void setParsedForms(final List<ParsedForm> forms,
+            final OtpErlangList comments) {
+        parsedForms = forms;
+        parsedComments = comments;
+    }
+
+    /**
+     * @return true if the module isn't open in an editor, so its structure
+     *         comes from the file on disk
+     */
+    boolean isParsedFromFile() {
+        return initialText == null && scanner == null;
+    }
+
     @Override
     public void createScanner() {
         if (scanner != null) {
@@ -486,13 +550,11 @@ public class ErlModule extends Openable implements IErlModule {
     @Override
     public Collection<IErlPreprocessorDef> getPreprocessorDefs(final Kind kind) {
         final List<IErlPreprocessorDef> result = Lists.newArrayList();
-        synchronized (getModelLock()) {
-            for (final IErlElement e : internalGetChildren()) {
-                if (e instanceof IErlPreprocessorDef) {
-                    final IErlPreprocessorDef pd = (IErlPreprocessorDef) e;
-                    if (pd.getKind() == kind || kind == Kind.PROBLEM) {
-                        result.add(pd);
-                    }
+        for (final IErlElement e : internalGetChildren()) {
+            if (e instanceof IErlPreprocessorDef) {
+                final IErlPreprocessorDef pd = (IErlPreprocessorDef) e;
+                if (pd.getKind() == kind || kind == Kind.PROBLEM) {
+                    result.add(pd);
                 }
             }
         }
@@ -16,6 +16,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.erlide.model.ErlModelException;
 import org.erlide.model.ModelPlugin;
@@ -29,8 +30,13 @@ import org.erlide.model.erlang.IErlParser;
 import org.erlide.model.erlang.IErlRecordDef;
 import org.erlide.model.erlang.IErlTypespec;
 import org.erlide.model.erlang.ISourceReference;
+import org.erlide.model.internal.root.ErlElementDelta;
 import org.erlide.model.internal.root.ErlMember;
+import org.erlide.model.internal.root.ModelIndexFile;
+import org.erlide.model.internal.root.ModelIndexStore;
 import org.erlide.model.root.IErlElement;
+import org.erlide.model.root.IErlElementDelta;
+import org.erlide.model.services.search.ErlReferenceIndex;
 import org.erlide.runtime.IRpcSite;
 import org.erlide.runtime.RuntimeHelper;
 import org.erlide.utils.ErlLogger;
@@ -43,7 +49,10 @@ import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangRangeException;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 /**
  * @author jakob
@@ -71,7 +80,15 @@ public final class ErlParser implements IErlParser {
     private final RuntimeHelper helper;
 
     public ErlParser() {
-        helper = new RuntimeHelper(ModelPlugin.getDefault().getIdeBackend());
+        this(new RuntimeHelper(ModelPlugin.getDefault().getIdeBackend()));
+    }
+
+    /**
+     * @param helper
+     *            only needed for error and syntax tree forms
+     */
+    ErlParser(final RuntimeHelper helper) {
+        this.helper = helper;
     }
 
     @Override
@@ -98,9 +115,123 @@ public final class ErlParser implements IErlParser {
             final OtpErlangTuple t = (OtpErlangTuple) res.elementAt(1);
             forms = (OtpErlangList) t.elementAt(1);
             comments = (OtpErlangList) t.elementAt(2);
+            if (initialParse && forms != null && comments != null
+                    && isIndexed(module)) {
+                final ModelIndexStore store = ModelIndexStore.getDefault();
+                final ModelIndexFile index = store.getIndex(module);
+                if (index != null) {
+                    index.putModule(path, forms, comments);
+                    store.changed();
+                }
+            }
         } else {
             ErlLogger.error("error when parsing %s: %s", path, res);
         }
+        updateReferences(module, res);
+        setStructure(module, forms, comments);
+        return forms != null && comments != null;
+    }
+
+    /**
+     * Reparses a module that has been parsed before, getting from the backend
+     * only the forms that changed since the last reparse. The members of the
+     * other forms are kept, and shifted if their forms have moved.
+     * 
+     * @return the fine-grained delta of the module, or null if parsing failed
+     */
+    public IErlElementDelta reparse(final ErlModule module,
+            final String scannerName, final String path,
+            final boolean updateSearchServer) {
+        final List<ParsedForm> previous = module.getParsedForms();
+        IErlElementDelta delta = reparse(module, previous, scannerName, path,
+                updateSearchServer);
+        if (delta == null && previous != null) {
+            // the forms didn't match ours, get them all
+            delta = reparse(module, null, scannerName, path,
+                    updateSearchServer);
+        }
+        if (delta == null) {
+            setStructure(module, null, null);
+        }
+        return delta;
+    }
+
+    private IErlElementDelta reparse(final ErlModule module,
+            final List<ParsedForm> previous, final String scannerName,
+            final String path, final boolean updateSearchServer) {
+        final List<OtpErlangObject> hashes = Lists.newArrayList();
+        if (previous != null) {
+            for (final ParsedForm form : previous) {
+                hashes.add(new OtpErlangLong(form.getHash()));
+            }
+        }
+        final IRpcSite backend = ModelPlugin.getDefault().getIdeBackend();
+        final OtpErlangTuple res = ErlideNoparse.reparse(backend, scannerName,
+                updateSearchServer,
+                new OtpErlangList(hashes.toArray(new OtpErlangObject[hashes
+                        .size()])));
+        updateReferences(module, res);
+        if (!Util.isOk(res)) {
+            ErlLogger.error("error when parsing %s: %s", path, res);
+            return null;
+        }
+        final OtpErlangTuple t = (OtpErlangTuple) res.elementAt(1);
+        return patchStructure(module, previous, (OtpErlangList) t.elementAt(1),
+                (OtpErlangList) t.elementAt(2));
+    }
+
+    /**
+     * Builds the structure of a module from the forms and comments stored in
+     * the model index, without calling the backend.
+     * 
+     * @return false if the index has no up-to-date entry for the module.
+     */
+    public boolean parseFromIndex(final IErlModule module, final String path) {
+        if (path == null || !isIndexed(module)) {
+            return false;
+        }
+        final ModelIndexFile index = ModelIndexStore.getDefault().getIndex(
+                module);
+        final OtpErlangTuple entry = index == null ? null : index
+                .getModule(path);
+        if (entry == null) {
+            return false;
+        }
+        ErlReferenceIndex.getDefault().removeRefs(module);
+        setStructure(module, (OtpErlangList) entry.elementAt(0),
+                (OtpErlangList) entry.elementAt(1));
+        return true;
+    }
+
+    /**
+     * Both initial parse and reparse give
+     * <code>{ok, Model, Cached, Refs}</code>.
+     */
+    private static void updateReferences(final IErlModule module,
+            final OtpErlangTuple res) {
+        final ErlReferenceIndex index = ErlReferenceIndex.getDefault();
+        if (Util.isOk(res) && res.arity() > 3
+                && res.elementAt(3) instanceof OtpErlangList) {
+            index.putRefs(module, (OtpErlangList) res.elementAt(3));
+        } else {
+            index.removeRefs(module);
+        }
+    }
+
+    /**
+     * Only modules that aren't open in an editor are parsed from the file
+     * contents, so only those can be stored in or read from the index.
+     */
+    private static boolean isIndexed(final IErlModule module) {
+        return module instanceof ErlModule
+                && ((ErlModule) module).isParsedFromFile();
+    }
+
+    private void setStructure(final IErlModule module,
+            final OtpErlangList forms, final OtpErlangList comments) {
+        if (module instanceof ErlModule) {
+            ((ErlModule) module).setParsedForms(null, null);
+        }
         if (forms == null) {
             module.setChildren(null);
         } else {
@@ -129,7 +260,206 @@ public final class ErlParser implements IErlParser {
             module.setComments(moduleComments);
         }
         fixFunctionComments(module);
-        return forms != null && comments != null;
+    }
+
+    /**
+     * Sets the children of a module from the forms of a reparse, reusing the
+     * members of unchanged forms, and returns the delta.
+     * 
+     * @param previous
+     *            the forms of the last reparse, null if there was none
+     * @param forms
+     *            <code>{Hash, Line, Offset, Length}</code> for forms that are
+     *            among <code>previous</code>,
+     *            <code>{Hash, Line, Offset, Length, Form}</code> for the others
+     * @return the delta, or null if the forms don't match the previous ones;
+     *         the module is left unchanged then
+     */
+    IErlElementDelta patchStructure(final ErlModule module,
+            final List<ParsedForm> previous, final OtpErlangList forms,
+            final OtpErlangList comments) {
+        final ListMultimap<Integer, ParsedForm> unused = ArrayListMultimap
+                .create();
+        if (previous != null) {
+            for (final ParsedForm form : previous) {
+                unused.put(form.getHash(), form);
+            }
+        }
+        final List<ParsedForm> parsedForms = Lists
+                .newArrayListWithCapacity(forms.arity());
+        final List<IErlElement> children = Lists
+                .newArrayListWithCapacity(forms.arity());
+        final Set<IErlElement> kept = Sets.newIdentityHashSet();
+        final List<IErlMember> created = Lists.newArrayList();
+        // old and new positions of the kept forms that moved, they are only
+        // shifted once all forms are known to match
+        final List<ParsedForm> movedFrom = Lists.newArrayList();
+        final List<ParsedForm> movedTo = Lists.newArrayList();
+        try {
+            for (final OtpErlangObject o : forms) {
+                final OtpErlangTuple form = (OtpErlangTuple) o;
+                final int hash = ((OtpErlangLong) form.elementAt(0))
+                        .intValue();
+                final int line = ((OtpErlangLong) form.elementAt(1))
+                        .intValue();
+                final int offset = ((OtpErlangLong) form.elementAt(2))
+                        .intValue();
+                final int length = ((OtpErlangLong) form.elementAt(3))
+                        .intValue();
+                final IErlMember member;
+                ParsedForm old = null;
+                if (form.arity() > 4) {
+                    member = create(module, (OtpErlangTuple) form.elementAt(4));
+                    if (member != null) {
+                        created.add(member);
+                    }
+                } else {
+                    // the hashes are short, a form of another length is a
+                    // different one that happens to have the same hash
+                    for (final ParsedForm same : unused.get(hash)) {
+                        if (same.getLength() == length) {
+                            old = same;
+                            break;
+                        }
+                    }
+                    if (old == null) {
+                        ErlLogger.warn("unknown form %d when reparsing %s",
+                                hash, module.getName());
+                        return null;
+                    }
+                    unused.remove(hash, old);
+                    member = old.getMember();
+                    if (member != null) {
+                        kept.add(member);
+                    }
+                }
+                final ParsedForm parsed = new ParsedForm(hash, line, offset,
+                        length, member);
+                if (old != null
+                        && (line != old.getLine() || offset != old.getOffset())) {
+                    movedFrom.add(old);
+                    movedTo.add(parsed);
+                }
+                parsedForms.add(parsed);
+                if (member != null) {
+                    children.add(member);
+                }
+            }
+        } catch (final OtpErlangRangeException e) {
+            ErlLogger.warn(e);
+            return null;
+        }
+        final boolean moved = !movedFrom.isEmpty();
+        for (int i = 0; i < movedFrom.size(); i++) {
+            final ParsedForm from = movedFrom.get(i);
+            final ParsedForm to = movedTo.get(i);
+            if (from.getMember() instanceof SourceRefElement) {
+                ((SourceRefElement) from.getMember()).shiftPosition(
+                        to.getLine() - from.getLine(),
+                        to.getOffset() - from.getOffset());
+            }
+        }
+
+        List<IErlElement> oldChildren;
+        try {
+            oldChildren = module.getChildren();
+        } catch (final ErlModelException e) {
+            ErlLogger.warn(e);
+            oldChildren = Collections.emptyList();
+        }
+        final List<IErlElement> removed = Lists.newArrayList();
+        for (final IErlElement element : oldChildren) {
+            if (!kept.contains(element)) {
+                removed.add(element);
+            }
+        }
+        final List<ErlElementDelta> deltas = Lists.newArrayList();
+        for (final IErlMember member : created) {
+            final IErlElement old = findDeclaration(removed, member);
+            if (old == null) {
+                deltas.add(new ErlElementDelta(IErlElementDelta.ADDED, 0,
+                        member));
+            } else {
+                removed.remove(old);
+                deltas.add(new ErlElementDelta(IErlElementDelta.CHANGED,
+                        IErlElementDelta.F_CONTENT, member));
+            }
+        }
+        for (final IErlElement element : removed) {
+            deltas.add(new ErlElementDelta(IErlElementDelta.REMOVED, 0,
+                    element));
+        }
+        // kept members stay in source order unless forms were swapped
+        final boolean reordered = deltas.isEmpty()
+                && !isSameOrder(oldChildren, children);
+        if (!deltas.isEmpty() || reordered) {
+            module.setChildren(children);
+        }
+
+        final boolean commentsChanged = !comments.equals(module
+                .getParsedComments());
+        if (commentsChanged) {
+            final List<IErlComment> moduleComments = Lists
+                    .newArrayListWithCapacity(comments.arity());
+            for (final OtpErlangObject comment : comments) {
+                final IErlComment c = createComment(module,
+                        (OtpErlangTuple) comment);
+                if (c != null) {
+                    moduleComments.add(c);
+                }
+            }
+            module.setComments(moduleComments);
+        }
+        module.setParsedForms(parsedForms, comments);
+        if (deltas.isEmpty() && !commentsChanged && !reordered) {
+            if (moved) {
+                fixFunctionComments(module);
+            }
+            return new ErlElementDelta(0, 0, module);
+        }
+        fixFunctionComments(module);
+        final int flags = IErlElementDelta.F_CONTENT
+                | IErlElementDelta.F_FINE_GRAINED
+                | (reordered ? IErlElementDelta.F_REORDER : 0);
+        final ErlElementDelta delta = new ErlElementDelta(
+                IErlElementDelta.CHANGED, flags, module);
+        for (final ErlElementDelta child : deltas) {
+            delta.insertDeltaTree(child.getElement(), child);
+        }
+        return delta;
+    }
+
+    private static boolean isSameOrder(final List<IErlElement> elements,
+            final List<IErlElement> others) {
+        if (elements.size() != others.size()) {
+            return false;
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i) != others.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the element that a changed form declared before, i.e. one of the
+     * same kind and name.
+     */
+    private static IErlElement findDeclaration(
+            final Collection<IErlElement> elements, final IErlMember member) {
+        for (final IErlElement element : elements) {
+            if (element.getClass() != member.getClass()
+                    || !element.getName().equals(member.getName())) {
+                continue;
+            }
+            if (!(member instanceof IErlFunction)
+                    || ((IErlFunction) element).getArity() == ((IErlFunction) member)
+                            .getArity()) {
+                return element;
+            }
+        }
+        return null;
     }
 
     /**
@@ -155,7 +485,7 @@ public final class ErlParser implements IErlParser {
                 }
             }
             Collections.sort(all, new SourceOffsetComparator());
-            for (int i = 1; i < all.size(); i++) {
+            for (int i = 0; i < all.size(); i++) {
                 checkForComment(all, i);
             }
         } catch (final ErlModelException e) {
@@ -171,9 +501,8 @@ public final class ErlParser implements IErlParser {
             int j = considerPrevious(i, all, comments);
             j = considerPrevious(j, all, comments);
             j = considerPrevious(j, all, comments);
-            if (!comments.isEmpty()) {
-                function.setComments(comments);
-            }
+            // functions may be kept by a reparse, so always reset comments
+            function.setComments(comments);
         }
     }
 
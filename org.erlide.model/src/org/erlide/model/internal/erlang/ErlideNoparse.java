@@ -10,6 +10,7 @@ import org.erlide.runtime.rpc.RpcTimeoutException;
 import org.erlide.utils.ErlLogger;
 import org.erlide.utils.Util;
 
+import com.ericsson.otp.erlang.OtpErlangList;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 
@@ -47,6 +48,26 @@ public class ErlideNoparse {
         return res;
     }
 
+    /**
+     * Reparses, getting only the forms whose hashes aren't among
+     * <code>knownHashes</code>. Each form is <code>{Hash, Line, Offset}</code>
+     * if it is known and <code>{Hash, Line, Offset, Form}</code> otherwise.
+     */
+    public static OtpErlangTuple reparse(final IRpcSite b,
+            final String scannerModuleName, final boolean updateSearchServer,
+            final OtpErlangList knownHashes) {
+        OtpErlangTuple res = null;
+        try {
+            res = (OtpErlangTuple) b.call(20000, ERLIDE_NOPARSE, "reparse",
+                    "aox", scannerModuleName, updateSearchServer, knownHashes);
+        } catch (final RpcTimeoutException e) {
+            ErlLogger.warn(e);
+        } catch (final RpcException e) {
+            ErlLogger.warn(e);
+        }
+        return res;
+    }
+
     public static IErlFunction getFunction(final IErlModule module,
             final String name, final int arity) {
         try {
@@ -21,6 +21,9 @@ public class ErlideScanner {
     private static final String ERLIDE_SCANNER = "erlide_scanner";
     private static final Object ENCODING = System.getProperty(
             "erlide.encoding.__test__", "latin1");
+    private static final boolean USE_RPC_LEXER = Boolean
+            .getBoolean("erlide.lexer.rpc");
+    private static final ErlLexer LEXER = new ErlLexer();
 
     public static void initialScan(final String module, final String path,
             final String initialText, final boolean logging) {
@@ -123,13 +126,29 @@ public class ErlideScanner {
     }
 
     /**
+     * Tokenize a string for highlighting. This is done in Java by
+     * {@link ErlLexer}; the backend is only called if that fails, or if the
+     * system property <code>erlide.lexer.rpc</code> is set.
+     * 
      * @param string
      * @param offset
      * @return
-     * @throws BackendException
+     * @throws ScannerException
      */
     public static List<ErlToken> lightScanString(final String string,
             final int offset) throws ScannerException {
+        if (!USE_RPC_LEXER) {
+            try {
+                return LEXER.scan(string, offset);
+            } catch (final RuntimeException e) {
+                ErlLogger.warn(e);
+            }
+        }
+        return rpcLightScanString(string, offset);
+    }
+
+    private static List<ErlToken> rpcLightScanString(final String string,
+            final int offset) throws ScannerException {
         OtpErlangObject r1 = null;
         final IRpcSite backend = ModelPlugin.getDefault().getIdeBackend();
         try {
@@ -0,0 +1,49 @@
+package org.erlide.model.internal.erlang;
+
+import org.erlide.model.erlang.IErlMember;
+
+/**
+ * A form of a module as last returned by the backend: its hash, which doesn't
+ * depend on where the form starts, its start, its length and the member built
+ * from it.
+ */
+final class ParsedForm {
+
+    private final int hash;
+    private final int line;
+    private final int offset;
+    private final int length;
+    private final IErlMember member;
+
+    ParsedForm(final int hash, final int line, final int offset,
+            final int length, final IErlMember member) {
+        this.hash = hash;
+        this.line = line;
+        this.offset = offset;
+        this.length = length;
+        this.member = member;
+    }
+
+    public int getHash() {
+        return hash;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the member, or null if the form didn't give one
+     */
+    public IErlMember getMember() {
+        return member;
+    }
+}
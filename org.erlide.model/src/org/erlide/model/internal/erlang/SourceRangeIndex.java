@@ -0,0 +1,199 @@
+package org.erlide.model.internal.erlang;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.erlide.model.ErlModelException;
+import org.erlide.model.IParent;
+import org.erlide.model.erlang.ISourceRange;
+import org.erlide.model.erlang.ISourceReference;
+import org.erlide.model.root.IErlElement;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Immutable index of the offsets and lines of the members of a module and of
+ * their children (clauses, record fields), built when the module is parsed.
+ * <p>
+ * Looking up the element at an offset or line gives the same answer as
+ * walking the tree with <code>IErlModel.innermostThat</code>, i.e. the first
+ * element in post-order whose range holds the position, but in O(log n): the
+ * ranges are sorted by start and kept in a segment tree of their maximal end,
+ * so only the ranges that hold the position are visited.
+ */
+final class SourceRangeIndex {
+
+    private final Intervals offsets;
+    private final Intervals lines;
+
+    SourceRangeIndex(final IParent root) {
+        this(getChildren(root));
+    }
+
+    /**
+     * @param children
+     *            the children of the root, e.g. a snapshot the index is kept
+     *            with
+     */
+    SourceRangeIndex(final List<IErlElement> children) {
+        final List<IErlElement> elements = Lists.newArrayList();
+        collect(children, elements);
+        final int n = elements.size();
+        final int[] offsetStarts = new int[n];
+        final int[] offsetEnds = new int[n];
+        final int[] lineStarts = new int[n];
+        final int[] lineEnds = new int[n];
+        for (int i = 0; i < n; i++) {
+            final ISourceReference ref = (ISourceReference) elements.get(i);
+            final ISourceRange range = ref.getSourceRange();
+            if (range == null) {
+                // can't hold any offset
+                offsetStarts[i] = Integer.MAX_VALUE;
+                offsetEnds[i] = Integer.MIN_VALUE;
+            } else {
+                offsetStarts[i] = range.getOffset();
+                offsetEnds[i] = range.getOffset() + range.getLength();
+            }
+            lineStarts[i] = ref.getLineStart();
+            lineEnds[i] = ref.getLineEnd();
+        }
+        offsets = new Intervals(elements, offsetStarts, offsetEnds);
+        lines = new Intervals(elements, lineStarts, lineEnds);
+    }
+
+    /**
+     * Adds the elements and their descendants that are source references, in
+     * post-order.
+     */
+    private static void collect(final List<IErlElement> children,
+            final List<IErlElement> elements) {
+        for (final IErlElement child : children) {
+            if (child instanceof IParent) {
+                collect(getChildren((IParent) child), elements);
+            }
+            if (child instanceof ISourceReference) {
+                elements.add(child);
+            }
+        }
+    }
+
+    private static List<IErlElement> getChildren(final IParent parent) {
+        try {
+            return parent.getChildren();
+        } catch (final ErlModelException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return the innermost element whose source range holds the offset, or
+     *         null
+     */
+    IErlElement getElementAt(final int offset) {
+        return offsets.find(offset);
+    }
+
+    /**
+     * @return the innermost element whose lines hold the line, or null
+     */
+    IErlElement getElementAtLine(final int line) {
+        return lines.find(line);
+    }
+
+    int size() {
+        return offsets.elements.length;
+    }
+
+    /**
+     * Closed intervals sorted by start, with the post-order rank of their
+     * elements.
+     */
+    private static final class Intervals {
+
+        private final IErlElement[] elements;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] ranks;
+        /**
+         * Segment tree over the sorted intervals: node i covers the intervals
+         * of nodes 2i and 2i+1, leaves start at {@link #leaves}.
+         */
+        private final int[] maxEnds;
+        private final int leaves;
+
+        Intervals(final List<IErlElement> rankedElements, final int[] start,
+                final int[] end) {
+            final int n = rankedElements.size();
+            // sort by start, then rank
+            final long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = (long) start[i] << 32 | i;
+            }
+            Arrays.sort(keys);
+            elements = new IErlElement[n];
+            starts = new int[n];
+            ends = new int[n];
+            ranks = new int[n];
+            for (int i = 0; i < n; i++) {
+                final int rank = (int) keys[i];
+                elements[i] = rankedElements.get(rank);
+                starts[i] = start[rank];
+                ends[i] = end[rank];
+                ranks[i] = rank;
+            }
+            int size = 1;
+            while (size < n) {
+                size *= 2;
+            }
+            leaves = size;
+            maxEnds = new int[2 * size];
+            Arrays.fill(maxEnds, Integer.MIN_VALUE);
+            System.arraycopy(ends, 0, maxEnds, size, n);
+            for (int i = size - 1; i > 0; i--) {
+                maxEnds[i] = Math.max(maxEnds[2 * i], maxEnds[2 * i + 1]);
+            }
+        }
+
+        IErlElement find(final int position) {
+            final int last = lastStartingAtOrBefore(position);
+            if (last < 0) {
+                return null;
+            }
+            final int found = find(1, 0, leaves - 1, last, position, -1);
+            return found < 0 ? null : elements[found];
+        }
+
+        private int lastStartingAtOrBefore(final int position) {
+            int lo = 0;
+            int hi = starts.length - 1;
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= position) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        /**
+         * Finds the interval with the lowest rank among those up to
+         * <code>last</code> that end at or after the position, skipping
+         * subtrees whose intervals all end before it.
+         */
+        private int find(final int node, final int lo, final int hi,
+                final int last, final int position, final int found) {
+            if (lo > last || maxEnds[node] < position) {
+                return found;
+            }
+            if (node >= leaves) {
+                return found < 0 || ranks[lo] < ranks[found] ? lo : found;
+            }
+            final int mid = (lo + hi) >>> 1;
+            final int left = find(2 * node, lo, mid, last, position, found);
+            return find(2 * node + 1, mid + 1, hi, last, position, left);
+        }
+    }
+}
@@ -136,9 +136,7 @@ public abstract class SourceRefElement extends ErlElement implements
      */
     @Override
     public boolean hasChildren() {
-        synchronized (getModelLock()) {
-            return internalGetChildren().size() > 0;
-        }
+        return internalGetChildren().size() > 0;
     }
 
     public void setSourceRangeOffset(final int offset) {
@@ -177,10 +175,33 @@ public abstract class SourceRefElement extends ErlElement implements
                 && fSourceRangeLength == r.fSourceRangeLength;
     }
 
+    /**
+     * The offset is left out, since {@link #shiftPosition(int, int)} changes
+     * it while the element may be stored in hashed collections.
+     */
     @Override
     public int hashCode() {
-        return Objects.hashCode(super.hashCode(), fSourceRangeOffset,
-                fSourceRangeLength);
+        return Objects.hashCode(super.hashCode(), fSourceRangeLength);
+    }
+
+    /**
+     * Moves this element and its children, when a reparse finds that only the
+     * position of its source has changed.
+     * 
+     * @param lines
+     *            number of lines to move by
+     * @param offset
+     *            number of characters to move by
+     */
+    public void shiftPosition(final int lines, final int offset) {
+        fSourceRangeOffset += offset;
+        lineStart += lines;
+        lineEnd += lines;
+        for (final IErlElement child : internalGetChildren()) {
+            if (child instanceof SourceRefElement) {
+                ((SourceRefElement) child).shiftPosition(lines, offset);
+            }
+        }
     }
 
     @Override
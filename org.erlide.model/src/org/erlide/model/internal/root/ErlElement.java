@@ -13,6 +13,7 @@ package org.erlide.model.internal.root;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.resources.IResource;
@@ -27,7 +28,6 @@ import org.erlide.model.ErlModelStatus;
 import org.erlide.model.ErlModelStatusConstants;
 import org.erlide.model.IOpenable;
 import org.erlide.model.IParent;
-import org.erlide.model.root.ErlModelManager;
 import org.erlide.model.root.IErlElement;
 import org.erlide.model.root.IErlElementVisitor;
 import org.erlide.utils.ErlLogger;
@@ -35,6 +35,7 @@ import org.erlide.utils.StringUtils;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Root of Erlang element handle hierarchy.
@@ -50,7 +51,13 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
      */
     private final IParent fParent;
 
-    private final List<IErlElement> fChildren = Lists.newArrayList();
+    /**
+     * The children are replaced, never modified, so that readers don't need
+     * to lock. Writers to the same element are serialized by
+     * <code>fChildrenLock</code>.
+     */
+    private volatile Children fChildren = Children.EMPTY;
+    private final Object fChildrenLock = new Object();
 
     /**
      * This element's name, or an empty <code>String</code> if this element does
@@ -218,18 +225,14 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
      */
     @Override
     public boolean hasChildren() {
-        synchronized (getModelLock()) {
-            return !internalGetChildren().isEmpty();
-        }
+        return !internalGetChildren().isEmpty();
     }
 
     @Override
     public boolean hasChildrenOfKind(final Kind kind) {
-        synchronized (getModelLock()) {
-            for (final IErlElement child : internalGetChildren()) {
-                if (child.getKind() == kind) {
-                    return true;
-                }
+        for (final IErlElement child : internalGetChildren()) {
+            if (child.getKind() == kind) {
+                return true;
             }
         }
         return false;
@@ -403,21 +406,20 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
 
     @Override
     public List<IErlElement> getChildren() throws ErlModelException {
-        synchronized (getModelLock()) {
-            return Collections.unmodifiableList(Lists
-                    .newArrayList(internalGetChildren()));
-        }
+        return internalGetChildren();
     }
 
+    /**
+     * @return an immutable snapshot of the children, that can be iterated
+     *         without locking.
+     */
     protected List<IErlElement> internalGetChildren() {
-        return fChildren;
+        return fChildren.list;
     }
 
     @Override
     public int getChildCount() {
-        synchronized (getModelLock()) {
-            return internalGetChildren().size();
-        }
+        return internalGetChildren().size();
     }
 
     /**
@@ -431,11 +433,9 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
     public List<IErlElement> getChildrenOfKind(final Kind kind)
             throws ErlModelException {
         final List<IErlElement> result = Lists.newArrayList();
-        synchronized (getModelLock()) {
-            for (final IErlElement element : internalGetChildren()) {
-                if (element.getKind() == kind) {
-                    result.add(element);
-                }
+        for (final IErlElement element : internalGetChildren()) {
+            if (element.getKind() == kind) {
+                result.add(element);
             }
         }
         return result;
@@ -455,9 +455,7 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
      * Returns <code>true</code> if this child is in my children collection
      */
     protected boolean includesChild(final IErlElement child) {
-        synchronized (getModelLock()) {
-            return internalGetChildren().contains(child);
-        }
+        return internalGetChildren().contains(child);
     }
 
     /**
@@ -470,28 +468,32 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
 
     @Override
     public void removeChild(final IErlElement child) {
-        synchronized (getModelLock()) {
+        synchronized (fChildrenLock) {
             clearCaches();
-            fChildren.remove(child);
+            final List<IErlElement> list = Lists.newArrayList(fChildren.list);
+            list.remove(child);
+            fChildren = new Children(list);
         }
     }
 
     @Override
     public void addChild(final IErlElement child) {
-        synchronized (getModelLock()) {
+        synchronized (fChildrenLock) {
             clearCaches();
-            fChildren.add(child);
+            final List<IErlElement> list = Lists.newArrayList(fChildren.list);
+            list.add(child);
+            fChildren = new Children(list);
         }
     }
 
     @Override
     public void setChildren(final Collection<? extends IErlElement> children) {
-        synchronized (getModelLock()) {
+        synchronized (fChildrenLock) {
+            fChildren = children == null ? Children.EMPTY : new Children(
+                    children);
+            // after the swap, so that caches can't be rebuilt from the old
+            // children
             clearCaches();
-            fChildren.clear();
-            if (children != null) {
-                fChildren.addAll(children);
-            }
         }
     }
 
@@ -516,27 +518,14 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
 
     private static IErlElement getChildNamed(final ErlElement parent,
             final String name) {
-        synchronized (parent.getModelLock()) {
-            for (final IErlElement child : parent.internalGetChildren()) {
-                if (child.getName().equals(name)) {
-                    return child;
-                }
-            }
-        }
-        return null;
-    }
-
-    protected Object getModelLock() {
-        return ErlModelManager.getErlangModel().getModelLock();
+        return parent.fChildren.getNamed(name);
     }
 
     private static IErlElement getChildWithResource(final ErlElement parent,
             final IResource rsrc) {
-        synchronized (parent.getModelLock()) {
-            for (final IErlElement child : parent.internalGetChildren()) {
-                if (rsrc.equals(child.getResource())) {
-                    return child;
-                }
+        for (final IErlElement child : parent.internalGetChildren()) {
+            if (rsrc.equals(child.getResource())) {
+                return child;
             }
         }
         return null;
@@ -546,9 +535,7 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
     public final void accept(final IErlElementVisitor visitor,
             final Set<AcceptFlags> flags, final IErlElement.Kind leafKind)
             throws ErlModelException {
-        synchronized (getModelLock()) {
-            internalAccept(visitor, flags, leafKind);
-        }
+        internalAccept(visitor, flags, leafKind);
     }
 
     private final void internalAccept(final IErlElementVisitor visitor,
@@ -614,4 +601,36 @@ public abstract class ErlElement extends PlatformObject implements IErlElement,
         return ErlModelCache.getDefault();
     }
 
+    /**
+     * An immutable list of children, with a name index that is built the
+     * first time a child is looked up by name.
+     */
+    private static final class Children {
+        static final Children EMPTY = new Children(
+                Collections.<IErlElement> emptyList());
+
+        final List<IErlElement> list;
+        private volatile Map<String, IErlElement> byName;
+
+        Children(final Collection<? extends IErlElement> children) {
+            list = Collections.unmodifiableList(Lists
+                    .newArrayList(children));
+        }
+
+        IErlElement getNamed(final String name) {
+            Map<String, IErlElement> map = byName;
+            if (map == null) {
+                map = Maps.newHashMapWithExpectedSize(list.size());
+                for (final IErlElement child : list) {
+                    final String childName = child.getName();
+                    if (!map.containsKey(childName)) {
+                        map.put(childName, child);
+                    }
+                }
+                byName = map;
+            }
+            return map.get(name);
+        }
+    }
+
 }
@@ -49,6 +49,14 @@ public abstract class ErlMember extends SourceRefElement implements IErlMember {
         fNameRangeLength = length;
     }
 
+    @Override
+    public void shiftPosition(final int lines, final int offset) {
+        super.shiftPosition(lines, offset);
+        if (fNameRangeOffset != 0 || fNameRangeLength != 0) {
+            fNameRangeOffset += offset;
+        }
+    }
+
     @Override
     public ISourceRange getNameRange() {
         if (fNameRangeOffset == 0 && fNameRangeLength == 0) {
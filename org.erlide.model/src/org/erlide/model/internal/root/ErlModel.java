@@ -140,14 +140,16 @@ public class ErlModel extends Openable implements IErlModel {
         // determine my children
         final IProject[] projects = ResourcesPlugin.getWorkspace().getRoot()
                 .getProjects();
+        final Set<String> names = Sets.newHashSet();
         for (final IProject project : projects) {
             if (NatureUtil.hasErlangNature(project)) {
                 if (getErlangProject(project) == null) {
                     addChild(makeErlangProject(project));
                 }
+                names.add(project.getName());
             }
         }
-
+        ModelIndexStore.getDefault().loadAll(names);
         return true;
     }
 
@@ -573,6 +575,11 @@ public class ErlModel extends Openable implements IErlModel {
         deltaManager.erlModelDeltas.add(delta);
     }
 
+    @Override
+    public void fireElementChanged(final IErlElementDelta delta) {
+        deltaManager.fire(delta, ElementChangedEvent.POST_CHANGE);
+    }
+
     public void notifyListeners(final IErlElementDelta deltaToNotify,
             final int eventType, final IElementChangedListener[] listeners,
             final int[] listenerMask, final int listenerCount) {
@@ -892,11 +899,19 @@ public class ErlModel extends Openable implements IErlModel {
                     ErlLogger.warn(e);
                 }
             }
+            final ErlElementDelta modelDelta = new ErlElementDelta(0, 0,
+                    ErlModel.this);
             for (final IResource rsrc : added) {
-                create(rsrc);
+                addDelta(modelDelta, create(rsrc), IErlElementDelta.ADDED, 0);
             }
             for (final IResource rsrc : changed) {
-                change(rsrc, changedDelta.get(rsrc));
+                final IResourceDelta delta = changedDelta.get(rsrc);
+                change(rsrc, delta);
+                if ((delta.getFlags() & IResourceDelta.CONTENT) != 0) {
+                    addDelta(modelDelta, findElement(rsrc),
+                            IErlElementDelta.CHANGED,
+                            IErlElementDelta.F_CONTENT);
+                }
             }
             // make sure we don't dispose trees before leaves...
             Collections.sort(removed, new Comparator<IResource>() {
@@ -914,8 +929,21 @@ public class ErlModel extends Openable implements IErlModel {
 
             });
             for (final IResource rsrc : removed) {
+                addDelta(modelDelta, findElement(rsrc),
+                        IErlElementDelta.REMOVED, 0);
                 remove(rsrc);
             }
+            if (modelDelta.getKind() != 0) {
+                deltaManager.fire(modelDelta, ElementChangedEvent.POST_CHANGE);
+            }
+        }
+
+        private void addDelta(final ErlElementDelta modelDelta,
+                final IErlElement element, final int kind, final int flags) {
+            if (element != null) {
+                modelDelta.insertDeltaTree(element, new ErlElementDelta(kind,
+                        flags, element));
+            }
         }
     }
 
@@ -1051,62 +1079,60 @@ public class ErlModel extends Openable implements IErlModel {
                 return module;
             }
         }
-        final List<IErlModule> allModules = Lists.newArrayList();
-        final Set<String> paths = Sets.newHashSet();
-        try {
-            for (int i = 0; i < 2; ++i) {
-                final boolean externalModules = i > 0;
-                if (externalModules && !checkExternals) {
-                    break;
-                }
-                if (project != null) {
-                    final IErlModule module = tryFindModule(
-                            Sets.newHashSet(project), moduleName, modulePath,
-                            ignoreCase, allModules, paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+        final IErlModule module = findModuleInProjects(project, moduleName,
+                modulePath, ignoreCase, checkExternals, scope);
+        if (module != null) {
+            ErlModelCache.getDefault().putModule(module);
+        }
+        return module;
+    }
+
+    private IErlModule findModuleInProjects(final IErlProject project,
+            final String moduleName, final String modulePath,
+            final boolean ignoreCase, final boolean checkExternals,
+            final IErlElementLocator.Scope scope) throws ErlModelException {
+        for (int i = 0; i < 2; ++i) {
+            final boolean externalModules = i > 0;
+            if (externalModules && !checkExternals) {
+                break;
+            }
+            if (project != null) {
+                final IErlModule module = tryFindModule(
+                        Collections.singleton(project), moduleName,
+                        modulePath, ignoreCase, externalModules);
+                if (module != null) {
+                    return module;
                 }
-                if ((scope == Scope.REFERENCED_PROJECTS || scope == Scope.ALL_PROJECTS)
-                        && project != null) {
-                    final Collection<IErlProject> projects = project
-                            .getReferencedProjects();
-                    final IErlModule module = tryFindModule(projects,
-                            moduleName, modulePath, ignoreCase, allModules,
-                            paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+            }
+            if ((scope == Scope.REFERENCED_PROJECTS || scope == Scope.ALL_PROJECTS)
+                    && project != null) {
+                final Collection<IErlProject> projects = project
+                        .getReferencedProjects();
+                final IErlModule module = tryFindModule(projects, moduleName,
+                        modulePath, ignoreCase, externalModules);
+                if (module != null) {
+                    return module;
                 }
-                if (scope == Scope.ALL_PROJECTS) {
-                    final Collection<IErlProject> projects = getErlangProjects();
-                    final IErlModule module = tryFindModule(projects,
-                            moduleName, modulePath, ignoreCase, allModules,
-                            paths, externalModules);
-                    if (module != null) {
-                        return module;
-                    }
+            }
+            if (scope == Scope.ALL_PROJECTS) {
+                final Collection<IErlProject> projects = getErlangProjects();
+                final IErlModule module = tryFindModule(projects, moduleName,
+                        modulePath, ignoreCase, externalModules);
+                if (module != null) {
+                    return module;
                 }
             }
-            return null;
-        } finally {
-            ErlModelCache.getDefault().putModules(allModules);
         }
+        return null;
     }
 
     private IErlModule tryFindModule(final Collection<IErlProject> projects,
             final String moduleName, final String modulePath,
-            final boolean ignoreCase, final List<IErlModule> allModules,
-            final Set<String> paths, final boolean externalModules)
+            final boolean ignoreCase, final boolean externalModules)
             throws ErlModelException {
-        IErlModule module;
         for (final IErlProject project : projects) {
-            final Collection<IErlModule> modules = Lists.newArrayList();
-            final Collection<IErlModule> modulesOrExternals = externalModules ? project
-                    .getExternalModules() : project.getModules();
-            getAllModulesAux(modulesOrExternals, modules, paths);
-            allModules.addAll(modules);
-            module = findModule(modules, moduleName, modulePath, ignoreCase);
+            final IErlModule module = getModuleIndex(project, externalModules)
+                    .find(moduleName, modulePath, ignoreCase);
             if (module != null) {
                 return module;
             }
@@ -1114,35 +1140,22 @@ public class ErlModel extends Openable implements IErlModel {
         return null;
     }
 
-    private IErlModule findModule(final Collection<IErlModule> modules,
-            final String moduleName, final String modulePath,
-            final boolean ignoreCase) {
-        if (modulePath != null) {
-            for (final IErlModule module2 : modules) {
-                final String path2 = module2.getFilePath();
-                if (path2 != null && modulePath.equals(path2)) {
-                    return module2;
-                }
-            }
-        }
-        if (moduleName != null) {
-            final boolean hasExtension = SystemConfiguration
-                    .hasExtension(moduleName);
-            for (final IErlModule module2 : modules) {
-                final String name = hasExtension ? module2.getName() : module2
-                        .getModuleName();
-                if (ignoreCase) {
-                    if (moduleName.equalsIgnoreCase(name)) {
-                        return module2;
-                    }
-                } else {
-                    if (moduleName.equals(name)) {
-                        return module2;
-                    }
-                }
-            }
+    /**
+     * The index is built from the project's modules on first use and kept by
+     * the model cache until they change, so that a lookup doesn't have to list
+     * and scan every module of every project in the scope.
+     */
+    private static ModuleIndex getModuleIndex(final IErlProject project,
+            final boolean externalModules) throws ErlModelException {
+        final ErlModelCache erlModelCache = getErlModelCache();
+        ModuleIndex index = erlModelCache.getModuleIndex(project,
+                externalModules);
+        if (index == null) {
+            index = new ModuleIndex(externalModules ? project
+                    .getExternalModules() : project.getModules());
+            erlModelCache.putModuleIndex(project, externalModules, index);
         }
-        return null;
+        return index;
     }
 
     @Override
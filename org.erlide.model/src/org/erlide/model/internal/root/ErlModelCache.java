@@ -9,38 +9,65 @@ import java.util.Set;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.xtext.xbase.lib.Pair;
 import org.erlide.model.erlang.IErlModule;
+import org.erlide.model.erlang.ModuleKind;
 import org.erlide.model.root.ErlModelManager;
 import org.erlide.model.root.IErlElement;
+import org.erlide.model.root.IErlElementDelta;
+import org.erlide.model.root.IErlExternal;
+import org.erlide.model.root.IErlFolder;
+import org.erlide.model.root.IErlModel;
 import org.erlide.model.root.IErlModelChangeListener;
 import org.erlide.model.root.IErlProject;
 import org.erlide.model.services.search.ErlideOpen.ExternalTreeEntry;
 import org.erlide.model.util.ErlideUtil;
+import org.erlide.model.util.ModelUtils;
 import org.erlide.utils.IDisposable;
-import org.erlide.utils.LRUCache;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+/**
+ * Caches for model lookups that would otherwise list folders or call the
+ * backend. Each cache is bounded by weight rather than by number of entries:
+ * an entry weighs one plus the number of modules, directories or tree entries
+ * it holds, so that a few big projects can't push out everything else while
+ * small workspaces keep all they need.
+ * <p>
+ * Entries are dropped when model deltas show that the modules or folders they
+ * depend on have changed.
+ */
 public class ErlModelCache implements IDisposable {
 
-    private static final int CACHE_SIZE = 100;
+    /**
+     * Maximum weight of each cache, can be changed with the system property
+     * <code>erlide.model.cache.weight</code>.
+     */
+    private static final long CACHE_WEIGHT = Long.getLong(
+            "erlide.model.cache.weight", 100000);
     // TODO make a more educated guess here...
     // private static final int NAME_CACHE_SIZE = 300;
     private static ErlModelCache fgInstance = null;
 
-    private final Map<IErlModule, List<IErlModule>> moduleIncludeCache;
-    private final Map<String, IErlModule> pathToModuleCache;
-    private final Map<String, Pair<IErlProject, List<ExternalTreeEntry>>> externalTreeCache;
+    private final Map<String, Cache<?, ?>> caches = Maps.newLinkedHashMap();
+    private final Cache<IErlModule, List<IErlModule>> moduleIncludeCache;
+    private final Cache<String, IErlModule> pathToModuleCache;
+    private final Cache<String, Pair<IErlProject, List<ExternalTreeEntry>>> externalTreeCache;
     private final Map<String, IErlModule> editedModulesMap;
     // private final LRUCache<String, Set<IErlModule>> nameToModuleCache;
     private final ModelChangeListener modelChangeListener;
-    private final Map<IErlProject, List<IErlModule>> projectModuleCache;
-    private final Map<IErlProject, List<IErlModule>> projectIncludeCache;
-    private final Map<IErlProject, String> projectExternalModulesStringCache;
-    private final Map<IErlProject, String> projectExternalIncludesStringCache;
-    private final Map<IErlProject, Collection<IPath>> projectSourceDirsCache;
-    private final Map<IErlProject, Collection<IPath>> projectIncludeDirsCache;
+    private final Cache<IErlProject, List<IErlModule>> projectModuleCache;
+    private final Cache<IErlProject, List<IErlModule>> projectIncludeCache;
+    private final Cache<IErlProject, String> projectExternalModulesStringCache;
+    private final Cache<IErlProject, String> projectExternalIncludesStringCache;
+    private final Cache<IErlProject, Collection<IPath>> projectSourceDirsCache;
+    private final Cache<IErlProject, Collection<IPath>> projectIncludeDirsCache;
+    private final Cache<IErlProject, ModuleIndex> projectModuleIndexCache;
+    private final Cache<IErlProject, ModuleIndex> projectExternalModuleIndexCache;
     private final static boolean disabled = ErlideUtil.isCacheDisabled();
 
     public static ErlModelCache getDefault() {
@@ -58,28 +85,65 @@ public class ErlModelCache implements IDisposable {
         @Override
         public void elementChanged(final IErlElement element) {
             if (element instanceof IErlModule) {
-                final IErlModule module = (IErlModule) element;
-                moduleIncludeCache.remove(module);
+                moduleChanged((IErlModule) element);
             }
         }
     }
 
-    private static <K, V> Map<K, V> newCache() {
-        return new LRUCache<K, V>(CACHE_SIZE).asSynchronized();
+    private static final Weigher<Object, Object> ONE = new Weigher<Object, Object>() {
+        @Override
+        public int weigh(final Object key, final Object value) {
+            return 1;
+        }
+    };
+
+    private static final Weigher<Object, Collection<?>> SIZE = new Weigher<Object, Collection<?>>() {
+        @Override
+        public int weigh(final Object key, final Collection<?> value) {
+            return 1 + value.size();
+        }
+    };
+
+    private static final Weigher<Object, Pair<IErlProject, List<ExternalTreeEntry>>> TREE_SIZE = new Weigher<Object, Pair<IErlProject, List<ExternalTreeEntry>>>() {
+        @Override
+        public int weigh(final Object key,
+                final Pair<IErlProject, List<ExternalTreeEntry>> value) {
+            return 1 + value.getValue().size();
+        }
+    };
+
+    private static final Weigher<Object, ModuleIndex> INDEX_SIZE = new Weigher<Object, ModuleIndex>() {
+        @Override
+        public int weigh(final Object key, final ModuleIndex value) {
+            return 1 + value.size();
+        }
+    };
+
+    private <K, V> Cache<K, V> newCache(final String name,
+            final Weigher<? super K, ? super V> weigher) {
+        final Cache<K, V> cache = CacheBuilder.newBuilder()
+                .maximumWeight(CACHE_WEIGHT).weigher(weigher).build();
+        caches.put(name, cache);
+        return cache;
     }
 
     private ErlModelCache() {
-        pathToModuleCache = newCache();
-        editedModulesMap = Maps.newHashMap();
+        pathToModuleCache = newCache("pathToModule", ONE);
+        editedModulesMap = Maps.newConcurrentMap();
         // nameToModuleCache = newCache();
-        moduleIncludeCache = newCache();
-        externalTreeCache = newCache();
-        projectModuleCache = newCache();
-        projectIncludeCache = newCache();
-        projectExternalModulesStringCache = newCache();
-        projectExternalIncludesStringCache = newCache();
-        projectSourceDirsCache = newCache();
-        projectIncludeDirsCache = newCache();
+        moduleIncludeCache = newCache("moduleIncludes", SIZE);
+        externalTreeCache = newCache("externalTree", TREE_SIZE);
+        projectModuleCache = newCache("projectModules", SIZE);
+        projectIncludeCache = newCache("projectIncludes", SIZE);
+        projectExternalModulesStringCache = newCache("externalModulesString",
+                ONE);
+        projectExternalIncludesStringCache = newCache(
+                "externalIncludesString", ONE);
+        projectSourceDirsCache = newCache("sourceDirs", SIZE);
+        projectIncludeDirsCache = newCache("includeDirs", SIZE);
+        projectModuleIndexCache = newCache("moduleIndex", INDEX_SIZE);
+        projectExternalModuleIndexCache = newCache("externalModuleIndex",
+                INDEX_SIZE);
         modelChangeListener = new ModelChangeListener();
         ErlModelManager.getErlangModel().addModelChangeListener(
                 modelChangeListener);
@@ -94,7 +158,9 @@ public class ErlModelCache implements IDisposable {
         // modules.add(module);
         // nameToModuleCache.put(moduleName, modules);
         final String path = module.getFilePath();
-        pathToModuleCache.put(path, module);
+        if (path != null) {
+            pathToModuleCache.put(path, module);
+        }
     }
 
     public void removeModule(final IErlModule module) {
@@ -102,7 +168,7 @@ public class ErlModelCache implements IDisposable {
         // nameToModuleCache.remove(moduleName);
         final String path = module.getFilePath();
         if (path != null) {
-            pathToModuleCache.remove(path);
+            pathToModuleCache.invalidate(path);
         }
     }
 
@@ -134,20 +200,21 @@ public class ErlModelCache implements IDisposable {
         if (module != null) {
             return module;
         }
-        return pathToModuleCache.get(path);
+        return pathToModuleCache.getIfPresent(path);
     }
 
     public void putIncludedFilesForModule(final IErlModule module,
             final Collection<IErlModule> result) {
         if (result == null) {
-            moduleIncludeCache.remove(module);
+            moduleIncludeCache.invalidate(module);
         } else {
             moduleIncludeCache.put(module, Lists.newArrayList(result));
         }
     }
 
     public List<IErlModule> getIncludedFilesForModule(final IErlModule module) {
-        final List<IErlModule> modules = moduleIncludeCache.get(module);
+        final List<IErlModule> modules = moduleIncludeCache
+                .getIfPresent(module);
         if (modules == null) {
             return Lists.newArrayList();
         }
@@ -164,7 +231,7 @@ public class ErlModelCache implements IDisposable {
             final IErlProject project,
             final List<ExternalTreeEntry> externalTree) {
         if (externalTree == null) {
-            externalTreeCache.remove(externalPath);
+            externalTreeCache.invalidate(externalPath);
         } else {
             externalTreeCache.put(externalPath,
                     new Pair<IErlProject, List<ExternalTreeEntry>>(project,
@@ -174,7 +241,7 @@ public class ErlModelCache implements IDisposable {
 
     public List<ExternalTreeEntry> getExternalTree(final String externalPath) {
         final Pair<IErlProject, List<ExternalTreeEntry>> tuple = externalTreeCache
-                .get(externalPath);
+                .getIfPresent(externalPath);
         if (tuple == null) {
             return null;
         }
@@ -186,7 +253,8 @@ public class ErlModelCache implements IDisposable {
     }
 
     public List<IErlModule> getModulesForProject(final IErlProject project) {
-        final List<IErlModule> modules = projectModuleCache.get(project);
+        final List<IErlModule> modules = projectModuleCache
+                .getIfPresent(project);
         if (modules == null) {
             return null;
         }
@@ -194,7 +262,8 @@ public class ErlModelCache implements IDisposable {
     }
 
     public List<IErlModule> getIncludesForProject(final IErlProject project) {
-        final List<IErlModule> includes = projectIncludeCache.get(project);
+        final List<IErlModule> includes = projectIncludeCache
+                .getIfPresent(project);
         if (includes == null) {
             return null;
         }
@@ -203,57 +272,140 @@ public class ErlModelCache implements IDisposable {
 
     public void putModulesForProject(final IErlProject project,
             final List<IErlModule> modules) {
-        final List<String> moduleNames = Lists.newArrayList();
-        for (final IErlModule module : modules) {
-            moduleNames.add(module.getName());
-        }
         // ErlLogger.debug("setModulesForProject %s %s", project.getName(),
-        // moduleNames);
+        // modules);
         projectModuleCache.put(project, Lists.newArrayList(modules));
     }
 
     public void putIncludesForProject(final IErlProject project,
             final List<IErlModule> includes) {
-        final List<String> moduleNames = Lists.newArrayList();
-        for (final IErlModule module : includes) {
-            moduleNames.add(module.getName());
-        }
         // ErlLogger.debug("setIncludesForProject %s %s", project.getName(),
-        // moduleNames);
+        // includes);
         projectIncludeCache.put(project, Lists.newArrayList(includes));
     }
 
+    public ModuleIndex getModuleIndex(final IErlProject project,
+            final boolean externalModules) {
+        return (externalModules ? projectExternalModuleIndexCache
+                : projectModuleIndexCache).getIfPresent(project);
+    }
+
+    public void putModuleIndex(final IErlProject project,
+            final boolean externalModules, final ModuleIndex index) {
+        (externalModules ? projectExternalModuleIndexCache
+                : projectModuleIndexCache).put(project, index);
+    }
+
+    public void removeModuleIndex(final IErlProject project) {
+        projectModuleIndexCache.invalidate(project);
+        projectExternalModuleIndexCache.invalidate(project);
+    }
+
     public void removeProject(final IErlProject project) {
         // ErlLogger.debug("removeForProject %s", project.getName());
-        final List<IErlModule> includes = projectIncludeCache.get(project);
+        final List<IErlModule> includes = projectIncludeCache
+                .getIfPresent(project);
         if (includes != null) {
-            for (final IErlModule module : includes) {
-                moduleIncludeCache.put(module, null);
-            }
+            moduleIncludeCache.invalidateAll(includes);
         }
-        final List<IErlModule> modules = projectModuleCache.get(project);
+        final List<IErlModule> modules = projectModuleCache
+                .getIfPresent(project);
         if (modules != null) {
-            for (final IErlModule module : modules) {
-                moduleIncludeCache.put(module, null);
-            }
+            moduleIncludeCache.invalidateAll(modules);
         }
-        projectIncludeCache.remove(project);
-        projectModuleCache.remove(project);
+        projectIncludeCache.invalidate(project);
+        projectModuleCache.invalidate(project);
         final Set<String> keysToRemove = Sets.newHashSet();
         final Set<Entry<String, Pair<IErlProject, List<ExternalTreeEntry>>>> entrySet = externalTreeCache
-                .entrySet();
+                .asMap().entrySet();
         for (final Entry<String, Pair<IErlProject, List<ExternalTreeEntry>>> entry : entrySet) {
             if (entry.getValue().getKey() == project) {
                 keysToRemove.add(entry.getKey());
             }
         }
-        for (final String keyToRemove : keysToRemove) {
-            externalTreeCache.remove(keyToRemove);
+        externalTreeCache.invalidateAll(keysToRemove);
+        projectExternalModulesStringCache.invalidate(project);
+        projectExternalIncludesStringCache.invalidate(project);
+        projectIncludeDirsCache.invalidate(project);
+        projectSourceDirsCache.invalidate(project);
+        removeModuleIndex(project);
+    }
+
+    /**
+     * Drops the entries that depend on the elements that the delta shows as
+     * added, removed or changed.
+     */
+    public void processDelta(final IErlElementDelta delta) {
+        final IErlElement element = delta.getElement();
+        final int kind = delta.getKind();
+        final boolean addedOrRemoved = kind == IErlElementDelta.ADDED
+                || kind == IErlElementDelta.REMOVED;
+        if (element instanceof IErlModule) {
+            final IErlModule module = (IErlModule) element;
+            if (addedOrRemoved) {
+                moduleAddedOrRemoved(module);
+            } else if ((delta.getFlags() & IErlElementDelta.F_CONTENT) != 0) {
+                moduleChanged(module);
+            }
+            return;
+        }
+        final boolean container = element instanceof IErlFolder
+                || element instanceof IErlExternal;
+        if (element instanceof IErlProject
+                && kind == IErlElementDelta.REMOVED) {
+            removeProject((IErlProject) element);
+            return;
+        }
+        if (container && addedOrRemoved) {
+            final IErlProject project = ModelUtils.getProject(element);
+            if (project != null) {
+                removeModuleLists(project);
+            }
+            return;
+        }
+        if (container || element instanceof IErlProject
+                || element instanceof IErlModel) {
+            for (final IErlElementDelta child : delta
+                    .getChildren(IErlElementDelta.ALL)) {
+                processDelta(child);
+            }
         }
-        projectExternalModulesStringCache.remove(project);
-        projectExternalIncludesStringCache.remove(project);
-        projectIncludeDirsCache.remove(project);
-        projectSourceDirsCache.remove(project);
+    }
+
+    private void moduleAddedOrRemoved(final IErlModule module) {
+        removeModule(module);
+        final IErlProject project = ModelUtils.getProject(module);
+        if (project != null) {
+            removeModuleLists(project);
+        }
+        if (ModuleKind.nameToModuleKind(module.getName()) == ModuleKind.HRL) {
+            // include directives that didn't resolve may resolve now
+            moduleIncludeCache.invalidateAll();
+        } else {
+            moduleIncludeCache.invalidate(module);
+        }
+    }
+
+    /**
+     * The includes of the module may have changed, and so may those of the
+     * modules that include it.
+     */
+    private void moduleChanged(final IErlModule module) {
+        moduleIncludeCache.invalidate(module);
+        final List<IErlModule> includers = Lists.newArrayList();
+        for (final Entry<IErlModule, List<IErlModule>> entry : moduleIncludeCache
+                .asMap().entrySet()) {
+            if (entry.getValue().contains(module)) {
+                includers.add(entry.getKey());
+            }
+        }
+        moduleIncludeCache.invalidateAll(includers);
+    }
+
+    private void removeModuleLists(final IErlProject project) {
+        projectModuleCache.invalidate(project);
+        projectIncludeCache.invalidate(project);
+        removeModuleIndex(project);
     }
 
     public void pathVarsChanged() {
@@ -261,13 +413,13 @@ public class ErlModelCache implements IDisposable {
     }
 
     public String getExternalModulesString(final IErlProject project) {
-        return projectExternalModulesStringCache.get(project);
+        return projectExternalModulesStringCache.getIfPresent(project);
     }
 
     public void putExternalModulesString(final IErlProject project,
             final String externalModulesString) {
         if (externalModulesString == null) {
-            projectExternalModulesStringCache.remove(project);
+            projectExternalModulesStringCache.invalidate(project);
         } else {
             projectExternalModulesStringCache.put(project,
                     externalModulesString);
@@ -275,13 +427,13 @@ public class ErlModelCache implements IDisposable {
     }
 
     public String getExternalIncludesString(final IErlProject project) {
-        return projectExternalIncludesStringCache.get(project);
+        return projectExternalIncludesStringCache.getIfPresent(project);
     }
 
     public void putExternalIncludesString(final IErlProject project,
             final String externalModulesString) {
         if (externalModulesString == null) {
-            projectExternalIncludesStringCache.remove(project);
+            projectExternalIncludesStringCache.invalidate(project);
         } else {
             projectExternalIncludesStringCache.put(project,
                     externalModulesString);
@@ -291,31 +443,31 @@ public class ErlModelCache implements IDisposable {
     public void putSourceDirs(final IErlProject project,
             final Collection<IPath> dirs) {
         if (dirs == null) {
-            projectSourceDirsCache.remove(project);
+            projectSourceDirsCache.invalidate(project);
         } else {
             projectSourceDirsCache.put(project, dirs);
         }
     }
 
     public Collection<IPath> getSourceDirs(final IErlProject project) {
-        return projectSourceDirsCache.get(project);
+        return projectSourceDirsCache.getIfPresent(project);
     }
 
     public void putIncludeDirs(final IErlProject project,
             final Collection<IPath> dirs) {
         if (dirs == null) {
-            projectIncludeDirsCache.remove(project);
+            projectIncludeDirsCache.invalidate(project);
         } else {
             projectIncludeDirsCache.put(project, dirs);
         }
     }
 
     public Collection<IPath> getIncludeDirs(final IErlProject project) {
-        return projectIncludeDirsCache.get(project);
+        return projectIncludeDirsCache.getIfPresent(project);
     }
 
     public void newProjectCreated() {
-        pathToModuleCache.clear();
+        pathToModuleCache.invalidateAll();
         // nameToModuleCache.clear();
     }
 
@@ -326,17 +478,40 @@ public class ErlModelCache implements IDisposable {
     }
 
     public void clearModelCache() {
-        moduleIncludeCache.clear();
-        pathToModuleCache.clear();
-        externalTreeCache.clear();
+        for (final Cache<?, ?> cache : caches.values()) {
+            cache.invalidateAll();
+        }
         // editedModulesMap.clear();
         // nameToModuleCache.clear();
-        projectModuleCache.clear();
-        projectIncludeCache.clear();
-        projectExternalModulesStringCache.clear();
-        projectExternalIncludesStringCache.clear();
-        projectSourceDirsCache.clear();
-        projectIncludeDirsCache.clear();
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of each cache since startup.
+     */
+    public Map<String, CacheStats> getStatistics() {
+        final Map<String, CacheStats> result = Maps.newLinkedHashMap();
+        for (final Entry<String, Cache<?, ?>> entry : caches.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().stats());
+        }
+        return result;
+    }
+
+    /**
+     * @return the statistics of each cache, one cache per line.
+     */
+    public String getStatisticsString() {
+        final StringBuilder result = new StringBuilder("Model cache:");
+        for (final Entry<String, CacheStats> entry : getStatistics()
+                .entrySet()) {
+            final CacheStats stats = entry.getValue();
+            result.append(String.format(
+                    "%n  %-22s %7d entries, %8d hits, %8d misses "
+                            + "(%5.1f%% hits), %7d evictions", entry.getKey(),
+                    caches.get(entry.getKey()).size(), stats.hitCount(),
+                    stats.missCount(), stats.hitRate() * 100,
+                    stats.evictionCount()));
+        }
+        return result.toString();
     }
 
     private static class DisabledErlModelCache extends ErlModelCache {
@@ -388,6 +563,11 @@ public class ErlModelCache implements IDisposable {
                 final List<IErlModule> modules) {
         }
 
+        @Override
+        public void putModuleIndex(final IErlProject project,
+                final boolean externalModules, final ModuleIndex index) {
+        }
+
         @Override
         public void putSourceDirs(final IErlProject project,
                 final Collection<IPath> dirs) {
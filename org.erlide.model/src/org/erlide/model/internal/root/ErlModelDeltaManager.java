@@ -55,6 +55,9 @@ public class ErlModelDeltaManager {
             } else {
                 deltaToNotify = customDeltas;
             }
+            if (deltaToNotify != null) {
+                ErlModelCache.getDefault().processDelta(deltaToNotify);
+            }
 
             final IElementChangedListener[] listeners;
             final int listenerCount;
@@ -171,12 +171,22 @@ public class ErlProject extends Openable implements IErlProject {
         final String externalModules = getExternalModulesString();
         final Collection<IPath> includeDirs = getIncludeDirs();
         final List<String> projectIncludes = Lists.newArrayList();
+        final ModelIndexStore store = ModelIndexStore.getDefault();
+        final ModelIndexFile index = store.getIndex(this);
         for (final IPath path : includeDirs) {
             if (path.isAbsolute() && !fProject.getLocation().isPrefixOf(path)) {
-                final IRpcSite backend = ModelPlugin.getDefault()
-                        .getIdeBackend();
-                final Collection<String> includes = ErlideOpen
-                        .getIncludesInDir(backend, path.toPortableString());
+                final String dir = path.toPortableString();
+                Collection<String> includes = index == null ? null : index
+                        .getIncludesInDir(dir);
+                if (includes == null) {
+                    final IRpcSite backend = ModelPlugin.getDefault()
+                            .getIdeBackend();
+                    includes = ErlideOpen.getIncludesInDir(backend, dir);
+                    if (includes != null && index != null) {
+                        index.putIncludesInDir(dir, includes);
+                        store.changed();
+                    }
+                }
                 if (includes != null) {
                     for (final String include : includes) {
                         projectIncludes.add(path.append(include)
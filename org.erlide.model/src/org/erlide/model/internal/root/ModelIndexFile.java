@@ -0,0 +1,299 @@
+package org.erlide.model.internal.root;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+
+import org.erlide.model.services.search.ErlideOpen.ExternalTreeEntry;
+import org.erlide.utils.ErlLogger;
+import org.erlide.utils.Util;
+
+import com.ericsson.otp.erlang.OtpErlang;
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The persistent model index of a project: the parsed forms and comments of
+ * its modules, the trees of its external modules and includes and the
+ * listings of its include directories, each with the stamps of the files it
+ * was computed from. An entry whose files have changed since is not
+ * returned, so a stale index is never worse than no index.
+ * <p>
+ * The file holds a header with {@link #VERSION} followed by the entries as
+ * one Erlang term in external format; a file with another version is
+ * ignored and rewritten.
+ */
+public class ModelIndexFile {
+
+    static final int MAGIC = 0x45494458; // "EIDX"
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+    private static final OtpErlangAtom MODULE = new OtpErlangAtom("module");
+    private static final OtpErlangAtom DIR = new OtpErlangAtom("dir");
+
+    private final ConcurrentMap<String, OtpErlangTuple> modules = Maps
+            .newConcurrentMap();
+    private final ConcurrentMap<String, OtpErlangTuple> externalTrees = Maps
+            .newConcurrentMap();
+    private final ConcurrentMap<String, OtpErlangTuple> includeDirs = Maps
+            .newConcurrentMap();
+    private volatile boolean dirty;
+
+    /**
+     * @return the index stored in the file, or an empty index if the file
+     *         doesn't exist, is of another version or can't be read.
+     */
+    public static ModelIndexFile load(final File file) {
+        final ModelIndexFile result = new ModelIndexFile();
+        if (!file.isFile()) {
+            return result;
+        }
+        try {
+            final byte[] bytes = new byte[(int) file.length()];
+            final DataInputStream in = new DataInputStream(
+                    new FileInputStream(file));
+            try {
+                in.readFully(bytes);
+            } finally {
+                in.close();
+            }
+            result.read(ByteBuffer.wrap(bytes));
+        } catch (final IOException e) {
+            ErlLogger.warn(e);
+        } catch (final OtpErlangDecodeException e) {
+            ErlLogger.warn("can't read model index %s: %s", file, e);
+        } catch (final ClassCastException e) {
+            ErlLogger.warn("can't read model index %s: %s", file, e);
+        }
+        return result;
+    }
+
+    private void read(final ByteBuffer buffer) throws OtpErlangDecodeException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC
+                || buffer.getInt() != VERSION) {
+            return;
+        }
+        final int length = buffer.getInt();
+        if (length != buffer.remaining()) {
+            return;
+        }
+        final byte[] data = new byte[length];
+        buffer.get(data);
+        final OtpErlangTuple t = (OtpErlangTuple) new OtpInputStream(data)
+                .read_any();
+        readEntries((OtpErlangList) t.elementAt(0), modules);
+        readEntries((OtpErlangList) t.elementAt(1), externalTrees);
+        readEntries((OtpErlangList) t.elementAt(2), includeDirs);
+    }
+
+    private static void readEntries(final OtpErlangList list,
+            final Map<String, OtpErlangTuple> map) {
+        for (final OtpErlangObject object : list) {
+            final OtpErlangTuple entry = (OtpErlangTuple) object;
+            map.put(Util.stringValue(entry.elementAt(0)),
+                    (OtpErlangTuple) entry.elementAt(1));
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file that then replaces the file, so
+     * that a crash never leaves a partial index behind. Modules whose files
+     * are gone are dropped.
+     */
+    public void write(final File file) throws IOException {
+        dirty = false;
+        for (final String path : modules.keySet()) {
+            if (!new File(path).isFile()) {
+                modules.remove(path);
+            }
+        }
+        final OtpOutputStream out = new OtpOutputStream();
+        out.write_any(OtpErlang.mkTuple(writeEntries(modules),
+                writeEntries(externalTrees), writeEntries(includeDirs)));
+        final File tmp = new File(file.getPath() + ".tmp");
+        final FileOutputStream stream = new FileOutputStream(tmp);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(out.size());
+            header.flip();
+            final FileChannel channel = stream.getChannel();
+            channel.write(header);
+            channel.write(ByteBuffer.wrap(out.toByteArray()));
+        } finally {
+            stream.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("can't write " + file);
+            }
+        }
+    }
+
+    private static OtpErlangList writeEntries(
+            final Map<String, OtpErlangTuple> map) {
+        final List<OtpErlangObject> result = Lists
+                .newArrayListWithCapacity(map.size());
+        for (final Entry<String, OtpErlangTuple> entry : map.entrySet()) {
+            result.add(OtpErlang.mkTuple(new OtpErlangString(entry.getKey()),
+                    entry.getValue()));
+        }
+        return new OtpErlangList(result.toArray(new OtpErlangObject[result
+                .size()]));
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public boolean isEmpty() {
+        return modules.isEmpty() && externalTrees.isEmpty()
+                && includeDirs.isEmpty();
+    }
+
+    /**
+     * @return the forms and comments of the module, as returned by
+     *         <code>erlide_noparse</code>, or null if they aren't known or the
+     *         file has changed since.
+     */
+    public OtpErlangTuple getModule(final String path) {
+        final OtpErlangTuple entry = modules.get(path);
+        if (entry == null || !isStampValid(entry.elementAt(0))) {
+            return null;
+        }
+        return OtpErlang.mkTuple(entry.elementAt(1), entry.elementAt(2));
+    }
+
+    public void putModule(final String path, final OtpErlangList forms,
+            final OtpErlangList comments) {
+        modules.put(path, OtpErlang.mkTuple(stamp(path), forms, comments));
+        dirty = true;
+    }
+
+    public void removeModule(final String path) {
+        if (modules.remove(path) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * The tree is valid as long as neither the files named in the externals
+     * string nor the directories and nested externals files in the tree have
+     * changed.
+     */
+    public List<ExternalTreeEntry> getExternalTree(final String externals) {
+        final OtpErlangTuple entry = externalTrees.get(externals);
+        if (entry == null) {
+            return null;
+        }
+        for (final OtpErlangObject stamp : (OtpErlangList) entry.elementAt(0)) {
+            if (!isStampValid(stamp)) {
+                return null;
+            }
+        }
+        final OtpErlangList tree = (OtpErlangList) entry.elementAt(1);
+        final List<ExternalTreeEntry> result = Lists
+                .newArrayListWithCapacity(tree.arity());
+        for (final OtpErlangObject object : tree) {
+            final OtpErlangTuple t = (OtpErlangTuple) object;
+            result.add(new ExternalTreeEntry(Util.stringValue(t.elementAt(0)),
+                    Util.stringValue(t.elementAt(1)), MODULE.equals(t
+                            .elementAt(2))));
+        }
+        return result;
+    }
+
+    public void putExternalTree(final String externals,
+            final List<ExternalTreeEntry> tree) {
+        final List<OtpErlangObject> stamps = Lists.newArrayList();
+        for (final String path : externals.split(";")) {
+            stamps.add(stamp(path));
+        }
+        final OtpErlangObject[] entries = new OtpErlangObject[tree.size()];
+        int i = 0;
+        for (final ExternalTreeEntry entry : tree) {
+            if (!entry.isModule()) {
+                stamps.add(stamp(entry.getPath()));
+            }
+            entries[i++] = OtpErlang.mkTuple(
+                    new OtpErlangString(entry.getParentPath()),
+                    new OtpErlangString(entry.getPath()),
+                    entry.isModule() ? MODULE : DIR);
+        }
+        externalTrees.put(externals, OtpErlang.mkTuple(
+                new OtpErlangList(stamps.toArray(new OtpErlangObject[stamps
+                        .size()])), new OtpErlangList(entries)));
+        dirty = true;
+    }
+
+    /**
+     * @return the include files in the directory, or null if they aren't
+     *         known or the directory has changed since.
+     */
+    public Collection<String> getIncludesInDir(final String dir) {
+        final OtpErlangTuple entry = includeDirs.get(dir);
+        if (entry == null || !isStampValid(entry.elementAt(0))) {
+            return null;
+        }
+        final OtpErlangList list = (OtpErlangList) entry.elementAt(1);
+        final List<String> result = Lists.newArrayListWithCapacity(list
+                .arity());
+        for (final OtpErlangObject object : list) {
+            result.add(Util.stringValue(object));
+        }
+        return result;
+    }
+
+    public void putIncludesInDir(final String dir,
+            final Collection<String> includes) {
+        final OtpErlangObject[] list = new OtpErlangObject[includes.size()];
+        int i = 0;
+        for (final String include : includes) {
+            list[i++] = new OtpErlangString(include);
+        }
+        includeDirs.put(dir,
+                OtpErlang.mkTuple(stamp(dir), new OtpErlangList(list)));
+        dirty = true;
+    }
+
+    /**
+     * @return <code>{Path, LastModified, Length}</code>; both numbers are 0
+     *         for a file that doesn't exist.
+     */
+    private static OtpErlangTuple stamp(final String path) {
+        final File file = new File(path);
+        return OtpErlang.mkTuple(new OtpErlangString(path), new OtpErlangLong(
+                file.lastModified()), new OtpErlangLong(file.isFile() ? file
+                .length() : 0));
+    }
+
+    private static boolean isStampValid(final OtpErlangObject object) {
+        final OtpErlangTuple stamp = (OtpErlangTuple) object;
+        final File file = new File(Util.stringValue(stamp.elementAt(0)));
+        final long lastModified = ((OtpErlangLong) stamp.elementAt(1))
+                .longValue();
+        final long length = ((OtpErlangLong) stamp.elementAt(2)).longValue();
+        return file.lastModified() == lastModified
+                && (file.isFile() ? file.length() : 0) == length;
+    }
+}
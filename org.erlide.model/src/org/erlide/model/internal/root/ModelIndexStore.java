@@ -0,0 +1,174 @@
+package org.erlide.model.internal.root;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.erlide.model.ModelPlugin;
+import org.erlide.model.root.IErlElement;
+import org.erlide.model.root.IErlProject;
+import org.erlide.model.util.ModelUtils;
+import org.erlide.utils.ErlLogger;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Keeps a {@link ModelIndexFile} per project in the state location of the
+ * model plugin, so that after a restart the model can be populated from disk
+ * instead of asking the backend to parse every module again. The indexes are
+ * loaded when the model is opened and written back in the background a few
+ * seconds after they last changed, and when the plugin stops.
+ * <p>
+ * Set the system property <code>erlide.model.index.disabled</code> to turn
+ * the index off.
+ */
+public class ModelIndexStore {
+
+    private static final long WRITE_DELAY = 5000;
+    private static final String SUFFIX = ".index";
+
+    private static ModelIndexStore instance;
+
+    private final File dir;
+    private final boolean disabled;
+    private final ConcurrentMap<String, ModelIndexFile> indexes = Maps
+            .newConcurrentMap();
+    private final Job writeJob;
+
+    public static synchronized ModelIndexStore getDefault() {
+        if (instance == null) {
+            final File dir = ModelPlugin.getDefault().getStateLocation()
+                    .append("index").toFile();
+            instance = new ModelIndexStore(dir,
+                    Boolean.getBoolean("erlide.model.index.disabled"));
+        }
+        return instance;
+    }
+
+    /**
+     * @return the store if it has been used, null otherwise
+     */
+    public static synchronized ModelIndexStore getDefaultIfCreated() {
+        return instance;
+    }
+
+    public ModelIndexStore(final File dir, final boolean disabled) {
+        this.dir = dir;
+        this.disabled = disabled;
+        writeJob = new Job("write model index") {
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                writeAll();
+                return Status.OK_STATUS;
+            }
+        };
+        writeJob.setSystem(true);
+        writeJob.setPriority(Job.DECORATE);
+    }
+
+    /**
+     * Loads the indexes of the projects, so that they are in memory before the
+     * model asks for them, and deletes the indexes of projects that don't
+     * exist anymore.
+     */
+    public void loadAll(final Collection<String> projectNames) {
+        if (disabled) {
+            return;
+        }
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            final String name = file.getName();
+            if (!name.endsWith(SUFFIX)) {
+                continue;
+            }
+            final String projectName = name.substring(0, name.length()
+                    - SUFFIX.length());
+            if (projectNames.contains(projectName)) {
+                getIndex(projectName);
+            } else {
+                indexes.remove(projectName);
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the index of the project the element is in, or null if the
+     *         index is disabled or the element isn't in a project.
+     */
+    public ModelIndexFile getIndex(final IErlElement element) {
+        if (disabled || element == null) {
+            return null;
+        }
+        final IErlProject project = element instanceof IErlProject ? (IErlProject) element
+                : ModelUtils.getProject(element);
+        if (project == null) {
+            return null;
+        }
+        return getIndex(project.getName());
+    }
+
+    public ModelIndexFile getIndex(final String projectName) {
+        ModelIndexFile index = indexes.get(projectName);
+        if (index == null) {
+            index = ModelIndexFile.load(getFile(projectName));
+            final ModelIndexFile old = indexes.putIfAbsent(projectName, index);
+            if (old != null) {
+                index = old;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Schedules the changed indexes to be written.
+     */
+    public void changed() {
+        writeJob.schedule(WRITE_DELAY);
+    }
+
+    /**
+     * Writes the changed indexes. The background job and the plugin stopping
+     * don't write the same files at the same time.
+     */
+    public synchronized void writeAll() {
+        for (final Entry<String, ModelIndexFile> entry : indexes.entrySet()) {
+            final ModelIndexFile index = entry.getValue();
+            if (index.isDirty()) {
+                try {
+                    dir.mkdirs();
+                    index.write(getFile(entry.getKey()));
+                } catch (final IOException e) {
+                    ErlLogger.warn(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels or waits for the scheduled write, then writes the changed
+     * indexes.
+     */
+    public void stop() {
+        writeJob.cancel();
+        try {
+            writeJob.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeAll();
+    }
+
+    private File getFile(final String projectName) {
+        return new File(dir, projectName + SUFFIX);
+    }
+}
@@ -0,0 +1,86 @@
+package org.erlide.model.internal.root;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.erlide.model.erlang.IErlModule;
+import org.erlide.utils.SystemConfiguration;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Name and path lookup tables for the modules (or the external modules) of a
+ * project. A lookup gives the same module as a scan of the list it was built
+ * from: a path match first, otherwise the first module with the name.
+ * <p>
+ * The index is immutable; {@link ErlModelCache} keeps one per project and
+ * drops it whenever the modules of the project may have changed.
+ */
+public class ModuleIndex {
+
+    private final int size;
+    private final Map<String, IErlModule> byPath;
+    private final Map<String, IErlModule> byModuleName;
+    private final Map<String, IErlModule> byFileName;
+    private final Map<String, IErlModule> byModuleNameIgnoreCase;
+    private final Map<String, IErlModule> byFileNameIgnoreCase;
+
+    public ModuleIndex(final Collection<IErlModule> modules) {
+        size = modules.size();
+        byPath = Maps.newHashMapWithExpectedSize(size);
+        byModuleName = Maps.newHashMapWithExpectedSize(size);
+        byFileName = Maps.newHashMapWithExpectedSize(size);
+        byModuleNameIgnoreCase = Maps.newHashMapWithExpectedSize(size);
+        byFileNameIgnoreCase = Maps.newHashMapWithExpectedSize(size);
+        for (final IErlModule module : modules) {
+            final String path = module.getFilePath();
+            if (path != null) {
+                putFirst(byPath, path, module);
+            }
+            final String moduleName = module.getModuleName();
+            putFirst(byModuleName, moduleName, module);
+            putFirst(byModuleNameIgnoreCase, lowerCase(moduleName), module);
+            final String fileName = module.getName();
+            putFirst(byFileName, fileName, module);
+            putFirst(byFileNameIgnoreCase, lowerCase(fileName), module);
+        }
+    }
+
+    public IErlModule find(final String moduleName, final String modulePath,
+            final boolean ignoreCase) {
+        if (modulePath != null) {
+            final IErlModule module = byPath.get(modulePath);
+            if (module != null) {
+                return module;
+            }
+        }
+        if (moduleName == null) {
+            return null;
+        }
+        final boolean hasExtension = SystemConfiguration
+                .hasExtension(moduleName);
+        if (ignoreCase) {
+            return (hasExtension ? byFileNameIgnoreCase
+                    : byModuleNameIgnoreCase).get(lowerCase(moduleName));
+        }
+        return (hasExtension ? byFileName : byModuleName).get(moduleName);
+    }
+
+    /**
+     * @return the number of modules in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static void putFirst(final Map<String, IErlModule> map,
+            final String key, final IErlModule module) {
+        if (key != null && !map.containsKey(key)) {
+            map.put(key, module);
+        }
+    }
+
+    private static String lowerCase(final String name) {
+        return name == null ? null : name.toLowerCase();
+    }
+}
@@ -0,0 +1,260 @@
+package org.erlide.model.services.search;
+
+import java.util.List;
+
+import org.erlide.model.erlang.IErlModule;
+
+import com.ericsson.otp.erlang.OtpErlang;
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangException;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+
+/**
+ * The references of the modules parsed in this VM, as computed by
+ * <code>erlide_noparse</code>, so that searches within a single module (like
+ * marking occurrences) don't need to call the backend. The references of a
+ * module are replaced each time it is parsed, so they follow the editor
+ * contents.
+ * <p>
+ * The matching is the same as in <code>erlide_search:find_data/4</code>, and
+ * so are the results.
+ */
+public class ErlReferenceIndex {
+
+    private static final OtpErlangAtom UNDEFINED = new OtpErlangAtom(
+            "undefined");
+    private static final OtpErlangAtom ANY = new OtpErlangAtom("_");
+    private static final OtpErlangAtom EXTERNAL_CALL = new OtpErlangAtom(
+            "external_call");
+    private static final OtpErlangAtom FUNCTION_DEF_MOD = new OtpErlangAtom(
+            "function_def_mod");
+    private static final OtpErlangAtom VAR_PATTERN = new OtpErlangAtom(
+            "var_pattern");
+
+    private static final ErlReferenceIndex instance = new ErlReferenceIndex();
+
+    private final Cache<IErlModule, OtpErlangList> refs = CacheBuilder
+            .newBuilder().weakKeys().build();
+
+    public static ErlReferenceIndex getDefault() {
+        return instance;
+    }
+
+    public void putRefs(final IErlModule module, final OtpErlangList moduleRefs) {
+        refs.put(module, moduleRefs);
+    }
+
+    public void removeRefs(final IErlModule module) {
+        refs.invalidate(module);
+    }
+
+    public boolean hasRefs(final IErlModule module) {
+        return refs.getIfPresent(module) != null;
+    }
+
+    /**
+     * @return <code>{ok, Refs}</code>, like
+     *         {@link ErlideSearchServer#findRefs}, or null if the references
+     *         of the module aren't known.
+     */
+    public OtpErlangObject findRefs(final IErlModule module,
+            final ErlangSearchPattern pattern) {
+        final OtpErlangList moduleRefs = refs.getIfPresent(module);
+        final String path = module.getFilePath();
+        if (moduleRefs == null || path == null) {
+            return null;
+        }
+        return OtpErlang.mkTuple(new OtpErlangAtom("ok"), findData(moduleRefs,
+                pattern.getSearchObject(), path));
+    }
+
+    /**
+     * @param moduleRefs
+     *            a list of <code>#ref{}</code>
+     * @param searchObject
+     *            a pattern or a list of patterns
+     * @return the matches as
+     *         <code>{Path, Function, Arity, Clause, SubClause, Offset, Length, IsDef}</code>
+     */
+    public static OtpErlangList findData(final OtpErlangList moduleRefs,
+            final OtpErlangObject searchObject, final String path) {
+        final OtpErlangObject[] patterns = searchObject instanceof OtpErlangList ? ((OtpErlangList) searchObject)
+                .elements() : new OtpErlangObject[] { searchObject };
+        final OtpErlangAtom mod = new OtpErlangAtom(getModuleName(path));
+        final OtpErlangString modulePath = new OtpErlangString(path);
+        final List<OtpErlangObject> result = Lists.newArrayList();
+        for (final OtpErlangObject object : moduleRefs) {
+            // #ref{data, offset, length, function, arity, clause, sub_clause}
+            final OtpErlangTuple ref = (OtpErlangTuple) object;
+            final OtpErlangObject data = ref.elementAt(1);
+            if (checkPattern(patterns, mod, data, ref.elementAt(4),
+                    ref.elementAt(5), ref.elementAt(6))) {
+                result.add(OtpErlang.mkTuple(modulePath, ref.elementAt(4),
+                        ref.elementAt(5), ref.elementAt(6), ref.elementAt(7),
+                        ref.elementAt(2), ref.elementAt(3), new OtpErlangAtom(
+                                isDef(data))));
+            }
+        }
+        return new OtpErlangList(result.toArray(new OtpErlangObject[result
+                .size()]));
+    }
+
+    private static String getModuleName(final String path) {
+        final String name = path.substring(path.lastIndexOf('/') + 1);
+        final int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static boolean isDef(final OtpErlangObject data) {
+        final String tag = tag(data);
+        return "function_def".equals(tag) || "macro_def".equals(tag)
+                || "type_def".equals(tag) || "module_def".equals(tag)
+                || "var_def".equals(tag) || "record_field_def".equals(tag);
+    }
+
+    private static boolean checkPattern(final OtpErlangObject[] patterns,
+            final OtpErlangAtom mod, final OtpErlangObject data,
+            final OtpErlangObject function, final OtpErlangObject arity,
+            final OtpErlangObject clause) {
+        final String tag = tag(data);
+        final OtpErlangTuple t = data instanceof OtpErlangTuple ? (OtpErlangTuple) data
+                : null;
+        if ("local_call".equals(tag)) {
+            return checkFunctionRef(EXTERNAL_CALL, mod, t.elementAt(1),
+                    t.elementAt(2), patterns);
+        } else if ("function_def".equals(tag)) {
+            return checkFunctionRef(t.elementAt(0), null, t.elementAt(1),
+                    t.elementAt(2), patterns)
+                    || checkFunctionRef(FUNCTION_DEF_MOD, mod, t.elementAt(1),
+                            t.elementAt(2), patterns);
+        } else if ("type_ref".equals(tag) && ANY.equals(t.elementAt(1))) {
+            return isMember(
+                    OtpErlang.mkTuple(t.elementAt(0), mod, t.elementAt(2)),
+                    patterns);
+        } else if ("var_ref".equals(tag) || "var_def".equals(tag)) {
+            return checkVarPattern(patterns, data, function, arity, clause);
+        }
+        return isMember(data, patterns);
+    }
+
+    /**
+     * The first pattern of the same kind for the same function decides.
+     */
+    private static boolean checkFunctionRef(final OtpErlangObject kind,
+            final OtpErlangAtom mod, final OtpErlangObject function,
+            final OtpErlangObject arity, final OtpErlangObject[] patterns) {
+        for (final OtpErlangObject pattern : patterns) {
+            if (!kind.equals(tagAtom(pattern))) {
+                continue;
+            }
+            final OtpErlangTuple p = (OtpErlangTuple) pattern;
+            final int i = mod == null ? 1 : 2;
+            if (mod != null && !same(mod, p.elementAt(1))
+                    || p.arity() <= i + 1 || !same(function, p.elementAt(i))) {
+                continue;
+            }
+            final OtpErlangObject patternArity = p.elementAt(i + 1);
+            return same(arity, patternArity) || UNDEFINED.equals(patternArity);
+        }
+        return false;
+    }
+
+    private static boolean checkVarPattern(final OtpErlangObject[] patterns,
+            final OtpErlangObject var, final OtpErlangObject function,
+            final OtpErlangObject arity, final OtpErlangObject clause) {
+        for (final OtpErlangObject pattern : patterns) {
+            // #var_pattern{vardefref, function, arity, clause}
+            if (!VAR_PATTERN.equals(tagAtom(pattern))) {
+                continue;
+            }
+            final OtpErlangTuple p = (OtpErlangTuple) pattern;
+            if (same(function, p.elementAt(2)) && same(arity, p.elementAt(3))
+                    && same(clause, p.elementAt(4))
+                    && p.elementAt(1) instanceof OtpErlangList
+                    && isMember(var, ((OtpErlangList) p.elementAt(1))
+                            .elements())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMember(final OtpErlangObject object,
+            final OtpErlangObject[] list) {
+        for (final OtpErlangObject element : list) {
+            if (same(object, element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Erlang term equality, where a string may come as an
+     * {@link OtpErlangString} or as an {@link OtpErlangList} of characters.
+     */
+    static boolean same(final OtpErlangObject a, final OtpErlangObject b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        if (a instanceof OtpErlangTuple && b instanceof OtpErlangTuple) {
+            return same(((OtpErlangTuple) a).elements(),
+                    ((OtpErlangTuple) b).elements());
+        }
+        if (a instanceof OtpErlangList && b instanceof OtpErlangList) {
+            final OtpErlangList la = (OtpErlangList) a;
+            final OtpErlangList lb = (OtpErlangList) b;
+            return same(la.elements(), lb.elements())
+                    && same(la.getLastTail(), lb.getLastTail());
+        }
+        if (a instanceof OtpErlangString && b instanceof OtpErlangList) {
+            return sameString((OtpErlangString) a, (OtpErlangList) b);
+        }
+        if (b instanceof OtpErlangString && a instanceof OtpErlangList) {
+            return sameString((OtpErlangString) b, (OtpErlangList) a);
+        }
+        return a.equals(b);
+    }
+
+    private static boolean same(final OtpErlangObject[] a,
+            final OtpErlangObject[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (!same(a[i], b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameString(final OtpErlangString s,
+            final OtpErlangList l) {
+        try {
+            return s.stringValue().equals(l.stringValue());
+        } catch (final OtpErlangException e) {
+            return false;
+        }
+    }
+
+    private static OtpErlangObject tagAtom(final OtpErlangObject object) {
+        if (object instanceof OtpErlangTuple
+                && ((OtpErlangTuple) object).arity() > 0) {
+            return ((OtpErlangTuple) object).elementAt(0);
+        }
+        return null;
+    }
+
+    private static String tag(final OtpErlangObject object) {
+        final OtpErlangObject tag = tagAtom(object);
+        return tag instanceof OtpErlangAtom ? ((OtpErlangAtom) tag)
+                .atomValue() : null;
+    }
+}
@@ -1,5 +1,9 @@
 package org.erlide.model.services.search;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 import org.erlide.model.erlang.IErlModule;
 import org.erlide.runtime.IRpcSite;
 import org.erlide.runtime.rpc.IRpcResultCallback;
@@ -9,14 +13,38 @@ import org.erlide.utils.Util;
 
 import com.ericsson.otp.erlang.OtpErlangAtom;
 import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangPid;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.google.common.collect.Sets;
 
+/**
+ * Searches on the backend. A scope with more than a few modules is sent once
+ * and then referred to by an id, since sending thousands of module tuples
+ * with every search costs more than the search itself. The backend keeps only
+ * the last scopes it got, so a search with a scope it has dropped is retried
+ * after sending the scope again.
+ */
 public class ErlideSearchServer {
 
     private static final int SEARCH_LONG_TIMEOUT = 50000;
+    private static final OtpErlangAtom UNKNOWN_SCOPE = new OtpErlangAtom(
+            "unknown_scope");
+    private static final int MIN_SCOPE_HANDLE_SIZE = 16;
+    private static final int SCOPES_KEPT = 16;
+
+    private static int nextScopeId;
+    @SuppressWarnings("serial")
+    private static final Map<Set<OtpErlangObject>, Integer> scopeIds = new LinkedHashMap<Set<OtpErlangObject>, Integer>(
+            SCOPES_KEPT, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<Set<OtpErlangObject>, Integer> eldest) {
+            return size() > SCOPES_KEPT;
+        }
+    };
 
     private static OtpErlangList getModulesFromScope(final ErlSearchScope scope) {
         final OtpErlangObject result[] = new OtpErlangObject[scope.size()];
@@ -36,6 +64,56 @@ public class ErlideSearchServer {
                         new OtpErlangString(path) });
     }
 
+    /**
+     * @return the modules themselves for a small scope, otherwise
+     *         <code>{scope, Id}</code>, sending the modules to the backend if
+     *         this scope hasn't been sent before.
+     */
+    private static OtpErlangObject getScopeRef(final IRpcSite backend,
+            final OtpErlangList modules) throws RpcException {
+        if (modules.arity() < MIN_SCOPE_HANDLE_SIZE) {
+            return modules;
+        }
+        final Set<OtpErlangObject> key = Sets.newHashSet(modules.elements());
+        int id;
+        synchronized (scopeIds) {
+            final Integer knownId = scopeIds.get(key);
+            if (knownId != null) {
+                return makeScopeRef(knownId);
+            }
+            id = ++nextScopeId;
+            scopeIds.put(key, id);
+        }
+        return setScope(backend, id, modules);
+    }
+
+    private static OtpErlangObject setScope(final IRpcSite backend,
+            final int id, final OtpErlangList modules) throws RpcException {
+        backend.call("erlide_search_server", "set_scope", "ix", id, modules);
+        return makeScopeRef(id);
+    }
+
+    private static OtpErlangTuple makeScopeRef(final int id) {
+        return new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangAtom("scope"), new OtpErlangLong(id) });
+    }
+
+    private static boolean isUnknownScope(final OtpErlangObject r) {
+        return Util.isError(r)
+                && UNKNOWN_SCOPE.equals(((OtpErlangTuple) r).elementAt(1));
+    }
+
+    /**
+     * Sends the scope again if the backend has dropped it.
+     */
+    private static OtpErlangObject resendScope(final IRpcSite backend,
+            final OtpErlangObject scopeRef, final OtpErlangList modules)
+            throws RpcException {
+        final OtpErlangLong id = (OtpErlangLong) ((OtpErlangTuple) scopeRef)
+                .elementAt(1);
+        return setScope(backend, (int) id.longValue(), modules);
+    }
+
     public static void startFindRefs(final IRpcSite backend,
             final ErlangSearchPattern pattern, final ErlSearchScope scope,
             final String stateDir, final IRpcResultCallback callback,
@@ -43,9 +121,38 @@ public class ErlideSearchServer {
         final OtpErlangList modules = getModulesFromScope(scope);
         ErlLogger.debug("startFindRefs " + pattern.getSearchObject() + "    #"
                 + modules.arity() + " modules");
-        backend.async_call_result(callback, "erlide_search_server",
-                "start_find_refs", "xxxso", pattern.getSearchObject(), modules,
-                stateDir, updateSearchServer);
+        final OtpErlangObject scopeRef = getScopeRef(backend, modules);
+        backend.async_call_result(new IRpcResultCallback() {
+            @Override
+            public void start(final OtpErlangObject msg) {
+                callback.start(msg);
+            }
+
+            @Override
+            public void stop(final OtpErlangObject msg) {
+                if (isUnknownScope(msg)) {
+                    try {
+                        backend.async_call_result(callback,
+                                "erlide_search_server", "start_find_refs",
+                                "xxxso", pattern.getSearchObject(),
+                                resendScope(backend, scopeRef, modules),
+                                stateDir, updateSearchServer);
+                    } catch (final RpcException e) {
+                        ErlLogger.warn(e);
+                        callback.stop(msg);
+                    }
+                } else {
+                    callback.stop(msg);
+                }
+            }
+
+            @Override
+            public void progress(final OtpErlangObject msg) {
+                callback.progress(msg);
+            }
+        }, "erlide_search_server", "start_find_refs", "xxxso",
+                pattern.getSearchObject(), scopeRef, stateDir,
+                updateSearchServer);
     }
 
     public static OtpErlangObject findRefs(final IRpcSite backend,
@@ -53,16 +160,41 @@ public class ErlideSearchServer {
             final String stateDir, final boolean updateSearchServer)
             throws RpcException {
         final OtpErlangList modules = getModulesFromScope(scope);
-        final OtpErlangObject r = backend.call(SEARCH_LONG_TIMEOUT,
+        OtpErlangObject scopeRef = getScopeRef(backend, modules);
+        OtpErlangObject r = backend.call(SEARCH_LONG_TIMEOUT,
                 "erlide_search_server", "find_refs", "xxso",
-                pattern.getSearchObject(), modules, stateDir,
+                pattern.getSearchObject(), scopeRef, stateDir,
                 updateSearchServer);
+        if (isUnknownScope(r)) {
+            scopeRef = resendScope(backend, scopeRef, modules);
+            r = backend.call(SEARCH_LONG_TIMEOUT, "erlide_search_server",
+                    "find_refs", "xxso", pattern.getSearchObject(), scopeRef,
+                    stateDir, updateSearchServer);
+        }
         if (Util.isOk(r)) {
             return r;
         }
         return null;
     }
 
+    /**
+     * Like {@link #findRefs}, but answered from the {@link ErlReferenceIndex}
+     * when the references of the module are known there.
+     */
+    public static OtpErlangObject findRefsInModule(final IRpcSite backend,
+            final ErlangSearchPattern pattern, final IErlModule module,
+            final String stateDir, final boolean updateSearchServer)
+            throws RpcException {
+        final OtpErlangObject r = ErlReferenceIndex.getDefault().findRefs(
+                module, pattern);
+        if (r != null) {
+            return r;
+        }
+        final ErlSearchScope scope = new ErlSearchScope();
+        scope.addModule(module);
+        return findRefs(backend, pattern, scope, stateDir, updateSearchServer);
+    }
+
     public static void cancelSearch(final IRpcSite backend,
             final OtpErlangPid searchDeamonPid) throws RpcException {
         backend.call("erlide_search_server", "cancel_find_refs", "x",
@@ -11,13 +11,13 @@
 package com.ericsson.otp.erlang;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class Signature {
-    private static final Map<String, Signature[]> CACHE = new HashMap<String, Signature[]>();
-    private static boolean useCache = true;
+    private static final ConcurrentMap<String, Signature[]> CACHE = new ConcurrentHashMap<String, Signature[]>();
+    private static volatile boolean useCache = true;
 
     public char kind = 'x';
     public Signature[] content = null;
@@ -50,7 +50,7 @@ public class Signature {
         return kind + res.toString();
     }
 
-    public static synchronized Signature[] parse(final String signature)
+    public static Signature[] parse(final String signature)
             throws SignatureException {
         if (signature == null) {
             return null;
@@ -10,4 +10,11 @@ public interface IRpcFuture {
 
     public abstract boolean isDone();
 
+    /**
+     * Register a listener that is notified once the result is available. If
+     * it already is, the listener is notified immediately. After
+     * notification, {@link #get(long)} will return without waiting.
+     */
+    public abstract void addListener(final IRpcFutureListener listener);
+
 }
@@ -0,0 +1,13 @@
+package org.erlide.runtime.rpc;
+
+/**
+ * Notified when the result of an {@link IRpcFuture} has arrived. The callback
+ * runs on the thread that delivered the reply, so it should only hand the
+ * future over to another thread (for example by putting it in a queue) and
+ * then return.
+ */
+public interface IRpcFutureListener {
+
+    public abstract void done(final IRpcFuture future);
+
+}
@@ -131,4 +131,12 @@ public interface IRpcHelper {
             final String fun, final String signature, final Object... args)
             throws SignatureException;
 
+    /**
+     * Release what was kept for communicating through the node, call it when
+     * the node is closed.
+     * 
+     * @param node
+     */
+    public abstract void releaseNode(final OtpNode node);
+
 }
@@ -9,7 +9,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ericsson.otp.erlang.OtpErlang;
 import com.ericsson.otp.erlang.OtpErlangAtom;
@@ -94,8 +95,9 @@ public class RpcMonitor {
         }
     }
 
-    private static int callCount = 0;
-    private static final Map<OtpErlangRef, RpcData> ongoing = Maps.newHashMap();
+    private static final AtomicInteger callCount = new AtomicInteger();
+    private static final ConcurrentMap<OtpErlangRef, RpcData> ongoing = Maps
+            .newConcurrentMap();
     private static Comparator<RpcInfo> timeComparator = new Comparator<RpcInfo>() {
         @Override
         public int compare(final RpcInfo o1, final RpcInfo o2) {
@@ -111,16 +113,22 @@ public class RpcMonitor {
     private static final List<RpcInfo> slowest = Lists.newLinkedList();
     private static final List<RpcInfo> largest = Lists.newLinkedList();
 
-    public synchronized static void recordResponse(final OtpErlangRef ref,
+    public static void recordResponse(final OtpErlangRef ref,
             final OtpErlangObject result) {
-        if (DISABLED) {
+        if (DISABLED || ref == null) {
             return;
         }
         final RpcData data = ongoing.remove(ref);
+        if (data == null) {
+            return;
+        }
         final long now = System.currentTimeMillis();
         final RpcInfo info = new RpcInfo(data, result, now);
-        add(largest, sizeComparator, info);
-        add(slowest, timeComparator, info);
+        // only the top lists are shared, keep the critical section short
+        synchronized (RpcMonitor.class) {
+            add(largest, sizeComparator, info);
+            add(slowest, timeComparator, info);
+        }
     }
 
     private static void add(final List<RpcInfo> list,
@@ -140,7 +148,7 @@ public class RpcMonitor {
     public static OtpErlangRef recordRequest(final OtpNode node,
             final String peer, final String module, final String fun,
             final OtpErlangObject[] args, final long callSize) {
-        callCount++;
+        callCount.incrementAndGet();
         if (DISABLED) {
             return null;
         }
@@ -178,7 +186,7 @@ public class RpcMonitor {
 
     public synchronized static void dump(final PrintStream out, final int n,
             final boolean full) {
-        out.format("*** RpcMonitor statistics%n - %d calls%n", callCount);
+        out.format("*** RpcMonitor statistics%n - %d calls%n", callCount.get());
         if (DISABLED) {
             out.println("\nRpcMonitor was not enabled.\n\nUse -Derlide.rpcmonitor to enable it.");
             return;
@@ -0,0 +1,127 @@
+package com.ericson.erlang;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlang;
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNode;
+
+/**
+ * Measures message throughput over a distribution connection between two
+ * nodes in this VM. Only runs when the system property
+ * <code>erlide.benchmarks</code> is set, it needs epmd to be running. Run it
+ * with and without <code>-DOtpConnection.asyncWrites=true</code> to compare
+ * the ways of writing to the socket.
+ */
+public class ConnectionBenchmark {
+
+    private static final String COOKIE = "benchmark";
+
+    private OtpNode sender;
+    private OtpNode receiver;
+    private OtpMbox sink;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        sender = new OtpNode("bench_sender@localhost", COOKIE);
+        receiver = new OtpNode("bench_receiver@localhost", COOKIE);
+        sink = receiver.createMbox("sink");
+        assertTrue(sender.ping(receiver.node(), 5000));
+    }
+
+    @After
+    public void tearDown() {
+        if (sender != null) {
+            sender.close();
+        }
+        if (receiver != null) {
+            receiver.close();
+        }
+    }
+
+    @Test
+    public void smallMessageBursts() throws Exception {
+        final int messages = 100000;
+        // warm up
+        send(2, messages / 10);
+        for (final int threads : new int[] { 1, 4, 8 }) {
+            final long time = send(threads, messages);
+            System.out.println(String.format(
+                    "%d threads sending small messages: %8.0f msgs/s",
+                    threads, threads * messages * 1e9 / time));
+        }
+    }
+
+    @Test
+    public void receiveThroughput() throws Exception {
+        final OtpMbox from = sender.createMbox();
+        final String peer = receiver.node();
+        for (final int size : new int[] { 50, 1024, 65536, 1024 * 1024 }) {
+            final int messages = Math.max(20, 20000000 / (size + 1000));
+            final OtpErlangBinary payload = new OtpErlangBinary(new byte[size]);
+            final long start = System.nanoTime();
+            new Thread("sender") {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messages; i++) {
+                        from.send("sink", peer, payload);
+                    }
+                }
+            }.start();
+            for (int i = 0; i < messages; i++) {
+                final OtpErlangBinary msg = (OtpErlangBinary) sink
+                        .receive(30000);
+                assertNotNull("timed out after " + i + " messages", msg);
+                assertEquals(size, msg.size());
+            }
+            final long time = System.nanoTime() - start;
+            System.out.println(String.format(
+                    "%8d byte messages: %8.0f msgs/s, %7.1f MB/s", size,
+                    messages * 1e9 / time, (double) messages * size * 1e3
+                            / time));
+        }
+    }
+
+    private long send(final int threads, final int messages)
+            throws Exception {
+        final String peer = receiver.node();
+        final CountDownLatch go = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            final OtpMbox from = sender.createMbox();
+            new Thread("sender " + t) {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < messages; i++) {
+                        from.send("sink", peer, OtpErlang.mkTuple(
+                                new OtpErlangAtom("trace"),
+                                new OtpErlangLong(i)));
+                    }
+                }
+            }.start();
+        }
+        final long start = System.nanoTime();
+        go.countDown();
+        for (int i = 0; i < threads * messages; i++) {
+            final OtpErlangObject msg = sink.receive(30000);
+            assertNotNull("timed out after " + i + " messages", msg);
+        }
+        return System.nanoTime() - start;
+    }
+}
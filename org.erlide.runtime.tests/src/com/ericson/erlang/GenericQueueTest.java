@@ -0,0 +1,166 @@
+package com.ericson.erlang;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.GenericQueue;
+import com.ericsson.otp.erlang.LockFreeQueue;
+
+public class GenericQueueTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int MESSAGES = 20000;
+
+    private static List<GenericQueue> queues() {
+        return Arrays.asList(new GenericQueue(), new LockFreeQueue());
+    }
+
+    @Test
+    public void itemsComeOutInOrder() throws InterruptedException {
+        for (final GenericQueue queue : queues()) {
+            for (int i = 0; i < 100; i++) {
+                queue.put(i);
+            }
+            assertEquals(100, queue.getCount());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, queue.get(0));
+            }
+            assertEquals(0, queue.getCount());
+            assertNull(queue.tryGet());
+        }
+    }
+
+    @Test
+    public void getTimesOut() {
+        for (final GenericQueue queue : queues()) {
+            final long start = System.currentTimeMillis();
+            try {
+                queue.get(50);
+                fail("expected timeout for " + queue.getClass());
+            } catch (final InterruptedException e) {
+                assertTrue(System.currentTimeMillis() - start >= 45);
+            }
+        }
+    }
+
+    @Test
+    public void concurrentProducersLoseNothing() throws InterruptedException {
+        for (final GenericQueue queue : queues()) {
+            startProducers(queue, PRODUCERS, MESSAGES);
+            final int[] last = new int[PRODUCERS];
+            Arrays.fill(last, -1);
+            for (int i = 0; i < PRODUCERS * MESSAGES; i++) {
+                final long[] item = (long[]) queue.get();
+                final int producer = (int) item[0];
+                // per producer order is kept
+                assertEquals(last[producer] + 1, item[1]);
+                last[producer] = (int) item[1];
+            }
+            assertNull(queue.tryGet());
+        }
+    }
+
+    @Test
+    public void pollingWhileProducersPutLosesNothing() {
+        for (final GenericQueue queue : queues()) {
+            startProducers(queue, PRODUCERS, MESSAGES);
+            final int[] last = new int[PRODUCERS];
+            Arrays.fill(last, -1);
+            int received = 0;
+            while (received < PRODUCERS * MESSAGES) {
+                final long[] item = (long[]) queue.tryGet();
+                if (item == null) {
+                    continue;
+                }
+                final int producer = (int) item[0];
+                assertEquals(last[producer] + 1, item[1]);
+                last[producer] = (int) item[1];
+                received++;
+            }
+            assertNull(queue.tryGet());
+            assertEquals(0, queue.getCount());
+        }
+    }
+
+    /**
+     * Compares throughput and latency of the queues under concurrent
+     * producers. Only runs when the system property
+     * <code>erlide.benchmarks</code> is set.
+     */
+    @Test
+    public void benchmark() throws InterruptedException {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        final int messages = 200000;
+        for (final int producers : new int[] { 1, 4, 16 }) {
+            for (final GenericQueue queue : queues()) {
+                // warm up
+                runBenchmark(queue, producers, messages / 10);
+                final long[] latencies = new long[producers * messages];
+                final long time = runBenchmark(queue, producers, messages,
+                        latencies);
+                Arrays.sort(latencies);
+                System.out.println(String.format(
+                        "%-14s %2d producers: %8.0f msgs/s, latency "
+                                + "p50 %6d us, p99 %6d us, p99.9 %6d us",
+                        queue.getClass().getSimpleName(), producers,
+                        latencies.length * 1e9 / time,
+                        percentile(latencies, 0.5),
+                        percentile(latencies, 0.99),
+                        percentile(latencies, 0.999)));
+            }
+        }
+    }
+
+    private static long percentile(final long[] sorted, final double p) {
+        return sorted[(int) (p * (sorted.length - 1))] / 1000;
+    }
+
+    private static long runBenchmark(final GenericQueue queue,
+            final int producers, final int messages) {
+        return runBenchmark(queue, producers, messages, null);
+    }
+
+    private static long runBenchmark(final GenericQueue queue,
+            final int producers, final int messages, final long[] latencies) {
+        final long start = System.nanoTime();
+        startProducers(queue, producers, messages);
+        for (int i = 0; i < producers * messages; i++) {
+            final long[] item = (long[]) queue.get();
+            if (latencies != null) {
+                latencies[i] = System.nanoTime() - item[2];
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void startProducers(final GenericQueue queue,
+            final int producers, final int messages) {
+        final CountDownLatch go = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            final Thread thread = new Thread("producer " + p) {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < messages; i++) {
+                        queue.put(new long[] { producer, i,
+                                System.nanoTime() });
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+        go.countDown();
+    }
+}
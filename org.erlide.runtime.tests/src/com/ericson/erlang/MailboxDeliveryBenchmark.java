@@ -0,0 +1,108 @@
+package com.ericson.erlang;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpNode;
+
+/**
+ * Measures local message delivery between many live mailboxes, while other
+ * threads create and close mailboxes. Only runs when the system property
+ * <code>erlide.benchmarks</code> is set, it needs epmd to be running.
+ */
+public class MailboxDeliveryBenchmark {
+
+    private static final int MAILBOXES = 2000;
+    private static final int MESSAGES = 200000;
+
+    private OtpNode node;
+    private OtpMbox[] mboxes;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        node = new OtpNode("mailbox_benchmark");
+        mboxes = new OtpMbox[MAILBOXES];
+        for (int i = 0; i < MAILBOXES; i++) {
+            mboxes[i] = node.createMbox("mbox" + i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (node != null) {
+            node.close();
+        }
+    }
+
+    @Test
+    public void deliveryThroughput() throws Exception {
+        for (final int threads : new int[] { 1, 4, 8 }) {
+            final long time = run(threads);
+            System.out.println(String.format(
+                    "%d mailboxes, %d sender threads: %8.0f msgs/s",
+                    MAILBOXES, threads, threads * MESSAGES * 1e9 / time));
+        }
+        assertEquals(node.whereis("mbox7"), mboxes[7].self());
+    }
+
+    private long run(final int threads) throws Exception {
+        final OtpErlangObject msg = new OtpErlangAtom("hello");
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final Thread churner = new Thread("mailbox churn") {
+            @Override
+            public void run() {
+                while (done.getCount() > 0) {
+                    node.createMbox().close();
+                }
+            }
+        };
+        for (int t = 0; t < threads; t++) {
+            final OtpMbox from = mboxes[t];
+            new Thread("sender " + t) {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < MESSAGES; i++) {
+                        final OtpMbox to = mboxes[(i * 31 + 7) % MAILBOXES];
+                        if (i % 2 == 0) {
+                            from.send(to.self(), msg);
+                        } else {
+                            from.send(to.getName(), msg);
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        final long start = System.nanoTime();
+        churner.start();
+        go.countDown();
+        done.await();
+        final long time = System.nanoTime() - start;
+        churner.join();
+
+        int received = 0;
+        for (final OtpMbox mbox : mboxes) {
+            while (mbox.receive(0) != null) {
+                received++;
+            }
+        }
+        assertEquals(threads * MESSAGES, received);
+        return time;
+    }
+}
@@ -0,0 +1,60 @@
+package org.erlide.runtime;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.google.common.collect.Lists;
+
+/**
+ * Measures converting large lists of tuples between Java and Erlang, as done
+ * for RPC arguments and results. Only runs when the system property
+ * <code>erlide.benchmarks</code> is set.
+ */
+public class TypeConverterBenchmark {
+
+    private static final int SIZE = 10000;
+    private static final int ROUNDS = 200;
+
+    private List<Object[]> rows;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        rows = Lists.newArrayList();
+        for (int i = 0; i < SIZE; i++) {
+            rows.add(new Object[] { "function_" + i, "src/module.erl",
+                    Integer.valueOf(i) });
+        }
+    }
+
+    @Test
+    public void convertListsOfTuples() throws Exception {
+        // warm up
+        run(ROUNDS / 10);
+        final long start = System.nanoTime();
+        run(ROUNDS);
+        final long time = System.nanoTime() - start;
+        System.out.println(String.format(
+                "lists of %d tuples, java->erlang->java: %8.0f tuples/s",
+                SIZE, ROUNDS * SIZE * 1e9 / time));
+    }
+
+    private void run(final int rounds) throws Exception {
+        for (int r = 0; r < rounds; r++) {
+            final OtpErlangObject list = TypeConverter.java2erlang(rows,
+                    "l3asi");
+            final Object[][] back = (Object[][]) TypeConverter.erlang2java(
+                    list, Object[][].class);
+            assertEquals(SIZE, ((OtpErlangList) list).arity());
+            assertEquals(new OtpErlangLong(7), back[7][2]);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.erlide.runtime.java;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import org.erlide.runtime.Bindings;
+import org.erlide.runtime.ErlUtils;
+import org.erlide.runtime.internal.BindingsImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangObject;
+
+/**
+ * Compares the throughput of matching RPC replies against patterns given as
+ * text (compiled and cached) with matching against parsed pattern terms.
+ * Only runs when the system property <code>erlide.benchmarks</code> is set.
+ */
+public class MatchBenchmark {
+
+    private static final String PATTERN = "{ok, {Name:a, Arity:i, [{File, Line:i} | _], Opts}}";
+    private static final int ROUNDS = 1000000;
+
+    private OtpErlangObject term;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("erlide.benchmarks"));
+        term = ErlUtils
+                .parse("{ok, {foo, 2, [{\"src/foo.erl\", 12}, {\"src/foo.hrl\", 3}], [export, {inline, true}]}}");
+    }
+
+    @Test
+    public void matchThroughput() throws Exception {
+        // warm up
+        compiled(ROUNDS / 10);
+        interpreted(ROUNDS / 10);
+
+        long start = System.nanoTime();
+        compiled(ROUNDS);
+        final long compiledTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        interpreted(ROUNDS);
+        final long interpretedTime = System.nanoTime() - start;
+
+        System.out.println(String.format(
+                "match compiled: %10.0f ops/s, interpreted: %10.0f ops/s",
+                ROUNDS * 1e9 / compiledTime, ROUNDS * 1e9 / interpretedTime));
+    }
+
+    private void compiled(final int rounds) throws Exception {
+        for (int i = 0; i < rounds; i++) {
+            final Bindings b = ErlUtils.match(PATTERN, term);
+            assertNotNull(b);
+            b.getInt("Line");
+        }
+    }
+
+    private void interpreted(final int rounds) throws Exception {
+        for (int i = 0; i < rounds; i++) {
+            final Bindings b = ErlUtils.match(ErlUtils.parse(PATTERN), term,
+                    new BindingsImpl());
+            assertNotNull(b);
+            b.getInt("Line");
+        }
+    }
+}
@@ -77,6 +77,21 @@ public class PatternMatchTest {
         Assert.assertEquals(expected, value);
     }
 
+    @Test
+    public void testFormatParser_improperList() throws Exception {
+        final OtpErlangObject value = ErlUtils.format("[~a,2|~a]", "hej",
+                "brr");
+        final OtpErlangObject expected = ErlUtils.parse("[hej,2|brr]");
+        Assert.assertEquals(expected, value);
+    }
+
+    @Test
+    public void testFormatParser_improperList_noPlaceholder() throws Exception {
+        final OtpErlangObject value = ErlUtils.format("[~a|tail]", "hej");
+        final OtpErlangObject expected = ErlUtils.parse("[hej|tail]");
+        Assert.assertEquals(expected, value);
+    }
+
     @Test
     public void testMatch_novar() throws Exception {
         final OtpErlangObject p = ErlUtils.parse("[a, {b}]");
@@ -10,11 +10,11 @@
 package org.erlide.runtime;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import org.erlide.runtime.internal.BindingsImpl;
+import org.erlide.runtime.internal.CompiledFormat;
+import org.erlide.runtime.internal.CompiledPattern;
 import org.erlide.runtime.rpc.RpcException;
 import org.erlide.utils.ErlLogger;
 import org.erlide.utils.Util;
@@ -28,10 +28,11 @@ import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangRangeException;
 import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
-import com.ericsson.otp.erlang.OtpFormatPlaceholder;
 import com.ericsson.otp.erlang.OtpPatternVariable;
-import com.ericsson.otp.erlang.Signature;
 import com.ericsson.otp.erlang.SignatureException;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 
 public final class ErlUtils {
 
@@ -40,6 +41,26 @@ public final class ErlUtils {
 
     final static private TermParser termParser = TermParser.getParser();
 
+    final static private LoadingCache<String, CompiledPattern> patterns = CacheBuilder
+            .newBuilder().maximumSize(500)
+            .build(new CacheLoader<String, CompiledPattern>() {
+                @Override
+                public CompiledPattern load(final String key)
+                        throws TermParserException {
+                    return CompiledPattern.compile(parse(key));
+                }
+            });
+
+    final static private LoadingCache<String, CompiledFormat> formats = CacheBuilder
+            .newBuilder().maximumSize(500)
+            .build(new CacheLoader<String, CompiledFormat>() {
+                @Override
+                public CompiledFormat load(final String key)
+                        throws TermParserException {
+                    return CompiledFormat.compile(parse(key));
+                }
+            });
+
     public static OtpErlangObject parse(final String string)
             throws TermParserException {
         return termParser.parse(string);
@@ -60,30 +81,52 @@ public final class ErlUtils {
      */
     public static OtpErlangObject format(final String fmt, final Object... args)
             throws TermParserException, SignatureException {
-        final List<Object> values = new ArrayList<Object>(Arrays.asList(args));
-        final OtpErlangObject result = fill(parse(fmt), values);
-        return result;
+        return compiledFormat(fmt).fill(args);
     }
 
+    /**
+     * Match a term against a pattern given as text. The pattern is compiled
+     * once and kept in a cache shared by all callers.
+     * 
+     * @see #match(OtpErlangObject, OtpErlangObject, Bindings)
+     */
     public static Bindings match(final String pattern, final String term)
             throws TermParserException {
-        return match(parse(pattern), parse(term), new BindingsImpl());
+        return compiledPattern(pattern).match(parse(term), null);
     }
 
     public static Bindings match(final String pattern,
             final OtpErlangObject term) throws TermParserException {
-        return match(parse(pattern), term, new BindingsImpl());
+        return compiledPattern(pattern).match(term, null);
     }
 
     public static Bindings match(final String pattern,
             final OtpErlangObject term, final Bindings bindings)
             throws TermParserException {
-        return match(parse(pattern), term, bindings);
+        return compiledPattern(pattern).match(term, bindings);
     }
 
     public static Bindings match(final String pattern, final String term,
             final Bindings bindings) throws TermParserException {
-        return match(parse(pattern), parse(term), bindings);
+        return compiledPattern(pattern).match(parse(term), bindings);
+    }
+
+    private static CompiledPattern compiledPattern(final String pattern)
+            throws TermParserException {
+        try {
+            return patterns.get(pattern);
+        } catch (final ExecutionException e) {
+            throw (TermParserException) e.getCause();
+        }
+    }
+
+    private static CompiledFormat compiledFormat(final String fmt)
+            throws TermParserException {
+        try {
+            return formats.get(fmt);
+        } catch (final ExecutionException e) {
+            throw (TermParserException) e.getCause();
+        }
     }
 
     public static Bindings match(final OtpErlangObject pattern,
@@ -187,45 +230,6 @@ public final class ErlUtils {
         return match(lpattern.getLastTail(), lterm.getLastTail(), rez);
     }
 
-    private static OtpErlangObject fill(final OtpErlangObject template,
-            final List<Object> values) throws SignatureException,
-            TermParserException {
-        if (values.size() == 0) {
-            return template;
-        }
-        if (template instanceof OtpErlangList) {
-            final OtpErlangObject[] elements = ((OtpErlangList) template)
-                    .elements();
-            final List<OtpErlangObject> result = new ArrayList<OtpErlangObject>(
-                    elements.length);
-            for (final OtpErlangObject elem : elements) {
-                result.add(fill(elem, values));
-            }
-            return new OtpErlangList(result.toArray(elements));
-        } else if (template instanceof OtpErlangTuple) {
-            final OtpErlangObject[] elements = ((OtpErlangTuple) template)
-                    .elements();
-            final List<OtpErlangObject> result = new ArrayList<OtpErlangObject>(
-                    elements.length);
-            for (final OtpErlangObject elem : elements) {
-                result.add(fill(elem, values));
-            }
-            return new OtpErlangTuple(result.toArray(elements));
-        } else if (template instanceof OtpFormatPlaceholder) {
-            final OtpFormatPlaceholder holder = (OtpFormatPlaceholder) template;
-            final Object ret = values.remove(0);
-            final Signature[] signs = Signature.parse(holder.getName());
-            if (signs.length == 0 && !(ret instanceof OtpErlangObject)) {
-                throw new TermParserException("funny placeholder");
-            }
-            final Signature sign = signs.length == 0 ? new Signature('x')
-                    : signs[0];
-            return TypeConverter.java2erlang(ret, sign);
-        } else {
-            return template;
-        }
-    }
-
     private static Bindings matchTuple(final OtpErlangObject[] patterns,
             final OtpErlangObject[] terms, final Bindings bindings,
             final boolean list) {
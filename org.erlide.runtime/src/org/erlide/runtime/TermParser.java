@@ -9,7 +9,7 @@
  *******************************************************************************/
 package org.erlide.runtime;
 
-import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Stack;
 import java.util.concurrent.ExecutionException;
@@ -30,8 +30,14 @@ import com.google.common.cache.LoadingCache;
 
 public class TermParser {
 
+    private static final TermParser PARSER = new TermParser();
+
+    /**
+     * @return the parser shared by the whole process, so that all callers
+     *         benefit from the same cache of parsed terms.
+     */
     public static TermParser getParser() {
-        return new TermParser();
+        return PARSER;
     }
 
     private final LoadingCache<String, OtpErlangObject> cache;
@@ -295,7 +301,8 @@ public class TermParser {
 
     private static List<Token> scan(final String s) {
         String ss = s + " ";
-        final List<Token> result = new ArrayList<Token>();
+        // the parser consumes tokens from the front
+        final List<Token> result = new LinkedList<Token>();
         Token t = Token.nextToken(ss);
         while (t != null) {
             result.add(t);
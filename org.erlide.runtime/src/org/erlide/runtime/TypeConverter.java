@@ -18,6 +18,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import org.erlide.utils.ErlLogger;
 
@@ -39,6 +40,7 @@ import com.ericsson.otp.erlang.OtpErlangString;
 import com.ericsson.otp.erlang.OtpErlangTuple;
 import com.ericsson.otp.erlang.Signature;
 import com.ericsson.otp.erlang.SignatureException;
+import com.google.common.collect.MapMaker;
 
 /**
  * Helps converting Java values to Erlang terms, and back. The type information
@@ -147,59 +149,153 @@ public final class TypeConverter {
 
     }
 
-    @SuppressWarnings("boxing")
+    /**
+     * Converts an Erlang term to a value of the given Java class. The way to
+     * convert to each class is looked up once and then kept in a registry.
+     */
     public static Object erlang2java(final OtpErlangObject obj,
             final Class<?> cls) throws SignatureException {
         try {
             if (cls == obj.getClass()) {
                 return obj;
             }
-            // if the conversion method exists, use it
-            try {
-                final Method method = cls.getMethod("fromErlangObject",
-                        new Class<?>[] { OtpErlangObject.class });
-                method.setAccessible(true);
-                final Object o = method.invoke(null, obj);
-                return o;
-            } catch (final NoSuchMethodException e) {
-                // ignore, continue
-            }
+            return getJavaConverter(cls).convert(obj, cls);
+        } catch (final SignatureException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new SignatureException(e);
+        }
+    }
+
+    // a converter calling fromErlangObject references its class through the
+    // method, so it is kept softly for the weak key to ever be cleared
+    private static final ConcurrentMap<Class<?>, JavaConverter> javaConverters = new MapMaker()
+            .weakKeys().softValues().makeMap();
+
+    private static JavaConverter getJavaConverter(final Class<?> cls) {
+        JavaConverter result = javaConverters.get(cls);
+        if (result == null) {
+            result = resolveJavaConverter(cls);
+            javaConverters.putIfAbsent(cls, result);
+        }
+        return result;
+    }
+
+    private static JavaConverter resolveJavaConverter(final Class<?> cls) {
+        // if the conversion method exists, use it
+        try {
+            final Method method = cls.getMethod("fromErlangObject",
+                    new Class<?>[] { OtpErlangObject.class });
+            method.setAccessible(true);
+            return new JavaConverter() {
+                @Override
+                Object convert(final OtpErlangObject obj, final Class<?> c)
+                        throws Exception {
+                    return method.invoke(null, obj);
+                }
+            };
+        } catch (final NoSuchMethodException e) {
+            // ignore, continue
+        }
+        if (cls.isArray()) {
+            return JavaConverter.ARRAY;
+        }
+        if (cls == String.class) {
+            return JavaConverter.STRING;
+        }
+        if (cls == char.class || cls == Character.class) {
+            return JavaConverter.CHAR;
+        }
+        if (cls == int.class || cls == Integer.class) {
+            return JavaConverter.INT;
+        }
+        if (cls == byte.class || cls == Byte.class) {
+            return JavaConverter.BYTE;
+        }
+        if (cls == short.class || cls == Short.class) {
+            return JavaConverter.SHORT;
+        }
+        if (cls == long.class || cls == Long.class) {
+            return JavaConverter.LONG;
+        }
+        if (cls == boolean.class || cls == Boolean.class) {
+            return JavaConverter.BOOLEAN;
+        }
+        if (Collection.class.isAssignableFrom(cls)) {
+            return JavaConverter.COLLECTION;
+        }
+        return JavaConverter.OTHER;
+    }
+
+    /**
+     * Converts Erlang terms to one Java class.
+     */
+    @SuppressWarnings("boxing")
+    private abstract static class JavaConverter {
 
-            if (cls.isArray()) {
+        abstract Object convert(OtpErlangObject obj, Class<?> cls)
+                throws Exception;
+
+        static final JavaConverter ARRAY = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
                 return cvtArray(obj, cls);
             }
+        };
 
-            if (cls == String.class) {
+        static final JavaConverter STRING = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
                 return cvtString(obj);
             }
-            if (cls == char.class || cls == Character.class || cls == int.class
-                    || cls == Integer.class || cls == byte.class
-                    || cls == Byte.class || cls == short.class
-                    || cls == Short.class || cls == long.class
-                    || cls == Long.class) {
-                if (obj instanceof OtpErlangLong) {
-                    final long res = ((OtpErlangLong) obj).longValue();
-                    if (cls == char.class || cls == Character.class) {
-                        return (char) res;
-                    }
-                    if (cls == int.class || cls == Integer.class) {
-                        return (int) res;
-                    }
-                    if (cls == byte.class || cls == Byte.class) {
-                        return (byte) res;
-                    }
-                    if (cls == short.class || cls == Short.class) {
-                        return (short) res;
-                    }
-                    if (cls == long.class || cls == Long.class) {
-                        return res;
-                    }
-                }
-                throw new SignatureException("wrong arg type "
-                        + obj.getClass().getName() + ", can't convert to "
-                        + cls.getCanonicalName());
+        };
+
+        static final JavaConverter CHAR = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
+                return (char) longValue(obj, cls);
+            }
+        };
+
+        static final JavaConverter INT = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
+                return (int) longValue(obj, cls);
+            }
+        };
+
+        static final JavaConverter BYTE = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
+                return (byte) longValue(obj, cls);
+            }
+        };
+
+        static final JavaConverter SHORT = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
+                return (short) longValue(obj, cls);
+            }
+        };
+
+        static final JavaConverter LONG = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
+                return longValue(obj, cls);
             }
-            if (cls == boolean.class || cls == Boolean.class) {
+        };
+
+        static final JavaConverter BOOLEAN = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
                 if (obj instanceof OtpErlangAtom) {
                     final String s = ((OtpErlangAtom) obj).atomValue();
                     if (s.equals("true")) {
@@ -209,11 +305,14 @@ public final class TypeConverter {
                         return false;
                     }
                 }
-                throw new SignatureException("wrong arg type "
-                        + obj.getClass().getName() + ", can't convert to "
-                        + cls.getCanonicalName());
+                throw wrongArgType(obj, cls);
             }
-            if (Collection.class.isAssignableFrom(cls)) {
+        };
+
+        static final JavaConverter COLLECTION = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
                 if (obj instanceof OtpErlangList) {
                     final OtpErlangObject[] list = ((OtpErlangList) obj)
                             .elements();
@@ -223,20 +322,34 @@ public final class TypeConverter {
                     }
                     return Arrays.asList(olist);
                 }
-                throw new SignatureException("wrong arg type "
-                        + obj.getClass().getName() + ", can't convert to "
-                        + cls.getCanonicalName());
+                throw wrongArgType(obj, cls);
             }
-            if (obj instanceof OtpErlangRef) {
-                throw new SignatureException("wrong arg type "
-                        + obj.getClass().getName() + ", can't convert to "
-                        + cls.getCanonicalName());
+        };
+
+        static final JavaConverter OTHER = new JavaConverter() {
+            @Override
+            Object convert(final OtpErlangObject obj, final Class<?> cls)
+                    throws SignatureException {
+                if (obj instanceof OtpErlangRef) {
+                    throw wrongArgType(obj, cls);
+                }
+                return obj;
             }
-            return obj;
-        } catch (final SignatureException e) {
-            throw e;
-        } catch (final Exception e) {
-            throw new SignatureException(e);
+        };
+
+        static long longValue(final OtpErlangObject obj, final Class<?> cls)
+                throws SignatureException {
+            if (obj instanceof OtpErlangLong) {
+                return ((OtpErlangLong) obj).longValue();
+            }
+            throw wrongArgType(obj, cls);
+        }
+
+        static SignatureException wrongArgType(final OtpErlangObject obj,
+                final Class<?> cls) {
+            return new SignatureException("wrong arg type "
+                    + obj.getClass().getName() + ", can't convert to "
+                    + cls.getCanonicalName());
         }
     }
 
@@ -312,85 +425,189 @@ public final class TypeConverter {
         return java2erlang(obj, Signature.parse(type)[0]);
     }
 
-    @SuppressWarnings("boxing")
     public static OtpErlangObject java2erlang(final Object obj,
             final Signature type) throws SignatureException {
         if (type.kind == 'x') {
             return java2erlang(obj);
         }
-        if (obj instanceof String) {
-            return cvtString(obj, type);
-        }
-        if (obj instanceof Character) {
-            if (type.kind == 'i') {
-                return new OtpErlangChar((Character) obj);
-            }
+        if (obj == null) {
             failConversion(obj, type);
         }
-        if (obj instanceof Number) {
-            return cvtNumber(obj, type);
+        return getErlangConverter(obj.getClass()).convert(obj, type);
+    }
+
+    private static final ConcurrentMap<Class<?>, ErlangConverter> erlangConverters = new MapMaker()
+            .weakKeys().makeMap();
+
+    private static ErlangConverter getErlangConverter(final Class<?> cls) {
+        ErlangConverter result = erlangConverters.get(cls);
+        if (result == null) {
+            result = resolveErlangConverter(cls);
+            erlangConverters.putIfAbsent(cls, result);
         }
-        if (obj instanceof Boolean) {
-            if (type.kind == 'o') {
-                return new OtpErlangAtom((Boolean) obj ? "true" : "false");
-            }
-            failConversion(obj, type);
+        return result;
+    }
+
+    private static ErlangConverter resolveErlangConverter(final Class<?> cls) {
+        if (cls == String.class) {
+            return ErlangConverter.STRING;
         }
-        if (obj instanceof Collection<?>) {
-            if (type.kind == 'l') {
-                final Object[] v = ((Collection<?>) obj)
-                        .toArray(new Object[] {});
-                final OtpErlangObject[] vv = new OtpErlangObject[v.length];
-                for (int i = 0; i < v.length; i++) {
-                    vv[i] = java2erlang(v[i], type.content[0]);
-                }
-                return new OtpErlangList(vv);
-            }
-            failConversion(obj, type);
+        if (Character.class.isAssignableFrom(cls)) {
+            return ErlangConverter.CHARACTER;
         }
-
-        if (obj instanceof OtpErlangPid) {
-            return (OtpErlangPid) obj;
+        if (Number.class.isAssignableFrom(cls)) {
+            return ErlangConverter.NUMBER;
         }
-        if (obj instanceof OtpErlangRef) {
-            return (OtpErlangObject) obj;
+        if (Boolean.class.isAssignableFrom(cls)) {
+            return ErlangConverter.BOOLEAN;
         }
-        if (obj instanceof OtpErlangBinary) {
-            return (OtpErlangObject) obj;
+        if (Collection.class.isAssignableFrom(cls)) {
+            return ErlangConverter.COLLECTION;
         }
-        if (obj instanceof OtpErlangObject) {
-            checkConversion(obj);
-            return (OtpErlangObject) obj;
+        if (OtpErlangPid.class.isAssignableFrom(cls)
+                || OtpErlangRef.class.isAssignableFrom(cls)
+                || OtpErlangBinary.class.isAssignableFrom(cls)) {
+            return ErlangConverter.TERM;
         }
-        if (obj instanceof IConvertible) {
-            return ((IConvertible) obj).toErlangObject();
+        if (OtpErlangObject.class.isAssignableFrom(cls)) {
+            return ErlangConverter.CHECKED_TERM;
         }
+        if (IConvertible.class.isAssignableFrom(cls)) {
+            return ErlangConverter.CONVERTIBLE;
+        }
+        if (cls.isArray()) {
+            return ErlangConverter.ARRAY;
+        }
+        return ErlangConverter.NONE;
+    }
 
-        if (obj != null && obj.getClass().isArray()) {
-            final int len = Array.getLength(obj);
-            // Class<?> component = obj.getClass().getComponentType();
-            if (type.kind == 'b') {
-                // TODO we can convert more things to binaries
-                return new OtpErlangBinary(obj);
-            }
-            if (type.kind == 'l') {
-                final OtpErlangObject[] vv = new OtpErlangObject[len];
-                for (int i = 0; i < len; i++) {
-                    vv[i] = java2erlang(Array.get(obj, i), type.content[0]);
+    /**
+     * Converts instances of one Java class to Erlang terms, according to a
+     * signature.
+     */
+    @SuppressWarnings("boxing")
+    private abstract static class ErlangConverter {
+
+        abstract OtpErlangObject convert(Object obj, Signature type)
+                throws SignatureException;
+
+        static final ErlangConverter STRING = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type)
+                    throws SignatureException {
+                return cvtString(obj, type);
+            }
+        };
+
+        static final ErlangConverter CHARACTER = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type)
+                    throws SignatureException {
+                if (type.kind == 'i') {
+                    return new OtpErlangChar((Character) obj);
+                }
+                failConversion(obj, type);
+                return null;
+            }
+        };
+
+        static final ErlangConverter NUMBER = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type)
+                    throws SignatureException {
+                return cvtNumber(obj, type);
+            }
+        };
+
+        static final ErlangConverter BOOLEAN = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type)
+                    throws SignatureException {
+                if (type.kind == 'o') {
+                    return new OtpErlangAtom((Boolean) obj ? "true" : "false");
                 }
-                return new OtpErlangList(vv);
-            } else if (type.kind == 't') {
-                final OtpErlangObject[] vv = new OtpErlangObject[len];
-                for (int i = 0; i < len; i++) {
-                    vv[i] = java2erlang(Array.get(obj, i), type.content[i]);
+                failConversion(obj, type);
+                return null;
+            }
+        };
+
+        static final ErlangConverter COLLECTION = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type)
+                    throws SignatureException {
+                if (type.kind == 'l') {
+                    final Object[] v = ((Collection<?>) obj)
+                            .toArray(new Object[] {});
+                    final OtpErlangObject[] vv = new OtpErlangObject[v.length];
+                    for (int i = 0; i < v.length; i++) {
+                        vv[i] = java2erlang(v[i], type.content[0]);
+                    }
+                    return new OtpErlangList(vv);
                 }
-                return new OtpErlangTuple(vv);
-            } else {
                 failConversion(obj, type);
+                return null;
             }
-        }
-        failConversion(obj, type);
-        return null;
+        };
+
+        static final ErlangConverter TERM = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type) {
+                return (OtpErlangObject) obj;
+            }
+        };
+
+        static final ErlangConverter CHECKED_TERM = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type) {
+                checkConversion(obj);
+                return (OtpErlangObject) obj;
+            }
+        };
+
+        static final ErlangConverter CONVERTIBLE = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type) {
+                return ((IConvertible) obj).toErlangObject();
+            }
+        };
+
+        static final ErlangConverter ARRAY = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type)
+                    throws SignatureException {
+                final int len = Array.getLength(obj);
+                if (type.kind == 'b') {
+                    // TODO we can convert more things to binaries
+                    return new OtpErlangBinary(obj);
+                }
+                if (type.kind == 'l') {
+                    final OtpErlangObject[] vv = new OtpErlangObject[len];
+                    for (int i = 0; i < len; i++) {
+                        vv[i] = java2erlang(Array.get(obj, i),
+                                type.content[0]);
+                    }
+                    return new OtpErlangList(vv);
+                } else if (type.kind == 't') {
+                    final OtpErlangObject[] vv = new OtpErlangObject[len];
+                    for (int i = 0; i < len; i++) {
+                        vv[i] = java2erlang(Array.get(obj, i),
+                                type.content[i]);
+                    }
+                    return new OtpErlangTuple(vv);
+                }
+                failConversion(obj, type);
+                return null;
+            }
+        };
+
+        static final ErlangConverter NONE = new ErlangConverter() {
+            @Override
+            OtpErlangObject convert(final Object obj, final Signature type)
+                    throws SignatureException {
+                failConversion(obj, type);
+                return null;
+            }
+        };
     }
 
     private static void checkConversion(final Object obj) {
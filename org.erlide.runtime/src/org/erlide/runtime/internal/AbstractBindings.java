@@ -0,0 +1,112 @@
+package org.erlide.runtime.internal;
+
+import java.util.Collection;
+
+import org.erlide.runtime.Bindings;
+import org.erlide.runtime.TypeConverter;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangException;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.SignatureException;
+import com.google.common.collect.Lists;
+
+/**
+ * The typed accessors of {@link Bindings}, implemented on top of
+ * {@link Bindings#get(String)}.
+ */
+public abstract class AbstractBindings implements Bindings {
+
+    @Override
+    public int getInt(final String name) throws OtpErlangException {
+        final OtpErlangObject r = get(name);
+        if (r instanceof OtpErlangLong) {
+            return ((OtpErlangLong) r).intValue();
+        }
+        throw new OtpErlangException("value is not an integer");
+    }
+
+    @Override
+    public long getLong(final String name) throws OtpErlangException {
+        final OtpErlangObject r = get(name);
+        if (r instanceof OtpErlangLong) {
+            return ((OtpErlangLong) r).longValue();
+        }
+        throw new OtpErlangException("value is not an integer");
+    }
+
+    @Override
+    public String getAtom(final String name) throws OtpErlangException {
+        final OtpErlangObject r = get(name);
+        if (r instanceof OtpErlangAtom) {
+            return ((OtpErlangAtom) r).atomValue();
+        }
+        throw new OtpErlangException("value is not an atom");
+    }
+
+    @Override
+    public String getQuotedAtom(final String name) throws OtpErlangException {
+        final OtpErlangObject r = get(name);
+        if (r instanceof OtpErlangAtom) {
+            return ((OtpErlangAtom) r).toString();
+        }
+        throw new OtpErlangException("value is not an atom");
+    }
+
+    @Override
+    public String getString(final String name) throws OtpErlangException {
+        final OtpErlangObject r = get(name);
+        if (r instanceof OtpErlangString) {
+            return ((OtpErlangString) r).stringValue();
+        }
+        throw new OtpErlangException("value is not a string");
+    }
+
+    @Override
+    public Collection<OtpErlangObject> getList(final String name)
+            throws OtpErlangException {
+        final OtpErlangObject r = get(name);
+        if (r instanceof OtpErlangList) {
+            return Lists.newArrayList(((OtpErlangList) r).elements());
+        }
+        throw new OtpErlangException("value is not a list");
+    }
+
+    @Override
+    public OtpErlangObject[] getTuple(final String name)
+            throws OtpErlangException {
+        final OtpErlangObject r = get(name);
+        if (r instanceof OtpErlangTuple) {
+            return ((OtpErlangTuple) r).elements();
+        }
+        throw new OtpErlangException("value is not a tuple");
+    }
+
+    @Override
+    public OtpErlangPid getPid(final String name) throws OtpErlangException {
+        final OtpErlangObject r = get(name);
+        if (r instanceof OtpErlangPid) {
+            return (OtpErlangPid) r;
+        }
+        throw new OtpErlangException("value is not a pid");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAs(final String name, final Class<T> cls)
+            throws SignatureException {
+        final OtpErlangObject v = get(name);
+        return (T) TypeConverter.erlang2java(v, cls);
+    }
+
+    @Override
+    public String toString() {
+        return getAll().toString();
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.erlide.runtime.internal;
+
+import org.erlide.runtime.TermParserException;
+import org.erlide.runtime.TypeConverter;
+
+import com.ericsson.otp.erlang.OtpErlangException;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpFormatPlaceholder;
+import com.ericsson.otp.erlang.Signature;
+import com.ericsson.otp.erlang.SignatureException;
+
+/**
+ * A format template prepared for filling many times: the placeholders are
+ * numbered from left to right and their type signatures are parsed once.
+ * Subterms without placeholders are shared by all the results.
+ *
+ * @see org.erlide.runtime.ErlUtils#format(String, Object...)
+ */
+public final class CompiledFormat {
+
+    private final Node root;
+
+    private CompiledFormat(final Node root) {
+        this.root = root;
+    }
+
+    public static CompiledFormat compile(final OtpErlangObject template) {
+        return new CompiledFormat(compile(template, new int[1]));
+    }
+
+    public OtpErlangObject fill(final Object... args)
+            throws TermParserException, SignatureException {
+        return fill(root, args);
+    }
+
+    private static Node compile(final OtpErlangObject template,
+            final int[] count) {
+        if (template == null) {
+            return null;
+        }
+        final int first = count[0];
+        if (template instanceof OtpFormatPlaceholder) {
+            count[0]++;
+            return new HolderNode(template, first);
+        }
+        Node[] elements = null;
+        Node tail = null;
+        if (template instanceof OtpErlangTuple) {
+            elements = compile(((OtpErlangTuple) template).elements(), count);
+        } else if (template instanceof OtpErlangList) {
+            final OtpErlangList list = (OtpErlangList) template;
+            elements = compile(list.elements(), count);
+            tail = compile(list.getLastTail(), count);
+        }
+        if (count[0] == first) {
+            return new Node(template, first);
+        }
+        return new CompoundNode(template, first, elements, tail);
+    }
+
+    private static Node[] compile(final OtpErlangObject[] templates,
+            final int[] count) {
+        final Node[] result = new Node[templates.length];
+        for (int i = 0; i < templates.length; i++) {
+            result[i] = compile(templates[i], count);
+        }
+        return result;
+    }
+
+    private static OtpErlangObject fill(final Node node, final Object[] args)
+            throws TermParserException, SignatureException {
+        if (node == null) {
+            return null;
+        }
+        if (node.first >= args.length) {
+            return node.template;
+        }
+        return node.fill(args);
+    }
+
+    /**
+     * A subterm without placeholders.
+     */
+    private static class Node {
+        final OtpErlangObject template;
+        final int first;
+
+        Node(final OtpErlangObject template, final int first) {
+            this.template = template;
+            this.first = first;
+        }
+
+        OtpErlangObject fill(final Object[] args) throws TermParserException,
+                SignatureException {
+            return template;
+        }
+    }
+
+    private static final class HolderNode extends Node {
+        private final String name;
+        private Signature sign;
+
+        HolderNode(final OtpErlangObject template, final int index) {
+            super(template, index);
+            name = ((OtpFormatPlaceholder) template).getName();
+            try {
+                final Signature[] signs = Signature.parse(name);
+                sign = signs.length == 0 ? null : signs[0];
+            } catch (final SignatureException e) {
+                // reported when the placeholder is filled
+                sign = null;
+            }
+        }
+
+        @Override
+        OtpErlangObject fill(final Object[] args) throws TermParserException,
+                SignatureException {
+            final Object value = args[first];
+            Signature signature = sign;
+            if (signature == null) {
+                final Signature[] signs = Signature.parse(name);
+                if (signs.length == 0 && !(value instanceof OtpErlangObject)) {
+                    throw new TermParserException("funny placeholder");
+                }
+                signature = signs.length == 0 ? new Signature('x') : signs[0];
+            }
+            return TypeConverter.java2erlang(value, signature);
+        }
+    }
+
+    private static final class CompoundNode extends Node {
+        private final Node[] elements;
+        private final Node tail;
+
+        CompoundNode(final OtpErlangObject template, final int first,
+                final Node[] elements, final Node tail) {
+            super(template, first);
+            this.elements = elements;
+            this.tail = tail;
+        }
+
+        @Override
+        OtpErlangObject fill(final Object[] args) throws TermParserException,
+                SignatureException {
+            final OtpErlangObject[] result = new OtpErlangObject[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                result[i] = CompiledFormat.fill(elements[i], args);
+            }
+            if (template instanceof OtpErlangTuple) {
+                return new OtpErlangTuple(result);
+            }
+            final OtpErlangObject lastTail = CompiledFormat.fill(tail, args);
+            if (lastTail == null) {
+                return new OtpErlangList(result);
+            }
+            try {
+                return new OtpErlangList(result, lastTail);
+            } catch (final OtpErlangException e) {
+                throw new TermParserException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.erlide.runtime.internal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.erlide.runtime.Bindings;
+import org.erlide.runtime.TypeConverter;
+
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpPatternVariable;
+import com.ericsson.otp.erlang.Signature;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A pattern prepared for matching many terms: each variable gets a slot
+ * number and matching fills an array of slots, instead of copying a map of
+ * bindings at each level. Subterms without variables are compared with
+ * equals(). The result is the same as that of
+ * {@link org.erlide.runtime.ErlUtils#match(OtpErlangObject, OtpErlangObject, Bindings)}
+ * .
+ */
+public final class CompiledPattern {
+
+    private final Node root;
+    private final String[] names;
+
+    private CompiledPattern(final Node root, final String[] names) {
+        this.root = root;
+        this.names = names;
+    }
+
+    public static CompiledPattern compile(final OtpErlangObject pattern) {
+        final List<String> names = Lists.newArrayList();
+        final Node root = compile(pattern, names);
+        return new CompiledPattern(root, names.toArray(new String[names
+                .size()]));
+    }
+
+    /**
+     * @param bindings
+     *            values already bound to some variables, or null.
+     * @return the bindings, or null if the term doesn't match.
+     */
+    public Bindings match(final OtpErlangObject term, final Bindings bindings) {
+        final OtpErlangObject[] slots = new OtpErlangObject[names.length];
+        Map<String, OtpErlangObject> others = null;
+        if (bindings != null && !bindings.getAll().isEmpty()) {
+            others = Maps.newHashMap(bindings.getAll());
+            for (int i = 0; i < names.length; i++) {
+                slots[i] = others.remove(names[i]);
+            }
+        }
+        if (!matchNode(root, term, slots)) {
+            return null;
+        }
+        return new SlotBindings(names, slots, others);
+    }
+
+    private static Node compile(final OtpErlangObject pattern,
+            final List<String> names) {
+        if (pattern == null) {
+            return null;
+        }
+        if (!hasVariables(pattern)) {
+            return new ConstNode(pattern);
+        }
+        if (pattern instanceof OtpPatternVariable) {
+            final OtpPatternVariable var = (OtpPatternVariable) pattern;
+            int slot = -1;
+            if (!var.getName().equals("_")) {
+                slot = names.indexOf(var.getName());
+                if (slot < 0) {
+                    slot = names.size();
+                    names.add(var.getName());
+                }
+            }
+            return new VarNode(slot, var.getSignature());
+        }
+        if (pattern instanceof OtpErlangTuple) {
+            return new TupleNode(pattern.getClass(), compile(
+                    ((OtpErlangTuple) pattern).elements(), names));
+        }
+        final OtpErlangList list = (OtpErlangList) pattern;
+        return new ListNode(pattern.getClass(), compile(list.elements(),
+                names), compile(list.getLastTail(), names), list.isProper());
+    }
+
+    private static Node[] compile(final OtpErlangObject[] patterns,
+            final List<String> names) {
+        final Node[] result = new Node[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            result[i] = compile(patterns[i], names);
+        }
+        return result;
+    }
+
+    private static boolean hasVariables(final OtpErlangObject pattern) {
+        if (pattern instanceof OtpPatternVariable) {
+            return true;
+        }
+        if (pattern instanceof OtpErlangTuple) {
+            for (final OtpErlangObject elem : ((OtpErlangTuple) pattern)
+                    .elements()) {
+                if (hasVariables(elem)) {
+                    return true;
+                }
+            }
+        } else if (pattern instanceof OtpErlangList) {
+            final OtpErlangList list = (OtpErlangList) pattern;
+            for (final OtpErlangObject elem : list.elements()) {
+                if (hasVariables(elem)) {
+                    return true;
+                }
+            }
+            return hasVariables(list.getLastTail());
+        }
+        return false;
+    }
+
+    private static boolean matchNode(final Node node,
+            final OtpErlangObject term, final OtpErlangObject[] slots) {
+        if (node == null) {
+            return term == null;
+        }
+        if (term == null) {
+            return false;
+        }
+        return node.match(term, slots);
+    }
+
+    private abstract static class Node {
+        abstract boolean match(OtpErlangObject term, OtpErlangObject[] slots);
+    }
+
+    private static final class ConstNode extends Node {
+        private final OtpErlangObject value;
+
+        ConstNode(final OtpErlangObject value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean match(final OtpErlangObject term, final OtpErlangObject[] slots) {
+            return value.getClass() == term.getClass() && value.equals(term);
+        }
+    }
+
+    private static final class VarNode extends Node {
+        private final int slot;
+        private final Signature signature;
+
+        VarNode(final int slot, final Signature signature) {
+            this.slot = slot;
+            this.signature = signature;
+        }
+
+        @Override
+        boolean match(final OtpErlangObject term, final OtpErlangObject[] slots) {
+            if (!TypeConverter.doesMatchSignature(term, signature)) {
+                return false;
+            }
+            if (slot < 0) {
+                return true;
+            }
+            final OtpErlangObject old = slots[slot];
+            if (old == null) {
+                slots[slot] = term;
+                return true;
+            }
+            return old.equals(term);
+        }
+    }
+
+    private static final class TupleNode extends Node {
+        private final Class<?> cls;
+        private final Node[] elements;
+
+        TupleNode(final Class<?> cls, final Node[] elements) {
+            this.cls = cls;
+            this.elements = elements;
+        }
+
+        @Override
+        boolean match(final OtpErlangObject term, final OtpErlangObject[] slots) {
+            if (term.getClass() != cls) {
+                return false;
+            }
+            final OtpErlangTuple tuple = (OtpErlangTuple) term;
+            if (tuple.arity() != elements.length) {
+                return false;
+            }
+            for (int i = 0; i < elements.length; i++) {
+                if (!matchNode(elements[i], tuple.elementAt(i), slots)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class ListNode extends Node {
+        private final Class<?> cls;
+        private final Node[] elements;
+        private final Node tail;
+        private final boolean proper;
+
+        ListNode(final Class<?> cls, final Node[] elements, final Node tail,
+                final boolean proper) {
+            this.cls = cls;
+            this.elements = elements;
+            this.tail = tail;
+            this.proper = proper;
+        }
+
+        @Override
+        boolean match(final OtpErlangObject term, final OtpErlangObject[] slots) {
+            if (term.getClass() != cls) {
+                return false;
+            }
+            final OtpErlangList list = (OtpErlangList) term;
+            final int arity = elements.length;
+            final int termArity = list.arity();
+            if (arity > termArity) {
+                return false;
+            }
+            if (arity < termArity && proper) {
+                return false;
+            }
+            if (arity == termArity && proper != list.isProper()) {
+                return false;
+            }
+            for (int i = 0; i < arity; i++) {
+                if (!matchNode(elements[i], list.elementAt(i), slots)) {
+                    return false;
+                }
+            }
+            if (arity < termArity && tail instanceof VarNode) {
+                return matchNode(tail, list.getNthTail(arity), slots);
+            }
+            return matchNode(tail, list.getLastTail(), slots);
+        }
+    }
+
+    /**
+     * Bindings stored in the slot array filled by a match.
+     */
+    private static final class SlotBindings extends AbstractBindings {
+        private final String[] names;
+        private final OtpErlangObject[] values;
+        private Map<String, OtpErlangObject> others;
+
+        SlotBindings(final String[] names, final OtpErlangObject[] values,
+                final Map<String, OtpErlangObject> others) {
+            this.names = names;
+            this.values = values;
+            this.others = others;
+        }
+
+        @Override
+        public OtpErlangObject get(final String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return values[i];
+                }
+            }
+            return others == null ? null : others.get(name);
+        }
+
+        @Override
+        public void put(final String name, final OtpErlangObject value) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    values[i] = value;
+                    return;
+                }
+            }
+            if (others == null) {
+                others = Maps.newHashMap();
+            }
+            others.put(name, value);
+        }
+
+        @Override
+        public Map<String, OtpErlangObject> getAll() {
+            final Map<String, OtpErlangObject> result = Maps.newHashMap();
+            if (others != null) {
+                result.putAll(others);
+            }
+            for (int i = 0; i < names.length; i++) {
+                if (values[i] != null) {
+                    result.put(names[i], values[i]);
+                }
+            }
+            return Collections.unmodifiableMap(result);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.erlide.runtime.internal.rpc;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.erlide.runtime.rpc.IRpcFuture;
+import org.erlide.runtime.rpc.IRpcFutureListener;
+import org.erlide.runtime.rpc.IRpcHelper;
+import org.erlide.runtime.rpc.RpcException;
+import org.erlide.runtime.rpc.RpcMonitor;
+import org.erlide.runtime.rpc.RpcTimeoutException;
+
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangRef;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.google.common.collect.Lists;
+
+/**
+ * The result of a RPC whose reply is delivered to a shared mailbox of a
+ * {@link RpcReplyPool}. The pool hands over the still encoded reply, it is
+ * decoded by the thread that asks for the result.
+ */
+public class PooledRpcFuture implements IRpcFuture {
+
+    private final OtpErlangRef ref;
+    private final String env;
+    private final boolean logCalls;
+    private final IRpcHelper helper;
+
+    private final CountDownLatch replied = new CountDownLatch(1);
+    private volatile OtpInputStream replyBuf;
+    private volatile OtpErlangObject reply;
+    private OtpErlangObject result;
+    private final List<IRpcFutureListener> listeners = Lists.newArrayList();
+    private volatile RpcReplyPool pool;
+    private volatile OtpErlangRef tag;
+
+    public PooledRpcFuture(final OtpErlangRef ref, final String env,
+            final boolean logCalls, final IRpcHelper helper) {
+        this.ref = ref;
+        this.env = env;
+        this.logCalls = logCalls;
+        this.helper = helper;
+    }
+
+    /**
+     * Called by the pool with the reference that tags the reply.
+     */
+    void setPending(final RpcReplyPool replyPool, final OtpErlangRef replyTag) {
+        pool = replyPool;
+        tag = replyTag;
+    }
+
+    /**
+     * Called by the pool with the stream positioned at the reply value.
+     */
+    void setReply(final OtpInputStream buf) {
+        replyBuf = buf;
+        replied.countDown();
+        fireDone();
+    }
+
+    /**
+     * Called by the pool when the reply was sent by a local mailbox and is
+     * already decoded.
+     */
+    void setReply(final OtpErlangObject value) {
+        reply = value;
+        replied.countDown();
+        fireDone();
+    }
+
+    @Override
+    public OtpErlangObject get() throws RpcException {
+        return get(IRpcHelper.INFINITY);
+    }
+
+    @Override
+    public synchronized OtpErlangObject get(final long timeout)
+            throws RpcException {
+        if (result == null) {
+            try {
+                if (timeout == IRpcHelper.INFINITY) {
+                    replied.await();
+                } else if (!replied.await(timeout, TimeUnit.MILLISECONDS)) {
+                    giveUp();
+                    throw new RpcTimeoutException(env != null ? env : "??");
+                }
+            } catch (final InterruptedException e) {
+                giveUp();
+                throw new RpcTimeoutException(env != null ? env : "??");
+            }
+            result = decode();
+            RpcMonitor.recordResponse(ref, result);
+        }
+        if (logCalls) {
+            helper.debugLogCallArgs("call <- %s", result);
+        }
+        return result;
+    }
+
+    /**
+     * The reply won't be asked for again, so the pool doesn't need to keep
+     * this future.
+     */
+    private void giveUp() {
+        final RpcReplyPool replyPool = pool;
+        if (replyPool != null && !isDone()) {
+            replyPool.forget(tag);
+        }
+    }
+
+    private OtpErlangObject decode() throws RpcException {
+        if (reply != null) {
+            return reply;
+        }
+        try {
+            return replyBuf.read_any();
+        } catch (final OtpErlangDecodeException e) {
+            throw new RpcException(e);
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return replied.getCount() == 0;
+    }
+
+    @Override
+    public void addListener(final IRpcFutureListener listener) {
+        synchronized (listeners) {
+            if (!isDone()) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.done(this);
+    }
+
+    private void fireDone() {
+        final List<IRpcFutureListener> toNotify;
+        synchronized (listeners) {
+            toNotify = Lists.newArrayList(listeners);
+            listeners.clear();
+        }
+        for (final IRpcFutureListener listener : toNotify) {
+            listener.done(this);
+        }
+    }
+
+}
@@ -10,7 +10,11 @@
  *******************************************************************************/
 package org.erlide.runtime.internal.rpc;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import org.erlide.runtime.rpc.IRpcFuture;
+import org.erlide.runtime.rpc.IRpcFutureListener;
 import org.erlide.runtime.rpc.IRpcHelper;
 import org.erlide.runtime.rpc.RpcException;
 import org.erlide.runtime.rpc.RpcMonitor;
@@ -18,6 +22,7 @@ import org.erlide.runtime.rpc.RpcMonitor;
 import com.ericsson.otp.erlang.OtpErlangObject;
 import com.ericsson.otp.erlang.OtpErlangRef;
 import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpMboxListener;
 
 public class RpcFutureImpl implements IRpcFuture {
 
@@ -28,6 +33,8 @@ public class RpcFutureImpl implements IRpcFuture {
 
     private final IRpcHelper helper;
     private final OtpErlangRef ref;
+    private final List<IRpcFutureListener> listeners = new CopyOnWriteArrayList<IRpcFutureListener>();
+    private boolean notified = false;
 
     public RpcFutureImpl(final OtpErlangRef ref, final OtpMbox mbox,
             final String env, final boolean logCalls, final IRpcHelper helper) {
@@ -67,4 +74,37 @@ public class RpcFutureImpl implements IRpcFuture {
         return result != null;
     }
 
+    @Override
+    public void addListener(final IRpcFutureListener listener) {
+        boolean alreadyDone;
+        synchronized (listeners) {
+            alreadyDone = isDone() || notified;
+            if (!alreadyDone) {
+                listeners.add(listener);
+            }
+        }
+        if (alreadyDone) {
+            listener.done(this);
+            return;
+        }
+        mbox.setListener(new OtpMboxListener() {
+            @Override
+            public void messageDelivered(final OtpMbox box) {
+                fireDone();
+            }
+        });
+    }
+
+    private void fireDone() {
+        synchronized (listeners) {
+            if (notified) {
+                return;
+            }
+            notified = true;
+        }
+        for (final IRpcFutureListener listener : listeners) {
+            listener.done(this);
+        }
+    }
+
 }
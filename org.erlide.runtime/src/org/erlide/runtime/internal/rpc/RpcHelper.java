@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.erlide.runtime.internal.rpc;
 
+import java.util.concurrent.ConcurrentMap;
+
 import org.erlide.runtime.TypeConverter;
 import org.erlide.runtime.rpc.IRpcCallback;
 import org.erlide.runtime.rpc.IRpcFuture;
@@ -33,11 +35,18 @@ import com.ericsson.otp.erlang.OtpMbox;
 import com.ericsson.otp.erlang.OtpNode;
 import com.ericsson.otp.erlang.Signature;
 import com.ericsson.otp.erlang.SignatureException;
+import com.google.common.collect.Maps;
 
 public final class RpcHelper implements IRpcHelper {
     // use this for debugging
     private static final boolean CHECK_RPC = Boolean
             .getBoolean("erlide.checkrpc");
+    // receive replies on a few shared mailboxes instead of one per call
+    private static final boolean POOLED_REPLIES = Boolean
+            .getBoolean("erlide.rpc.pooled");
+
+    private final ConcurrentMap<OtpNode, RpcReplyPool> replyPools = Maps
+            .newConcurrentMap();
 
     /**
      * Convenience method to send a remote message.
@@ -50,6 +59,14 @@ public final class RpcHelper implements IRpcHelper {
     @Override
     public void send(final OtpNode node, final OtpErlangPid pid,
             final Object msg) throws SignatureException {
+        if (POOLED_REPLIES) {
+            if (CHECK_RPC) {
+                debug("SEND " + pid + "-> " + msg);
+            }
+            getReplyPool(node).getMbox().send(pid,
+                    TypeConverter.java2erlang(msg, "x"));
+            return;
+        }
         final OtpMbox mbox = node.createMbox();
         try {
             if (mbox != null) {
@@ -75,6 +92,14 @@ public final class RpcHelper implements IRpcHelper {
     @Override
     public void send(final OtpNode node, final String peer, final String name,
             final Object msg) throws SignatureException {
+        if (POOLED_REPLIES) {
+            if (CHECK_RPC) {
+                debug("SEND " + name + "-> " + msg);
+            }
+            getReplyPool(node).getMbox().send(name, peer,
+                    TypeConverter.java2erlang(msg, "x"));
+            return;
+        }
         final OtpMbox mbox = node.createMbox();
         try {
             if (mbox != null) {
@@ -152,7 +177,9 @@ public final class RpcHelper implements IRpcHelper {
 
     /**
      * Send a RPC request and return the mailbox that will receive the result
-     * once it's delivered.
+     * once it's delivered. This is called concurrently from many threads, so
+     * it only uses per-call state; writes to the socket are serialized by the
+     * connection.
      * 
      * @param node
      * @param peer
@@ -164,12 +191,16 @@ public final class RpcHelper implements IRpcHelper {
      * @throws RpcException
      */
     @Override
-    public synchronized IRpcFuture sendRpcCall(final OtpNode node,
+    public IRpcFuture sendRpcCall(final OtpNode node,
             final String peer, final boolean logCalls,
             final OtpErlangObject gleader, final String module,
             final String fun, final String signature, final Object... args0)
             throws SignatureException {
         final OtpErlangObject[] args = convertArgs(signature, args0);
+        if (POOLED_REPLIES) {
+            return sendPooledRpcCall(node, peer, logCalls, gleader, module,
+                    fun, args);
+        }
 
         OtpErlangObject res = null;
         final OtpMbox mbox = node.createMbox();
@@ -189,6 +220,57 @@ public final class RpcHelper implements IRpcHelper {
                 + args0.length, logCalls, this);
     }
 
+    private IRpcFuture sendPooledRpcCall(final OtpNode node,
+            final String peer, final boolean logCalls,
+            final OtpErlangObject gleader, final String module,
+            final String fun, final OtpErlangObject[] args) {
+        final RpcReplyPool pool = getReplyPool(node);
+        final OtpMbox mbox = pool.getMbox();
+        if (logCalls) {
+            debugLogCallArgs("call -> %s:%s(%s)", module, fun, argString(args));
+        }
+        final OtpErlangObject call = OtpErlang.mkTuple(new OtpErlangAtom(
+                "call"), new OtpErlangAtom(module), new OtpErlangAtom(fun),
+                new OtpErlangList(args), gleader);
+        //
+        final OtpErlangRef ref = RpcMonitor.recordRequest(node, peer, module,
+                fun, args, OtpErlang.sizeOf(call));
+        //
+        final PooledRpcFuture future = new PooledRpcFuture(ref, module + ":"
+                + fun + "/" + args.length, logCalls, this);
+        final OtpErlangRef tag = pool.expect(future);
+        // rex replies to gen_server calls with {Tag, Reply}
+        final OtpErlangObject res = OtpErlang.mkTuple(new OtpErlangAtom(
+                "$gen_call"), OtpErlang.mkTuple(mbox.self(), tag), call);
+        mbox.send("rex", peer, res);
+        if (CHECK_RPC) {
+            debug("RPC " + tag + "=> " + res);
+        }
+        return future;
+    }
+
+    private RpcReplyPool getReplyPool(final OtpNode node) {
+        RpcReplyPool pool = replyPools.get(node);
+        if (pool == null) {
+            final RpcReplyPool newPool = new RpcReplyPool(node);
+            pool = replyPools.putIfAbsent(node, newPool);
+            if (pool == null) {
+                pool = newPool;
+            } else {
+                newPool.close();
+            }
+        }
+        return pool;
+    }
+
+    @Override
+    public void releaseNode(final OtpNode node) {
+        final RpcReplyPool pool = replyPools.remove(node);
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
     private final static String SEP = ", ";
 
     private Object argString(final OtpErlangObject[] args) {
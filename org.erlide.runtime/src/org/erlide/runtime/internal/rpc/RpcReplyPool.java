@@ -0,0 +1,136 @@
+package org.erlide.runtime.internal.rpc;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.erlide.utils.ErlLogger;
+
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+import com.ericsson.otp.erlang.OtpErlangExit;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangRef;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpMbox;
+import com.ericsson.otp.erlang.OtpMboxListener;
+import com.ericsson.otp.erlang.OtpMsg;
+import com.ericsson.otp.erlang.OtpNode;
+import com.google.common.collect.Maps;
+
+/**
+ * A few long-lived mailboxes that receive the replies of many RPCs, instead of
+ * creating and closing a mailbox for each call. Calls are sent to rex as
+ * gen_server calls, so that each reply comes back as <code>{Ref, Reply}</code>
+ * and can be matched with its {@link PooledRpcFuture}.
+ *
+ * Replies are dispatched by the thread that delivers them to the mailbox; only
+ * the reference is decoded there, the reply itself is decoded by the caller.
+ */
+public class RpcReplyPool {
+
+    private static final int SIZE = Integer.getInteger(
+            "erlide.rpc.replyboxes", 4);
+
+    private final OtpNode node;
+    private final OtpMbox[] mboxes;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ConcurrentMap<OtpErlangRef, PooledRpcFuture> pending = Maps
+            .newConcurrentMap();
+
+    public RpcReplyPool(final OtpNode node) {
+        this.node = node;
+        mboxes = new OtpMbox[Math.max(1, SIZE)];
+        final OtpMboxListener dispatcher = new OtpMboxListener() {
+            @Override
+            public void messageDelivered(final OtpMbox mbox) {
+                dispatch(mbox);
+            }
+        };
+        for (int i = 0; i < mboxes.length; i++) {
+            mboxes[i] = node.createMbox();
+            mboxes[i].setListener(dispatcher);
+        }
+    }
+
+    /**
+     * @return one of the shared mailboxes, to be used as sender.
+     */
+    public OtpMbox getMbox() {
+        final int i = next.getAndIncrement() & Integer.MAX_VALUE;
+        return mboxes[i % mboxes.length];
+    }
+
+    /**
+     * Create a new reference and remember that the future waits for the reply
+     * tagged with it. Must be called before the request is sent.
+     */
+    public OtpErlangRef expect(final PooledRpcFuture future) {
+        final OtpErlangRef tag = node.createRef();
+        future.setPending(this, tag);
+        pending.put(tag, future);
+        return tag;
+    }
+
+    /**
+     * Stop waiting for the reply tagged with the reference, e.g. when the
+     * caller has given up on it. A reply that arrives later is dropped.
+     */
+    void forget(final OtpErlangRef tag) {
+        pending.remove(tag);
+    }
+
+    public void close() {
+        for (final OtpMbox mbox : mboxes) {
+            mbox.setListener(null);
+            node.closeMbox(mbox);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void dispatch(final OtpMbox mbox) {
+        OtpMsg msg;
+        while ((msg = poll(mbox)) != null) {
+            try {
+                final OtpInputStream buf = msg.getMsgBuf();
+                if (buf != null) {
+                    if (buf.read_tuple_head() == 2) {
+                        final PooledRpcFuture future = pending.remove(buf
+                                .read_ref());
+                        if (future != null) {
+                            future.setReply(buf);
+                            continue;
+                        }
+                    }
+                } else {
+                    final OtpErlangObject o = msg.getMsg();
+                    if (o instanceof OtpErlangTuple
+                            && ((OtpErlangTuple) o).arity() == 2) {
+                        final OtpErlangTuple t = (OtpErlangTuple) o;
+                        final PooledRpcFuture future = pending.remove(t
+                                .elementAt(0));
+                        if (future != null) {
+                            future.setReply(t.elementAt(1));
+                            continue;
+                        }
+                    }
+                }
+            } catch (final OtpErlangDecodeException e) {
+                ErlLogger.warn(e);
+            }
+            ErlLogger.debug("RPC reply pool: unexpected message dropped");
+        }
+    }
+
+    private OtpMsg poll(final OtpMbox mbox) {
+        while (true) {
+            try {
+                return mbox.pollMsg();
+            } catch (final OtpErlangExit e) {
+                // nobody is linked to us, skip it
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.erlide.tracing.core.mvc.model.stats;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        for (int v = 0; v < 128; v++) {
+            assertEquals(v, LatencyHistogram.indexOf(v));
+            assertEquals(v, LatencyHistogram.lowestValueOf(v));
+            assertEquals(v, LatencyHistogram.highestValueOf(v));
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        long expectedLowest = 0;
+        for (int i = 0; i < 2000; i++) {
+            final long lowest = LatencyHistogram.lowestValueOf(i);
+            final long highest = LatencyHistogram.highestValueOf(i);
+            assertEquals(expectedLowest, lowest);
+            assertEquals(i, LatencyHistogram.indexOf(lowest));
+            assertEquals(i, LatencyHistogram.indexOf(highest));
+            // a bucket is at most 1/64 of its values wide
+            assertTrue(highest - lowest + 1 <= Math.max(1, lowest / 64));
+            expectedLowest = highest + 1;
+        }
+    }
+
+    @Test
+    public void bucketEdges() {
+        assertEquals(128, LatencyHistogram.indexOf(128));
+        assertEquals(128, LatencyHistogram.indexOf(129));
+        assertEquals(129, LatencyHistogram.indexOf(130));
+        assertEquals(191, LatencyHistogram.indexOf(255));
+        assertEquals(192, LatencyHistogram.indexOf(256));
+        assertEquals(192, LatencyHistogram.indexOf(259));
+        assertEquals(193, LatencyHistogram.indexOf(260));
+    }
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int v = 1; v <= 100; v++) {
+            histogram.record(v);
+        }
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void percentilesOfBigValuesAreWithinTheirBucket() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1000000);
+        final long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(p50 >= 1000 && p50 <= 1000 + 1000 / 64);
+        assertEquals(1000000, histogram.getValueAtPercentile(100));
+        assertEquals(1000000, histogram.getMax());
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void addMergesHistograms() {
+        final LatencyHistogram a = new LatencyHistogram();
+        final LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(100000);
+        a.add(b);
+        assertEquals(2, a.getTotalCount());
+        assertEquals(10, a.getMin());
+        assertEquals(100000, a.getMax());
+        assertEquals(10, a.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void emptyHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
@@ -0,0 +1,171 @@
+package org.erlide.tracing.core.mvc.model.stats;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+public class TraceAggregatorTest {
+
+    private static final OtpErlangPid PID = new OtpErlangPid("a@host", 1, 0,
+            0);
+    private static final OtpErlangPid OTHER = new OtpErlangPid("a@host", 2,
+            0, 0);
+
+    private TraceAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        aggregator = new TraceAggregator();
+    }
+
+    private static OtpErlangTuple tuple(final OtpErlangObject... elements) {
+        return new OtpErlangTuple(elements);
+    }
+
+    private static OtpErlangAtom atom(final String name) {
+        return new OtpErlangAtom(name);
+    }
+
+    /**
+     * <code>now()</code> timestamp
+     */
+    private static OtpErlangTuple ts(final long micros) {
+        return tuple(new OtpErlangLong(1000), new OtpErlangLong(
+                micros / 1000000), new OtpErlangLong(micros % 1000000));
+    }
+
+    private static OtpErlangTuple mfa(final String function,
+            final OtpErlangObject arityOrArgs) {
+        return tuple(atom("m"), atom(function), arityOrArgs);
+    }
+
+    private void call(final OtpErlangPid pid, final String function,
+            final int arity, final long time) {
+        final OtpErlangObject[] args = new OtpErlangObject[arity];
+        for (int i = 0; i < arity; i++) {
+            args[i] = atom("x");
+        }
+        aggregator.add(tuple(atom("trace_ts"), pid, atom("call"),
+                mfa(function, new OtpErlangList(args)), ts(time)));
+    }
+
+    private void returnFrom(final OtpErlangPid pid, final String type,
+            final String function, final int arity, final long time) {
+        aggregator.add(tuple(atom("trace_ts"), pid, atom(type),
+                mfa(function, new OtpErlangLong(arity)), atom("ok"), ts(time)));
+    }
+
+    private FunctionStats function(final String name) {
+        for (final FunctionStats stats : aggregator.getFunctionStats()) {
+            if (stats.getFunctionName().equals(name)) {
+                return stats;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void nestedCallsArePairedWithTheirReturns() {
+        call(PID, "f", 1, 0);
+        call(PID, "g", 0, 10);
+        returnFrom(PID, "return_from", "g", 0, 40);
+        returnFrom(PID, "return_from", "f", 1, 100);
+
+        final FunctionStats f = function("f");
+        assertEquals(1, f.getArity());
+        assertEquals(1, f.getCalls());
+        assertEquals(1, f.getTimedCalls());
+        assertEquals(100, f.getInclusiveTime());
+        assertEquals(70, f.getExclusiveTime());
+        final FunctionStats g = function("g");
+        assertEquals(30, g.getInclusiveTime());
+        assertEquals(30, g.getExclusiveTime());
+        assertEquals(30, g.getHistogram().getValueAtPercentile(50));
+        assertEquals(4, aggregator.getTraceCount());
+    }
+
+    @Test
+    public void processesAreKeptApart() {
+        call(PID, "f", 0, 0);
+        call(OTHER, "f", 0, 5);
+        returnFrom(OTHER, "return_from", "f", 0, 10);
+        returnFrom(PID, "exception_from", "f", 0, 50);
+
+        final FunctionStats f = function("f");
+        assertEquals(2, f.getCalls());
+        assertEquals(2, f.getTimedCalls());
+        assertEquals(55, f.getInclusiveTime());
+        assertEquals(1, f.getExceptions());
+    }
+
+    @Test
+    public void callsWithoutReturnAreSkipped() {
+        call(PID, "f", 0, 0);
+        // not traced with return_trace()
+        call(PID, "g", 0, 10);
+        returnFrom(PID, "return_from", "f", 0, 30);
+        // return of a call made before tracing started
+        returnFrom(PID, "return_from", "h", 0, 40);
+
+        assertEquals(30, function("f").getInclusiveTime());
+        assertEquals(1, function("g").getCalls());
+        assertEquals(0, function("g").getTimedCalls());
+        assertEquals(0, function("h").getTimedCalls());
+    }
+
+    @Test
+    public void dropLosesOpenCalls() {
+        call(PID, "f", 0, 0);
+        aggregator.add(tuple(atom("drop"), new OtpErlangLong(7)));
+        returnFrom(PID, "return_from", "f", 0, 30);
+        assertEquals(0, function("f").getTimedCalls());
+        assertEquals(7, aggregator.getDroppedCount());
+    }
+
+    @Test
+    public void sendRate() {
+        for (int i = 0; i <= 4; i++) {
+            aggregator.add(tuple(atom("trace_ts"), PID, atom("send"),
+                    atom("msg"), OTHER, ts(i * 500000L)));
+        }
+        aggregator.add(tuple(atom("trace_ts"), OTHER, atom("receive"),
+                atom("msg"), ts(0)));
+        for (final ProcessStats stats : aggregator.getProcessStats()) {
+            if (stats.getSent() > 0) {
+                assertEquals(5, stats.getSent());
+                assertEquals(2.5, stats.getSendRate(), 1e-9);
+            } else {
+                assertEquals(1, stats.getReceived());
+            }
+        }
+        assertEquals(2, aggregator.getProcessStats().size());
+    }
+
+    @Test
+    public void statisticsAreSnapshots() {
+        call(PID, "f", 0, 0);
+        final FunctionStats before = function("f");
+        call(PID, "f", 0, 10);
+        assertEquals(1, before.getCalls());
+        assertEquals(2, function("f").getCalls());
+    }
+
+    @Test
+    public void otherMessagesAreIgnored() {
+        aggregator.add(atom("trace_ts"));
+        aggregator.add(tuple(atom("trace"), PID, atom("call"),
+                mfa("f", new OtpErlangLong(0))));
+        aggregator.add(tuple(atom("trace_ts"), PID, atom("unknown"),
+                atom("x"), ts(0)));
+        assertEquals(0, aggregator.getTraceCount());
+        assertTrue(aggregator.getFunctionStats().isEmpty());
+    }
+}
@@ -0,0 +1,145 @@
+package org.erlide.tracing.core.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.erlide.tracing.core.mvc.model.stats.FunctionStats;
+import org.erlide.tracing.core.mvc.model.stats.TraceAggregator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpOutputStream;
+
+/**
+ * Reads small trace files in the format written by the trace port, as
+ * <code>ttb</code> does.
+ */
+public class TraceFileReaderTest {
+
+    private static final OtpErlangPid PID = new OtpErlangPid("a@host", 1, 0,
+            0);
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("ttb", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static OtpErlangTuple trace(final String type,
+            final OtpErlangObject mfa, final long micros) {
+        final OtpErlangTuple ts = new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangLong(1000), new OtpErlangLong(0),
+                new OtpErlangLong(micros) });
+        if (type.equals("call")) {
+            return new OtpErlangTuple(new OtpErlangObject[] {
+                    new OtpErlangAtom("trace_ts"), PID,
+                    new OtpErlangAtom(type), mfa, ts });
+        }
+        return new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangAtom("trace_ts"), PID, new OtpErlangAtom(type),
+                mfa, new OtpErlangAtom("ok"), ts });
+    }
+
+    private static OtpErlangTuple mfa(final OtpErlangObject arityOrArgs) {
+        return new OtpErlangTuple(new OtpErlangObject[] {
+                new OtpErlangAtom("m"), new OtpErlangAtom("f"), arityOrArgs });
+    }
+
+    /**
+     * Writes <code>&lt;&lt;0, Size:32, Trace/binary&gt;&gt;</code> entries,
+     * with a <code>&lt;&lt;1, Dropped:32&gt;&gt;</code> entry and an
+     * incomplete entry at the end.
+     */
+    private File writeFile(final String name, final long start,
+            final long end, final boolean dropAndCut) throws IOException {
+        final File file = new File(dir, name);
+        final DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(file));
+        try {
+            for (final OtpErlangObject trace : new OtpErlangObject[] {
+                    trace("call", mfa(new OtpErlangList()), start),
+                    trace("return_from", mfa(new OtpErlangLong(0)), end) }) {
+                final byte[] bytes = new OtpOutputStream(trace).toByteArray();
+                out.writeByte(0);
+                out.writeInt(bytes.length + 1);
+                // external term format version
+                out.writeByte(131);
+                out.write(bytes);
+            }
+            if (dropAndCut) {
+                out.writeByte(1);
+                out.writeInt(3);
+                out.writeByte(0);
+                out.writeInt(100);
+                out.write(new byte[] { (byte) 131, 104 });
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void readsTraceFile() throws IOException {
+        final File file = writeFile("a@host-ttb", 10, 35, true);
+        final TraceAggregator aggregator = new TraceAggregator();
+        assertEquals(3, TraceFileReader.read(file, aggregator));
+        assertEquals(2, aggregator.getTraceCount());
+        assertEquals(3, aggregator.getDroppedCount());
+        final FunctionStats f = aggregator.getFunctionStats().get(0);
+        assertEquals("m:f/0", f.toString());
+        assertEquals(1, f.getCalls());
+        assertEquals(25, f.getInclusiveTime());
+    }
+
+    @Test
+    public void readsAllFilesOfDirectory() throws IOException {
+        writeFile("a@host-ttb", 10, 35, false);
+        writeFile("b@host-ttb", 100, 110, false);
+        new FileOutputStream(new File(dir, "ttb.ti")).close();
+        final TraceAggregator aggregator = new TraceAggregator();
+        assertEquals(4, TraceFileReader.read(dir, aggregator));
+        final FunctionStats f = aggregator.getFunctionStats().get(0);
+        assertEquals(2, f.getTimedCalls());
+        assertEquals(35, f.getInclusiveTime());
+    }
+
+    @Test(expected = IOException.class)
+    public void badEntryIsRejected() throws IOException {
+        final File file = new File(dir, "bad");
+        final DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(file));
+        try {
+            out.writeByte(7);
+            out.writeInt(0);
+        } finally {
+            out.close();
+        }
+        TraceFileReader.read(file, new TraceAggregator());
+    }
+}
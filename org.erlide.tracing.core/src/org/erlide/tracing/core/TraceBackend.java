@@ -1,11 +1,15 @@
 package org.erlide.tracing.core;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.erlide.backend.BackendCore;
@@ -15,13 +19,16 @@ import org.erlide.backend.events.ErlangEventHandler;
 import org.erlide.runtime.rpc.RpcException;
 import org.erlide.runtime.runtimeinfo.RuntimeInfo;
 import org.erlide.tracing.core.mvc.model.TraceCollections;
+import org.erlide.tracing.core.mvc.model.TraceEventStore;
 import org.erlide.tracing.core.mvc.model.TracePattern;
 import org.erlide.tracing.core.mvc.model.TracedNode;
 import org.erlide.tracing.core.mvc.model.TracedProcess;
+import org.erlide.tracing.core.mvc.model.stats.TraceAggregator;
 import org.erlide.tracing.core.mvc.model.treenodes.ITreeNode;
 import org.erlide.tracing.core.mvc.model.treenodes.TracingResultsNode;
 import org.erlide.tracing.core.preferences.PreferenceNames;
 import org.erlide.tracing.core.utils.TraceDataHandler;
+import org.erlide.tracing.core.utils.TraceFileReader;
 import org.erlide.utils.ErlLogger;
 import org.osgi.service.event.Event;
 
@@ -51,6 +58,11 @@ public class TraceBackend {
     private static final String FUN_FILE_INFO = "get_file_info";
     private static final String FUN_LOAD = "load";
 
+    /**
+     * Maximal number of bytes taken by loaded trace pages kept for reuse.
+     */
+    private static final long MAX_CACHED_PAGES_SIZE = 64L << 20;
+
     private final Set<TracePattern> tracePatterns = new LinkedHashSet<TracePattern>();
     private final Set<TracedNode> tracedNodes = new LinkedHashSet<TracedNode>();
     private final List<ITraceNodeObserver> listeners = new ArrayList<ITraceNodeObserver>();
@@ -73,6 +85,19 @@ public class TraceBackend {
     private long startIndex;
     private TracingResultsNode activeResultSet;
 
+    /**
+     * Page of traces which is being loaded and key under which it will be
+     * cached. The event handler appends to the page while loading may be
+     * finished from another thread, both hold {@link #pageLock}. It isn't
+     * <code>this</code>, which is held while waiting for the backend.
+     */
+    private TraceEventStore loadedPage;
+    private String loadedPageKey;
+    private final Object pageLock = new Object();
+    private final Map<String, TraceEventStore> cachedPages = new LinkedHashMap<String, TraceEventStore>(
+            16, 0.75f, true);
+    private final TraceAggregator aggregator = new TraceAggregator();
+
     private TraceBackend() {
     }
 
@@ -89,6 +114,13 @@ public class TraceBackend {
         private final TraceDataHandler dataHandler = new TraceDataHandler();
         private boolean firstTrace = true;
 
+        /**
+         * Prepares handler for receiving next portion of data.
+         */
+        public void reset() {
+            firstTrace = true;
+        }
+
         @Override
         public void handleEvent(final Event event) {
             final OtpErlangObject message = (OtpErlangObject) event
@@ -102,21 +134,40 @@ public class TraceBackend {
                 } else if ((errorReason = dataHandler.getErrorReson(message)) != null) {
                     errorObject = errorReason;
                     finishLoading(TracingStatus.ERROR);
+                } else if (!loadingFileInfo) {
+                    // traces are stored as they come, tree nodes are built
+                    // when they are displayed
+                    if (dataHandler.isTraceEvent(message)) {
+                        firstTrace = false;
+                        synchronized (pageLock) {
+                            if (loadedPage != null) {
+                                loadedPage.append(message);
+                            }
+                        }
+                    }
                 } else {
                     final ITreeNode newNode = dataHandler.getData(message);
                     if (newNode != null) {
                         firstTrace = false;
-                        if (!loadingFileInfo) {
-                            TraceCollections.getTracesList().add(newNode);
-                        } else {
-                            TraceCollections.getFilesList().add(newNode);
-                        }
+                        TraceCollections.getFilesList().add(newNode);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Registers handler receiving data from trace node. Handler is registered
+     * only once and then reused for every file and every page of traces.
+     */
+    private void registerHandler() {
+        if (handler == null) {
+            handler = new TraceEventHandler(tracerBackend);
+            handler.register();
+        }
+        handler.reset();
+    }
+
     /**
      * Checks if tracing is started.
      * 
@@ -150,8 +201,8 @@ public class TraceBackend {
                         tracing = true;
                         getBackend(true);
                         loadingFileInfo = true;
-                        handler = new TraceEventHandler(tracerBackend);
-                        handler.register();
+                        cachedPages.clear();
+                        registerHandler();
 
                         // list of nodes being traced
                         final List<OtpErlangObject> erlangObjects = new ArrayList<OtpErlangObject>();
@@ -328,9 +379,9 @@ public class TraceBackend {
                     try {
                         loading = true;
                         loadingFileInfo = true;
-                        handler = new TraceEventHandler(tracerBackend);
+                        cachedPages.clear();
                         getBackend(true);
-                        handler.register();
+                        registerHandler();
                         tracerBackend.getRpcSite().call(
                                 Constants.ERLANG_HELPER_MODULE, FUN_FILE_INFO,
                                 "s", new OtpErlangString(path));
@@ -348,6 +399,8 @@ public class TraceBackend {
      * Loads traces from active result set (
      * {@link #setActiveResultSet(TracingResultsNode)}). Index of last trace
      * which will be loaded is <code>max(number_of_traces, endIndex)</code>.
+     * Recently loaded ranges are kept in memory and shown again without
+     * reading the file.
      * 
      * @param theStartIndex
      *            number of first trace
@@ -362,10 +415,22 @@ public class TraceBackend {
                         loading = true;
                         loadingFileInfo = false;
                         startIndex = theStartIndex;
-                        handler = new TraceEventHandler(tracerBackend);
+                        final String key = activeResultSet.getFileName()
+                                + ":" + theStartIndex + "-" + endIndex;
+                        final TraceEventStore page = cachedPages.get(key);
+                        if (page != null) {
+                            TraceCollections.getTracesList().setStore(page);
+                            finishLoading(TracingStatus.OK);
+                            return;
+                        }
+                        final TraceEventStore newPage = new TraceEventStore();
+                        synchronized (pageLock) {
+                            loadedPage = newPage;
+                            loadedPageKey = key;
+                        }
+                        TraceCollections.getTracesList().setStore(newPage);
                         getBackend(true);
-                        TraceCollections.getTracesList().clear();
-                        handler.register();
+                        registerHandler();
                         final OtpErlangLong start = new OtpErlangLong(
                                 theStartIndex);
                         final OtpErlangLong stop = new OtpErlangLong(endIndex);
@@ -385,11 +450,47 @@ public class TraceBackend {
         }
     }
 
+    /**
+     * Computes statistics (see {@link #getAggregator()}) of all traces from
+     * active result set ({@link #setActiveResultSet(TracingResultsNode)}).
+     * Trace files are read directly, without sending traces through backend,
+     * and statistics are updated while they are read.
+     * 
+     * @return status
+     */
+    public TracingStatus aggregateActiveResultSet() {
+        final TracingResultsNode resultSet = activeResultSet;
+        aggregator.clear();
+        if (resultSet == null) {
+            return TracingStatus.EMPTY;
+        }
+        try {
+            TraceFileReader.read(new File(resultSet.getFileName()), aggregator);
+        } catch (final IOException e) {
+            ErlLogger.error(e);
+            errorObject = e;
+            return TracingStatus.EXCEPTION_THROWN;
+        }
+        return aggregator.getTraceCount() == 0 ? TracingStatus.EMPTY
+                : TracingStatus.OK;
+    }
+
+    /**
+     * Returns statistics computed by {@link #aggregateActiveResultSet()}.
+     * 
+     * @return aggregator
+     */
+    public TraceAggregator getAggregator() {
+        return aggregator;
+    }
+
     /**
      * Removes tracing results from list.
      */
     public synchronized void clearTraceLists() {
         activeResultSet = null;
+        cachedPages.clear();
+        aggregator.clear();
         TraceCollections.getFilesList().clear();
         TraceCollections.getTracesList().clear();
         for (final ITraceNodeObserver listener : listeners) {
@@ -410,6 +511,8 @@ public class TraceBackend {
     public synchronized void removeTracingResult(
             final TracingResultsNode tracingResult) {
         activeResultSet = null;
+        cachedPages.clear();
+        aggregator.clear();
         TraceCollections.getFilesList().remove(tracingResult);
         TraceCollections.getTracesList().clear();
         for (final ITraceNodeObserver listener : listeners) {
@@ -443,6 +546,19 @@ public class TraceBackend {
      *            status
      */
     private void finishLoading(final TracingStatus status) {
+        if (!loadingFileInfo) {
+            final TraceEventStore page;
+            final String key;
+            synchronized (pageLock) {
+                page = loadedPage;
+                key = loadedPageKey;
+                loadedPage = null;
+                loadedPageKey = null;
+            }
+            if (page != null && TracingStatus.OK.equals(status)) {
+                cachePage(key, page);
+            }
+        }
         for (final ITraceNodeObserver listener : listeners) {
             try {
                 if (loadingFileInfo) {
@@ -458,6 +574,24 @@ public class TraceBackend {
         tracing = false;
     }
 
+    private synchronized void cachePage(final String key,
+            final TraceEventStore page) {
+        cachedPages.put(key, page);
+        long size = 0;
+        for (final TraceEventStore cachedPage : cachedPages.values()) {
+            size += cachedPage.getMemorySize();
+        }
+        final Iterator<TraceEventStore> iterator = cachedPages.values()
+                .iterator();
+        while (size > MAX_CACHED_PAGES_SIZE && iterator.hasNext()) {
+            final TraceEventStore cachedPage = iterator.next();
+            if (cachedPage != page) {
+                size -= cachedPage.getMemorySize();
+                iterator.remove();
+            }
+        }
+    }
+
     private OtpErlangObject[] createProcessFlagsArray(final Set<ProcessFlag> set) {
         final OtpErlangObject[] array = new OtpErlangObject[set.size()];
         final Iterator<ProcessFlag> iterator = set.iterator();
@@ -1,6 +1,5 @@
 package org.erlide.tracing.core.mvc.model;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.TreeSet;
@@ -20,8 +19,7 @@ public final class TraceCollections {
 
     private static final Collection<ITreeNode> filesList = Collections
             .synchronizedSortedSet(new TreeSet<ITreeNode>());
-    private static final Collection<ITreeNode> tracesList = Collections
-            .synchronizedList(new ArrayList<ITreeNode>());
+    private static final TraceEventList tracesList = new TraceEventList();
 
     /**
      * Returns collection of nodes that represents files with tracing results.
@@ -37,7 +35,7 @@ public final class TraceCollections {
      * 
      * @return list
      */
-    public static Collection<ITreeNode> getTracesList() {
+    public static TraceEventList getTracesList() {
         return tracesList;
     }
 }
@@ -0,0 +1,80 @@
+package org.erlide.tracing.core.mvc.model;
+
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.erlide.tracing.core.mvc.model.treenodes.ITreeNode;
+import org.erlide.tracing.core.mvc.model.treenodes.TreeNode;
+import org.erlide.tracing.core.utils.TraceDataHandler;
+import org.erlide.utils.ErlLogger;
+
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+
+/**
+ * List of tree nodes that represent trace events kept in a
+ * {@link TraceEventStore}. Nodes are built only when they are asked for (i.e.
+ * when tree viewer shows them) and only the most recently used ones are kept.
+ */
+public class TraceEventList extends AbstractList<ITreeNode> {
+
+    private static final int CACHED_NODES = 1000;
+
+    private final TraceDataHandler dataHandler = new TraceDataHandler();
+    private final Map<Integer, ITreeNode> nodes = new LinkedHashMap<Integer, ITreeNode>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<Integer, ITreeNode> eldest) {
+            return size() > CACHED_NODES;
+        }
+    };
+    private TraceEventStore store;
+
+    /**
+     * Makes this list show all events from given store.
+     * 
+     * @param theStore
+     *            store
+     */
+    public synchronized void setStore(final TraceEventStore theStore) {
+        store = theStore;
+        nodes.clear();
+    }
+
+    public synchronized TraceEventStore getStore() {
+        return store;
+    }
+
+    @Override
+    public synchronized ITreeNode get(final int index) {
+        if (store == null) {
+            throw new IndexOutOfBoundsException("index: " + index);
+        }
+        ITreeNode node = nodes.get(index);
+        if (node == null) {
+            try {
+                node = dataHandler.getData(store.get(index));
+            } catch (final OtpErlangDecodeException e) {
+                ErlLogger.error(e);
+            }
+            if (node == null) {
+                node = new TreeNode("unknown trace event");
+            }
+            nodes.put(index, node);
+        }
+        return node;
+    }
+
+    @Override
+    public synchronized int size() {
+        return store == null ? 0 : store.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        setStore(null);
+    }
+}
@@ -0,0 +1,103 @@
+package org.erlide.tracing.core.mvc.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+
+/**
+ * Append-only store of raw trace events. Every event is kept in Erlang
+ * external format in direct (off-heap) buffers, and only a few primitive
+ * columns per event stay on the heap: where its bytes are.
+ * Events are decoded again when they are read, so holding millions of them
+ * costs about their encoded size instead of the size of their tree nodes.
+ */
+public class TraceEventStore {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int INITIAL_ROWS = 1024;
+
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    private int[] chunkColumn = new int[INITIAL_ROWS];
+    private int[] offsetColumn = new int[INITIAL_ROWS];
+    private int[] lengthColumn = new int[INITIAL_ROWS];
+    private int size;
+    private long memorySize;
+
+    /**
+     * Appends event to the store.
+     * 
+     * @param event
+     *            trace event
+     * @return row of the event
+     */
+    public synchronized int append(final OtpErlangObject event) {
+        final OtpOutputStream out = new OtpOutputStream(event);
+        final int length = out.size();
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks
+                .get(chunks.size() - 1);
+        if (chunk == null || chunk.remaining() < length) {
+            chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, length));
+            chunks.add(chunk);
+            memorySize += chunk.capacity();
+        }
+        if (size == chunkColumn.length) {
+            grow();
+        }
+        chunkColumn[size] = chunks.size() - 1;
+        offsetColumn[size] = chunk.position();
+        lengthColumn[size] = length;
+        chunk.put(out.toByteArray());
+        return size++;
+    }
+
+    private void grow() {
+        final int capacity = chunkColumn.length * 2;
+        chunkColumn = Arrays.copyOf(chunkColumn, capacity);
+        offsetColumn = Arrays.copyOf(offsetColumn, capacity);
+        lengthColumn = Arrays.copyOf(lengthColumn, capacity);
+    }
+
+    /**
+     * Decodes event stored in given row.
+     * 
+     * @param row
+     *            row
+     * @return trace event
+     * @throws OtpErlangDecodeException
+     */
+    public synchronized OtpErlangObject get(final int row)
+            throws OtpErlangDecodeException {
+        checkRow(row);
+        final ByteBuffer chunk = chunks.get(chunkColumn[row]).duplicate();
+        chunk.position(offsetColumn[row]);
+        final byte[] bytes = new byte[lengthColumn[row]];
+        chunk.get(bytes);
+        return new OtpInputStream(bytes).read_any();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns number of bytes reserved by this store, both on and off the heap.
+     * 
+     * @return size in bytes
+     */
+    public synchronized long getMemorySize() {
+        return memorySize + chunkColumn.length * 12L;
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row: " + row + ", size: "
+                    + size);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.erlide.tracing.core.mvc.model.stats;
+
+/**
+ * Statistics of calls of one function. Times are in microseconds. Inclusive
+ * time of a call is time between call and return (or exception), exclusive
+ * time excludes inclusive times of traced functions called from it.
+ */
+public class FunctionStats {
+
+    private final String moduleName;
+    private final String functionName;
+    private final int arity;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long calls;
+    private long exceptions;
+    private long inclusiveTime;
+    private long exclusiveTime;
+
+    public FunctionStats(final String moduleName, final String functionName,
+            final int arity) {
+        this.moduleName = moduleName;
+        this.functionName = functionName;
+        this.arity = arity;
+    }
+
+    FunctionStats copy() {
+        final FunctionStats result = new FunctionStats(moduleName,
+                functionName, arity);
+        result.histogram.add(histogram);
+        result.calls = calls;
+        result.exceptions = exceptions;
+        result.inclusiveTime = inclusiveTime;
+        result.exclusiveTime = exclusiveTime;
+        return result;
+    }
+
+    void addCall() {
+        calls++;
+    }
+
+    void addReturn(final long inclusive, final long exclusive,
+            final boolean exception) {
+        if (exception) {
+            exceptions++;
+        }
+        inclusiveTime += inclusive;
+        exclusiveTime += exclusive;
+        histogram.record(inclusive);
+    }
+
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Returns number of calls, including the ones whose return was not
+     * traced.
+     * 
+     * @return number of calls
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns number of calls whose return (or exception) was traced, i.e.
+     * the number of calls that times are computed from.
+     * 
+     * @return number of timed calls
+     */
+    public long getTimedCalls() {
+        return histogram.getTotalCount();
+    }
+
+    public long getExceptions() {
+        return exceptions;
+    }
+
+    public long getInclusiveTime() {
+        return inclusiveTime;
+    }
+
+    public long getExclusiveTime() {
+        return exclusiveTime;
+    }
+
+    /**
+     * Returns histogram of inclusive times of calls.
+     * 
+     * @return histogram
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return moduleName + ":" + functionName + "/" + arity;
+    }
+}
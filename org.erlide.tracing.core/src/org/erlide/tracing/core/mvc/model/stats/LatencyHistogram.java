@@ -0,0 +1,133 @@
+package org.erlide.tracing.core.mvc.model.stats;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations (in microseconds) with log-linear buckets, in the
+ * manner of HdrHistogram: values below {@value #SUB_BUCKETS} are counted
+ * exactly and bigger ones in buckets whose width is at most 1/64 of their
+ * value, so percentiles are accurate to about two significant digits while
+ * recording is constant time and memory grows only with the biggest value.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private long[] counts = new long[SUB_BUCKETS];
+    private long totalCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Records one value. Negative values are counted as 0.
+     * 
+     * @param value
+     *            value
+     */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+        final int index = indexOf(v);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts,
+                    Math.max(index + 1, counts.length * 2));
+        }
+        counts[index]++;
+        totalCount++;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+
+    /**
+     * Adds all values recorded by other histogram to this one.
+     * 
+     * @param other
+     *            histogram
+     */
+    public void add(final LatencyHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Returns value below which given percentage of recorded values fall. The
+     * result is the highest value of the bucket holding that value, but never
+     * more than the maximal recorded value.
+     * 
+     * @param percentile
+     *            percentile (0-100)
+     * @return value
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        final double p = Math.min(100, Math.max(0, percentile));
+        final long rank = Math.max(1, (long) Math.ceil(p / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= rank) {
+                return Math.min(max, highestValueOf(i));
+            }
+        }
+        return max;
+    }
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // keep the highest SUB_BUCKET_BITS - 1 bits below the leading one
+        final int shift = 63 - Long.numberOfLeadingZeros(value)
+                - (SUB_BUCKET_BITS - 1);
+        final int top = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + top
+                - HALF_SUB_BUCKETS;
+    }
+
+    static long lowestValueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        final long top = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS
+                + HALF_SUB_BUCKETS;
+        return top << shift;
+    }
+
+    static long highestValueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        return lowestValueOf(index) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,75 @@
+package org.erlide.tracing.core.mvc.model.stats;
+
+/**
+ * Message statistics of one process.
+ */
+public class ProcessStats {
+
+    private final String process;
+    private long sent;
+    private long received;
+    private long firstTime = -1;
+    private long lastTime = -1;
+
+    public ProcessStats(final String process) {
+        this.process = process;
+    }
+
+    ProcessStats copy() {
+        final ProcessStats result = new ProcessStats(process);
+        result.sent = sent;
+        result.received = received;
+        result.firstTime = firstTime;
+        result.lastTime = lastTime;
+        return result;
+    }
+
+    void addTrace(final long time) {
+        if (time < 0) {
+            return;
+        }
+        if (firstTime < 0 || time < firstTime) {
+            firstTime = time;
+        }
+        lastTime = Math.max(lastTime, time);
+    }
+
+    void addSent() {
+        sent++;
+    }
+
+    void addReceived() {
+        received++;
+    }
+
+    public String getProcess() {
+        return process;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * Returns number of sent messages per second, counted between first and
+     * last trace of the process.
+     * 
+     * @return send rate or 0 if traces span less than a millisecond
+     */
+    public double getSendRate() {
+        final long span = lastTime - firstTime;
+        if (firstTime < 0 || span < 1000) {
+            return 0;
+        }
+        return sent * 1000000.0 / span;
+    }
+
+    @Override
+    public String toString() {
+        return process;
+    }
+}
@@ -0,0 +1,358 @@
+package org.erlide.tracing.core.mvc.model.stats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.erlide.tracing.core.TraceType;
+import org.erlide.utils.ErlLogger;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangPid;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+
+/**
+ * Aggregates trace events into per function and per process statistics. Call
+ * traces are paired with <i>return_from</i> and <i>exception_from</i> traces
+ * of the same process, so the latter are needed to compute times (i.e. trace
+ * patterns should use match spec with <code>return_trace()</code> or
+ * <code>exception_trace()</code>).
+ * <p>
+ * Events are read from trace files (with <code>now()</code> timestamps) by
+ * {@link org.erlide.tracing.core.utils.TraceFileReader}, without UI. Getters
+ * return snapshots, so statistics can be shown while they are computed.
+ * <p>
+ * The pages of traces that {@link org.erlide.tracing.core.TraceBackend}
+ * loads for the traces view are not added: they are ranges of the same
+ * files, so they would be counted again, and traces only reach the IDE when
+ * a page of them is loaded, not while the traced nodes run.
+ */
+public class TraceAggregator {
+
+    private static final String ATOM_TRACE_TS = "trace_ts";
+    private static final String ATOM_DROP = "drop";
+    private static final OtpErlangAtom AVOID_STRING = new OtpErlangAtom(
+            "avoid_interpreting_as_string");
+
+    private static final int INDEX_PROCESS = 1;
+    private static final int INDEX_TRACE_TYPE = 2;
+    private static final int INDEX_FUNCTION = 3;
+
+    /**
+     * Function call that has not returned yet.
+     */
+    private static class Frame {
+        final FunctionStats function;
+        final long start;
+        long childrenTime;
+
+        Frame(final FunctionStats function, final long start) {
+            this.function = function;
+            this.start = start;
+        }
+    }
+
+    private final Map<String, FunctionStats> functions = new HashMap<String, FunctionStats>();
+    private final Map<OtpErlangObject, ProcessStats> processes = new HashMap<OtpErlangObject, ProcessStats>();
+    private final Map<OtpErlangObject, Deque<Frame>> stacks = new HashMap<OtpErlangObject, Deque<Frame>>();
+    private long traces;
+    private long dropped;
+
+    /**
+     * Adds trace event to statistics. Messages which are not trace events are
+     * ignored.
+     * 
+     * @param trace
+     *            trace event
+     */
+    public synchronized void add(final OtpErlangObject trace) {
+        if (!(trace instanceof OtpErlangTuple)) {
+            return;
+        }
+        final OtpErlangTuple tuple = (OtpErlangTuple) trace;
+        if (tuple.arity() < 2
+                || !(tuple.elementAt(0) instanceof OtpErlangAtom)) {
+            return;
+        }
+        final String tag = ((OtpErlangAtom) tuple.elementAt(0)).atomValue();
+        if (tag.equals(ATOM_DROP)) {
+            addDrop(tuple);
+        } else if (tag.equals(ATOM_TRACE_TS) && tuple.arity() > 4
+                && tuple.elementAt(INDEX_TRACE_TYPE) instanceof OtpErlangAtom) {
+            try {
+                addTrace(tuple);
+            } catch (final ClassCastException e) {
+                ErlLogger.warn("can't aggregate trace %s", trace);
+            }
+        }
+    }
+
+    private void addDrop(final OtpErlangTuple tuple) {
+        if (tuple.elementAt(1) instanceof OtpErlangLong) {
+            dropped += ((OtpErlangLong) tuple.elementAt(1)).longValue();
+        }
+        // calls and returns may be missing, so open calls can't be paired
+        stacks.clear();
+    }
+
+    private void addTrace(final OtpErlangTuple tuple) {
+        final TraceType type;
+        try {
+            type = TraceType.valueOf(((OtpErlangAtom) tuple
+                    .elementAt(INDEX_TRACE_TYPE)).atomValue().toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            return;
+        }
+        traces++;
+        final long time = readTimestamp(tuple.elementAt(tuple.arity() - 1));
+        final OtpErlangObject process = tuple.elementAt(INDEX_PROCESS);
+        final OtpErlangObject pid = getPid(process);
+        final ProcessStats processStats = getProcessStats(pid, process);
+        processStats.addTrace(time);
+
+        switch (type) {
+        case CALL:
+            final FunctionStats called = getFunctionStats(tuple
+                    .elementAt(INDEX_FUNCTION));
+            called.addCall();
+            if (time >= 0) {
+                getStack(pid).push(new Frame(called, time));
+            }
+            break;
+        case RETURN_FROM:
+        case EXCEPTION_FROM:
+            if (time >= 0) {
+                addReturn(pid,
+                        getFunctionStats(tuple.elementAt(INDEX_FUNCTION)),
+                        time, type == TraceType.EXCEPTION_FROM);
+            }
+            break;
+        case SEND:
+        case SEND_TO_NON_EXISTING_PROCESS:
+            processStats.addSent();
+            break;
+        case RECEIVE:
+            processStats.addReceived();
+            break;
+        case EXIT:
+            stacks.remove(pid);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Pairs return with the most recent call of the same function. Calls made
+     * after it were not returned from (e.g. they were not traced with return
+     * trace) and are discarded.
+     */
+    private void addReturn(final OtpErlangObject pid,
+            final FunctionStats function, final long time,
+            final boolean exception) {
+        final Deque<Frame> stack = stacks.get(pid);
+        if (stack == null) {
+            return;
+        }
+        final Iterator<Frame> iterator = stack.iterator();
+        int depth = 0;
+        Frame frame = null;
+        while (iterator.hasNext()) {
+            final Frame f = iterator.next();
+            if (f.function == function) {
+                frame = f;
+                break;
+            }
+            depth++;
+        }
+        if (frame == null) {
+            // call happened before first loaded trace
+            return;
+        }
+        for (int i = 0; i <= depth; i++) {
+            stack.pop();
+        }
+        final long inclusive = Math.max(0, time - frame.start);
+        function.addReturn(inclusive,
+                Math.max(0, inclusive - frame.childrenTime), exception);
+        final Frame parent = stack.peek();
+        if (parent != null) {
+            parent.childrenTime += inclusive;
+        }
+    }
+
+    private Deque<Frame> getStack(final OtpErlangObject pid) {
+        Deque<Frame> stack = stacks.get(pid);
+        if (stack == null) {
+            stack = new ArrayDeque<Frame>();
+            stacks.put(pid, stack);
+        }
+        return stack;
+    }
+
+    private FunctionStats getFunctionStats(final OtpErlangObject mfa) {
+        final OtpErlangTuple tuple = (OtpErlangTuple) mfa;
+        final String module = ((OtpErlangAtom) tuple.elementAt(0)).atomValue();
+        final String function = ((OtpErlangAtom) tuple.elementAt(1))
+                .atomValue();
+        final int arity = getArity(tuple.elementAt(2));
+        final String key = module + ":" + function + "/" + arity;
+        FunctionStats stats = functions.get(key);
+        if (stats == null) {
+            stats = new FunctionStats(module, function, arity);
+            functions.put(key, stats);
+        }
+        return stats;
+    }
+
+    private static int getArity(final OtpErlangObject arityOrArgs) {
+        if (arityOrArgs instanceof OtpErlangLong) {
+            return (int) ((OtpErlangLong) arityOrArgs).longValue();
+        } else if (arityOrArgs instanceof OtpErlangList) {
+            final OtpErlangList args = (OtpErlangList) arityOrArgs;
+            if (args.arity() > 0 && AVOID_STRING.equals(args.elementAt(0))) {
+                return args.arity() - 1;
+            }
+            return args.arity();
+        } else if (arityOrArgs instanceof OtpErlangString) {
+            // list of small integers
+            return ((OtpErlangString) arityOrArgs).stringValue().length();
+        }
+        return -1;
+    }
+
+    private ProcessStats getProcessStats(final OtpErlangObject pid,
+            final OtpErlangObject process) {
+        ProcessStats stats = processes.get(pid);
+        if (stats == null) {
+            stats = new ProcessStats(describeProcess(process));
+            processes.put(pid, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Returns pid of process described as <code>Pid</code>,
+     * <code>{Pid, InitialCall | RegisteredName, Node}</code> or
+     * <code>{RegisteredName, Node}</code>.
+     */
+    private static OtpErlangObject getPid(final OtpErlangObject process) {
+        if (process instanceof OtpErlangTuple) {
+            final OtpErlangTuple tuple = (OtpErlangTuple) process;
+            if (tuple.arity() == 3) {
+                return tuple.elementAt(0);
+            }
+        }
+        return process;
+    }
+
+    private static String describeProcess(final OtpErlangObject process) {
+        if (process instanceof OtpErlangPid) {
+            final OtpErlangPid pid = (OtpErlangPid) process;
+            return pid.id() + "." + pid.serial() + "." + pid.creation() + " ("
+                    + pid.node() + ")";
+        } else if (process instanceof OtpErlangTuple
+                && ((OtpErlangTuple) process).arity() == 3) {
+            final OtpErlangTuple tuple = (OtpErlangTuple) process;
+            final OtpErlangObject info = tuple.elementAt(1);
+            final String name = info instanceof OtpErlangTuple ? formatMfa((OtpErlangTuple) info)
+                    : info.toString();
+            return describeProcess(tuple.elementAt(0)) + " " + name;
+        }
+        return process.toString();
+    }
+
+    private static String formatMfa(final OtpErlangTuple mfa) {
+        if (mfa.arity() != 3) {
+            return mfa.toString();
+        }
+        return mfa.elementAt(0) + ":" + mfa.elementAt(1) + "/"
+                + getArity(mfa.elementAt(2));
+    }
+
+    /**
+     * Reads <code>now()</code> timestamp of trace event.
+     * 
+     * @return microseconds since epoch or -1 if timestamp can't be read
+     */
+    static long readTimestamp(final OtpErlangObject object) {
+        if (!(object instanceof OtpErlangTuple)) {
+            return -1;
+        }
+        final OtpErlangTuple tuple = (OtpErlangTuple) object;
+        if (tuple.arity() == 3 && tuple.elementAt(0) instanceof OtpErlangLong) {
+            // {MegaSecs, Secs, MicroSecs}
+            return (longValue(tuple, 0) * 1000000 + longValue(tuple, 1))
+                    * 1000000 + longValue(tuple, 2);
+        }
+        return -1;
+    }
+
+    private static long longValue(final OtpErlangTuple tuple, final int index) {
+        return ((OtpErlangLong) tuple.elementAt(index)).longValue();
+    }
+
+    /**
+     * Returns copies of statistics of all called functions, which are not
+     * changed by further aggregation.
+     * 
+     * @return list of statistics
+     */
+    public synchronized List<FunctionStats> getFunctionStats() {
+        final List<FunctionStats> result = new ArrayList<FunctionStats>(
+                functions.size());
+        for (final FunctionStats stats : functions.values()) {
+            result.add(stats.copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns copies of statistics of all traced processes, which are not
+     * changed by further aggregation.
+     * 
+     * @return list of statistics
+     */
+    public synchronized List<ProcessStats> getProcessStats() {
+        final List<ProcessStats> result = new ArrayList<ProcessStats>(
+                processes.size());
+        for (final ProcessStats stats : processes.values()) {
+            result.add(stats.copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns number of aggregated trace events.
+     * 
+     * @return number of traces
+     */
+    public synchronized long getTraceCount() {
+        return traces;
+    }
+
+    /**
+     * Returns number of trace events which were dropped by tracer.
+     * 
+     * @return number of dropped traces
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized void clear() {
+        functions.clear();
+        processes.clear();
+        stacks.clear();
+        traces = 0;
+        dropped = 0;
+    }
+}
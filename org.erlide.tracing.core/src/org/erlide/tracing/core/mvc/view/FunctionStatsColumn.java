@@ -0,0 +1,113 @@
+package org.erlide.tracing.core.mvc.view;
+
+import org.erlide.tracing.core.mvc.model.stats.FunctionStats;
+
+/**
+ * Enum describing columns in function statistics table. Times are displayed
+ * in milliseconds.
+ */
+public enum FunctionStatsColumn implements IStatsColumn {
+    //@formatter:off
+    FUNCTION("Function", 220, false) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.toString();
+        }
+    },
+    CALLS("Calls", 70, false) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getCalls();
+        }
+    },
+    EXCEPTIONS("Exceptions", 70, false) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getExceptions();
+        }
+    },
+    INCLUSIVE_TIME("Inclusive [ms]", 100, true) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getInclusiveTime();
+        }
+    },
+    EXCLUSIVE_TIME("Exclusive [ms]", 100, true) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getExclusiveTime();
+        }
+    },
+    MEAN("Mean [ms]", 80, true) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getHistogram().getMean();
+        }
+    },
+    P50("50% [ms]", 80, true) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getHistogram().getValueAtPercentile(50);
+        }
+    },
+    P90("90% [ms]", 80, true) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getHistogram().getValueAtPercentile(90);
+        }
+    },
+    P99("99% [ms]", 80, true) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getHistogram().getValueAtPercentile(99);
+        }
+    },
+    MAX("Max [ms]", 80, true) {
+        @Override
+        public Comparable<?> getValue(final FunctionStats stats) {
+            return stats.getHistogram().getMax();
+        }
+    };
+    //@formatter:on
+
+    private final String name;
+    private final int width;
+    private final boolean time;
+
+    private FunctionStatsColumn(final String name, final int width,
+            final boolean time) {
+        this.name = name;
+        this.width = width;
+        this.time = time;
+    }
+
+    public abstract Comparable<?> getValue(FunctionStats stats);
+
+    @Override
+    public Comparable<?> getValue(final Object element) {
+        return getValue((FunctionStats) element);
+    }
+
+    @Override
+    public String getText(final Object element) {
+        final FunctionStats stats = (FunctionStats) element;
+        if (time) {
+            if (stats.getTimedCalls() == 0) {
+                return "-";
+            }
+            final Number micros = (Number) getValue(stats);
+            return String.format("%.3f", micros.doubleValue() / 1000);
+        }
+        return getValue(stats).toString();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+}
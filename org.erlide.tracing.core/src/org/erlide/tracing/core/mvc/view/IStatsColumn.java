@@ -0,0 +1,32 @@
+package org.erlide.tracing.core.mvc.view;
+
+/**
+ * Column of table displaying trace statistics.
+ * 
+ * @see StatsLabelProvider
+ * @see StatsComparator
+ */
+public interface IStatsColumn {
+
+    public String getName();
+
+    public int getWidth();
+
+    /**
+     * Returns value displayed in this column, used for sorting.
+     * 
+     * @param element
+     *            table element
+     * @return value
+     */
+    public Comparable<?> getValue(Object element);
+
+    /**
+     * Returns text displayed in this column.
+     * 
+     * @param element
+     *            table element
+     * @return text
+     */
+    public String getText(Object element);
+}
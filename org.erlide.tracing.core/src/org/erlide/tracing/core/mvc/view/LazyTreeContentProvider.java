@@ -0,0 +1,73 @@
+package org.erlide.tracing.core.mvc.view;
+
+import java.util.List;
+
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.erlide.tracing.core.mvc.model.treenodes.ITreeNode;
+
+/**
+ * Content provider for virtual tree (created with <code>SWT.VIRTUAL</code>
+ * style). Elements are taken from input list only when tree viewer is about to
+ * show them, so lists which build their nodes lazily (e.g.
+ * {@link org.erlide.tracing.core.mvc.model.TraceEventList}) build only nodes
+ * that are visible.
+ */
+public class LazyTreeContentProvider implements ILazyTreeContentProvider {
+
+    private final TreeViewer treeViewer;
+    private List<ITreeNode> list;
+
+    /**
+     * Creates content provider.
+     * 
+     * @param treeViewer
+     *            tree viewer that will be using this content provider
+     */
+    public LazyTreeContentProvider(final TreeViewer treeViewer) {
+        this.treeViewer = treeViewer;
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void inputChanged(final Viewer viewer, final Object oldInput,
+            final Object newInput) {
+        list = (List<ITreeNode>) newInput;
+    }
+
+    @Override
+    public void updateElement(final Object parent, final int index) {
+        final List<ITreeNode> children = getChildren(parent);
+        if (index < children.size()) {
+            final ITreeNode element = children.get(index);
+            treeViewer.replace(parent, index, element);
+            treeViewer.setChildCount(element, element.getChildren().size());
+        }
+    }
+
+    @Override
+    public void updateChildCount(final Object element,
+            final int currentChildCount) {
+        final int count = getChildren(element).size();
+        if (count != currentChildCount) {
+            treeViewer.setChildCount(element, count);
+        }
+    }
+
+    @Override
+    public Object getParent(final Object element) {
+        return ((ITreeNode) element).getParent();
+    }
+
+    private List<ITreeNode> getChildren(final Object element) {
+        if (element == list) {
+            return list;
+        }
+        return ((ITreeNode) element).getChildren();
+    }
+}
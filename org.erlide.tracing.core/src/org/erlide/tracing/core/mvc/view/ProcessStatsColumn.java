@@ -0,0 +1,70 @@
+package org.erlide.tracing.core.mvc.view;
+
+import org.erlide.tracing.core.mvc.model.stats.ProcessStats;
+
+/**
+ * Enum describing columns in process statistics table.
+ */
+public enum ProcessStatsColumn implements IStatsColumn {
+    //@formatter:off
+    PROCESS("Process", 250) {
+        @Override
+        public Comparable<?> getValue(final ProcessStats stats) {
+            return stats.getProcess();
+        }
+    },
+    SENT("Sent", 80) {
+        @Override
+        public Comparable<?> getValue(final ProcessStats stats) {
+            return stats.getSent();
+        }
+    },
+    RECEIVED("Received", 80) {
+        @Override
+        public Comparable<?> getValue(final ProcessStats stats) {
+            return stats.getReceived();
+        }
+    },
+    SEND_RATE("Sent per second", 110) {
+        @Override
+        public Comparable<?> getValue(final ProcessStats stats) {
+            return stats.getSendRate();
+        }
+
+        @Override
+        public String getText(final Object element) {
+            return String.format("%.1f", getValue(element));
+        }
+    };
+    //@formatter:on
+
+    private final String name;
+    private final int width;
+
+    private ProcessStatsColumn(final String name, final int width) {
+        this.name = name;
+        this.width = width;
+    }
+
+    public abstract Comparable<?> getValue(ProcessStats stats);
+
+    @Override
+    public Comparable<?> getValue(final Object element) {
+        return getValue((ProcessStats) element);
+    }
+
+    @Override
+    public String getText(final Object element) {
+        return getValue(element).toString();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+}
@@ -0,0 +1,68 @@
+package org.erlide.tracing.core.mvc.view;
+
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerComparator;
+import org.eclipse.swt.SWT;
+
+/**
+ * Sorts tables displaying trace statistics by selected column.
+ */
+public class StatsComparator extends ViewerComparator {
+
+    private final IStatsColumn[] columns;
+    private int column = -1;
+    private boolean descending;
+
+    /**
+     * Creates comparator.
+     * 
+     * @param columns
+     *            table columns
+     * @param column
+     *            index of column to sort by
+     */
+    public StatsComparator(final IStatsColumn[] columns, final int column) {
+        this.columns = columns;
+        setColumn(column);
+    }
+
+    /**
+     * Sorts by given column. If table is already sorted by it, reverses order.
+     * The first column (name) is sorted in ascending order first, other ones
+     * (numbers) in descending order.
+     * 
+     * @param theColumn
+     *            column index
+     */
+    public void setColumn(final int theColumn) {
+        if (theColumn == column) {
+            descending = !descending;
+        } else {
+            column = theColumn;
+            descending = theColumn != 0;
+        }
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns sort direction, as expected by
+     * {@link org.eclipse.swt.widgets.Table#setSortDirection(int)}.
+     * 
+     * @return {@link SWT#UP} or {@link SWT#DOWN}
+     */
+    public int getDirection() {
+        return descending ? SWT.DOWN : SWT.UP;
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public int compare(final Viewer viewer, final Object e1, final Object e2) {
+        final Comparable v1 = columns[column].getValue(e1);
+        final Comparable v2 = columns[column].getValue(e2);
+        final int result = v1.compareTo(v2);
+        return descending ? -result : result;
+    }
+}
@@ -0,0 +1,31 @@
+package org.erlide.tracing.core.mvc.view;
+
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * Label provider for tables displaying trace statistics.
+ */
+public class StatsLabelProvider extends LabelProvider implements
+        ITableLabelProvider {
+
+    private final IStatsColumn[] columns;
+
+    public StatsLabelProvider(final IStatsColumn[] columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public Image getColumnImage(final Object element, final int columnIndex) {
+        return null;
+    }
+
+    @Override
+    public String getColumnText(final Object element, final int columnIndex) {
+        if (columnIndex < columns.length) {
+            return columns[columnIndex].getText(element);
+        }
+        return "";
+    }
+}
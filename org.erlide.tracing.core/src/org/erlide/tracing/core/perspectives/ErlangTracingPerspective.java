@@ -18,6 +18,7 @@ public class ErlangTracingPerspective implements IPerspectiveFactory {
     public static final String CONTROL_PANEL_VIEW_ID = "org.erlide.tracing.core.views.ControlPanelView";
     public static final String TREE_VIEWER_VIEW_ID = "org.erlide.tracing.core.views.TreeViewerView";
     public static final String BROWSER_VIEW_ID = "org.erlide.tracing.core.views.TraceBrowserView";
+    public static final String STATISTICS_VIEW_ID = "org.erlide.tracing.core.views.TraceStatisticsView";
     private static final String TOP_LEFT = "top left";
     private static final String BOTTOM_LEFT = "bottom left";
     private static final String CENTER_LEFT = "center left";
@@ -59,6 +60,7 @@ public class ErlangTracingPerspective implements IPerspectiveFactory {
                 pageLayout.getEditorArea());
         bottomCenter.addView(IPageLayout.ID_PROBLEM_VIEW);
         bottomCenter.addView(CONTROL_PANEL_VIEW_ID);
+        bottomCenter.addView(STATISTICS_VIEW_ID);
 
         // right center
         final IFolderLayout rightCenter = pageLayout.createFolder(RIGHT_CENTER,
@@ -119,6 +119,30 @@ public class TraceDataHandler {
         return null;
     }
 
+    /**
+     * Checks if given message is a trace event (or information about dropped
+     * trace events), i.e. if {@link #getData(OtpErlangObject)} creates a node
+     * that should be displayed among traces.
+     * 
+     * @param message
+     *            message
+     * @return <code>true</code> if it is trace event, <code>false</code>
+     *         otherwise
+     */
+    public boolean isTraceEvent(final OtpErlangObject message) {
+        if (message instanceof OtpErlangTuple) {
+            final OtpErlangTuple tuple = (OtpErlangTuple) message;
+            if (tuple.arity() > 1
+                    && tuple.elementAt(0) instanceof OtpErlangAtom) {
+                final String atomValue = ((OtpErlangAtom) tuple.elementAt(0))
+                        .atomValue();
+                return atomValue.equals(ATOM_TRACE_TS)
+                        || atomValue.equals(ATOM_DROP);
+            }
+        }
+        return false;
+    }
+
     /**
      * Reads data described by given object. It can be trace event or
      * information about file containing tracing results.
@@ -0,0 +1,117 @@
+package org.erlide.tracing.core.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.erlide.tracing.core.mvc.model.stats.TraceAggregator;
+
+import com.ericsson.otp.erlang.OtpErlangAtom;
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangTuple;
+import com.ericsson.otp.erlang.OtpInputStream;
+
+/**
+ * Reads trace files written by trace port (i.e. files created by
+ * <code>ttb</code>) without a backend and passes trace events to
+ * {@link TraceAggregator}. Every entry of a trace file is either
+ * <code>&lt;&lt;0, Size:32, Trace/binary&gt;&gt;</code> with trace in
+ * external format or <code>&lt;&lt;1, Dropped:32&gt;&gt;</code>.
+ * <p>
+ * This class does not depend on UI, so it can be used to aggregate big trace
+ * files headless.
+ */
+public final class TraceFileReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String INFO_FILE_EXTENSION = ".ti";
+    private static final OtpErlangAtom ATOM_DROP = new OtpErlangAtom("drop");
+
+    private TraceFileReader() {
+    }
+
+    /**
+     * Reads trace file or all trace files from given directory (as created by
+     * <code>ttb</code> for every traced node).
+     *
+     * @param path
+     *            trace file or directory
+     * @param aggregator
+     *            aggregator which receives trace events
+     * @return number of read entries
+     * @throws IOException
+     */
+    public static long read(final File path, final TraceAggregator aggregator)
+            throws IOException {
+        if (!path.isDirectory()) {
+            return readFile(path, aggregator);
+        }
+        final File[] files = path.listFiles();
+        if (files == null) {
+            throw new IOException("can't list " + path);
+        }
+        Arrays.sort(files);
+        long count = 0;
+        for (final File file : files) {
+            if (file.isFile() && !file.isHidden()
+                    && !file.getName().endsWith(INFO_FILE_EXTENSION)) {
+                count += readFile(file, aggregator);
+            }
+        }
+        return count;
+    }
+
+    private static long readFile(final File file,
+            final TraceAggregator aggregator) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), BUFFER_SIZE));
+        long count = 0;
+        try {
+            byte[] buffer = new byte[256];
+            while (true) {
+                final int op = in.read();
+                if (op < 0) {
+                    break;
+                }
+                final int size = in.readInt();
+                if (op == 0) {
+                    if (size < 0) {
+                        throw new IOException("bad entry size in " + file);
+                    }
+                    if (size > buffer.length) {
+                        buffer = new byte[Math.max(size, buffer.length * 2)];
+                    }
+                    in.readFully(buffer, 0, size);
+                    aggregator.add(decode(buffer, size, file));
+                } else if (op == 1) {
+                    aggregator.add(new OtpErlangTuple(new OtpErlangObject[] {
+                            ATOM_DROP, new OtpErlangLong(size & 0xffffffffL) }));
+                } else {
+                    throw new IOException("bad entry in " + file);
+                }
+                count++;
+            }
+        } catch (final EOFException e) {
+            // last entry is incomplete when tracing was not stopped properly
+        } finally {
+            in.close();
+        }
+        return count;
+    }
+
+    private static OtpErlangObject decode(final byte[] buffer, final int size,
+            final File file) throws IOException {
+        try {
+            return new OtpInputStream(buffer, 0, size, 0).read_any();
+        } catch (final OtpErlangDecodeException e) {
+            throw new IOException("can't decode trace in " + file + ": "
+                    + e.getMessage());
+        }
+    }
+}
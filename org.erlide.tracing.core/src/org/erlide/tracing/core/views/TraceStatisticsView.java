@@ -0,0 +1,274 @@
+package org.erlide.tracing.core.views;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.debug.ui.DebugUITools;
+import org.eclipse.debug.ui.IDebugUIConstants;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.SashForm;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.layout.RowData;
+import org.eclipse.swt.layout.RowLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.part.ViewPart;
+import org.erlide.tracing.core.ITraceNodeObserver;
+import org.erlide.tracing.core.TraceBackend;
+import org.erlide.tracing.core.TracingStatus;
+import org.erlide.tracing.core.mvc.model.stats.TraceAggregator;
+import org.erlide.tracing.core.mvc.view.FunctionStatsColumn;
+import org.erlide.tracing.core.mvc.view.IStatsColumn;
+import org.erlide.tracing.core.mvc.view.ProcessStatsColumn;
+import org.erlide.tracing.core.mvc.view.StatsComparator;
+import org.erlide.tracing.core.mvc.view.StatsLabelProvider;
+import org.erlide.tracing.core.utils.TracingStatusHandler;
+
+/**
+ * View displaying statistics of all traces from selected result set: call
+ * counts and times of functions and message rates of processes.
+ */
+public class TraceStatisticsView extends ViewPart implements
+        ITraceNodeObserver {
+
+    /**
+     * How often tables are refreshed while statistics are computed (in
+     * milliseconds).
+     */
+    private static final int REFRESH_INTERVAL = 1000;
+
+    private TableViewer functionsTableViewer;
+    private TableViewer processesTableViewer;
+    private Button computeButton;
+    private Label label;
+    private Job job;
+
+    public TraceStatisticsView() {
+        TraceBackend.getInstance().addListener(this);
+    }
+
+    @Override
+    public void dispose() {
+        TraceBackend.getInstance().removeListener(this);
+        super.dispose();
+    }
+
+    @Override
+    public void createPartControl(final Composite parent) {
+        // layout
+        final GridLayout containerLayout = new GridLayout(1, false);
+        containerLayout.marginWidth = 0;
+        containerLayout.marginHeight = 0;
+        containerLayout.verticalSpacing = 3;
+        parent.setLayout(containerLayout);
+
+        // children
+        createButtonsPanel(parent);
+        final SashForm sashForm = new SashForm(parent, SWT.VERTICAL);
+        sashForm.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        functionsTableViewer = createTable(sashForm,
+                FunctionStatsColumn.values(),
+                FunctionStatsColumn.INCLUSIVE_TIME.ordinal());
+        processesTableViewer = createTable(sashForm,
+                ProcessStatsColumn.values(), ProcessStatsColumn.SENT.ordinal());
+        sashForm.setWeights(new int[] { 2, 1 });
+
+        update();
+    }
+
+    private void createButtonsPanel(final Composite parent) {
+        final Composite buttonsPanel = new Composite(parent, SWT.NONE);
+        buttonsPanel
+                .setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, false));
+        buttonsPanel.setLayout(new RowLayout());
+
+        // "Compute" button
+        computeButton = new Button(buttonsPanel, SWT.PUSH | SWT.CENTER);
+        computeButton
+                .setToolTipText("Compute statistics of all traces from selected result set");
+        computeButton.setImage(DebugUITools
+                .getImage(IDebugUIConstants.IMG_OBJS_LAUNCH_RUN));
+        computeButton.addSelectionListener(new SelectionAdapter() {
+
+            @Override
+            public void widgetSelected(final SelectionEvent e) {
+                compute();
+            }
+        });
+
+        // label
+        label = new Label(buttonsPanel, SWT.NONE);
+        label.setLayoutData(new RowData(400, SWT.DEFAULT));
+    }
+
+    private TableViewer createTable(final Composite parent,
+            final IStatsColumn[] columns, final int sortColumn) {
+        final int style = SWT.SINGLE | SWT.BORDER | SWT.H_SCROLL | SWT.V_SCROLL
+                | SWT.FULL_SELECTION;
+        final TableViewer tableViewer = new TableViewer(parent, style);
+        tableViewer.setUseHashlookup(true);
+
+        // table
+        final Table table = tableViewer.getTable();
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+
+        // sorting
+        final StatsComparator comparator = new StatsComparator(columns,
+                sortColumn);
+        tableViewer.setComparator(comparator);
+
+        // columns
+        for (int i = 0; i < columns.length; i++) {
+            final IStatsColumn column = columns[i];
+            final int index = i;
+            final TableColumn tableColumn = new TableColumn(table,
+                    i == 0 ? SWT.LEFT : SWT.RIGHT, i);
+            tableColumn.setResizable(true);
+            tableColumn.setMoveable(false);
+            tableColumn.setWidth(column.getWidth());
+            tableColumn.setText(column.getName());
+            tableColumn.addSelectionListener(new SelectionAdapter() {
+
+                @Override
+                public void widgetSelected(final SelectionEvent e) {
+                    comparator.setColumn(index);
+                    table.setSortColumn(tableColumn);
+                    table.setSortDirection(comparator.getDirection());
+                    tableViewer.refresh();
+                }
+            });
+            if (i == sortColumn) {
+                table.setSortColumn(tableColumn);
+                table.setSortDirection(comparator.getDirection());
+            }
+        }
+
+        // providers
+        tableViewer.setLabelProvider(new StatsLabelProvider(columns));
+        tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+        return tableViewer;
+    }
+
+    private void compute() {
+        if (job != null) {
+            return;
+        }
+        job = new Job("Computing trace statistics") {
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                final TracingStatus status = TraceBackend.getInstance()
+                        .aggregateActiveResultSet();
+                Display.getDefault().asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        TracingStatusHandler.handleStatus(status);
+                    }
+                });
+                return Status.OK_STATUS;
+            }
+        };
+        job.addJobChangeListener(new JobChangeAdapter() {
+            @Override
+            public void done(final IJobChangeEvent event) {
+                Display.getDefault().asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        job = null;
+                        update();
+                    }
+                });
+            }
+        });
+        job.schedule();
+        scheduleRefresh();
+        update();
+    }
+
+    /**
+     * Refreshes tables periodically while statistics are computed, so that
+     * partial results are visible.
+     */
+    private void scheduleRefresh() {
+        Display.getDefault().timerExec(REFRESH_INTERVAL, new Runnable() {
+            @Override
+            public void run() {
+                if (job != null && !label.isDisposed()) {
+                    update();
+                    scheduleRefresh();
+                }
+            }
+        });
+    }
+
+    private void update() {
+        if (label.isDisposed()) {
+            return;
+        }
+        final TraceAggregator aggregator = TraceBackend.getInstance()
+                .getAggregator();
+        functionsTableViewer.setInput(aggregator.getFunctionStats());
+        processesTableViewer.setInput(aggregator.getProcessStats());
+        computeButton.setEnabled(job == null
+                && TraceBackend.getInstance().getActiveResultSet() != null);
+
+        final StringBuilder builder = new StringBuilder();
+        builder.append(aggregator.getTraceCount()).append(" traces");
+        if (aggregator.getDroppedCount() > 0) {
+            builder.append(", ").append(aggregator.getDroppedCount())
+                    .append(" dropped");
+        }
+        if (job != null) {
+            builder.append(" (computing...)");
+        }
+        label.setText(builder.toString());
+    }
+
+    @Override
+    public void setFocus() {
+    }
+
+    @Override
+    public void startTracing() {
+    }
+
+    @Override
+    public void finishLoadingFile(final TracingStatus theStatus) {
+    }
+
+    @Override
+    public void finishLoadingTraces(final TracingStatus theStatus) {
+        Display.getDefault().asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                update();
+            }
+        });
+    }
+
+    @Override
+    public void removeFile() {
+        Display.getDefault().asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                update();
+            }
+        });
+    }
+
+    @Override
+    public void updateTracePatterns() {
+    }
+}
@@ -37,7 +37,7 @@ import org.erlide.tracing.core.mvc.model.treenodes.FunctionNode;
 import org.erlide.tracing.core.mvc.model.treenodes.ITreeNode;
 import org.erlide.tracing.core.mvc.model.treenodes.ModuleNode;
 import org.erlide.tracing.core.mvc.model.treenodes.TracingResultsNode;
-import org.erlide.tracing.core.mvc.view.TreeContentProvider;
+import org.erlide.tracing.core.mvc.view.LazyTreeContentProvider;
 import org.erlide.tracing.core.mvc.view.TreeLabelProvider;
 import org.erlide.tracing.core.preferences.PreferenceNames;
 import org.erlide.tracing.core.ui.dialogs.RunnableWithProgress;
@@ -90,14 +90,14 @@ public class TreeViewerView extends ViewPart implements ITraceNodeObserver {
         container.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
         container.setLayout(new GridLayout());
 
-        // treeViewer = new TreeViewer(container, SWT.VIRTUAL);
-        treeViewer = new TreeViewer(container, SWT.SINGLE);
+        // virtual tree: nodes are built only for visible traces
+        treeViewer = new TreeViewer(container, SWT.SINGLE | SWT.VIRTUAL);
         treeViewer.getTree().setLayoutData(
                 new GridData(SWT.FILL, SWT.FILL, true, true));
+        treeViewer.setUseHashlookup(true);
 
         // providers
-        treeViewer
-                .setContentProvider(new TreeContentProvider(treeViewer, true));
+        treeViewer.setContentProvider(new LazyTreeContentProvider(treeViewer));
         treeViewer.setLabelProvider(new TreeLabelProvider());
 
         // input
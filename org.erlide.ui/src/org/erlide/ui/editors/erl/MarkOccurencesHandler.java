@@ -37,7 +37,6 @@ import org.erlide.backend.IBackend;
 import org.erlide.model.ErlModelException;
 import org.erlide.model.erlang.IErlModule;
 import org.erlide.model.root.ErlModelManager;
-import org.erlide.model.services.search.ErlSearchScope;
 import org.erlide.model.services.search.ErlangSearchPattern;
 import org.erlide.model.services.search.ErlideOpen;
 import org.erlide.model.services.search.ErlideSearchServer;
@@ -115,15 +114,12 @@ public class MarkOccurencesHandler {
                     return;
                 }
                 if (pattern != null) {
-                    final ErlSearchScope scope = new ErlSearchScope();
-                    scope.addModule(theModule);
                     final List<ModuleLineFunctionArityRef> findRefs = Lists
                             .newArrayList();
-                    // TODO: run in background? for large files, this can take
-                    // seconds
-                    final OtpErlangObject refs = ErlideSearchServer.findRefs(
-                            ideBackend.getRpcSite(), pattern, scope,
-                            erlangEditor.getStateDir(), true);
+                    final OtpErlangObject refs = ErlideSearchServer
+                            .findRefsInModule(ideBackend.getRpcSite(),
+                                    pattern, theModule,
+                                    erlangEditor.getStateDir(), true);
                     if (refs != null) {
                         SearchUtil.addSearchResult(findRefs, refs);
                         fRefs = erlangEditor.markOccurencesHandler
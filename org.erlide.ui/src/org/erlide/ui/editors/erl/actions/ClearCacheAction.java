@@ -9,7 +9,9 @@ import java.util.ResourceBundle;
 import org.eclipse.ui.texteditor.TextEditorAction;
 import org.erlide.core.ErlangPlugin;
 import org.erlide.model.erlang.IErlModule;
+import org.erlide.model.internal.root.ErlModelCache;
 import org.erlide.ui.editors.erl.ErlangEditor;
+import org.erlide.utils.ErlLogger;
 
 /**
  * @author jakob
@@ -32,6 +34,7 @@ public class ClearCacheAction extends TextEditorAction {
 
     @Override
     public void run() {
+        ErlLogger.info("%s", ErlModelCache.getDefault().getStatisticsString());
         resetCacheForEditor(erlangEditor);
     }
 